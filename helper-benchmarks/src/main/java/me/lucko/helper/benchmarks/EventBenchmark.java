@@ -0,0 +1,124 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.benchmarks;
+
+import me.lucko.helper.Events;
+import me.lucko.helper.benchmarks.stub.BukkitStubs;
+import me.lucko.helper.benchmarks.stub.StubPluginManager;
+import me.lucko.helper.event.SingleSubscription;
+import me.lucko.helper.event.functional.single.SingleSubscriptionBuilder;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of dispatching an event to a number of functional subscriptions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int subscriptions;
+
+    @Param({"false", "true"})
+    public boolean handleSubclasses;
+
+    @Param({"false", "true"})
+    public boolean sharedDispatch;
+
+    private final List<SingleSubscription<BenchmarkEvent>> registered = new ArrayList<>();
+    private StubPluginManager pluginManager;
+    private BenchmarkEvent event;
+
+    @Setup
+    public void setup() {
+        this.pluginManager = BukkitStubs.pluginManager();
+        this.event = new BenchmarkEvent();
+
+        for (int i = 0; i < this.subscriptions; i++) {
+            SingleSubscriptionBuilder<BenchmarkEvent> builder = Events.subscribe(BenchmarkEvent.class);
+            if (this.handleSubclasses) {
+                builder.handleSubclasses();
+            }
+            if (this.sharedDispatch) {
+                builder.sharedDispatch();
+            }
+            this.registered.add(builder
+                    .filter(e -> e.value >= 0)
+                    .handler(e -> e.value++)
+            );
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.registered.forEach(SingleSubscription::unregister);
+        this.registered.clear();
+    }
+
+    @Benchmark
+    public int callEvent() {
+        this.pluginManager.callEvent(this.event);
+        return this.event.value;
+    }
+
+    public static class BenchmarkEvent extends Event {
+        private static final HandlerList HANDLERS = new HandlerList();
+
+        public static HandlerList getHandlerList() {
+            return HANDLERS;
+        }
+
+        int value = 0;
+
+        @Override
+        public HandlerList getHandlers() {
+            return HANDLERS;
+        }
+    }
+
+}
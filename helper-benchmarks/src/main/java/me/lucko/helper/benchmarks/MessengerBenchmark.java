@@ -0,0 +1,138 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.benchmarks;
+
+import com.google.common.reflect.TypeToken;
+
+import me.lucko.helper.benchmarks.stub.BukkitStubs;
+import me.lucko.helper.messaging.AbstractMessenger;
+import me.lucko.helper.messaging.codec.Codec;
+import me.lucko.helper.messaging.codec.GZipCodec;
+import me.lucko.helper.messaging.codec.GsonCodec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures message codecs and incoming message distribution in {@link AbstractMessenger}.
+ *
+ * <p>Channels are given agents without listeners, so the (asynchronous) listener
+ * dispatch is excluded and only the lookup + decode cost is measured.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessengerBenchmark {
+    private static final TypeToken<Payload> PAYLOAD_TYPE = TypeToken.of(Payload.class);
+
+    @Param({"1", "10", "150"})
+    public int channels;
+
+    private AbstractMessenger messenger;
+    private Codec<Payload> gsonCodec;
+    private Codec<Payload> gzipCodec;
+
+    private Payload payload;
+    private byte[] gsonEncoded;
+    private byte[] gzipEncoded;
+
+    @Setup
+    public void setup() {
+        BukkitStubs.install();
+
+        this.messenger = new AbstractMessenger((channel, message) -> {}, channel -> {}, channel -> {});
+        for (int i = 0; i < this.channels; i++) {
+            this.messenger.getChannel("channel-" + i, PAYLOAD_TYPE).newAgent();
+        }
+
+        this.gsonCodec = new GsonCodec<>(PAYLOAD_TYPE);
+        this.gzipCodec = new GZipCodec<>(this.gsonCodec);
+
+        this.payload = new Payload(UUID.randomUUID(), "server-1", 42, true);
+        this.gsonEncoded = this.gsonCodec.encode(this.payload);
+        this.gzipEncoded = this.gzipCodec.encode(this.payload);
+    }
+
+    @Benchmark
+    public byte[] gsonEncode() {
+        return this.gsonCodec.encode(this.payload);
+    }
+
+    @Benchmark
+    public Payload gsonDecode() {
+        return this.gsonCodec.decode(this.gsonEncoded);
+    }
+
+    @Benchmark
+    public byte[] gzipEncode() {
+        return this.gzipCodec.encode(this.payload);
+    }
+
+    @Benchmark
+    public Payload gzipDecode() {
+        return this.gzipCodec.decode(this.gzipEncoded);
+    }
+
+    @Benchmark
+    public void registerIncomingMessage() {
+        this.messenger.registerIncomingMessage("channel-0", this.gzipEncoded);
+    }
+
+    @Benchmark
+    public void registerIncomingMessageUnknownChannel() {
+        this.messenger.registerIncomingMessage("unknown", this.gzipEncoded);
+    }
+
+    public static final class Payload {
+        private final UUID uuid;
+        private final String server;
+        private final int players;
+        private final boolean online;
+
+        public Payload(UUID uuid, String server, int players, boolean online) {
+            this.uuid = uuid;
+            this.server = server;
+            this.players = players;
+            this.online = online;
+        }
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.benchmarks;
+
+import me.lucko.helper.metadata.ExpiringValue;
+import me.lucko.helper.metadata.MetadataKey;
+import me.lucko.helper.metadata.MetadataMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MetadataMap} reads and writes with a varying number of keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetadataBenchmark {
+
+    @Param({"1", "10", "50"})
+    public int keys;
+
+    @Param({"false", "true"})
+    public boolean transientValues;
+
+    private MetadataMap map;
+    private MetadataKey<Integer> firstKey;
+    private MetadataKey<Integer> lastKey;
+    private MetadataKey<Integer> missingKey;
+
+    @Setup
+    public void setup() {
+        this.map = MetadataMap.create();
+
+        MetadataKey<Integer> key = null;
+        for (int i = 0; i < this.keys; i++) {
+            key = MetadataKey.createIntegerKey("key-" + i);
+            if (i == 0) {
+                this.firstKey = key;
+            }
+
+            if (this.transientValues) {
+                this.map.put(key, ExpiringValue.of(i, 1, TimeUnit.DAYS));
+            } else {
+                this.map.put(key, i);
+            }
+        }
+        this.lastKey = key;
+        this.missingKey = MetadataKey.createIntegerKey("missing");
+    }
+
+    @Benchmark
+    public Optional<Integer> getFirst() {
+        return this.map.get(this.firstKey);
+    }
+
+    @Benchmark
+    public Optional<Integer> getLast() {
+        return this.map.get(this.lastKey);
+    }
+
+    @Benchmark
+    public Optional<Integer> getMissing() {
+        return this.map.get(this.missingKey);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<Integer> getLastContended() {
+        return this.map.get(this.lastKey);
+    }
+
+    @Benchmark
+    public void put() {
+        this.map.put(this.lastKey, 1);
+    }
+
+}
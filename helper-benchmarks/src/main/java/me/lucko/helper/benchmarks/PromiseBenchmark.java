@@ -0,0 +1,90 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.benchmarks;
+
+import me.lucko.helper.benchmarks.stub.BukkitStubs;
+import me.lucko.helper.promise.Promise;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of chaining {@link Promise} stages.
+ *
+ * <p>Sync stages run inline via the stubbed scheduler, so the sync chain measures
+ * the promise machinery alone. Async stages go via the helper async executor.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromiseBenchmark {
+
+    @Setup
+    public void setup() {
+        BukkitStubs.install();
+    }
+
+    @Benchmark
+    public Integer completedChain() {
+        return Promise.completed(1)
+                .thenApplySync(i -> i + 1)
+                .thenApplySync(i -> i * 2)
+                .thenApplySync(i -> i - 1)
+                .join();
+    }
+
+    @Benchmark
+    public Integer syncChain() {
+        return Promise.supplyingSync(() -> 1)
+                .thenApplySync(i -> i + 1)
+                .thenComposeSync(i -> Promise.completed(i * 2))
+                .thenApplySync(i -> i - 1)
+                .join();
+    }
+
+    @Benchmark
+    public Integer asyncChain() {
+        return Promise.supplyingAsync(() -> 1)
+                .thenApplyAsync(i -> i + 1)
+                .thenComposeAsync(i -> Promise.completed(i * 2))
+                .thenApplyAsync(i -> i - 1)
+                .join();
+    }
+
+}
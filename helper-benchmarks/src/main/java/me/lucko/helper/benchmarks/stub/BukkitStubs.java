@@ -0,0 +1,100 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.benchmarks.stub;
+
+import me.lucko.helper.internal.LoaderUtils;
+import me.lucko.helper.plugin.HelperPlugin;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Installs a minimal stubbed {@link Server} and {@link HelperPlugin} so that helper
+ * can be exercised outside of a running server.
+ *
+ * <p>Sync tasks are executed inline on the calling thread, and async tasks are
+ * passed to the common fork-join pool.</p>
+ */
+public final class BukkitStubs {
+    private static final Logger LOGGER = Logger.getLogger("helper-benchmarks");
+
+    private static StubPluginManager pluginManager = null;
+
+    /**
+     * Installs the stubs, if they haven't been installed already.
+     */
+    public static synchronized void install() {
+        if (pluginManager != null) {
+            return;
+        }
+
+        LOGGER.setLevel(Level.WARNING);
+        pluginManager = new StubPluginManager();
+
+        StubServer server = new StubServer(
+                LOGGER,
+                StubProxies.create(PluginManager.class, pluginManager),
+                StubProxies.create(BukkitScheduler.class, new StubScheduler())
+        );
+        Server serverProxy = StubProxies.create(Server.class, server);
+        Bukkit.setServer(serverProxy);
+
+        HelperPlugin plugin = StubProxies.create(HelperPlugin.class, new StubPlugin(serverProxy, LOGGER));
+        LoaderUtils.forceSetPlugin(plugin);
+    }
+
+    /**
+     * Gets the stub plugin manager, which can be used to call events
+     * without going via a proxy.
+     *
+     * @return the plugin manager
+     */
+    public static synchronized StubPluginManager pluginManager() {
+        install();
+        return pluginManager;
+    }
+
+    /**
+     * Gets the stub plugin instance.
+     *
+     * @return the plugin
+     */
+    public static Plugin plugin() {
+        install();
+        return LoaderUtils.getPlugin();
+    }
+
+    private BukkitStubs() {
+        throw new UnsupportedOperationException("This class cannot be instantiated");
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.benchmarks.stub;
+
+import org.bukkit.Server;
+
+import java.util.logging.Logger;
+
+/**
+ * Delegate for the stubbed {@link me.lucko.helper.plugin.HelperPlugin}.
+ */
+public final class StubPlugin {
+    private final Server server;
+    private final Logger logger;
+
+    StubPlugin(Server server, Logger logger) {
+        this.server = server;
+        this.logger = logger;
+    }
+
+    public String getName() {
+        return "helper-benchmarks";
+    }
+
+    public Server getServer() {
+        return this.server;
+    }
+
+    public Logger getLogger() {
+        return this.logger;
+    }
+
+    public boolean isEnabled() {
+        return true;
+    }
+
+    public ClassLoader getClassloader() {
+        return StubPlugin.class.getClassLoader();
+    }
+
+    public AutoCloseable bind(AutoCloseable terminable) {
+        return terminable;
+    }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.benchmarks.stub;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Creates dynamic proxies which forward calls to a delegate object if it declares
+ * a matching public method, and otherwise return a default value.
+ */
+final class StubProxies {
+
+    static <T> T create(Class<T> iface, Object delegate) {
+        Object proxy = Proxy.newProxyInstance(StubProxies.class.getClassLoader(), new Class[]{iface}, new Handler(delegate));
+        return iface.cast(proxy);
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive() || type == void.class) {
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == char.class) {
+            return '\0';
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == float.class) {
+            return 0f;
+        }
+        if (type == double.class) {
+            return 0d;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        return 0;
+    }
+
+    private static final class Handler implements InvocationHandler {
+        private final Object delegate;
+        private final Map<Method, Optional<Method>> targets = new ConcurrentHashMap<>();
+
+        private Handler(Object delegate) {
+            this.delegate = delegate;
+        }
+
+        private Optional<Method> findTarget(Method method) {
+            try {
+                Method target = this.delegate.getClass().getMethod(method.getName(), method.getParameterTypes());
+                target.setAccessible(true);
+                return Optional.of(target);
+            } catch (NoSuchMethodException e) {
+                return Optional.empty();
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return "Stub(" + this.delegate.getClass().getSimpleName() + ")";
+                    default:
+                        break;
+                }
+            }
+
+            Optional<Method> target = this.targets.computeIfAbsent(method, this::findTarget);
+            if (!target.isPresent()) {
+                return defaultValue(method.getReturnType());
+            }
+
+            try {
+                return target.get().invoke(this.delegate, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private StubProxies() {
+        throw new UnsupportedOperationException("This class cannot be instantiated");
+    }
+
+}
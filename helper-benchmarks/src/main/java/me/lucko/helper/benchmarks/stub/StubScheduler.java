@@ -0,0 +1,56 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.benchmarks.stub;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Delegate for the stubbed {@link org.bukkit.scheduler.BukkitScheduler}.
+ *
+ * <p>Sync tasks run inline, async tasks run on the common pool. Delayed and
+ * repeating tasks are not supported.</p>
+ */
+public final class StubScheduler {
+
+    public int scheduleSyncDelayedTask(Plugin plugin, Runnable task) {
+        task.run();
+        return 0;
+    }
+
+    public BukkitTask runTask(Plugin plugin, Runnable task) {
+        task.run();
+        return null;
+    }
+
+    public BukkitTask runTaskAsynchronously(Plugin plugin, Runnable task) {
+        ForkJoinPool.commonPool().execute(task);
+        return null;
+    }
+
+}
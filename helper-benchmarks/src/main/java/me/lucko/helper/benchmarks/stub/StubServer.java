@@ -0,0 +1,76 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.benchmarks.stub;
+
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+
+import java.util.logging.Logger;
+
+/**
+ * Delegate for the stubbed {@link org.bukkit.Server}.
+ */
+public final class StubServer {
+    private final Logger logger;
+    private final PluginManager pluginManager;
+    private final BukkitScheduler scheduler;
+
+    StubServer(Logger logger, PluginManager pluginManager, BukkitScheduler scheduler) {
+        this.logger = logger;
+        this.pluginManager = pluginManager;
+        this.scheduler = scheduler;
+    }
+
+    public String getName() {
+        return "helper-benchmarks";
+    }
+
+    public String getVersion() {
+        return "stub";
+    }
+
+    public String getBukkitVersion() {
+        return "stub";
+    }
+
+    public Logger getLogger() {
+        return this.logger;
+    }
+
+    public PluginManager getPluginManager() {
+        return this.pluginManager;
+    }
+
+    public BukkitScheduler getScheduler() {
+        return this.scheduler;
+    }
+
+    public boolean isPrimaryThread() {
+        // benchmarks run on jmh worker threads, so there is no "main" thread.
+        return false;
+    }
+
+}
@@ -30,7 +30,9 @@ import com.google.common.reflect.TypeToken;
 import me.lucko.helper.Schedulers;
 import me.lucko.helper.lilypad.LilyPad;
 import me.lucko.helper.messaging.AbstractMessenger;
+import me.lucko.helper.messaging.BatchSettings;
 import me.lucko.helper.messaging.Channel;
+import me.lucko.helper.messaging.codec.CompressionSettings;
 
 import lilypad.client.connect.api.Connect;
 import lilypad.client.connect.api.event.EventListener;
@@ -45,6 +47,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 public class HelperLilyPad implements LilyPad {
 
@@ -53,6 +56,14 @@ public class HelperLilyPad implements LilyPad {
     private final AtomicBoolean listening = new AtomicBoolean(false);
 
     public HelperLilyPad(@Nonnull Connect connect) {
+        this(connect, null);
+    }
+
+    public HelperLilyPad(@Nonnull Connect connect, @Nullable BatchSettings batchSettings) {
+        this(connect, batchSettings, CompressionSettings.legacy());
+    }
+
+    public HelperLilyPad(@Nonnull Connect connect, @Nullable BatchSettings batchSettings, @Nonnull CompressionSettings compressionSettings) {
         this.connect = connect;
 
         this.messenger = new AbstractMessenger(
@@ -67,7 +78,9 @@ public class HelperLilyPad implements LilyPad {
                         this.listening.set(false);
                     }
                 },
-                channel -> {}
+                channel -> {},
+                batchSettings,
+                compressionSettings
         );
     }
 
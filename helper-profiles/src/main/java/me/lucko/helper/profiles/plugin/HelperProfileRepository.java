@@ -26,7 +26,10 @@
 package me.lucko.helper.profiles.plugin;
 
 import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheWriter;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 
 import me.lucko.helper.Events;
@@ -35,6 +38,10 @@ import me.lucko.helper.profiles.Profile;
 import me.lucko.helper.profiles.ProfileRepository;
 import me.lucko.helper.promise.Promise;
 import me.lucko.helper.sql.Sql;
+import me.lucko.helper.sql.SqlDialect;
+import me.lucko.helper.sql.SqlTemplate;
+import me.lucko.helper.sql.UncheckedSqlException;
+import me.lucko.helper.sql.batch.ColumnBatchBuilder;
 import me.lucko.helper.terminable.TerminableConsumer;
 import me.lucko.helper.terminable.module.TerminableModule;
 import me.lucko.helper.utils.Log;
@@ -49,61 +56,128 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 public class HelperProfileRepository implements ProfileRepository, TerminableModule {
 
     private static final String CREATE =
             "CREATE TABLE IF NOT EXISTS {table} (" +
-                    "`uniqueid` BINARY(16) NOT NULL PRIMARY KEY, " +
+                    "`uniqueid` {binary_16} NOT NULL PRIMARY KEY, " +
                     "`name` VARCHAR(16) NOT NULL, " +
                     "`lastupdate` TIMESTAMP NOT NULL)";
 
-    private static final String INSERT = "INSERT INTO {table} VALUES(UNHEX(?), ?, ?) ON DUPLICATE KEY UPDATE `name` = ?, `lastupdate` = ?";
-    private static final String SELECT_UID = "SELECT `name`, `lastupdate` FROM {table} WHERE `uniqueid` = UNHEX(?)";
-    private static final String SELECT_NAME = "SELECT HEX(`uniqueid`) AS `canonicalid`, `name`, `lastupdate` FROM {table} WHERE `name` = ? ORDER BY `lastupdate` DESC LIMIT 1";
-    private static final String SELECT_ALL = "SELECT HEX(`uniqueid`) AS `canonicalid`, `name`, `lastupdate` FROM {table}";
-    private static final String SELECT_ALL_RECENT = "SELECT HEX(`uniqueid`) AS `canonicalid`, `name`, `lastupdate` FROM {table} ORDER BY `lastupdate` DESC LIMIT ?";
-    private static final String SELECT_ALL_UIDS = "SELECT HEX(`uniqueid`) AS `canonicalid`, `name`, `lastupdate` FROM {table} WHERE `uniqueid` IN %s";
-    private static final String SELECT_ALL_NAMES = "SELECT HEX(`uniqueid`) AS `canonicalid`, `name`, `lastupdate` FROM {table} WHERE `name` IN %s GROUP BY `name` ORDER BY `lastupdate` DESC";
+    private static final String INSERT = "INSERT INTO {table} (`uniqueid`, `name`, `lastupdate`) VALUES (:uniqueid, :name, :lastupdate) {on_conflict} `name` = {excluded_name}, `lastupdate` = {excluded_lastupdate}";
+    private static final String SELECT_NAME = "SELECT `uniqueid`, `name`, `lastupdate` FROM {table} WHERE {name_ci} = :name ORDER BY `lastupdate` DESC LIMIT 1";
+    private static final String SELECT_ALL = "SELECT `uniqueid`, `name`, `lastupdate` FROM {table}";
+    private static final String SELECT_ALL_RECENT = "SELECT `uniqueid`, `name`, `lastupdate` FROM {table} ORDER BY `lastupdate` DESC LIMIT :limit";
+    private static final String SELECT_ALL_UIDS = "SELECT `uniqueid`, `name`, `lastupdate` FROM {table} WHERE `uniqueid` IN %s";
+    // oldest first, so the most recent profile for each name is read last
+    private static final String SELECT_ALL_NAMES = "SELECT `uniqueid`, `name`, `lastupdate` FROM {table} WHERE {name_ci} IN %s ORDER BY `lastupdate` ASC";
 
+    private final ProfileNameIndex nameIndex = new ProfileNameIndex();
     private final Cache<UUID, ImmutableProfile> profileMap = Caffeine.newBuilder()
             .maximumSize(10_000)
             .expireAfterAccess(6, TimeUnit.HOURS)
+            // keep the name index in sync with the cache, including evictions
+            .writer(new CacheWriter<UUID, ImmutableProfile>() {
+                @Override
+                public void write(@Nonnull UUID key, @Nonnull ImmutableProfile value) {
+                    HelperProfileRepository.this.nameIndex.add(value);
+                }
+
+                @Override
+                public void delete(@Nonnull UUID key, @Nullable ImmutableProfile value, @Nonnull RemovalCause cause) {
+                    if (value != null) {
+                        HelperProfileRepository.this.nameIndex.remove(value);
+                    }
+                }
+            })
             .build();
 
+    // profiles waiting to be written to the database, coalesced by uuid
+    private final Map<UUID, ImmutableProfile> pendingSaves = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final Object flushLock = new Object();
+
     private final Sql sql;
     private final String tableName;
     private final int preloadAmount;
+    private final long saveInterval;
+    private final int saveBatchSize;
+    private final ProfileLoader loader;
+
+    // dialect specific parts of the statements
+    private final Map<String, String> placeholders;
+
+    // statements with the table name already substituted
+    private final SqlTemplate insert;
+    private final SqlTemplate selectName;
+    private final SqlTemplate selectAll;
+    private final SqlTemplate selectAllRecent;
 
     public HelperProfileRepository(Sql sql, String tableName, int preloadAmount) {
+        this(sql, tableName, preloadAmount, 20L, 500);
+    }
+
+    /**
+     * Creates a new repository.
+     *
+     * @param sql the sql instance
+     * @param tableName the name of the table
+     * @param preloadAmount the number of recent profiles to load on setup
+     * @param saveInterval the interval in ticks between writes of pending profile updates
+     * @param saveBatchSize the number of pending updates which triggers an early write,
+     *                      and the maximum number of rows in a single insert
+     */
+    public HelperProfileRepository(Sql sql, String tableName, int preloadAmount, long saveInterval, int saveBatchSize) {
         this.sql = sql;
         this.tableName = tableName;
         this.preloadAmount = preloadAmount;
+        this.saveInterval = saveInterval;
+        this.saveBatchSize = saveBatchSize;
+
+        SqlDialect dialect = sql.getDialect();
+        this.placeholders = ImmutableMap.<String, String>builder()
+                .put("table", tableName)
+                .put("binary_16", dialect.getBinaryType(16))
+                .put("on_conflict", dialect.onConflictUpdate("`uniqueid`"))
+                .put("excluded_name", dialect.excluded("`name`"))
+                .put("excluded_lastupdate", dialect.excluded("`lastupdate`"))
+                .put("name_ci", dialect.caseInsensitive("`name`"))
+                .build();
+
+        this.insert = sql.template(INSERT, this.placeholders);
+        this.selectName = sql.template(SELECT_NAME, this.placeholders);
+        this.selectAll = sql.template(SELECT_ALL, this.placeholders);
+        this.selectAllRecent = sql.template(SELECT_ALL_RECENT, this.placeholders);
+        this.loader = new ProfileLoader(sql, resolve(SELECT_ALL_UIDS), this::updateCache, 1L, 500);
     }
 
     @Override
     public void setup(@Nonnull TerminableConsumer consumer) {
-        try (Connection c = this.sql.getConnection()) {
-            try (Statement s = c.createStatement()) {
-                s.execute(replaceTableName(CREATE));
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
-        }
+        createTable();
 
         // preload data
         if (this.preloadAmount > 0) {
@@ -114,57 +188,139 @@ public class HelperProfileRepository implements ProfileRepository, TerminableMod
             Log.info("[helper-profiles] Preloaded " + found + " profiles into the cache! - took " + time + "ms");
         }
 
+        // write any pending updates when disabling.
+        // bound first so that it runs after the listener and flush task are closed
+        consumer.bind(this::flushSaves);
+
         // observe logins
         Events.subscribe(PlayerLoginEvent.class, EventPriority.MONITOR)
                 .filter(e -> e.getResult() == PlayerLoginEvent.Result.ALLOWED)
                 .handler(e -> {
                     ImmutableProfile profile = new ImmutableProfile(e.getPlayer().getUniqueId(), e.getPlayer().getName());
                     updateCache(profile);
-                    Schedulers.async().run(() -> saveProfile(profile));
+                    queueSave(profile);
                 })
                 .bindWith(consumer);
+
+        // the scheduler only times the flushes, the writes run on the sql executor
+        Schedulers.async().runRepeating(() -> this.sql.callAsync(() -> {
+            flushSaves();
+            return null;
+        }), this.saveInterval, this.saveInterval).bindWith(consumer);
+    }
+
+    void createTable() {
+        try (Connection c = this.sql.getConnection()) {
+            try (Statement s = c.createStatement()) {
+                s.execute(resolve(CREATE));
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // replaces placeholders in a statement without parameters, and translates it for the dialect
+    private String resolve(String s) {
+        for (Map.Entry<String, String> placeholder : this.placeholders.entrySet()) {
+            s = s.replace("{" + placeholder.getKey() + "}", placeholder.getValue());
+        }
+        return this.sql.getDialect().translate(s);
     }
 
-    private String replaceTableName(String s) {
-        return s.replace("{table}", this.tableName);
+    static ImmutableProfile readProfile(ResultSet rs) throws SQLException {
+        UUID uuid = UndashedUuids.fromBytes(rs.getBytes("uniqueid"));
+        String name = rs.getString("name");
+        Timestamp lastUpdate = rs.getTimestamp("lastupdate");
+        return new ImmutableProfile(uuid, name, lastUpdate.getTime());
     }
 
     private void updateCache(ImmutableProfile profile) {
         ImmutableProfile existing = this.profileMap.getIfPresent(profile.getUniqueId());
         if (existing == null || existing.getTimestamp() < profile.getTimestamp()) {
             this.profileMap.put(profile.getUniqueId(), profile);
+
+            // the writer isn't told about the replaced value, so unindex the old name here
+            if (existing != null && !existing.getName().equals(profile.getName())) {
+                this.nameIndex.remove(existing);
+            }
         }
     }
 
-    private void saveProfile(ImmutableProfile profile) {
-        try (Connection c = this.sql.getConnection()) {
-            try (PreparedStatement ps = c.prepareStatement(replaceTableName(INSERT))) {
-                ps.setString(1, UndashedUuids.toString(profile.getUniqueId()));
-                ps.setString(2, profile.getName().get());
-                ps.setTimestamp(3, new Timestamp(profile.getTimestamp()));
-                ps.setString(4, profile.getName().get());
-                ps.setTimestamp(5, new Timestamp(profile.getTimestamp()));
-                ps.execute();
+    void queueSave(ImmutableProfile profile) {
+        this.pendingSaves.merge(profile.getUniqueId(), profile, HelperProfileRepository::newest);
+
+        // don't wait for the next interval if a lot of updates have built up
+        if (this.pendingSaves.size() >= this.saveBatchSize && this.flushScheduled.compareAndSet(false, true)) {
+            try {
+                this.sql.getExecutor().execute(() -> {
+                    try {
+                        flushSaves();
+                    } finally {
+                        this.flushScheduled.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // the executor is saturated, leave them for the next interval
+                this.flushScheduled.set(false);
+            }
+        }
+    }
+
+    void flushSaves() {
+        synchronized (this.flushLock) {
+            if (this.pendingSaves.isEmpty()) {
+                return;
+            }
+
+            List<ImmutableProfile> profiles = new ArrayList<>(this.pendingSaves.size());
+            for (Map.Entry<UUID, ImmutableProfile> entry : this.pendingSaves.entrySet()) {
+                // if the entry was replaced concurrently, leave the newer value for the next flush
+                if (this.pendingSaves.remove(entry.getKey(), entry.getValue())) {
+                    profiles.add(entry.getValue());
+                }
             }
+
+            saveProfiles(profiles);
+        }
+    }
+
+    private void saveProfiles(List<ImmutableProfile> profiles) {
+        // the driver rewrites each chunk into a single multi-row insert
+        ColumnBatchBuilder batch = this.sql.columnBatch(this.insert).chunkSize(this.saveBatchSize);
+        int uniqueId = batch.column("uniqueid");
+        int name = batch.column("name");
+        int lastUpdate = batch.column("lastupdate");
+        for (ImmutableProfile profile : profiles) {
+            batch.row()
+                    .set(uniqueId, UndashedUuids.toBytes(profile.getUniqueId()))
+                    .set(name, profile.getName().get())
+                    .set(lastUpdate, new Timestamp(profile.getTimestamp()));
+        }
+
+        try {
+            batch.execute();
         } catch (SQLException e) {
-            e.printStackTrace();
+            Log.severe("[helper-profiles] Unable to save " + profiles.size() + " profiles, will retry", e);
+
+            // requeue, unless a newer update has arrived in the meantime
+            for (ImmutableProfile profile : profiles) {
+                this.pendingSaves.merge(profile.getUniqueId(), profile, HelperProfileRepository::newest);
+            }
         }
     }
 
+    private static ImmutableProfile newest(ImmutableProfile a, ImmutableProfile b) {
+        return a.getTimestamp() >= b.getTimestamp() ? a : b;
+    }
+
     private int preload(int numEntries) {
         int i = 0;
-        try (Connection c = this.sql.getConnection()) {
-            try (PreparedStatement ps = c.prepareStatement(replaceTableName(SELECT_ALL_RECENT))) {
-                ps.setInt(1, numEntries);
+        try (Connection c = this.sql.getReadConnection()) {
+            try (PreparedStatement ps = c.prepareStatement(this.selectAllRecent.getStatement())) {
+                this.selectAllRecent.set(ps, "limit", numEntries);
                 try (ResultSet rs = ps.executeQuery()) {
                     while (rs.next()) {
-                        String name = rs.getString("name");
-                        Timestamp lastUpdate = rs.getTimestamp("lastupdate");
-                        String uuidString = rs.getString("canonicalid");
-                        UUID uuid = UndashedUuids.fromString(uuidString);
-
-                        ImmutableProfile p = new ImmutableProfile(uuid, name, lastUpdate.getTime());
-                        updateCache(p);
+                        updateCache(readProfile(rs));
                         i++;
                     }
                 }
@@ -190,12 +346,14 @@ public class HelperProfileRepository implements ProfileRepository, TerminableMod
     @Override
     public Optional<Profile> getProfile(@Nonnull String name) {
         Objects.requireNonNull(name, "name");
-        for (Profile profile : this.profileMap.asMap().values()) {
-            if (profile.getName().isPresent() && profile.getName().get().equalsIgnoreCase(name)) {
-                return Optional.of(profile);
-            }
-        }
-        return Optional.empty();
+        return Optional.ofNullable(this.nameIndex.get(name));
+    }
+
+    @Nonnull
+    @Override
+    public List<Profile> getProfilesByPrefix(@Nonnull String prefix, int limit) {
+        Objects.requireNonNull(prefix, "prefix");
+        return this.nameIndex.getByPrefix(prefix, limit);
     }
 
     @Nonnull
@@ -213,25 +371,7 @@ public class HelperProfileRepository implements ProfileRepository, TerminableMod
             return Promise.completed(profile);
         }
 
-        return Schedulers.async().supply(() -> {
-            try (Connection c = this.sql.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(replaceTableName(SELECT_UID))) {
-                    ps.setString(1, UndashedUuids.toString(uniqueId));
-                    try (ResultSet rs = ps.executeQuery()) {
-                        if (rs.next()) {
-                            String name = rs.getString("name");
-                            Timestamp lastUpdate = rs.getTimestamp("lastupdate");
-                            ImmutableProfile p = new ImmutableProfile(uniqueId, name, lastUpdate.getTime());
-                            updateCache(p);
-                            return p;
-                        }
-                    }
-                }
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
-            return new ImmutableProfile(uniqueId, null, 0);
-        });
+        return Promise.wrapFuture(this.loader.load(uniqueId).thenApply(p -> (Profile) p));
     }
 
     @Nonnull
@@ -244,18 +384,13 @@ public class HelperProfileRepository implements ProfileRepository, TerminableMod
             return Promise.completed(profile);
         }
 
-        return Schedulers.async().supply(() -> {
-            try (Connection c = this.sql.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(replaceTableName(SELECT_NAME))) {
-                    ps.setString(1, name);
+        return this.sql.callAsync(() -> {
+            try (Connection c = this.sql.getReadConnection()) {
+                try (PreparedStatement ps = c.prepareStatement(this.selectName.getStatement())) {
+                    this.selectName.set(ps, "name", name.toLowerCase(Locale.ROOT));
                     try (ResultSet rs = ps.executeQuery()) {
                         if (rs.next()) {
-                            String remoteName = rs.getString("name"); // provide a case corrected name
-                            Timestamp lastUpdate = rs.getTimestamp("lastupdate");
-                            String uuidString = rs.getString("canonicalid");
-                            UUID uuid = UndashedUuids.fromString(uuidString);
-
-                            ImmutableProfile p = new ImmutableProfile(uuid, remoteName, lastUpdate.getTime());
+                            ImmutableProfile p = readProfile(rs); // provides a case corrected name
                             updateCache(p);
                             return Optional.of(p);
                         }
@@ -271,26 +406,17 @@ public class HelperProfileRepository implements ProfileRepository, TerminableMod
     @Nonnull
     @Override
     public Promise<Collection<Profile>> lookupKnownProfiles() {
-        return Schedulers.async().supply(() -> {
+        return this.sql.callAsync(() -> {
             Set<Profile> ret = new HashSet<>();
 
-            try (Connection c = this.sql.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(replaceTableName(SELECT_ALL))) {
-                    try (ResultSet rs = ps.executeQuery()) {
-                        while (rs.next()) {
-                            String name = rs.getString("name");
-                            Timestamp lastUpdate = rs.getTimestamp("lastupdate");
-                            String uuidString = rs.getString("canonicalid");
-                            UUID uuid = UndashedUuids.fromString(uuidString);
-
-                            ImmutableProfile p = new ImmutableProfile(uuid, name, lastUpdate.getTime());
-                            updateCache(p);
-                            ret.add(p);
-                        }
-                    }
-                }
-            } catch (SQLException e) {
-                e.printStackTrace();
+            // stream the rows, so the driver doesn't buffer the whole table as well
+            try (Stream<ImmutableProfile> profiles = this.sql.queryStream(this.selectAll.getStatement(), HelperProfileRepository::readProfile, 1000)) {
+                profiles.forEach(p -> {
+                    updateCache(p);
+                    ret.add(p);
+                });
+            } catch (SQLException | UncheckedSqlException e) {
+                Log.severe("[helper-profiles] Unable to lookup known profiles", e);
             }
 
             return ret;
@@ -302,6 +428,7 @@ public class HelperProfileRepository implements ProfileRepository, TerminableMod
     public Promise<Map<UUID, Profile>> lookupProfiles(@Nonnull Iterable<UUID> uniqueIds) {
         Set<UUID> toFind = new HashSet<>();
         Iterables.addAll(toFind, uniqueIds);
+        toFind.remove(null);
 
         Map<UUID, Profile> ret = new HashMap<>();
 
@@ -314,46 +441,25 @@ public class HelperProfileRepository implements ProfileRepository, TerminableMod
             }
         }
 
-        StringBuilder sb = new StringBuilder("(");
-        boolean first = true;
-        for (UUID uniqueId : toFind) {
-            if (uniqueId == null) {
-                continue;
-            }
-
-            if (!first) {
-                sb.append(", ");
-            }
-            sb.append("UNHEX('").append(UndashedUuids.toString(uniqueId)).append("')");
-            first = false;
-        }
-
-        if (first) {
+        if (toFind.isEmpty()) {
             return Promise.completed(ret);
         }
-        sb.append(")");
 
-        return Schedulers.async().supply(() -> {
-            try (Connection c = this.sql.getConnection()) {
-                try (Statement s = c.createStatement()) {
-                    try (ResultSet rs = s.executeQuery(replaceTableName(String.format(SELECT_ALL_UIDS, sb.toString())))) {
-                        while (rs.next()) {
-                            String name = rs.getString("name");
-                            Timestamp lastUpdate = rs.getTimestamp("lastupdate");
-                            String uuidString = rs.getString("canonicalid");
-                            UUID uuid = UndashedUuids.fromString(uuidString);
+        // lookups are coalesced with any others made at the same time
+        List<CompletableFuture<ImmutableProfile>> futures = new ArrayList<>(toFind.size());
+        for (UUID uniqueId : toFind) {
+            futures.add(this.loader.load(uniqueId));
+        }
 
-                            ImmutableProfile p = new ImmutableProfile(uuid, name, lastUpdate.getTime());
-                            updateCache(p);
-                            ret.put(uuid, p);
-                        }
-                    }
+        return Promise.wrapFuture(CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).thenApply(v -> {
+            for (CompletableFuture<ImmutableProfile> future : futures) {
+                ImmutableProfile profile = future.join();
+                if (profile.getName().isPresent()) {
+                    ret.put(profile.getUniqueId(), profile);
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
             }
             return ret;
-        });
+        }));
     }
 
     @Nonnull
@@ -384,7 +490,7 @@ public class HelperProfileRepository implements ProfileRepository, TerminableMod
             if (!first) {
                 sb.append(", ");
             }
-            sb.append("'").append(name).append("'");
+            sb.append("'").append(name.toLowerCase(Locale.ROOT)).append("'");
             first = false;
         }
 
@@ -393,19 +499,14 @@ public class HelperProfileRepository implements ProfileRepository, TerminableMod
         }
         sb.append(")");
 
-        return Schedulers.async().supply(() -> {
-            try (Connection c = this.sql.getConnection()) {
+        return this.sql.callAsync(() -> {
+            try (Connection c = this.sql.getReadConnection()) {
                 try (Statement s = c.createStatement()) {
-                    try (ResultSet rs = s.executeQuery(replaceTableName(String.format(SELECT_ALL_NAMES, sb.toString())))) {
+                    try (ResultSet rs = s.executeQuery(resolve(String.format(SELECT_ALL_NAMES, sb.toString())))) {
                         while (rs.next()) {
-                            String name = rs.getString("name"); // provide a case corrected name
-                            Timestamp lastUpdate = rs.getTimestamp("lastupdate");
-                            String uuidString = rs.getString("canonicalid");
-                            UUID uuid = UndashedUuids.fromString(uuidString);
-
-                            ImmutableProfile p = new ImmutableProfile(uuid, name, lastUpdate.getTime());
+                            ImmutableProfile p = readProfile(rs); // provides a case corrected name
                             updateCache(p);
-                            ret.put(name, p);
+                            ret.put(p.getName().get(), p);
                         }
                     }
                 }
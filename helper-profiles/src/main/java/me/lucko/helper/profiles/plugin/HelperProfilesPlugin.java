@@ -53,9 +53,11 @@ public class HelperProfilesPlugin extends ExtendedJavaPlugin {
         // init the table
         String tableName = config.getString("table-name", "helper_profiles");
         int preloadAmount = config.getInt("preload-amount", 2000);
+        long saveInterval = Math.max(1L, config.getLong("save-interval", 20L));
+        int saveBatchSize = Math.max(1, config.getInt("save-batch-size", 500));
 
         // provide the ProfileRepository service
-        provideService(ProfileRepository.class, bindModule(new HelperProfileRepository(sql, tableName, preloadAmount)));
+        provideService(ProfileRepository.class, bindModule(new HelperProfileRepository(sql, tableName, preloadAmount, saveInterval, saveBatchSize)));
     }
 
 }
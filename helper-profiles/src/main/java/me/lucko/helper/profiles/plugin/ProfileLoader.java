@@ -0,0 +1,193 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.profiles.plugin;
+
+import me.lucko.helper.Schedulers;
+import me.lucko.helper.sql.Sql;
+import me.lucko.helper.utils.Log;
+import me.lucko.helper.utils.UndashedUuids;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Loads profiles by unique id, combining the lookups made within a short
+ * window into a single query.
+ *
+ * <p>Concurrent lookups for the same unique id share the same result.</p>
+ */
+final class ProfileLoader {
+    private static final String ROW = "?";
+
+    private final Sql sql;
+    private final String query;
+    private final Consumer<ImmutableProfile> cacheUpdater;
+    private final long delayTicks;
+    private final int maxBatchSize;
+
+    private final Map<UUID, CompletableFuture<ImmutableProfile>> inFlight = new ConcurrentHashMap<>();
+    private final Queue<UUID> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    /**
+     * Creates a new loader.
+     *
+     * @param sql the sql instance
+     * @param query the select query, with a {@code %s} placeholder for the list of ids
+     * @param cacheUpdater called with each loaded profile, before the lookup is completed
+     * @param delayTicks the time to wait for other lookups before querying
+     * @param maxBatchSize the maximum number of ids in a single query
+     */
+    ProfileLoader(Sql sql, String query, Consumer<ImmutableProfile> cacheUpdater, long delayTicks, int maxBatchSize) {
+        this.sql = sql;
+        this.query = query;
+        this.cacheUpdater = cacheUpdater;
+        this.delayTicks = delayTicks;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Loads the profile for the given unique id.
+     *
+     * <p>If no profile exists, the future is completed with a profile
+     * without a name. If the lookup fails, the future is completed
+     * exceptionally.</p>
+     *
+     * @param uniqueId the unique id
+     * @return a future for the profile
+     */
+    CompletableFuture<ImmutableProfile> load(UUID uniqueId) {
+        CompletableFuture<ImmutableProfile> future = this.inFlight.get(uniqueId);
+        if (future != null) {
+            return future;
+        }
+
+        CompletableFuture<ImmutableProfile> created = new CompletableFuture<>();
+        future = this.inFlight.putIfAbsent(uniqueId, created);
+        if (future != null) {
+            return future;
+        }
+
+        this.queue.add(uniqueId);
+        if (this.scheduled.compareAndSet(false, true)) {
+            // the delay gathers other lookups, the query itself runs on the sql executor
+            Schedulers.async().runLater(() -> {
+                try {
+                    this.sql.getExecutor().execute(this::flush);
+                } catch (RejectedExecutionException e) {
+                    // the executor is saturated - query here, rather than leave the lookups waiting
+                    flush();
+                }
+            }, this.delayTicks);
+        }
+        return created;
+    }
+
+    private void flush() {
+        // reset first - ids queued from here on are either drained below, or schedule another flush
+        this.scheduled.set(false);
+
+        List<UUID> batch = new ArrayList<>();
+        for (UUID uniqueId; (uniqueId = this.queue.poll()) != null; ) {
+            batch.add(uniqueId);
+            if (batch.size() >= this.maxBatchSize) {
+                query(batch);
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            query(batch);
+        }
+    }
+
+    private void query(List<UUID> uniqueIds) {
+        Map<UUID, CompletableFuture<ImmutableProfile>> pending = new HashMap<>();
+        for (UUID uniqueId : uniqueIds) {
+            pending.put(uniqueId, this.inFlight.get(uniqueId));
+        }
+
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < uniqueIds.size(); i++) {
+            if (i != 0) {
+                sb.append(", ");
+            }
+            sb.append(ROW);
+        }
+        sb.append(")");
+
+        Exception failure = null;
+        try (Connection c = this.sql.getReadConnection()) {
+            try (PreparedStatement ps = c.prepareStatement(String.format(this.query, sb.toString()))) {
+                for (int i = 0; i < uniqueIds.size(); i++) {
+                    ps.setBytes(i + 1, UndashedUuids.toBytes(uniqueIds.get(i)));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        ImmutableProfile p = HelperProfileRepository.readProfile(rs);
+                        this.cacheUpdater.accept(p);
+
+                        CompletableFuture<ImmutableProfile> future = pending.remove(p.getUniqueId());
+                        if (future != null) {
+                            complete(p.getUniqueId(), future, p);
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Log.severe("[helper-profiles] Unable to lookup " + uniqueIds.size() + " profiles", e);
+            failure = e;
+        } finally {
+            // anything left either wasn't found, or couldn't be looked up
+            for (Map.Entry<UUID, CompletableFuture<ImmutableProfile>> entry : pending.entrySet()) {
+                this.inFlight.remove(entry.getKey(), entry.getValue());
+                if (failure != null) {
+                    entry.getValue().completeExceptionally(failure);
+                } else {
+                    entry.getValue().complete(new ImmutableProfile(entry.getKey(), null, 0));
+                }
+            }
+        }
+    }
+
+    private void complete(UUID uniqueId, CompletableFuture<ImmutableProfile> future, ImmutableProfile profile) {
+        this.inFlight.remove(uniqueId, future);
+        future.complete(profile);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.profiles.plugin;
+
+import me.lucko.helper.profiles.Profile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * A sorted index of cached profiles by lower-cased name.
+ *
+ * <p>Where more than one profile has the same name, the index holds the most
+ * recently updated one.</p>
+ */
+final class ProfileNameIndex {
+    private final NavigableMap<String, ImmutableProfile> profiles = new ConcurrentSkipListMap<>();
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    void add(ImmutableProfile profile) {
+        if (profile.getName().isPresent()) {
+            this.profiles.merge(key(profile.getName().get()), profile, (a, b) -> a.getTimestamp() >= b.getTimestamp() ? a : b);
+        }
+    }
+
+    void remove(ImmutableProfile profile) {
+        if (profile.getName().isPresent()) {
+            this.profiles.remove(key(profile.getName().get()), profile);
+        }
+    }
+
+    @Nullable
+    ImmutableProfile get(String name) {
+        return this.profiles.get(key(name));
+    }
+
+    List<Profile> getByPrefix(String prefix, int limit) {
+        List<Profile> ret = new ArrayList<>();
+        String from = key(prefix);
+        for (Map.Entry<String, ImmutableProfile> entry : this.profiles.tailMap(from, true).entrySet()) {
+            if (ret.size() >= limit || !entry.getKey().startsWith(from)) {
+                break;
+            }
+            ret.add(entry.getValue());
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.profiles.plugin;
+
+import me.lucko.helper.internal.LoaderUtils;
+import me.lucko.helper.plugin.HelperPlugin;
+import me.lucko.helper.profiles.Profile;
+import me.lucko.helper.sql.DatabaseCredentials;
+import me.lucko.helper.sql.SqlDialect;
+import me.lucko.helper.sql.plugin.HelperSql;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Runs {@link HelperProfileRepository} against an in-memory H2 database.
+ */
+public class HelperProfileRepositoryTest {
+    private static final AtomicInteger DATABASE_COUNTER = new AtomicInteger(0);
+
+    private static final UUID FIRST = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID SECOND = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private static final UUID UNKNOWN = UUID.fromString("00000000-0000-0000-0000-000000000003");
+
+    private HelperSql sql;
+
+    @BeforeAll
+    public static void setupLogger() {
+        // Log writes to the logger of the plugin which loaded helper, so provide one
+        Logger logger = Logger.getLogger("helper-profiles-test");
+        LoaderUtils.forceSetPlugin((HelperPlugin) Proxy.newProxyInstance(
+                HelperPlugin.class.getClassLoader(),
+                new Class<?>[]{HelperPlugin.class},
+                (proxy, method, args) -> method.getName().equals("getLogger") ? logger : null
+        ));
+    }
+
+    @BeforeEach
+    public void setup() {
+        // a separate database for each test
+        String database = "mem:helper-profiles-" + DATABASE_COUNTER.getAndIncrement();
+        this.sql = new HelperSql(DatabaseCredentials.of(SqlDialect.H2, "localhost", 0, database, "sa", ""));
+    }
+
+    @AfterEach
+    public void teardown() {
+        this.sql.close();
+    }
+
+    private HelperProfileRepository createRepository() {
+        HelperProfileRepository repository = new HelperProfileRepository(this.sql, "helper_profiles", 0);
+        repository.createTable();
+        return repository;
+    }
+
+    @Test
+    public void testSaveAndLookup() {
+        HelperProfileRepository repository = createRepository();
+        repository.queueSave(new ImmutableProfile(FIRST, "Notch", 1000L));
+        repository.queueSave(new ImmutableProfile(SECOND, "jeb_", 2000L));
+        repository.flushSaves();
+
+        // a new repository, so nothing is cached
+        HelperProfileRepository lookup = createRepository();
+
+        Profile first = lookup.lookupProfile(FIRST).join();
+        assertEquals(Optional.of("Notch"), first.getName());
+        assertEquals(1000L, first.getTimestamp());
+        assertFalse(lookup.lookupProfile(UNKNOWN).join().getName().isPresent());
+
+        // names are matched case insensitively, and returned as saved
+        Optional<Profile> second = lookup.lookupProfile("JEB_").join();
+        assertEquals(Optional.of(SECOND), second.map(Profile::getUniqueId));
+        assertEquals(Optional.of("jeb_"), second.flatMap(Profile::getName));
+
+        Map<UUID, Profile> profiles = lookup.lookupProfiles(Arrays.asList(FIRST, SECOND, UNKNOWN)).join();
+        assertEquals(2, profiles.size());
+        assertEquals(Optional.of("jeb_"), profiles.get(SECOND).getName());
+
+        assertEquals(2, lookup.lookupKnownProfiles().join().size());
+    }
+
+    @Test
+    public void testSaveReplacesName() {
+        HelperProfileRepository repository = createRepository();
+        repository.queueSave(new ImmutableProfile(FIRST, "Notch", 1000L));
+        repository.flushSaves();
+        repository.queueSave(new ImmutableProfile(FIRST, "Dinnerbone", 2000L));
+        repository.flushSaves();
+
+        HelperProfileRepository lookup = createRepository();
+        assertEquals(Optional.of("Dinnerbone"), lookup.lookupProfile(FIRST).join().getName());
+        assertFalse(lookup.lookupProfile("Notch").join().isPresent());
+    }
+
+    @Test
+    public void testQueuedSavesAreCoalesced() {
+        HelperProfileRepository repository = createRepository();
+        repository.queueSave(new ImmutableProfile(FIRST, "Dinnerbone", 2000L));
+        // older, so discarded
+        repository.queueSave(new ImmutableProfile(FIRST, "Notch", 1000L));
+        repository.flushSaves();
+
+        HelperProfileRepository lookup = createRepository();
+        assertEquals(Optional.of("Dinnerbone"), lookup.lookupProfile(FIRST).join().getName());
+    }
+}
@@ -54,4 +54,43 @@ public interface Redis extends Terminable, Messenger {
     @Nonnull
     Jedis getJedis();
 
+    /**
+     * Creates a new {@link RedisStreamMessenger} using this instance's connection pool.
+     *
+     * <p>The messenger is closed when this instance is closed.</p>
+     *
+     * @param settings the settings for the messenger
+     * @return a new stream messenger
+     * @throws UnsupportedOperationException if the implementation does not support streams
+     */
+    @Nonnull
+    default RedisStreamMessenger createStreamMessenger(@Nonnull RedisStreamSettings settings) {
+        throw new UnsupportedOperationException("Stream messengers are not supported by " + getClass().getName());
+    }
+
+    /**
+     * Gets the non-blocking client for this instance.
+     *
+     * <p>The client holds its own connections from the pool, and is closed when
+     * this instance is closed.</p>
+     *
+     * @return the async client
+     * @throws UnsupportedOperationException if the implementation does not provide an async client
+     */
+    @Nonnull
+    default RedisAsync async() {
+        throw new UnsupportedOperationException("An async client is not provided by " + getClass().getName());
+    }
+
+    /**
+     * Gets metrics for the connection pool backing this instance.
+     *
+     * @return the pool metrics
+     * @throws UnsupportedOperationException if the implementation does not record pool metrics
+     */
+    @Nonnull
+    default RedisPoolMetrics getPoolMetrics() {
+        throw new UnsupportedOperationException("Pool metrics are not recorded by " + getClass().getName());
+    }
+
 }
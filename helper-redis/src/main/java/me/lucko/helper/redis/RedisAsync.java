@@ -0,0 +1,191 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.redis;
+
+import me.lucko.helper.promise.Promise;
+
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import java.util.Map;
+import java.util.function.Function;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A non-blocking client for a {@link Redis} instance.
+ *
+ * <p>Commands return immediately. They are queued and sent over a small number of
+ * dedicated connections, and every command queued while a connection is busy
+ * is sent in that connection's next pipeline. Callers never wait for a
+ * connection from the pool.</p>
+ *
+ * <p>Commands sent over the same connection are run in the order they were
+ * queued. Commands may be spread over several connections, though, so there is
+ * no ordering guarantee between separate calls.</p>
+ */
+public interface RedisAsync {
+
+    /**
+     * Queues a command.
+     *
+     * <p>The function is called with the pipeline the command should be added
+     * to, and must return the response of exactly one command. It may be called
+     * on any thread.</p>
+     *
+     * @param command the command
+     * @param <T> the result type
+     * @return a promise completed with the result of the command
+     */
+    @Nonnull
+    <T> Promise<T> execute(@Nonnull Function<Pipeline, Response<T>> command);
+
+    @Nonnull
+    default Promise<String> get(@Nonnull String key) {
+        return execute(p -> p.get(key));
+    }
+
+    @Nonnull
+    default Promise<String> set(@Nonnull String key, @Nonnull String value) {
+        return execute(p -> p.set(key, value));
+    }
+
+    @Nonnull
+    default Promise<String> setex(@Nonnull String key, int seconds, @Nonnull String value) {
+        return execute(p -> p.setex(key, seconds, value));
+    }
+
+    @Nonnull
+    default Promise<Long> del(@Nonnull String... keys) {
+        return execute(p -> p.del(keys));
+    }
+
+    @Nonnull
+    default Promise<Boolean> exists(@Nonnull String key) {
+        return execute(p -> p.exists(key));
+    }
+
+    @Nonnull
+    default Promise<Long> incr(@Nonnull String key) {
+        return execute(p -> p.incr(key));
+    }
+
+    @Nonnull
+    default Promise<Long> expire(@Nonnull String key, int seconds) {
+        return execute(p -> p.expire(key, seconds));
+    }
+
+    @Nonnull
+    default Promise<String> hget(@Nonnull String key, @Nonnull String field) {
+        return execute(p -> p.hget(key, field));
+    }
+
+    @Nonnull
+    default Promise<Long> hset(@Nonnull String key, @Nonnull String field, @Nonnull String value) {
+        return execute(p -> p.hset(key, field, value));
+    }
+
+    @Nonnull
+    default Promise<Map<String, String>> hgetAll(@Nonnull String key) {
+        return execute(p -> p.hgetAll(key));
+    }
+
+    @Nonnull
+    default Promise<Long> publish(@Nonnull String channel, @Nullable String message) {
+        return execute(p -> p.publish(channel, message));
+    }
+
+    /**
+     * Gets metrics for this client.
+     *
+     * @return the metrics
+     */
+    @Nonnull
+    Metrics getMetrics();
+
+    /**
+     * Metrics for a {@link RedisAsync} client.
+     */
+    interface Metrics {
+
+        /**
+         * Gets the number of connections used by the client.
+         *
+         * @return the number of connections
+         */
+        int getConnections();
+
+        /**
+         * Gets the number of commands waiting to be sent.
+         *
+         * @return the number of queued commands
+         */
+        int getQueued();
+
+        /**
+         * Gets the number of commands which have been sent, but not yet completed.
+         *
+         * @return the number of in-flight commands
+         */
+        int getInFlight();
+
+        /**
+         * Gets the number of commands which completed successfully.
+         *
+         * @return the number of completed commands
+         */
+        long getCompleted();
+
+        /**
+         * Gets the number of commands which completed with an error.
+         *
+         * @return the number of failed commands
+         */
+        long getFailed();
+
+        /**
+         * Gets the number of pipelines which have been sent.
+         *
+         * @return the number of pipelines
+         */
+        long getPipelines();
+
+        /**
+         * Gets the number of times a connection had to be re-established.
+         *
+         * @return the number of reconnects
+         */
+        long getReconnects();
+
+        /**
+         * Gets the mean number of commands sent per pipeline.
+         *
+         * @return the mean pipeline size
+         */
+        double getMeanPipelineSize();
+    }
+}
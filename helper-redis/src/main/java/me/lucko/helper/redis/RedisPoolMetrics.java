@@ -0,0 +1,78 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.redis;
+
+/**
+ * Metrics for the connection pool backing a {@link Redis} instance.
+ */
+public interface RedisPoolMetrics {
+
+    /**
+     * Gets the maximum number of connections the pool will open.
+     *
+     * @return the pool size
+     */
+    int getMaxTotal();
+
+    /**
+     * Gets the number of connections currently borrowed from the pool.
+     *
+     * <p>This includes connections held permanently by pub/sub subscribers,
+     * the publisher and the {@link RedisAsync async} client.</p>
+     *
+     * @return the number of active connections
+     */
+    int getNumActive();
+
+    /**
+     * Gets the number of idle connections in the pool.
+     *
+     * @return the number of idle connections
+     */
+    int getNumIdle();
+
+    /**
+     * Gets the number of threads currently waiting for a connection.
+     *
+     * @return the number of waiting threads
+     */
+    int getNumWaiters();
+
+    /**
+     * Gets the mean time threads have waited for a connection, in milliseconds.
+     *
+     * @return the mean borrow wait time
+     */
+    long getMeanBorrowWaitTimeMillis();
+
+    /**
+     * Gets the longest time a thread has waited for a connection, in milliseconds.
+     *
+     * @return the max borrow wait time
+     */
+    long getMaxBorrowWaitTimeMillis();
+
+}
@@ -0,0 +1,54 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.redis;
+
+import me.lucko.helper.messaging.Messenger;
+import me.lucko.helper.terminable.Terminable;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link Messenger} backed by redis streams.
+ *
+ * <p>Unlike the pub/sub messenger provided by {@link Redis}, messages are stored
+ * in a stream per channel, and read using a consumer group per instance. Messages
+ * sent whilst an instance is disconnected are delivered once it reconnects, up to
+ * the configured {@link RedisStreamSettings#getMaxLength() max length}.</p>
+ *
+ * <p>Messages sent using a stream messenger are not received by pub/sub
+ * messengers, and vice versa.</p>
+ */
+public interface RedisStreamMessenger extends Messenger, Terminable {
+
+    /**
+     * Gets the settings used by this messenger.
+     *
+     * @return the settings
+     */
+    @Nonnull
+    RedisStreamSettings getSettings();
+
+}
@@ -0,0 +1,283 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.redis;
+
+import com.google.common.base.Preconditions;
+
+import me.lucko.helper.messaging.codec.CompressionSettings;
+
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Settings for a {@link RedisStreamMessenger}.
+ */
+public final class RedisStreamSettings {
+
+    /**
+     * Creates a new builder.
+     *
+     * <p>The group name identifies this instance to redis, and should be unique
+     * to it (the server name is a good choice), and stable across restarts.
+     * Messages sent whilst an instance is offline are delivered to its group
+     * when it reconnects.</p>
+     *
+     * @param group the consumer group name
+     * @return a new builder
+     */
+    @Nonnull
+    public static Builder builder(@Nonnull String group) {
+        return new Builder(group);
+    }
+
+    private final String group;
+    private final long maxLength;
+    private final boolean approximateTrimming;
+    private final boolean acknowledge;
+    private final int readCount;
+    private final long blockMillis;
+    private final int maxPipelineSize;
+    private final CompressionSettings compressionSettings;
+
+    private RedisStreamSettings(Builder builder) {
+        this.group = builder.group;
+        this.maxLength = builder.maxLength;
+        this.approximateTrimming = builder.approximateTrimming;
+        this.acknowledge = builder.acknowledge;
+        this.readCount = builder.readCount;
+        this.blockMillis = builder.blockMillis;
+        this.maxPipelineSize = builder.maxPipelineSize;
+        this.compressionSettings = builder.compressionSettings;
+    }
+
+    /**
+     * Gets the name of the consumer group used by this instance.
+     *
+     * @return the group name
+     */
+    @Nonnull
+    public String getGroup() {
+        return this.group;
+    }
+
+    /**
+     * Gets the length each stream is trimmed to when messages are added, or
+     * 0 if streams are not trimmed.
+     *
+     * @return the max stream length
+     */
+    public long getMaxLength() {
+        return this.maxLength;
+    }
+
+    /**
+     * Gets if streams are trimmed approximately (<code>MAXLEN ~</code>), which is
+     * considerably cheaper for redis.
+     *
+     * @return if trimming is approximate
+     */
+    public boolean isApproximateTrimming() {
+        return this.approximateTrimming;
+    }
+
+    /**
+     * Gets if messages are acknowledged once they have been handled.
+     *
+     * <p>If true, messages which were read but not handled (e.g. because the
+     * server stopped) are delivered again on the next start. If false, messages
+     * are read with <code>NOACK</code>, and are considered handled once read.</p>
+     *
+     * @return if messages are acknowledged
+     */
+    public boolean isAcknowledge() {
+        return this.acknowledge;
+    }
+
+    /**
+     * Gets the maximum number of messages to read from each stream at once.
+     *
+     * @return the read count
+     */
+    public int getReadCount() {
+        return this.readCount;
+    }
+
+    /**
+     * Gets how long a read waits for new messages before returning.
+     *
+     * <p>New subscriptions take effect at the start of the next read.</p>
+     *
+     * @return the block time in milliseconds
+     */
+    public long getBlockMillis() {
+        return this.blockMillis;
+    }
+
+    /**
+     * Gets the maximum number of messages to add in a single pipeline.
+     *
+     * @return the max pipeline size
+     */
+    public int getMaxPipelineSize() {
+        return this.maxPipelineSize;
+    }
+
+    /**
+     * Gets the settings used to compress messages.
+     *
+     * @return the compression settings
+     */
+    @Nonnull
+    public CompressionSettings getCompressionSettings() {
+        return this.compressionSettings;
+    }
+
+    @Override
+    public String toString() {
+        return "RedisStreamSettings(" +
+                "group=" + this.group + ", " +
+                "maxLength=" + this.maxLength + ", " +
+                "approximateTrimming=" + this.approximateTrimming + ", " +
+                "acknowledge=" + this.acknowledge + ", " +
+                "readCount=" + this.readCount + ", " +
+                "blockMillis=" + this.blockMillis + ", " +
+                "maxPipelineSize=" + this.maxPipelineSize + ", " +
+                "compressionSettings=" + this.compressionSettings + ")";
+    }
+
+    public static final class Builder {
+        private final String group;
+        private long maxLength = 10000;
+        private boolean approximateTrimming = true;
+        private boolean acknowledge = true;
+        private int readCount = 128;
+        private long blockMillis = 1000;
+        private int maxPipelineSize = 256;
+        private CompressionSettings compressionSettings = CompressionSettings.legacy();
+
+        private Builder(String group) {
+            Objects.requireNonNull(group, "group");
+            Preconditions.checkArgument(!group.trim().isEmpty(), "group cannot be empty");
+            this.group = group;
+        }
+
+        /**
+         * Sets the length each stream is trimmed to. Defaults to 10000.
+         *
+         * @param maxLength the max length, or 0 to never trim
+         * @return this builder
+         */
+        @Nonnull
+        public Builder maxLength(long maxLength) {
+            Preconditions.checkArgument(maxLength >= 0, "maxLength < 0");
+            this.maxLength = maxLength;
+            return this;
+        }
+
+        /**
+         * Sets if streams are trimmed approximately. Defaults to true.
+         *
+         * @param approximateTrimming if trimming is approximate
+         * @return this builder
+         */
+        @Nonnull
+        public Builder approximateTrimming(boolean approximateTrimming) {
+            this.approximateTrimming = approximateTrimming;
+            return this;
+        }
+
+        /**
+         * Sets if messages are acknowledged once handled. Defaults to true.
+         *
+         * @param acknowledge if messages are acknowledged
+         * @return this builder
+         */
+        @Nonnull
+        public Builder acknowledge(boolean acknowledge) {
+            this.acknowledge = acknowledge;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of messages to read from each stream at once. Defaults to 128.
+         *
+         * @param readCount the read count
+         * @return this builder
+         */
+        @Nonnull
+        public Builder readCount(int readCount) {
+            Preconditions.checkArgument(readCount >= 1, "readCount < 1");
+            this.readCount = readCount;
+            return this;
+        }
+
+        /**
+         * Sets how long a read waits for new messages. Defaults to 1000 milliseconds.
+         *
+         * <p>This should be lower than the socket timeout of the connection.</p>
+         *
+         * @param blockMillis the block time in milliseconds
+         * @return this builder
+         */
+        @Nonnull
+        public Builder blockMillis(long blockMillis) {
+            Preconditions.checkArgument(blockMillis >= 1, "blockMillis < 1");
+            this.blockMillis = blockMillis;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of messages to add in a single pipeline. Defaults to 256.
+         *
+         * @param maxPipelineSize the max pipeline size
+         * @return this builder
+         */
+        @Nonnull
+        public Builder maxPipelineSize(int maxPipelineSize) {
+            Preconditions.checkArgument(maxPipelineSize >= 1, "maxPipelineSize < 1");
+            this.maxPipelineSize = maxPipelineSize;
+            return this;
+        }
+
+        /**
+         * Sets the settings used to compress messages. Defaults to {@link CompressionSettings#legacy()}.
+         *
+         * @param compressionSettings the compression settings
+         * @return this builder
+         */
+        @Nonnull
+        public Builder compression(@Nonnull CompressionSettings compressionSettings) {
+            this.compressionSettings = Objects.requireNonNull(compressionSettings, "compressionSettings");
+            return this;
+        }
+
+        @Nonnull
+        public RedisStreamSettings build() {
+            return new RedisStreamSettings(this);
+        }
+    }
+}
@@ -25,43 +25,83 @@
 
 package me.lucko.helper.redis.plugin;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
 import com.google.common.reflect.TypeToken;
 
 import me.lucko.helper.Schedulers;
 import me.lucko.helper.messaging.AbstractMessenger;
+import me.lucko.helper.messaging.BatchSettings;
 import me.lucko.helper.messaging.Channel;
+import me.lucko.helper.messaging.codec.CompressionSettings;
 import me.lucko.helper.redis.Redis;
+import me.lucko.helper.redis.RedisAsync;
 import me.lucko.helper.redis.RedisCredentials;
+import me.lucko.helper.redis.RedisPoolMetrics;
+import me.lucko.helper.redis.RedisStreamMessenger;
+import me.lucko.helper.redis.RedisStreamSettings;
 import me.lucko.helper.terminable.composite.CompositeTerminable;
 import me.lucko.helper.utils.Log;
 
-import redis.clients.jedis.BinaryJedisPubSub;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Pipeline;
 
 import java.nio.charset.StandardCharsets;
-import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReentrantLock;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 public class HelperRedis implements Redis {
+    private static final int DEFAULT_SUBSCRIBER_CONNECTIONS = 4;
+    private static final int DEFAULT_ASYNC_CONNECTIONS = 2;
+    private static final int ASYNC_MAX_PIPELINE_SIZE = 512;
 
     private final JedisPool jedisPool;
+    private final int maxTotal;
+    private final int asyncConnections;
+    private final RedisPoolMetrics poolMetrics;
     private final AbstractMessenger messenger;
+    private final RedisSubscriberPool subscribers;
+    private final PipelinedWriter<Map.Entry<String, byte[]>> publisher;
+    // the connection used to publish messages, only accessed by the thread writing to the publisher
+    @Nullable
+    private Jedis publisherConnection = null;
+    // lazily created
+    private volatile HelperRedisAsync async = null;
 
-    private final Set<String> channels = new HashSet<>();
     private final CompositeTerminable registry = CompositeTerminable.create();
 
-    private PubSubListener listener = null;
-
     public HelperRedis(@Nonnull RedisCredentials credentials) {
+        this(credentials, null);
+    }
+
+    public HelperRedis(@Nonnull RedisCredentials credentials, @Nullable BatchSettings batchSettings) {
+        this(credentials, batchSettings, CompressionSettings.legacy());
+    }
+
+    public HelperRedis(@Nonnull RedisCredentials credentials, @Nullable BatchSettings batchSettings, @Nonnull CompressionSettings compressionSettings) {
+        this(credentials, batchSettings, compressionSettings, DEFAULT_SUBSCRIBER_CONNECTIONS);
+    }
+
+    public HelperRedis(@Nonnull RedisCredentials credentials, @Nullable BatchSettings batchSettings, @Nonnull CompressionSettings compressionSettings, int subscriberConnections) {
+        this(credentials, batchSettings, compressionSettings, subscriberConnections, DEFAULT_ASYNC_CONNECTIONS);
+    }
+
+    public HelperRedis(@Nonnull RedisCredentials credentials, @Nullable BatchSettings batchSettings, @Nonnull CompressionSettings compressionSettings, int subscriberConnections, int asyncConnections) {
+        Preconditions.checkArgument(subscriberConnections >= 1, "subscriberConnections < 1");
+        Preconditions.checkArgument(asyncConnections >= 1, "asyncConnections < 1");
+        this.asyncConnections = asyncConnections;
+
+        // the subscribers and the async client hold their connections permanently,
+        // so reserve them on top of the connections available to getJedis()
+        this.maxTotal = 16 + subscriberConnections + asyncConnections;
         JedisPoolConfig config = new JedisPoolConfig();
-        config.setMaxTotal(16);
+        config.setMaxTotal(this.maxTotal);
 
         // setup jedis
         if (credentials.getPassword().trim().isEmpty()) {
@@ -74,71 +114,52 @@ public class HelperRedis implements Redis {
             jedis.ping();
         }
 
-        Schedulers.async().run(new Runnable() {
-            private boolean broken = false;
-
-            @Override
-            public void run() {
-                if (this.broken) {
-                    Log.info("[helper-redis] Retrying subscription...");
-                    this.broken = false;
-                }
-
-                try (Jedis jedis = getJedis()) {
-                    try {
-                        HelperRedis.this.listener = new PubSubListener();
-                        jedis.subscribe(HelperRedis.this.listener, "helper-redis-dummy".getBytes(StandardCharsets.UTF_8));
-                    } catch (Exception e) {
-                        // Attempt to unsubscribe this instance and try again.
-                        new RuntimeException("Error subscribing to listener", e).printStackTrace();
-                        try {
-                            HelperRedis.this.listener.unsubscribe();
-                        } catch (Exception ignored) {
-
-                        }
-                        HelperRedis.this.listener = null;
-                        this.broken = true;
-                    }
-                }
-
-                if (this.broken) {
-                    // reschedule the runnable
-                    Schedulers.async().runLater(this, 1L);
-                }
-            }
-        });
-
-        Schedulers.async().runRepeating(() -> {
-            // ensure subscribed to all channels
-            PubSubListener listener = HelperRedis.this.listener;
-
-            if (listener == null || !listener.isSubscribed()) {
-                return;
-            }
-
-            for (String channel : this.channels) {
-                listener.subscribe(channel.getBytes(StandardCharsets.UTF_8));
-            }
+        this.poolMetrics = new PoolMetrics();
 
-        }, 2L, 2L).bindWith(this.registry);
+        this.publisher = new PipelinedWriter<>(256, this::publish);
 
         this.messenger = new AbstractMessenger(
-                (channel, message) -> {
-                    try (Jedis jedis = getJedis()) {
-                        jedis.publish(channel.getBytes(StandardCharsets.UTF_8), message);
-                    }
-                },
+                (channel, message) -> this.publisher.write(Maps.immutableEntry(channel, message)),
                 channel -> {
                     Log.info("[helper-redis] Subscribing to channel: " + channel);
-                    this.channels.add(channel);
-                    this.listener.subscribe(channel.getBytes(StandardCharsets.UTF_8));
+                    this.subscribers.subscribe(channel);
                 },
                 channel -> {
                     Log.info("[helper-redis] Unsubscribing from channel: " + channel);
-                    this.channels.remove(channel);
-                    this.listener.unsubscribe(channel.getBytes(StandardCharsets.UTF_8));
-                }
+                    this.subscribers.unsubscribe(channel);
+                },
+                batchSettings,
+                compressionSettings
         );
+
+        this.subscribers = this.registry.bind(new RedisSubscriberPool(this.jedisPool, subscriberConnections, this.messenger::registerIncomingMessage));
+
+        // catch any subscriptions which could not be sent whilst reconnecting.
+        // only the difference is sent, so this is usually a no-op
+        Schedulers.async().runRepeating(this.subscribers::reconcile, 2L, 2L).bindWith(this.registry);
+    }
+
+    private void publish(List<Map.Entry<String, byte[]>> messages) {
+        if (this.publisherConnection == null) {
+            this.publisherConnection = getJedis();
+        }
+
+        try {
+            Pipeline pipeline = this.publisherConnection.pipelined();
+            for (Map.Entry<String, byte[]> message : messages) {
+                pipeline.publish(message.getKey().getBytes(StandardCharsets.UTF_8), message.getValue());
+            }
+            pipeline.sync();
+        } catch (Exception e) {
+            // discard the connection, a new one will be obtained next time
+            try {
+                this.publisherConnection.close();
+            } catch (Exception ignored) {
+
+            }
+            this.publisherConnection = null;
+            throw e;
+        }
     }
 
     @Nonnull
@@ -154,18 +175,49 @@ public class HelperRedis implements Redis {
         return getJedisPool().getResource();
     }
 
+    @Nonnull
+    @Override
+    public RedisStreamMessenger createStreamMessenger(@Nonnull RedisStreamSettings settings) {
+        return this.registry.bind(new HelperRedisStreamMessenger(getJedisPool(), settings));
+    }
+
+    @Nonnull
+    @Override
+    public RedisAsync async() {
+        HelperRedisAsync async = this.async;
+        if (async == null) {
+            synchronized (this) {
+                async = this.async;
+                if (async == null) {
+                    Preconditions.checkState(!this.registry.isClosed(), "Redis instance is closed");
+                    async = this.registry.bind(new HelperRedisAsync(getJedisPool(), this.asyncConnections, ASYNC_MAX_PIPELINE_SIZE));
+                    this.async = async;
+                }
+            }
+        }
+        return async;
+    }
+
+    @Nonnull
+    @Override
+    public RedisPoolMetrics getPoolMetrics() {
+        return this.poolMetrics;
+    }
+
     @Override
     public void close() throws Exception {
-        if (this.listener != null) {
-            this.listener.unsubscribe();
-            this.listener = null;
+        // publish any batched messages whilst the connection is still open
+        this.messenger.close();
+        this.registry.close();
+
+        Jedis publisherConnection = this.publisherConnection;
+        if (publisherConnection != null) {
+            publisherConnection.close();
         }
 
         if (this.jedisPool != null) {
             this.jedisPool.close();
         }
-
-        this.registry.close();
     }
 
     @Nonnull
@@ -174,55 +226,35 @@ public class HelperRedis implements Redis {
         return this.messenger.getChannel(name, type);
     }
 
-    private final class PubSubListener extends BinaryJedisPubSub {
-        private final ReentrantLock lock = new ReentrantLock();
-        private final Set<String> subscribed = ConcurrentHashMap.newKeySet();
+    private final class PoolMetrics implements RedisPoolMetrics {
+        @Override
+        public int getMaxTotal() {
+            return HelperRedis.this.maxTotal;
+        }
 
         @Override
-        public void subscribe(byte[]... channels) {
-            this.lock.lock();
-            try {
-                for (byte[] channel : channels) {
-                    String channelName = new String(channel, StandardCharsets.UTF_8);
-                    if (this.subscribed.add(channelName)) {
-                        super.subscribe(channel);
-                    }
-                }
-            } finally {
-                this.lock.unlock();
-            }
+        public int getNumActive() {
+            return HelperRedis.this.jedisPool.getNumActive();
         }
 
         @Override
-        public void unsubscribe(byte[]... channels) {
-            this.lock.lock();
-            try {
-                super.unsubscribe(channels);
-            } finally {
-                this.lock.unlock();
-            }
+        public int getNumIdle() {
+            return HelperRedis.this.jedisPool.getNumIdle();
         }
 
         @Override
-        public void onSubscribe(byte[] channel, int subscribedChannels) {
-            Log.info("[helper-redis] Subscribed to channel: " + new String(channel, StandardCharsets.UTF_8));
+        public int getNumWaiters() {
+            return HelperRedis.this.jedisPool.getNumWaiters();
         }
 
         @Override
-        public void onUnsubscribe(byte[] channel, int subscribedChannels) {
-            String channelName = new String(channel, StandardCharsets.UTF_8);
-            Log.info("[helper-redis] Unsubscribed from channel: " + channelName);
-            this.subscribed.remove(channelName);
+        public long getMeanBorrowWaitTimeMillis() {
+            return HelperRedis.this.jedisPool.getMeanBorrowWaitTimeMillis();
         }
 
         @Override
-        public void onMessage(byte[] channel, byte[] message) {
-            String channelName = new String(channel, StandardCharsets.UTF_8);
-            try {
-                HelperRedis.this.messenger.registerIncomingMessage(channelName, message);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        public long getMaxBorrowWaitTimeMillis() {
+            return HelperRedis.this.jedisPool.getMaxBorrowWaitTimeMillis();
         }
     }
 }
@@ -0,0 +1,307 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.redis.plugin;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import me.lucko.helper.promise.Promise;
+import me.lucko.helper.redis.RedisAsync;
+import me.lucko.helper.terminable.Terminable;
+import me.lucko.helper.utils.Log;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Implementation of {@link RedisAsync}.
+ *
+ * <p>Each connection is held by a dedicated thread, which waits for commands,
+ * and then sends everything queued at that point in a single pipeline. Under
+ * load, the size of each pipeline grows with the number of commands queued
+ * whilst the previous one was in flight.</p>
+ */
+final class HelperRedisAsync implements RedisAsync, Terminable {
+    private static final ThreadFactory THREAD_FACTORY = new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("helper-redis-async-%d")
+            .build();
+
+    private final JedisPool jedisPool;
+    private final int maxPipelineSize;
+    private final Connection[] connections;
+
+    private final BlockingQueue<Command<?>> queue = new LinkedBlockingQueue<>();
+    private volatile boolean closed = false;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder pipelines = new LongAdder();
+    private final LongAdder pipelined = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final Metrics metrics = new MetricsImpl();
+
+    HelperRedisAsync(JedisPool jedisPool, int connections, int maxPipelineSize) {
+        this.jedisPool = jedisPool;
+        this.maxPipelineSize = maxPipelineSize;
+        this.connections = new Connection[connections];
+        for (int i = 0; i < connections; i++) {
+            Connection connection = new Connection();
+            this.connections[i] = connection;
+            connection.thread.start();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public <T> Promise<T> execute(@Nonnull Function<Pipeline, Response<T>> command) {
+        Objects.requireNonNull(command, "command");
+        Promise<T> promise = Promise.empty();
+        if (this.closed) {
+            promise.supplyException(new IllegalStateException("Client is closed"));
+            return promise;
+        }
+
+        this.queue.add(new Command<>(command, promise));
+
+        // the client may have been closed between the check and the add
+        if (this.closed) {
+            failQueued();
+        }
+        return promise;
+    }
+
+    @Nonnull
+    @Override
+    public Metrics getMetrics() {
+        return this.metrics;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        for (Connection connection : this.connections) {
+            connection.thread.interrupt();
+        }
+        failQueued();
+    }
+
+    private void failQueued() {
+        Command<?> command;
+        while ((command = this.queue.poll()) != null) {
+            command.fail(new IllegalStateException("Client is closed"));
+            this.failed.increment();
+        }
+    }
+
+    private final class Connection implements Runnable {
+        private final Thread thread = THREAD_FACTORY.newThread(this);
+        private final List<Command<?>> batch = new ArrayList<>();
+        private Jedis jedis = null;
+
+        @Override
+        public void run() {
+            try {
+                while (!HelperRedisAsync.this.closed) {
+                    Command<?> first = HelperRedisAsync.this.queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+
+                    this.batch.add(first);
+                    HelperRedisAsync.this.queue.drainTo(this.batch, HelperRedisAsync.this.maxPipelineSize - 1);
+                    try {
+                        send(this.batch);
+                    } finally {
+                        this.batch.clear();
+                    }
+                }
+            } catch (InterruptedException e) {
+                // closed
+            } finally {
+                if (this.jedis != null) {
+                    this.jedis.close();
+                    this.jedis = null;
+                }
+            }
+        }
+
+        private void send(List<Command<?>> batch) throws InterruptedException {
+            HelperRedisAsync.this.inFlight.addAndGet(batch.size());
+            try {
+                Pipeline pipeline;
+                try {
+                    if (this.jedis == null) {
+                        this.jedis = HelperRedisAsync.this.jedisPool.getResource();
+                    }
+                    pipeline = this.jedis.pipelined();
+                    for (Command<?> command : batch) {
+                        command.queue(pipeline);
+                    }
+                    pipeline.sync();
+                } catch (Exception e) {
+                    // the connection is broken, so nothing in the pipeline can be trusted
+                    for (Command<?> command : batch) {
+                        command.fail(e);
+                    }
+                    HelperRedisAsync.this.failed.add(batch.size());
+                    reconnect(e);
+                    return;
+                }
+
+                HelperRedisAsync.this.pipelines.increment();
+                HelperRedisAsync.this.pipelined.add(batch.size());
+                for (Command<?> command : batch) {
+                    if (command.complete()) {
+                        HelperRedisAsync.this.completed.increment();
+                    } else {
+                        HelperRedisAsync.this.failed.increment();
+                    }
+                }
+            } finally {
+                HelperRedisAsync.this.inFlight.addAndGet(-batch.size());
+            }
+        }
+
+        private void reconnect(Exception e) throws InterruptedException {
+            Log.warn("[helper-redis] Async connection failed: " + e.getMessage());
+            HelperRedisAsync.this.reconnects.increment();
+            if (this.jedis != null) {
+                try {
+                    this.jedis.close();
+                } catch (Exception ignored) {
+
+                }
+                this.jedis = null;
+            }
+
+            // don't spin whilst redis is unavailable
+            Thread.sleep(1000L);
+        }
+    }
+
+    private static final class Command<T> {
+        private final Function<Pipeline, Response<T>> function;
+        private final Promise<T> promise;
+        private Response<T> response = null;
+        private Exception error = null;
+
+        Command(Function<Pipeline, Response<T>> function, Promise<T> promise) {
+            this.function = function;
+            this.promise = promise;
+        }
+
+        void queue(Pipeline pipeline) {
+            try {
+                this.response = this.function.apply(pipeline);
+            } catch (Exception e) {
+                // a bad command shouldn't fail the whole pipeline
+                this.error = e;
+            }
+        }
+
+        boolean complete() {
+            if (this.error != null) {
+                this.promise.supplyException(this.error);
+                return false;
+            }
+            try {
+                this.promise.supply(this.response.get());
+                return true;
+            } catch (Exception e) {
+                this.promise.supplyException(e);
+                return false;
+            }
+        }
+
+        void fail(Exception e) {
+            this.promise.supplyException(e);
+        }
+    }
+
+    private final class MetricsImpl implements Metrics {
+        @Override
+        public int getConnections() {
+            return HelperRedisAsync.this.connections.length;
+        }
+
+        @Override
+        public int getQueued() {
+            return HelperRedisAsync.this.queue.size();
+        }
+
+        @Override
+        public int getInFlight() {
+            return HelperRedisAsync.this.inFlight.get();
+        }
+
+        @Override
+        public long getCompleted() {
+            return HelperRedisAsync.this.completed.sum();
+        }
+
+        @Override
+        public long getFailed() {
+            return HelperRedisAsync.this.failed.sum();
+        }
+
+        @Override
+        public long getPipelines() {
+            return HelperRedisAsync.this.pipelines.sum();
+        }
+
+        @Override
+        public long getReconnects() {
+            return HelperRedisAsync.this.reconnects.sum();
+        }
+
+        @Override
+        public double getMeanPipelineSize() {
+            long pipelines = getPipelines();
+            return pipelines == 0 ? 0 : (double) HelperRedisAsync.this.pipelined.sum() / pipelines;
+        }
+    }
+}
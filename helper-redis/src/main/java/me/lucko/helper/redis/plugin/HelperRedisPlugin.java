@@ -26,13 +26,24 @@
 package me.lucko.helper.redis.plugin;
 
 import me.lucko.helper.internal.HelperImplementationPlugin;
+import me.lucko.helper.messaging.BatchSettings;
 import me.lucko.helper.messaging.Messenger;
+import me.lucko.helper.messaging.codec.Compression;
+import me.lucko.helper.messaging.codec.CompressionSettings;
 import me.lucko.helper.plugin.ExtendedJavaPlugin;
 import me.lucko.helper.redis.Redis;
 import me.lucko.helper.redis.RedisCredentials;
 import me.lucko.helper.redis.RedisProvider;
+import me.lucko.helper.utils.Log;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 @HelperImplementationPlugin
 public class HelperRedisPlugin extends ExtendedJavaPlugin implements RedisProvider {
@@ -41,8 +52,15 @@ public class HelperRedisPlugin extends ExtendedJavaPlugin implements RedisProvid
 
     @Override
     protected void enable() {
-        this.globalCredentials = RedisCredentials.fromConfig(loadConfig("config.yml"));
-        this.globalRedis = getRedis(this.globalCredentials);
+        YamlConfiguration config = loadConfig("config.yml");
+        this.globalCredentials = RedisCredentials.fromConfig(config);
+        this.globalRedis = new HelperRedis(
+                this.globalCredentials,
+                loadBatchSettings(config.getConfigurationSection("batching")),
+                loadCompressionSettings(config.getConfigurationSection("compression")),
+                Math.max(1, config.getInt("subscriber-connections", 4)),
+                Math.max(1, config.getInt("async-connections", 2))
+        );
         this.globalRedis.bindWith(this);
 
         // expose all instances as services.
@@ -52,6 +70,48 @@ public class HelperRedisPlugin extends ExtendedJavaPlugin implements RedisProvid
         provideService(Messenger.class, this.globalRedis);
     }
 
+    @Nullable
+    private static BatchSettings loadBatchSettings(@Nullable ConfigurationSection config) {
+        if (config == null || !config.getBoolean("enabled", false)) {
+            return null;
+        }
+
+        BatchSettings defaults = BatchSettings.defaults();
+        return BatchSettings.of(
+                config.getInt("max-messages", defaults.getMaxMessages()),
+                config.getInt("max-bytes", defaults.getMaxBytes()),
+                config.getLong("linger-millis", defaults.getLingerMillis()),
+                TimeUnit.MILLISECONDS
+        );
+    }
+
+    @Nonnull
+    private static CompressionSettings loadCompressionSettings(@Nullable ConfigurationSection config) {
+        if (config == null) {
+            return CompressionSettings.legacy();
+        }
+
+        String algorithm = config.getString("algorithm", "legacy");
+        if (algorithm.equalsIgnoreCase("legacy")) {
+            return CompressionSettings.legacy();
+        }
+
+        Compression compression;
+        try {
+            compression = Compression.valueOf(algorithm.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            Log.warn("[helper-redis] Unknown compression algorithm '" + algorithm + "', using legacy compression.");
+            return CompressionSettings.legacy();
+        }
+
+        if (!compression.isAvailable()) {
+            Log.warn("[helper-redis] Compression algorithm " + compression + " is not available, using DEFLATE instead.");
+            compression = Compression.DEFLATE;
+        }
+
+        return CompressionSettings.of(compression, config.getInt("threshold", CompressionSettings.defaults().getThreshold()));
+    }
+
     @Nonnull
     @Override
     public Redis getRedis() {
@@ -0,0 +1,219 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.redis.plugin;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+
+import me.lucko.helper.messaging.AbstractMessenger;
+import me.lucko.helper.messaging.Channel;
+import me.lucko.helper.redis.RedisStreamMessenger;
+import me.lucko.helper.redis.RedisStreamSettings;
+import me.lucko.helper.utils.Log;
+
+import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+public class HelperRedisStreamMessenger implements RedisStreamMessenger {
+    private static final String STREAM_PREFIX = "helper-stream:";
+    private static final String CONSUMER = "helper";
+    private static final AtomicInteger READER_COUNTER = new AtomicInteger(0);
+
+    private final StreamClient client;
+    private final RedisStreamSettings settings;
+    private final AbstractMessenger messenger;
+    // adds outgoing messages in pipelined batches
+    private final PipelinedWriter<StreamClient.Entry> writer;
+
+    // the streams currently subscribed to
+    private final Set<String> streams = ConcurrentHashMap.newKeySet();
+    // set when pending (delivered but unacknowledged) entries should be read again
+    private volatile boolean readPending = true;
+    private volatile boolean running = true;
+    // blocks on the streams for as long as the messenger is open, so it gets its own thread
+    private final Thread reader;
+
+    public HelperRedisStreamMessenger(@Nonnull JedisPool jedisPool, @Nonnull RedisStreamSettings settings) {
+        this(new JedisStreamClient(Objects.requireNonNull(jedisPool, "jedisPool")), settings);
+    }
+
+    HelperRedisStreamMessenger(StreamClient client, RedisStreamSettings settings) {
+        this.client = client;
+        this.settings = Objects.requireNonNull(settings, "settings");
+        this.writer = new PipelinedWriter<>(settings.getMaxPipelineSize(), entries -> this.client.add(entries, settings.getMaxLength(), settings.isApproximateTrimming()));
+        this.messenger = new AbstractMessenger(
+                this::publish,
+                channel -> {
+                    Log.info("[helper-redis] Subscribing to stream: " + channel);
+                    String stream = STREAM_PREFIX + channel;
+                    this.client.createGroup(stream, this.settings.getGroup());
+                    this.streams.add(stream);
+                    this.readPending = true;
+                },
+                channel -> {
+                    Log.info("[helper-redis] Unsubscribing from stream: " + channel);
+                    this.streams.remove(STREAM_PREFIX + channel);
+                },
+                null,
+                settings.getCompressionSettings()
+        );
+
+        this.reader = new Thread(this::readLoop, "helper-redis-stream-reader-" + READER_COUNTER.getAndIncrement());
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    private void publish(String channel, byte[] message) {
+        this.writer.write(new StreamClient.Entry(STREAM_PREFIX + channel, null, message));
+    }
+
+    private void readLoop() {
+        while (this.running && !Thread.currentThread().isInterrupted()) {
+            List<String> streams = ImmutableList.copyOf(this.streams);
+            if (streams.isEmpty()) {
+                sleep(this.settings.getBlockMillis());
+                continue;
+            }
+
+            try {
+                boolean pending = this.readPending && this.settings.isAcknowledge();
+                this.readPending = false;
+
+                List<StreamClient.Entry> entries = this.client.read(
+                        this.settings.getGroup(),
+                        CONSUMER,
+                        streams,
+                        pending,
+                        this.settings.getReadCount(),
+                        this.settings.getBlockMillis(),
+                        !this.settings.isAcknowledge()
+                );
+
+                // keep reading pending entries until there are none left
+                if (pending && !entries.isEmpty()) {
+                    this.readPending = true;
+                }
+
+                handle(entries);
+            } catch (Exception e) {
+                if (!this.running) {
+                    return;
+                }
+
+                Log.severe("[helper-redis] Error reading from streams, retrying...", e);
+                sleep(TimeUnit.SECONDS.toMillis(1));
+
+                // the connection may have dropped, or the streams may have been deleted
+                try {
+                    for (String stream : streams) {
+                        this.client.createGroup(stream, this.settings.getGroup());
+                    }
+                } catch (Exception ignored) {
+                    // try again next time round
+                }
+                this.readPending = true;
+            }
+        }
+    }
+
+    private void handle(List<StreamClient.Entry> entries) {
+        Map<String, List<String>> handled = new LinkedHashMap<>();
+        for (StreamClient.Entry entry : entries) {
+            byte[] payload = entry.getPayload();
+            if (payload != null) {
+                String channel = entry.getStream().substring(STREAM_PREFIX.length());
+                try {
+                    this.messenger.registerIncomingMessage(channel, payload);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            handled.computeIfAbsent(entry.getStream(), s -> new ArrayList<>()).add(entry.getId());
+        }
+
+        if (this.settings.isAcknowledge()) {
+            for (Map.Entry<String, List<String>> e : handled.entrySet()) {
+                this.client.ack(e.getKey(), this.settings.getGroup(), e.getValue());
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public RedisStreamSettings getSettings() {
+        return this.settings;
+    }
+
+    @Nonnull
+    @Override
+    public <T> Channel<T> getChannel(@Nonnull String name, @Nonnull TypeToken<T> type) {
+        return this.messenger.getChannel(name, type);
+    }
+
+    @Override
+    public void close() {
+        if (!this.running) {
+            return;
+        }
+
+        // send anything still waiting to be written before stopping
+        this.messenger.close();
+        this.writer.close();
+
+        // a blocking read can't be interrupted, but returns within blockMillis
+        this.running = false;
+        this.reader.interrupt();
+        try {
+            this.reader.join(this.settings.getBlockMillis() + TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return !this.running;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.redis.plugin;
+
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisDataException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link StreamClient} using a {@link JedisPool}.
+ */
+final class JedisStreamClient implements StreamClient {
+    private static final byte[] PAYLOAD_FIELD = bytes("payload");
+    private static final byte[] NEW_ENTRY_ID = bytes("*");
+    private static final byte[] LAST_ENTRY_ID = bytes("$");
+    private static final byte[] PENDING_ENTRY_ID = bytes("0");
+    private static final byte[] UNDELIVERED_ENTRY_ID = bytes(">");
+
+    private final JedisPool jedisPool;
+
+    JedisStreamClient(JedisPool jedisPool) {
+        this.jedisPool = jedisPool;
+    }
+
+    private static byte[] bytes(String string) {
+        return string.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void createGroup(String stream, String group) {
+        try (Jedis jedis = this.jedisPool.getResource()) {
+            jedis.xgroupCreate(bytes(stream), bytes(group), LAST_ENTRY_ID, true);
+        } catch (JedisDataException e) {
+            String message = e.getMessage();
+            if (message == null || !message.startsWith("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void add(List<Entry> entries, long maxLength, boolean approximate) {
+        long maxLen = maxLength == 0 ? Long.MAX_VALUE : maxLength;
+        try (Jedis jedis = this.jedisPool.getResource()) {
+            Pipeline pipeline = jedis.pipelined();
+            List<Response<byte[]>> responses = new ArrayList<>(entries.size());
+            for (Entry entry : entries) {
+                Map<byte[], byte[]> fields = Collections.singletonMap(PAYLOAD_FIELD, entry.getPayload());
+                responses.add(pipeline.xadd(bytes(entry.getStream()), NEW_ENTRY_ID, fields, maxLen, approximate));
+            }
+            pipeline.sync();
+
+            // rethrow any errors
+            for (Response<byte[]> response : responses) {
+                response.get();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<Entry> read(String group, String consumer, Collection<String> streams, boolean pending, int count, long blockMillis, boolean noAck) {
+        Map<byte[], byte[]> offsets = new LinkedHashMap<>();
+        for (String stream : streams) {
+            offsets.put(bytes(stream), pending ? PENDING_ENTRY_ID : UNDELIVERED_ENTRY_ID);
+        }
+
+        List<?> reply;
+        try (Jedis jedis = this.jedisPool.getResource()) {
+            reply = jedis.xreadGroup(bytes(group), bytes(consumer), count, pending ? 0 : blockMillis, noAck, offsets);
+        }
+        if (reply == null) {
+            return Collections.emptyList();
+        }
+
+        // [[stream, [[id, [field, value, ...]], ...]], ...]
+        List<Entry> entries = new ArrayList<>();
+        for (Object streamReply : reply) {
+            List<Object> streamParts = (List<Object>) streamReply;
+            String stream = new String((byte[]) streamParts.get(0), StandardCharsets.UTF_8);
+
+            for (Object entryReply : (List<Object>) streamParts.get(1)) {
+                List<Object> entryParts = (List<Object>) entryReply;
+                String id = new String((byte[]) entryParts.get(0), StandardCharsets.UTF_8);
+
+                byte[] payload = null;
+                List<Object> fields = (List<Object>) entryParts.get(1);
+                if (fields != null) {
+                    for (int i = 0; i + 1 < fields.size(); i += 2) {
+                        if (Arrays.equals((byte[]) fields.get(i), PAYLOAD_FIELD)) {
+                            payload = (byte[]) fields.get(i + 1);
+                        }
+                    }
+                }
+                entries.add(new Entry(stream, id, payload));
+            }
+        }
+        return entries;
+    }
+
+    @Override
+    public void ack(String stream, String group, List<String> ids) {
+        byte[][] idBytes = new byte[ids.size()][];
+        for (int i = 0; i < idBytes.length; i++) {
+            idBytes[i] = bytes(ids.get(i));
+        }
+        try (Jedis jedis = this.jedisPool.getResource()) {
+            jedis.xack(bytes(stream), bytes(group), idBytes);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.redis.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Groups writes made concurrently by different threads into batches, so they
+ * can be sent to redis in a single pipeline.
+ *
+ * <p>There is no dedicated writer thread - the first thread to find the writer
+ * idle writes everything queued at that point (including writes queued by other
+ * threads), whilst the others wait for their element to be written.</p>
+ *
+ * @param <E> the element type
+ */
+final class PipelinedWriter<E> {
+    private final int maxBatchSize;
+    private final Consumer<List<E>> writer;
+
+    private final Queue<PendingWrite<E>> queue = new ConcurrentLinkedQueue<>();
+    // if a thread is currently writing
+    private final AtomicBoolean writing = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+
+    /**
+     * Creates a new writer.
+     *
+     * @param maxBatchSize the maximum number of elements to pass to the writer at once
+     * @param writer writes a batch of elements, throwing an exception if it failed
+     */
+    PipelinedWriter(int maxBatchSize, Consumer<List<E>> writer) {
+        this.maxBatchSize = maxBatchSize;
+        this.writer = writer;
+    }
+
+    /**
+     * Writes the element, blocking until it has been written.
+     *
+     * @param element the element
+     * @throws RuntimeException if the batch containing the element could not be written
+     * @throws IllegalStateException if the writer has been closed
+     */
+    void write(E element) {
+        if (this.closed) {
+            throw new IllegalStateException("Writer is closed");
+        }
+
+        PendingWrite<E> write = new PendingWrite<>(element);
+        this.queue.add(write);
+        drain();
+
+        try {
+            write.future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Stops accepting new writes, and writes any which are still queued on
+     * the calling thread.
+     */
+    void close() {
+        this.closed = true;
+        drain();
+    }
+
+    private void drain() {
+        // re-check after releasing the flag, in case an element was added
+        // whilst another thread was writing
+        while (!this.queue.isEmpty() && this.writing.compareAndSet(false, true)) {
+            try {
+                List<PendingWrite<E>> batch = new ArrayList<>();
+                PendingWrite<E> write;
+                while (batch.size() < this.maxBatchSize && (write = this.queue.poll()) != null) {
+                    batch.add(write);
+                }
+
+                List<E> elements = new ArrayList<>(batch.size());
+                for (PendingWrite<E> w : batch) {
+                    elements.add(w.element);
+                }
+
+                try {
+                    this.writer.accept(elements);
+                    for (PendingWrite<E> w : batch) {
+                        w.future.complete(null);
+                    }
+                } catch (Exception e) {
+                    for (PendingWrite<E> w : batch) {
+                        w.future.completeExceptionally(e);
+                    }
+                }
+            } finally {
+                this.writing.set(false);
+            }
+        }
+    }
+
+    private static final class PendingWrite<E> {
+        private final E element;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingWrite(E element) {
+            this.element = element;
+        }
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.redis.plugin;
+
+import me.lucko.helper.Schedulers;
+import me.lucko.helper.terminable.Terminable;
+import me.lucko.helper.utils.Log;
+
+import redis.clients.jedis.BinaryJedisPubSub;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+import javax.annotation.Nullable;
+
+/**
+ * Spreads pub/sub subscriptions over a number of connections.
+ *
+ * <p>Each channel is assigned to a connection by the hash of its name. The
+ * channels each connection should be subscribed to are reconciled against the
+ * channels it has already been asked to subscribe to, so only the difference
+ * is sent to redis.</p>
+ */
+final class RedisSubscriberPool implements Terminable {
+    private static final byte[] DUMMY_CHANNEL = "helper-redis-dummy".getBytes(StandardCharsets.UTF_8);
+
+    private final JedisPool jedisPool;
+    // accepts incoming messages in the format [channel name, message]
+    private final BiConsumer<String, byte[]> incomingMessages;
+    private final Shard[] shards;
+
+    private volatile boolean closed = false;
+
+    RedisSubscriberPool(JedisPool jedisPool, int size, BiConsumer<String, byte[]> incomingMessages) {
+        this.jedisPool = jedisPool;
+        this.incomingMessages = incomingMessages;
+        this.shards = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            this.shards[i] = new Shard(i);
+            Schedulers.async().run(this.shards[i]);
+        }
+    }
+
+    private Shard shard(String channel) {
+        return this.shards[(channel.hashCode() & Integer.MAX_VALUE) % this.shards.length];
+    }
+
+    void subscribe(String channel) {
+        Shard shard = shard(channel);
+        shard.channels.add(channel);
+        shard.reconcile();
+    }
+
+    void unsubscribe(String channel) {
+        Shard shard = shard(channel);
+        shard.channels.remove(channel);
+        shard.reconcile();
+    }
+
+    /**
+     * Sends any subscribe/unsubscribe requests which are still needed, for example
+     * after a connection has been re-established.
+     */
+    void reconcile() {
+        for (Shard shard : this.shards) {
+            shard.reconcile();
+        }
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        for (Shard shard : this.shards) {
+            Listener listener = shard.listener;
+            if (listener != null) {
+                try {
+                    listener.unsubscribe();
+                } catch (Exception ignored) {
+
+                }
+                shard.listener = null;
+            }
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    private final class Shard implements Runnable {
+        private final int id;
+        // the channels this connection should be subscribed to
+        private final Set<String> channels = ConcurrentHashMap.newKeySet();
+        @Nullable
+        private volatile Listener listener = null;
+        private boolean broken = false;
+
+        Shard(int id) {
+            this.id = id;
+        }
+
+        // connects, and blocks until the connection is closed
+        @Override
+        public void run() {
+            if (RedisSubscriberPool.this.closed) {
+                return;
+            }
+
+            if (this.broken) {
+                Log.info("[helper-redis] Retrying subscription #" + this.id + "...");
+                this.broken = false;
+            }
+
+            try (Jedis jedis = RedisSubscriberPool.this.jedisPool.getResource()) {
+                try {
+                    this.listener = new Listener(this);
+                    jedis.subscribe(this.listener, DUMMY_CHANNEL);
+                } catch (Exception e) {
+                    // Attempt to unsubscribe this instance and try again.
+                    new RuntimeException("Error subscribing to listener", e).printStackTrace();
+                    try {
+                        Listener listener = this.listener;
+                        if (listener != null) {
+                            listener.unsubscribe();
+                        }
+                    } catch (Exception ignored) {
+
+                    }
+                    this.listener = null;
+                    this.broken = true;
+                }
+            } catch (Exception e) {
+                new RuntimeException("Error obtaining connection for listener", e).printStackTrace();
+                this.listener = null;
+                this.broken = true;
+            }
+
+            if (this.broken && !RedisSubscriberPool.this.closed) {
+                // reschedule the runnable
+                Schedulers.async().runLater(this, 1L);
+            }
+        }
+
+        void reconcile() {
+            Listener listener = this.listener;
+            if (listener == null || !listener.isSubscribed()) {
+                // the whole set will be requested once connected
+                return;
+            }
+
+            // serialise writes to the connection
+            synchronized (this) {
+                List<byte[]> subscribe = new ArrayList<>();
+                for (String channel : this.channels) {
+                    if (listener.requested.add(channel)) {
+                        subscribe.add(channel.getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+
+                List<byte[]> unsubscribe = new ArrayList<>();
+                for (String channel : listener.requested) {
+                    if (!this.channels.contains(channel)) {
+                        listener.requested.remove(channel);
+                        unsubscribe.add(channel.getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+
+                if (!subscribe.isEmpty()) {
+                    listener.subscribe(subscribe.toArray(new byte[0][]));
+                }
+                if (!unsubscribe.isEmpty()) {
+                    listener.unsubscribe(unsubscribe.toArray(new byte[0][]));
+                }
+            }
+        }
+    }
+
+    private final class Listener extends BinaryJedisPubSub {
+        private final Shard shard;
+        // the channels which have been requested on this connection
+        private final Set<String> requested = ConcurrentHashMap.newKeySet();
+
+        Listener(Shard shard) {
+            this.shard = shard;
+        }
+
+        @Override
+        public void onSubscribe(byte[] channel, int subscribedChannels) {
+            if (Arrays.equals(channel, DUMMY_CHANNEL)) {
+                // connected - request the current channels
+                Schedulers.async().run(this.shard::reconcile);
+                return;
+            }
+            Log.info("[helper-redis] Subscribed to channel: " + new String(channel, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void onUnsubscribe(byte[] channel, int subscribedChannels) {
+            Log.info("[helper-redis] Unsubscribed from channel: " + new String(channel, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void onMessage(byte[] channel, byte[] message) {
+            String channelName = new String(channel, StandardCharsets.UTF_8);
+            try {
+                RedisSubscriberPool.this.incomingMessages.accept(channelName, message);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.redis.plugin;
+
+import java.util.Collection;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * The redis stream operations used by {@link HelperRedisStreamMessenger}.
+ *
+ * <p>Abstracted so that the messenger can be run against a stand-in.</p>
+ */
+interface StreamClient {
+
+    /**
+     * Creates a consumer group for the given stream, starting from the end of
+     * the stream, and creating the stream if necessary. Does nothing if the
+     * group already exists.
+     *
+     * @param stream the stream key
+     * @param group the group name
+     */
+    void createGroup(String stream, String group);
+
+    /**
+     * Adds the given entries, in a single round trip.
+     *
+     * @param entries the entries to add
+     * @param maxLength the length to trim each stream to, or 0 to not trim
+     * @param approximate if trimming may be approximate
+     */
+    void add(List<Entry> entries, long maxLength, boolean approximate);
+
+    /**
+     * Reads entries for the given consumer group.
+     *
+     * @param group the group name
+     * @param consumer the consumer name
+     * @param streams the stream keys to read from
+     * @param pending true to read entries which were delivered but not acknowledged,
+     *                false to wait for new entries
+     * @param count the maximum number of entries to read from each stream
+     * @param blockMillis how long to wait for new entries
+     * @param noAck if read entries should be treated as acknowledged
+     * @return the entries read
+     */
+    List<Entry> read(String group, String consumer, Collection<String> streams, boolean pending, int count, long blockMillis, boolean noAck);
+
+    /**
+     * Acknowledges the given entries.
+     *
+     * @param stream the stream key
+     * @param group the group name
+     * @param ids the entry ids
+     */
+    void ack(String stream, String group, List<String> ids);
+
+    final class Entry {
+        private final String stream;
+        @Nullable
+        private final String id;
+        @Nullable
+        private final byte[] payload;
+
+        Entry(String stream, @Nullable String id, @Nullable byte[] payload) {
+            this.stream = stream;
+            this.id = id;
+            this.payload = payload;
+        }
+
+        public String getStream() {
+            return this.stream;
+        }
+
+        /**
+         * Gets the id of the entry, or null if it has not been added yet.
+         *
+         * @return the id
+         */
+        @Nullable
+        public String getId() {
+            return this.id;
+        }
+
+        /**
+         * Gets the payload of the entry, or null if the entry was deleted (for
+         * example by trimming) before it was acknowledged.
+         *
+         * @return the payload
+         */
+        @Nullable
+        public byte[] getPayload() {
+            return this.payload;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.redis.plugin;
+
+import me.lucko.helper.internal.LoaderUtils;
+import me.lucko.helper.messaging.Channel;
+import me.lucko.helper.plugin.HelperPlugin;
+import me.lucko.helper.redis.RedisStreamSettings;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HelperRedisStreamMessengerTest {
+    private static final String STREAM = "helper-stream:test";
+    private static final String GROUP = "test-group";
+
+    private final InMemoryStreamClient client = new InMemoryStreamClient();
+    private final List<HelperRedisStreamMessenger> messengers = new ArrayList<>();
+
+    private HelperRedisStreamMessenger createMessenger() {
+        RedisStreamSettings settings = RedisStreamSettings.builder(GROUP)
+                .blockMillis(50)
+                .build();
+        HelperRedisStreamMessenger messenger = new HelperRedisStreamMessenger(this.client, settings);
+        this.messengers.add(messenger);
+        return messenger;
+    }
+
+    private static BlockingQueue<String> subscribe(HelperRedisStreamMessenger messenger) {
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        Channel<String> channel = messenger.getChannel("test", String.class);
+        channel.newAgent((agent, message) -> received.add(message));
+        return received;
+    }
+
+    private void awaitGroup() throws InterruptedException {
+        // channels subscribe asynchronously, creating the group as they do
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!this.client.hasGroup(STREAM, GROUP) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(this.client.hasGroup(STREAM, GROUP));
+    }
+
+    private static void awaitEmpty(InMemoryStreamClient client) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!client.getPending(STREAM, GROUP).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @BeforeAll
+    public static void setupLogger() throws ReflectiveOperationException {
+        // Log writes to the logger of the plugin which loaded helper, so provide one
+        Logger logger = Logger.getLogger("helper-redis-test");
+        HelperPlugin plugin = (HelperPlugin) Proxy.newProxyInstance(
+                HelperPlugin.class.getClassLoader(),
+                new Class<?>[]{HelperPlugin.class},
+                (proxy, method, args) -> method.getName().equals("getLogger") ? logger : null
+        );
+
+        Field field = LoaderUtils.class.getDeclaredField("plugin");
+        field.setAccessible(true);
+        field.set(null, plugin);
+    }
+
+    @BeforeEach
+    public void setup() {
+        this.messengers.clear();
+    }
+
+    @AfterEach
+    public void teardown() {
+        for (HelperRedisStreamMessenger messenger : this.messengers) {
+            messenger.close();
+        }
+    }
+
+    @Test
+    public void testPublishAndGroupRead() throws Exception {
+        HelperRedisStreamMessenger messenger = createMessenger();
+        BlockingQueue<String> received = subscribe(messenger);
+        awaitGroup();
+
+        messenger.getChannel("test", String.class).sendMessage("hello").join();
+
+        assertEquals("hello", received.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, this.client.length(STREAM));
+    }
+
+    @Test
+    public void testMessagesAreAcknowledged() throws Exception {
+        HelperRedisStreamMessenger messenger = createMessenger();
+        BlockingQueue<String> received = subscribe(messenger);
+        awaitGroup();
+
+        Channel<String> channel = messenger.getChannel("test", String.class);
+        for (int i = 0; i < 10; i++) {
+            channel.sendMessage("message-" + i).join();
+        }
+
+        // listeners are called asynchronously, so messages may arrive in any order
+        Set<String> expected = new HashSet<>();
+        Set<String> actual = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            expected.add("message-" + i);
+            actual.add(received.poll(5, TimeUnit.SECONDS));
+        }
+        assertEquals(expected, actual);
+        awaitEmpty(this.client);
+        assertEquals(Collections.emptyList(), this.client.getPending(STREAM, GROUP));
+    }
+
+    @Test
+    public void testPendingEntriesAreReplayed() throws Exception {
+        this.client.createGroup(STREAM, GROUP);
+
+        HelperRedisStreamMessenger publisher = createMessenger();
+        publisher.getChannel("test", String.class).sendMessage("unhandled").join();
+        publisher.close();
+
+        // deliver the entry to the messenger's consumer without acknowledging
+        // it, as if the previous instance had stopped before handling it
+        List<StreamClient.Entry> delivered = this.client.read(GROUP, "helper", Collections.singletonList(STREAM), false, 10, 0, false);
+        assertEquals(1, delivered.size());
+        assertEquals(1, this.client.getPending(STREAM, GROUP).size());
+
+        HelperRedisStreamMessenger messenger = createMessenger();
+        BlockingQueue<String> received = subscribe(messenger);
+
+        assertEquals("unhandled", received.poll(5, TimeUnit.SECONDS));
+        awaitEmpty(this.client);
+        assertEquals(Collections.emptyList(), this.client.getPending(STREAM, GROUP));
+    }
+
+    @Test
+    public void testCloseStopsReading() throws Exception {
+        HelperRedisStreamMessenger messenger = createMessenger();
+        subscribe(messenger);
+
+        messenger.close();
+        assertTrue(messenger.isClosed());
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            assertFalse(thread.getName().startsWith("helper-redis-stream-reader-"), "reader thread still running: " + thread.getName());
+        }
+    }
+}
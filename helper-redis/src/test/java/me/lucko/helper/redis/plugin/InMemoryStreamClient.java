@@ -0,0 +1,204 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.redis.plugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link StreamClient} which keeps streams in memory, following the
+ * semantics of redis consumer groups closely enough to test against.
+ *
+ * <p>Each group tracks the entries it has delivered but which have not been
+ * acknowledged. Consumers are not distinguished, so all pending entries are
+ * returned to any consumer of the group.</p>
+ */
+final class InMemoryStreamClient implements StreamClient {
+    private final Map<String, Stream> streams = new HashMap<>();
+    private long nextId = 1;
+
+    private Stream stream(String key) {
+        return this.streams.computeIfAbsent(key, k -> new Stream());
+    }
+
+    @Override
+    public synchronized void createGroup(String stream, String group) {
+        Stream s = stream(stream);
+        s.groups.computeIfAbsent(group, g -> new Group(s.lastId));
+    }
+
+    @Override
+    public synchronized void add(List<Entry> entries, long maxLength, boolean approximate) {
+        for (Entry entry : entries) {
+            Stream s = stream(entry.getStream());
+            s.lastId = this.nextId++;
+            s.entries.put(s.lastId, entry.getPayload());
+
+            if (maxLength > 0) {
+                while (s.entries.size() > maxLength) {
+                    s.entries.remove(s.entries.keySet().iterator().next());
+                }
+            }
+        }
+        notifyAll();
+    }
+
+    @Override
+    public synchronized List<Entry> read(String group, String consumer, Collection<String> streams, boolean pending, int count, long blockMillis, boolean noAck) {
+        List<Entry> result = pending ? readPending(group, streams, count) : readNew(group, streams, count, noAck);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockMillis);
+        while (!pending && result.isEmpty()) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) {
+                break;
+            }
+            try {
+                wait(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            result = readNew(group, streams, count, noAck);
+        }
+        return result;
+    }
+
+    private List<Entry> readPending(String group, Collection<String> streams, int count) {
+        List<Entry> result = new ArrayList<>();
+        for (String key : streams) {
+            Stream s = stream(key);
+            Group g = group(s, key, group);
+
+            int read = 0;
+            for (Long id : g.pending) {
+                if (read++ >= count) {
+                    break;
+                }
+                // trimmed entries are returned without a payload, like redis does
+                result.add(new Entry(key, id.toString(), s.entries.get(id)));
+            }
+        }
+        return result;
+    }
+
+    private List<Entry> readNew(String group, Collection<String> streams, int count, boolean noAck) {
+        List<Entry> result = new ArrayList<>();
+        for (String key : streams) {
+            Stream s = stream(key);
+            Group g = group(s, key, group);
+
+            int read = 0;
+            for (Map.Entry<Long, byte[]> e : s.entries.entrySet()) {
+                if (read >= count) {
+                    break;
+                }
+                long id = e.getKey();
+                if (id <= g.lastDelivered) {
+                    continue;
+                }
+
+                g.lastDelivered = id;
+                if (!noAck) {
+                    g.pending.add(id);
+                }
+                result.add(new Entry(key, Long.toString(id), e.getValue()));
+                read++;
+            }
+        }
+        return result;
+    }
+
+    private static Group group(Stream s, String key, String group) {
+        Group g = s.groups.get(group);
+        if (g == null) {
+            throw new IllegalStateException("NOGROUP No such consumer group " + group + " for key " + key);
+        }
+        return g;
+    }
+
+    @Override
+    public synchronized void ack(String stream, String group, List<String> ids) {
+        Group g = group(stream(stream), stream, group);
+        for (String id : ids) {
+            g.pending.remove(Long.valueOf(id));
+        }
+    }
+
+    /**
+     * Gets the ids of entries which were delivered to the group, but not
+     * acknowledged.
+     *
+     * @param stream the stream key
+     * @param group the group name
+     * @return the pending entry ids
+     */
+    synchronized List<Long> getPending(String stream, String group) {
+        return new ArrayList<>(group(stream(stream), stream, group).pending);
+    }
+
+    /**
+     * Gets if the group has been created on the stream.
+     *
+     * @param stream the stream key
+     * @param group the group name
+     * @return true if the group exists
+     */
+    synchronized boolean hasGroup(String stream, String group) {
+        Stream s = this.streams.get(stream);
+        return s != null && s.groups.containsKey(group);
+    }
+
+    /**
+     * Gets the number of entries in the stream.
+     *
+     * @param stream the stream key
+     * @return the length of the stream
+     */
+    synchronized int length(String stream) {
+        return stream(stream).entries.size();
+    }
+
+    private static final class Stream {
+        private final LinkedHashMap<Long, byte[]> entries = new LinkedHashMap<>();
+        private final Map<String, Group> groups = new HashMap<>();
+        private long lastId = 0;
+    }
+
+    private static final class Group {
+        private final List<Long> pending = new ArrayList<>();
+        private long lastDelivered;
+
+        private Group(long lastDelivered) {
+            this.lastDelivered = lastDelivered;
+        }
+    }
+}
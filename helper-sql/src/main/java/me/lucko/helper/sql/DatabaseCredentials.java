@@ -25,45 +25,128 @@
 
 package me.lucko.helper.sql;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
 import org.bukkit.configuration.ConfigurationSection;
 
+import java.util.List;
 import java.util.Objects;
 
 import javax.annotation.Nonnull;
 
 /**
- * Represents the credentials for a remote database.
+ * Represents the credentials for a database.
+ *
+ * <p>Embedded dialects ({@link SqlDialect#H2} and {@link SqlDialect#SQLITE})
+ * only use the database name.</p>
+ *
+ * <p>The credentials may also list {@link #getReplicas() read replicas} of the
+ * database, which share its dialect, database name and login.</p>
  */
 public final class DatabaseCredentials {
 
     @Nonnull
     public static DatabaseCredentials of(@Nonnull String address, int port, @Nonnull String database, @Nonnull String username, @Nonnull String password) {
-        return new DatabaseCredentials(address, port, database, username, password);
+        return of(SqlDialect.MYSQL, address, port, database, username, password);
+    }
+
+    @Nonnull
+    public static DatabaseCredentials of(@Nonnull SqlDialect dialect, @Nonnull String address, int port, @Nonnull String database, @Nonnull String username, @Nonnull String password) {
+        return new DatabaseCredentials(dialect, address, port, database, username, password);
     }
 
     @Nonnull
     public static DatabaseCredentials fromConfig(@Nonnull ConfigurationSection config) {
-        return of(
+        SqlDialect dialect = SqlDialect.parse(config.getString("dialect", "mysql"));
+        DatabaseCredentials credentials = of(
+                dialect,
                 config.getString("address", "localhost"),
-                config.getInt("port", 3306),
+                config.getInt("port", dialect.getDefaultPort()),
                 config.getString("database", "minecraft"),
                 config.getString("username", "root"),
                 config.getString("password", "passw0rd")
         );
+
+        // replicas are listed as "address" or "address:port"
+        List<String> replicaAddresses = config.getStringList("replicas");
+        if (replicaAddresses.isEmpty()) {
+            return credentials;
+        }
+
+        ImmutableList.Builder<DatabaseCredentials> replicas = ImmutableList.builder();
+        for (String replicaAddress : replicaAddresses) {
+            String address = replicaAddress.trim();
+            int port = dialect.getDefaultPort();
+
+            int portIndex = address.lastIndexOf(':');
+            if (portIndex != -1 && address.indexOf(':') == portIndex) {
+                try {
+                    port = Integer.parseInt(address.substring(portIndex + 1));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid replica port: " + replicaAddress, e);
+                }
+                address = address.substring(0, portIndex);
+            }
+
+            replicas.add(credentials.withAddress(address, port));
+        }
+        return credentials.withReplicas(replicas.build());
     }
 
+    private final SqlDialect dialect;
     private final String address;
     private final int port;
     private final String database;
     private final String username;
     private final String password;
+    private final List<DatabaseCredentials> replicas;
+
+    private DatabaseCredentials(@Nonnull SqlDialect dialect, @Nonnull String address, int port, @Nonnull String database, @Nonnull String username, @Nonnull String password) {
+        this(dialect, address, port, database, username, password, ImmutableList.of());
+    }
 
-    private DatabaseCredentials(@Nonnull String address, int port, @Nonnull String database, @Nonnull String username, @Nonnull String password) {
+    private DatabaseCredentials(@Nonnull SqlDialect dialect, @Nonnull String address, int port, @Nonnull String database, @Nonnull String username, @Nonnull String password, @Nonnull List<DatabaseCredentials> replicas) {
+        this.dialect = Objects.requireNonNull(dialect);
         this.address = Objects.requireNonNull(address);
         this.port = port;
         this.database = Objects.requireNonNull(database);
         this.username = Objects.requireNonNull(username);
         this.password = Objects.requireNonNull(password);
+        this.replicas = ImmutableList.copyOf(replicas);
+    }
+
+    /**
+     * Returns a copy of these credentials which connects to a different
+     * server, without any replicas.
+     *
+     * @param address the address of the server
+     * @param port the port of the server
+     * @return the new credentials
+     */
+    @Nonnull
+    public DatabaseCredentials withAddress(@Nonnull String address, int port) {
+        return new DatabaseCredentials(this.dialect, address, port, this.database, this.username, this.password);
+    }
+
+    /**
+     * Returns a copy of these credentials with the given read replicas.
+     *
+     * @param replicas the replicas, which must use the same dialect
+     * @return the new credentials
+     */
+    @Nonnull
+    public DatabaseCredentials withReplicas(@Nonnull List<DatabaseCredentials> replicas) {
+        for (DatabaseCredentials replica : replicas) {
+            Preconditions.checkArgument(replica.getDialect() == this.dialect, "replica %s does not use the %s dialect", replica, this.dialect);
+            Preconditions.checkArgument(replica.getReplicas().isEmpty(), "replica %s has replicas of its own", replica);
+        }
+        return new DatabaseCredentials(this.dialect, this.address, this.port, this.database, this.username, this.password, replicas);
+    }
+
+    @Nonnull
+    public SqlDialect getDialect() {
+        return this.dialect;
     }
 
     @Nonnull
@@ -90,38 +173,57 @@ public final class DatabaseCredentials {
         return this.password;
     }
 
+    /**
+     * Gets the read replicas of the database.
+     *
+     * <p>Reads are spread across the replicas, see {@link Sql#getReadConnection()}.
+     * Writes always go to the primary described by these credentials.</p>
+     *
+     * @return the replicas
+     */
+    @Nonnull
+    public List<DatabaseCredentials> getReplicas() {
+        return this.replicas;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (o == this) return true;
         if (!(o instanceof DatabaseCredentials)) return false;
         final DatabaseCredentials other = (DatabaseCredentials) o;
 
-        return this.getAddress().equals(other.getAddress()) &&
+        return this.getDialect() == other.getDialect() &&
+                this.getAddress().equals(other.getAddress()) &&
                 this.getPort() == other.getPort() &&
                 this.getDatabase().equals(other.getDatabase()) &&
                 this.getUsername().equals(other.getUsername()) &&
-                this.getPassword().equals(other.getPassword());
+                this.getPassword().equals(other.getPassword()) &&
+                this.getReplicas().equals(other.getReplicas());
     }
 
     @Override
     public int hashCode() {
         final int PRIME = 59;
         int result = 1;
+        result = result * PRIME + this.getDialect().hashCode();
         result = result * PRIME + this.getPort();
         result = result * PRIME + this.getAddress().hashCode();
         result = result * PRIME + this.getDatabase().hashCode();
         result = result * PRIME + this.getUsername().hashCode();
         result = result * PRIME + this.getPassword().hashCode();
+        result = result * PRIME + this.getReplicas().hashCode();
         return result;
     }
 
     @Override
     public String toString() {
         return "DatabaseCredentials(" +
+                "dialect=" + this.getDialect() + ", " +
                 "address=" + this.getAddress() + ", " +
                 "port=" + this.getPort() + ", " +
                 "database=" + this.getDatabase() + ", " +
                 "username=" + this.getUsername() + ", " +
-                "password=" + this.getPassword() + ")";
+                "password=" + this.getPassword() + ", " +
+                "replicas=" + this.getReplicas() + ")";
     }
 }
@@ -0,0 +1,126 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.sql;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Metrics which record nothing.
+ */
+final class EmptySqlMetrics implements SqlMetrics {
+    static final EmptySqlMetrics INSTANCE = new EmptySqlMetrics();
+
+    @Override
+    public int getQueuedTasks() {
+        return 0;
+    }
+
+    @Override
+    public int getActiveTasks() {
+        return 0;
+    }
+
+    @Override
+    public long getRejectedTasks() {
+        return 0;
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return 0;
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return 0;
+    }
+
+    @Override
+    public int getThreadsAwaitingConnection() {
+        return 0;
+    }
+
+    @Nonnull
+    @Override
+    public Latency getConnectionWait() {
+        return EmptyLatency.INSTANCE;
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, Latency> getStatementLatencies() {
+        return ImmutableMap.of();
+    }
+
+    @Override
+    public long getSlowQueries() {
+        return 0;
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, Route> getRoutes() {
+        return ImmutableMap.of();
+    }
+
+    @Override
+    public long getReadFailovers() {
+        return 0;
+    }
+
+    private static final class EmptyLatency implements Latency {
+        private static final EmptyLatency INSTANCE = new EmptyLatency();
+
+        @Override
+        public long getCount() {
+            return 0;
+        }
+
+        @Override
+        public long getErrors() {
+            return 0;
+        }
+
+        @Override
+        public double getMeanMillis() {
+            return 0;
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return 0;
+        }
+
+        @Override
+        public double getPercentileMillis(double percentile) {
+            return 0;
+        }
+    }
+}
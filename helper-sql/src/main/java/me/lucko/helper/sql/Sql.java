@@ -25,11 +25,16 @@
 
 package me.lucko.helper.sql;
 
+import com.google.common.collect.Maps;
 import com.zaxxer.hikari.HikariDataSource;
 
 import me.lucko.helper.Schedulers;
 import me.lucko.helper.promise.Promise;
 import me.lucko.helper.sql.batch.BatchBuilder;
+import me.lucko.helper.sql.batch.BatchResult;
+import me.lucko.helper.sql.batch.ColumnBatchBuilder;
+import me.lucko.helper.sql.batch.SimpleBatchBuilder;
+import me.lucko.helper.sql.batch.SimpleColumnBatchBuilder;
 import me.lucko.helper.terminable.Terminable;
 
 import org.intellij.lang.annotations.Language;
@@ -42,7 +47,16 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
 
 import javax.annotation.Nonnull;
 
@@ -59,6 +73,33 @@ public interface Sql extends Terminable {
     @Nonnull
     HikariDataSource getHikari();
 
+    /**
+     * Gets the dialect of the database.
+     *
+     * <p>Defaults to {@link SqlDialect#MYSQL}.</p>
+     *
+     * @return the dialect
+     */
+    @Nonnull
+    default SqlDialect getDialect() {
+        return SqlDialect.MYSQL;
+    }
+
+    /**
+     * Creates a {@link SqlTemplate}, translating the statement into this
+     * database's {@link #getDialect() dialect}.
+     *
+     * @param statement the statement
+     * @param placeholders the placeholders to replace
+     * @return a template
+     * @see SqlTemplate#of(String, Map)
+     */
+    @Nonnull
+    default SqlTemplate template(@Language("MySQL") @Nonnull String statement, @Nonnull Map<String, String> placeholders) {
+        SqlDialect dialect = getDialect();
+        return SqlTemplate.of(dialect.translate(statement), Maps.transformValues(placeholders, dialect::translate));
+    }
+
     /**
      * Gets a connection from the datasource.
      *
@@ -69,6 +110,24 @@ public interface Sql extends Terminable {
     @Nonnull
     Connection getConnection() throws SQLException;
 
+    /**
+     * Gets a connection for reading from the datasource.
+     *
+     * <p>If the credentials list {@link DatabaseCredentials#getReplicas() read replicas},
+     * the connection is taken from a replica which is within the allowed
+     * replication lag. If none are available, the connection is taken from the
+     * primary. Reads from a replica may not yet see recent writes, so reads
+     * which must observe them should use {@link #getConnection()}.</p>
+     *
+     * <p>The connection should be returned once it has been used.</p>
+     *
+     * @return a connection
+     */
+    @Nonnull
+    default Connection getReadConnection() throws SQLException {
+        return getConnection();
+    }
+
     /**
      * Gets a {@link SqlStream} instance for this {@link Sql}.
      *
@@ -77,6 +136,57 @@ public interface Sql extends Terminable {
     @Nonnull
     SqlStream stream();
 
+    /**
+     * Gets the executor used to run asynchronous operations on this datasource.
+     *
+     * @return the executor
+     */
+    @Nonnull
+    default Executor getExecutor() {
+        return Schedulers.async();
+    }
+
+    /**
+     * Calls the callable using this datasource's {@link #getExecutor() executor}.
+     *
+     * <p>If the executor is saturated, the returned promise is completed
+     * exceptionally with a {@link RejectedExecutionException}.</p>
+     *
+     * @param callable the callable
+     * @param <T> the result type
+     * @return a promise of the result
+     */
+    @Nonnull
+    default <T> Promise<T> callAsync(@Nonnull Callable<T> callable) {
+        Objects.requireNonNull(callable, "callable");
+        Promise<T> promise = Promise.empty();
+        try {
+            getExecutor().execute(() -> {
+                try {
+                    promise.supply(callable.call());
+                } catch (Throwable t) {
+                    promise.supplyException(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            promise.supplyException(e);
+        }
+        return promise;
+    }
+
+    /**
+     * Gets metrics for this datasource.
+     *
+     * <p>Implementations which don't record metrics return
+     * {@link SqlMetrics#empty()}.</p>
+     *
+     * @return the metrics
+     */
+    @Nonnull
+    default SqlMetrics getMetrics() {
+        return SqlMetrics.empty();
+    }
+
     /**
      * Executes a database statement with no preparation.
      *
@@ -88,7 +198,10 @@ public interface Sql extends Terminable {
      */
     @Nonnull
     default Promise<Void> executeAsync(@Language("MySQL") @Nonnull String statement) {
-        return Schedulers.async().run(() -> this.execute(statement));
+        return callAsync(() -> {
+            this.execute(statement);
+            return null;
+        });
     }
 
     /**
@@ -115,7 +228,10 @@ public interface Sql extends Terminable {
      */
     @Nonnull
     default Promise<Void> executeAsync(@Language("MySQL") @Nonnull String statement, @Nonnull SqlConsumer<PreparedStatement> preparer) {
-        return Schedulers.async().run(() -> this.execute(statement, preparer));
+        return callAsync(() -> {
+            this.execute(statement, preparer);
+            return null;
+        });
     }
 
     /**
@@ -145,7 +261,7 @@ public interface Sql extends Terminable {
      * @see #query(String, SqlFunction) to perform this query synchronously
      */
     default <R> Promise<Optional<R>> queryAsync(@Language("MySQL") @Nonnull String query, @Nonnull SqlFunction<ResultSet, R> handler) {
-        return Schedulers.async().supply(() -> this.query(query, handler));
+        return callAsync(() -> this.query(query, handler));
     }
 
     /**
@@ -184,7 +300,7 @@ public interface Sql extends Terminable {
      * @see #query(String, SqlFunction) to perform this query synchronously
      */
     default <R> Promise<Optional<R>> queryAsync(@Language("MySQL") @Nonnull String query, @Nonnull SqlConsumer<PreparedStatement> preparer, @Nonnull SqlFunction<ResultSet, R> handler) {
-        return Schedulers.async().supply(() -> this.query(query, preparer, handler));
+        return callAsync(() -> this.query(query, preparer, handler));
     }
     /**
      * Executes a database query with preparation.
@@ -204,6 +320,228 @@ public interface Sql extends Terminable {
      */
     <R> Optional<R> query(@Language("MySQL") @Nonnull String query, @Nonnull SqlConsumer<PreparedStatement> preparer, @Nonnull SqlFunction<ResultSet, R> handler);
 
+    /**
+     * Executes a database query with no preparation, using a
+     * {@link #getReadConnection() read connection}.
+     *
+     * <p>This will be executed on an asynchronous thread.</p>
+     *
+     * @param query the query to be executed
+     * @param handler the handler for the data returned by the query
+     * @param <R> the returned type
+     * @return a Promise of an asynchronous database query
+     * @see #query(String, SqlFunction)
+     */
+    default <R> Promise<Optional<R>> queryReadAsync(@Language("MySQL") @Nonnull String query, @Nonnull SqlFunction<ResultSet, R> handler) {
+        return callAsync(() -> this.queryRead(query, handler));
+    }
+
+    /**
+     * Executes a database query with no preparation, using a
+     * {@link #getReadConnection() read connection}.
+     *
+     * <p>This will be executed on whichever thread it's called from.</p>
+     *
+     * @param query the query to be executed
+     * @param handler the handler for the data returned by the query
+     * @param <R> the returned type
+     * @return the results of the database query
+     * @see #query(String, SqlFunction)
+     */
+    default <R> Optional<R> queryRead(@Language("MySQL") @Nonnull String query, @Nonnull SqlFunction<ResultSet, R> handler) {
+        return this.queryRead(query, stmt -> {}, handler);
+    }
+
+    /**
+     * Executes a database query with preparation, using a
+     * {@link #getReadConnection() read connection}.
+     *
+     * <p>This will be executed on an asynchronous thread.</p>
+     *
+     * @param query the query to be executed
+     * @param preparer the preparation used for this statement
+     * @param handler the handler for the data returned by the query
+     * @param <R> the returned type
+     * @return a Promise of an asynchronous database query
+     * @see #query(String, SqlConsumer, SqlFunction)
+     */
+    default <R> Promise<Optional<R>> queryReadAsync(@Language("MySQL") @Nonnull String query, @Nonnull SqlConsumer<PreparedStatement> preparer, @Nonnull SqlFunction<ResultSet, R> handler) {
+        return callAsync(() -> this.queryRead(query, preparer, handler));
+    }
+
+    /**
+     * Executes a database query with preparation, using a
+     * {@link #getReadConnection() read connection}.
+     *
+     * <p>This will be executed on whichever thread it's called from.</p>
+     *
+     * @param query the query to be executed
+     * @param preparer the preparation used for this statement
+     * @param handler the handler for the data returned by the query
+     * @param <R> the returned type
+     * @return the results of the database query
+     * @see #query(String, SqlConsumer, SqlFunction)
+     */
+    default <R> Optional<R> queryRead(@Language("MySQL") @Nonnull String query, @Nonnull SqlConsumer<PreparedStatement> preparer, @Nonnull SqlFunction<ResultSet, R> handler) {
+        return this.query(query, preparer, handler);
+    }
+
+    /**
+     * Executes a templated database statement.
+     *
+     * <p>This will be executed on an asynchronous thread.</p>
+     *
+     * @param template the template to be executed
+     * @param values the parameter values, in the order of {@link SqlTemplate#getParameterNames()}
+     * @return a Promise of an asynchronous database execution
+     * @see #execute(SqlTemplate, Object...) to perform this action synchronously
+     */
+    @Nonnull
+    default Promise<Void> executeAsync(@Nonnull SqlTemplate template, @Nonnull Object... values) {
+        return callAsync(() -> {
+            this.execute(template, values);
+            return null;
+        });
+    }
+
+    /**
+     * Executes a templated database statement.
+     *
+     * <p>This will be executed on whichever thread it's called from.</p>
+     *
+     * @param template the template to be executed
+     * @param values the parameter values, in the order of {@link SqlTemplate#getParameterNames()}
+     * @see #executeAsync(SqlTemplate, Object...) to perform this action asynchronously
+     */
+    default void execute(@Nonnull SqlTemplate template, @Nonnull Object... values) {
+        this.execute(template.getStatement(), stmt -> template.bind(stmt, values));
+    }
+
+    /**
+     * Executes a templated database query.
+     *
+     * <p>This will be executed on an asynchronous thread.</p>
+     *
+     * @param template the template to be executed
+     * @param handler the handler for the data returned by the query
+     * @param values the parameter values, in the order of {@link SqlTemplate#getParameterNames()}
+     * @param <R> the returned type
+     * @return a Promise of an asynchronous database query
+     * @see #query(SqlTemplate, SqlFunction, Object...) to perform this query synchronously
+     */
+    default <R> Promise<Optional<R>> queryAsync(@Nonnull SqlTemplate template, @Nonnull SqlFunction<ResultSet, R> handler, @Nonnull Object... values) {
+        return callAsync(() -> this.query(template, handler, values));
+    }
+
+    /**
+     * Executes a templated database query.
+     *
+     * <p>This will be executed on whichever thread it's called from.</p>
+     *
+     * @param template the template to be executed
+     * @param handler the handler for the data returned by the query
+     * @param values the parameter values, in the order of {@link SqlTemplate#getParameterNames()}
+     * @param <R> the returned type
+     * @return the results of the database query
+     * @see #queryAsync(SqlTemplate, SqlFunction, Object...) to perform this query asynchronously
+     */
+    default <R> Optional<R> query(@Nonnull SqlTemplate template, @Nonnull SqlFunction<ResultSet, R> handler, @Nonnull Object... values) {
+        return this.query(template.getStatement(), stmt -> template.bind(stmt, values), handler);
+    }
+
+    /**
+     * Executes a templated database query, using a
+     * {@link #getReadConnection() read connection}.
+     *
+     * <p>This will be executed on an asynchronous thread.</p>
+     *
+     * @param template the template to be executed
+     * @param handler the handler for the data returned by the query
+     * @param values the parameter values, in the order of {@link SqlTemplate#getParameterNames()}
+     * @param <R> the returned type
+     * @return a Promise of an asynchronous database query
+     * @see #query(SqlTemplate, SqlFunction, Object...)
+     */
+    default <R> Promise<Optional<R>> queryReadAsync(@Nonnull SqlTemplate template, @Nonnull SqlFunction<ResultSet, R> handler, @Nonnull Object... values) {
+        return callAsync(() -> this.queryRead(template, handler, values));
+    }
+
+    /**
+     * Executes a templated database query, using a
+     * {@link #getReadConnection() read connection}.
+     *
+     * <p>This will be executed on whichever thread it's called from.</p>
+     *
+     * @param template the template to be executed
+     * @param handler the handler for the data returned by the query
+     * @param values the parameter values, in the order of {@link SqlTemplate#getParameterNames()}
+     * @param <R> the returned type
+     * @return the results of the database query
+     * @see #query(SqlTemplate, SqlFunction, Object...)
+     */
+    default <R> Optional<R> queryRead(@Nonnull SqlTemplate template, @Nonnull SqlFunction<ResultSet, R> handler, @Nonnull Object... values) {
+        return this.queryRead(template.getStatement(), stmt -> template.bind(stmt, values), handler);
+    }
+
+    /**
+     * Executes a database query, and returns a stream which reads the results
+     * lazily.
+     *
+     * <p>This will be executed on whichever thread it's called from, and rows
+     * are read as the stream is consumed.</p>
+     *
+     * <p>The results are read through a forward-only cursor, fetching
+     * {@code fetchSize} rows at a time, so large results can be processed
+     * without holding them all in memory.</p>
+     *
+     * <p>The stream holds a connection until it is closed, so it should
+     * always be used in a try-with-resources block. Errors whilst reading
+     * rows are thrown as {@link UncheckedSqlException}s.</p>
+     *
+     * <p>The default implementation reads every row before returning, so
+     * doesn't hold a connection, but does hold all of the results in
+     * memory.</p>
+     *
+     * @param query the query to be executed
+     * @param preparer the preparation used for this statement
+     * @param mapper maps the current row of the result set to an object. Must not return null
+     * @param fetchSize the number of rows to fetch at a time
+     * @param <R> the row type
+     * @return a stream of the mapped rows
+     * @throws SQLException if the query could not be executed
+     */
+    @Nonnull
+    default <R> Stream<R> queryStream(@Language("MySQL") @Nonnull String query, @Nonnull SqlConsumer<PreparedStatement> preparer, @Nonnull SqlFunction<ResultSet, R> mapper, int fetchSize) throws SQLException {
+        List<R> rows = new ArrayList<>();
+        try (Connection c = this.getConnection(); PreparedStatement s = c.prepareStatement(query)) {
+            s.setFetchSize(fetchSize);
+            preparer.accept(s);
+            try (ResultSet r = s.executeQuery()) {
+                while (r.next()) {
+                    rows.add(mapper.apply(r));
+                }
+            }
+        }
+        return rows.stream();
+    }
+
+    /**
+     * Executes a database query with no preparation, and returns a stream
+     * which reads the results lazily.
+     *
+     * @param query the query to be executed
+     * @param mapper maps the current row of the result set to an object. Must not return null
+     * @param fetchSize the number of rows to fetch at a time
+     * @param <R> the row type
+     * @return a stream of the mapped rows
+     * @throws SQLException if the query could not be executed
+     * @see #queryStream(String, SqlConsumer, SqlFunction, int)
+     */
+    @Nonnull
+    default <R> Stream<R> queryStream(@Language("MySQL") @Nonnull String query, @Nonnull SqlFunction<ResultSet, R> mapper, int fetchSize) throws SQLException {
+        return this.queryStream(query, stmt -> {}, mapper, fetchSize);
+    }
+
     /**
      * Executes a batched database execution.
      *
@@ -219,7 +557,10 @@ public interface Sql extends Terminable {
      * @see #executeBatch(BatchBuilder) to perform this action synchronously
      */
     default Promise<Void> executeBatchAsync(@Nonnull BatchBuilder builder) {
-        return Schedulers.async().run(() -> this.executeBatch(builder));
+        return callAsync(() -> {
+            this.executeBatch(builder);
+            return null;
+        });
     }
 
     /**
@@ -244,4 +585,97 @@ public interface Sql extends Terminable {
      * @return a BatchBuilder
      */
     BatchBuilder batch(@Language("MySQL") @Nonnull String statement);
+
+    /**
+     * Gets a {@link BatchBuilder} for the provided template.
+     *
+     * <p>Rows can be added using {@link BatchBuilder#values(Object...)}.</p>
+     *
+     * @param template the template to prepare for batching.
+     * @return a BatchBuilder
+     */
+    default BatchBuilder batch(@Nonnull SqlTemplate template) {
+        return new SimpleBatchBuilder(this, template);
+    }
+
+    /**
+     * Executes a column batch.
+     *
+     * <p>This will be executed on an asynchronous thread.</p>
+     *
+     * @param builder the builder to be used.
+     * @return a Promise of an asynchronous batched database execution
+     * @see #executeBatch(ColumnBatchBuilder) to perform this action synchronously
+     */
+    @Nonnull
+    default Promise<BatchResult> executeBatchAsync(@Nonnull ColumnBatchBuilder builder) {
+        return callAsync(() -> this.executeBatch(builder));
+    }
+
+    /**
+     * Executes a column batch.
+     *
+     * <p>This will be executed on whichever thread it's called from.</p>
+     *
+     * <p>The rows are sent in chunks within a single transaction, which is
+     * retried if it fails because of a deadlock.</p>
+     *
+     * <p>The default implementation only recognises deadlocks reported as a
+     * {@link SQLTransactionRollbackException}.</p>
+     *
+     * @param builder the builder to be used.
+     * @return the result
+     * @throws SQLException if the batch could not be executed. The transaction is rolled back
+     * @see #executeBatchAsync(ColumnBatchBuilder) to perform this action asynchronously
+     */
+    @Nonnull
+    default BatchResult executeBatch(@Nonnull ColumnBatchBuilder builder) throws SQLException {
+        int size = builder.size();
+        int chunkSize = builder.getChunkSize();
+        long[] chunkTimes = new long[(size + chunkSize - 1) / chunkSize];
+        if (size == 0) {
+            return new BatchResult(0, 0, chunkTimes);
+        }
+
+        try (Connection c = this.getConnection()) {
+            boolean autoCommit = c.getAutoCommit();
+            c.setAutoCommit(false);
+            try {
+                for (int attempt = 1; ; attempt++) {
+                    try (PreparedStatement s = c.prepareStatement(builder.getTemplate().getStatement())) {
+                        for (int chunk = 0; chunk < chunkTimes.length; chunk++) {
+                            long chunkStart = System.nanoTime();
+                            int end = Math.min((chunk + 1) * chunkSize, size);
+                            for (int row = chunk * chunkSize; row < end; row++) {
+                                builder.bind(s, row);
+                                s.addBatch();
+                            }
+                            s.executeBatch();
+                            chunkTimes[chunk] = System.nanoTime() - chunkStart;
+                        }
+                        c.commit();
+                        return new BatchResult(size, attempt, chunkTimes);
+                    } catch (SQLException e) {
+                        c.rollback();
+                        if (attempt > builder.getRetries() || !(e instanceof SQLTransactionRollbackException)) {
+                            throw e;
+                        }
+                    }
+                }
+            } finally {
+                c.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * Gets a {@link ColumnBatchBuilder} for the provided template.
+     *
+     * @param template the template to prepare for batching.
+     * @return a ColumnBatchBuilder
+     */
+    @Nonnull
+    default ColumnBatchBuilder columnBatch(@Nonnull SqlTemplate template) {
+        return new SimpleColumnBatchBuilder(this, template);
+    }
 }
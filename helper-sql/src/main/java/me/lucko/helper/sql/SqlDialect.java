@@ -0,0 +1,526 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.sql;
+
+import com.google.common.collect.ImmutableMap;
+
+import me.lucko.helper.maven.LibraryLoader;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The database backends supported by helper-sql.
+ *
+ * <p>Each dialect provides the driver, connection url and tuned driver
+ * properties, as well as the few pieces of SQL which differ between them.
+ * Statements in helper are otherwise written in a common subset, using
+ * MySQL style {@code `backtick`} quoting which is translated where needed.</p>
+ */
+public enum SqlDialect {
+
+    MYSQL("com.mysql.cj.jdbc.Driver", 3306, null) {
+        @Nonnull
+        @Override
+        public String getJdbcUrl(@Nonnull DatabaseCredentials credentials) {
+            return "jdbc:mysql://" + credentials.getAddress() + ":" + credentials.getPort() + "/" + credentials.getDatabase();
+        }
+
+        @Nonnull
+        @Override
+        public Map<String, String> getDataSourceProperties() {
+            return ImmutableMap.<String, String>builder()
+                    // Ensure we use utf8 encoding
+                    .put("useUnicode", "true")
+                    .put("characterEncoding", "utf8")
+
+                    // https://github.com/brettwooldridge/HikariCP/wiki/MySQL-Configuration
+                    .put("cachePrepStmts", "true")
+                    .put("prepStmtCacheSize", "250")
+                    .put("prepStmtCacheSqlLimit", "2048")
+                    .put("useServerPrepStmts", "true")
+                    .put("useLocalSessionState", "true")
+                    .put("rewriteBatchedStatements", "true")
+                    .put("cacheResultSetMetadata", "true")
+                    .put("cacheServerConfiguration", "true")
+                    .put("elideSetAutoCommits", "true")
+                    .put("maintainTimeStats", "false")
+                    .put("alwaysSendSetIsolation", "false")
+                    .put("cacheCallableStmts", "true")
+
+                    // Fetch results in batches when a fetch size is set, see Sql#queryStream
+                    .put("useCursorFetch", "true")
+
+                    // Set the driver level TCP socket timeout
+                    // See: https://github.com/brettwooldridge/HikariCP/wiki/Rapid-Recovery
+                    .put("socketTimeout", String.valueOf(TimeUnit.SECONDS.toMillis(30)))
+                    .build();
+        }
+
+        @Override
+        public long getReplicationLag(@Nonnull Connection connection) throws SQLException {
+            try {
+                return readSecondsBehind(connection, "SHOW REPLICA STATUS", "Seconds_Behind_Source");
+            } catch (SQLException e) {
+                // servers before 8.0.22
+                return readSecondsBehind(connection, "SHOW SLAVE STATUS", "Seconds_Behind_Master");
+            }
+        }
+    },
+
+    MARIADB("org.mariadb.jdbc.Driver", 3306, "org.mariadb.jdbc:mariadb-java-client:3.1.4") {
+        @Nonnull
+        @Override
+        public String getJdbcUrl(@Nonnull DatabaseCredentials credentials) {
+            return "jdbc:mariadb://" + credentials.getAddress() + ":" + credentials.getPort() + "/" + credentials.getDatabase();
+        }
+
+        @Nonnull
+        @Override
+        public Map<String, String> getDataSourceProperties() {
+            return ImmutableMap.<String, String>builder()
+                    // server side prepared statements, cached per connection
+                    .put("useServerPrepStmts", "true")
+                    .put("cachePrepStmts", "true")
+                    .put("prepStmtCacheSize", "250")
+
+                    // send batches using the bulk protocol
+                    .put("useBulkStmts", "true")
+
+                    .put("socketTimeout", String.valueOf(TimeUnit.SECONDS.toMillis(30)))
+                    .build();
+        }
+
+        @Override
+        public long getReplicationLag(@Nonnull Connection connection) throws SQLException {
+            return readSecondsBehind(connection, "SHOW SLAVE STATUS", "Seconds_Behind_Master");
+        }
+    },
+
+    POSTGRESQL("org.postgresql.Driver", 5432, "org.postgresql:postgresql:42.6.0") {
+        @Nonnull
+        @Override
+        public String getJdbcUrl(@Nonnull DatabaseCredentials credentials) {
+            return "jdbc:postgresql://" + credentials.getAddress() + ":" + credentials.getPort() + "/" + credentials.getDatabase();
+        }
+
+        @Nonnull
+        @Override
+        public Map<String, String> getDataSourceProperties() {
+            return ImmutableMap.<String, String>builder()
+                    // rewrite batched inserts into multi-row inserts
+                    .put("reWriteBatchedInserts", "true")
+
+                    // switch to server side prepared statements sooner, and cache more of them
+                    .put("prepareThreshold", "3")
+                    .put("preparedStatementCacheQueries", "256")
+
+                    .put("tcpKeepAlive", "true")
+                    // in seconds, unlike mysql
+                    .put("socketTimeout", "30")
+                    .build();
+        }
+
+        @Nonnull
+        @Override
+        public String translate(@Nonnull String statement) {
+            return statement.replace('`', '"');
+        }
+
+        @Nonnull
+        @Override
+        public String onConflictUpdate(@Nonnull String keyColumn) {
+            return "ON CONFLICT (" + keyColumn + ") DO UPDATE SET";
+        }
+
+        @Nonnull
+        @Override
+        public String excluded(@Nonnull String column) {
+            return "EXCLUDED." + column;
+        }
+
+        @Nonnull
+        @Override
+        public String getBinaryType(int length) {
+            return "BYTEA";
+        }
+
+        @Override
+        public boolean supportsUnsigned() {
+            return false;
+        }
+
+        @Nonnull
+        @Override
+        public String caseInsensitive(@Nonnull String column) {
+            return "LOWER(" + column + ")";
+        }
+
+        @Nonnull
+        @Override
+        public String unhex(@Nonnull String expression) {
+            return "DECODE(" + expression + ", 'hex')";
+        }
+
+        @Override
+        public boolean isCursorFetchTransactional() {
+            // the driver only uses a cursor when autocommit is disabled
+            return true;
+        }
+
+        @Override
+        public long getReplicationLag(@Nonnull Connection connection) throws SQLException {
+            // the last replay time only advances with new writes, so a replica which
+            // has replayed everything it received is treated as up to date
+            String query = "SELECT CASE" +
+                    " WHEN NOT pg_is_in_recovery() THEN 0" +
+                    " WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0" +
+                    " ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), -1) END";
+
+            try (Statement s = connection.createStatement(); ResultSet rs = s.executeQuery(query)) {
+                if (!rs.next()) {
+                    return -1;
+                }
+                double lag = rs.getDouble(1);
+                return lag < 0 ? -1 : (long) Math.ceil(lag);
+            }
+        }
+    },
+
+    /**
+     * An embedded H2 database, run in MySQL compatibility mode.
+     *
+     * <p>The credentials' database is used as the H2 database name, for example
+     * {@code ./data/helper} for a file, or {@code mem:helper} for an in-memory
+     * database. The address and port are ignored.</p>
+     */
+    H2("org.h2.Driver", 0, "com.h2database:h2:2.1.214") {
+        @Nonnull
+        @Override
+        public String getJdbcUrl(@Nonnull DatabaseCredentials credentials) {
+            String url = "jdbc:h2:" + credentials.getDatabase() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=VALUE";
+            if (credentials.getDatabase().startsWith("mem:")) {
+                // keep the database for as long as the pool is open, not just a single connection
+                url += ";DB_CLOSE_DELAY=-1";
+            }
+            return url;
+        }
+
+        @Nonnull
+        @Override
+        public String caseInsensitive(@Nonnull String column) {
+            return "LOWER(" + column + ")";
+        }
+
+        @Override
+        public boolean supportsUnsigned() {
+            return false;
+        }
+
+        @Override
+        public boolean supportsUnhex() {
+            // HEXTORAW reads 4 hex digits per character, rather than 2 per byte
+            return false;
+        }
+
+        @Nonnull
+        @Override
+        public String unhex(@Nonnull String expression) {
+            throw new UnsupportedOperationException("H2 cannot convert hexadecimal strings to binary");
+        }
+    },
+
+    /**
+     * An embedded SQLite database.
+     *
+     * <p>The credentials' database is used as the path to the database file.
+     * The address and port are ignored.</p>
+     */
+    SQLITE("org.sqlite.JDBC", 0, "org.xerial:sqlite-jdbc:3.42.0.0") {
+        @Nonnull
+        @Override
+        public String getJdbcUrl(@Nonnull DatabaseCredentials credentials) {
+            return "jdbc:sqlite:" + credentials.getDatabase();
+        }
+
+        @Nonnull
+        @Override
+        public Map<String, String> getDataSourceProperties() {
+            return ImmutableMap.<String, String>builder()
+                    // let readers continue whilst a write is in progress
+                    .put("journal_mode", "WAL")
+                    .put("synchronous", "NORMAL")
+                    // wait for the write lock instead of failing straight away
+                    .put("busy_timeout", String.valueOf(TimeUnit.SECONDS.toMillis(10)))
+                    .build();
+        }
+
+        @Nonnull
+        @Override
+        public String onConflictUpdate(@Nonnull String keyColumn) {
+            return "ON CONFLICT (" + keyColumn + ") DO UPDATE SET";
+        }
+
+        @Nonnull
+        @Override
+        public String excluded(@Nonnull String column) {
+            return "excluded." + column;
+        }
+
+        @Nonnull
+        @Override
+        public String getBinaryType(int length) {
+            return "BLOB";
+        }
+
+        @Nonnull
+        @Override
+        public String caseInsensitive(@Nonnull String column) {
+            return "LOWER(" + column + ")";
+        }
+    };
+
+    private static final String MAVEN_CENTRAL = "https://repo1.maven.org/maven2";
+
+    /**
+     * Gets a dialect by name, ignoring case.
+     *
+     * @param name the name
+     * @return the dialect
+     * @throws IllegalArgumentException if there is no dialect with the name
+     */
+    @Nonnull
+    public static SqlDialect parse(@Nonnull String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown sql dialect: " + name);
+        }
+    }
+
+    private final String driverClassName;
+    private final int defaultPort;
+    // maven coordinates of the driver, if it isn't shaded
+    @Nullable
+    private final String driverArtifact;
+
+    SqlDialect(String driverClassName, int defaultPort, @Nullable String driverArtifact) {
+        this.driverClassName = driverClassName;
+        this.defaultPort = defaultPort;
+        this.driverArtifact = driverArtifact;
+    }
+
+    /**
+     * Gets the class name of the JDBC driver.
+     *
+     * @return the driver class name
+     */
+    @Nonnull
+    public String getDriverClassName() {
+        return this.driverClassName;
+    }
+
+    /**
+     * Gets the default port for the database server, or 0 if the database is embedded.
+     *
+     * @return the default port
+     */
+    public int getDefaultPort() {
+        return this.defaultPort;
+    }
+
+    /**
+     * Gets the library containing the driver, if it isn't included with helper-sql.
+     *
+     * @return the driver library, or null
+     */
+    @Nullable
+    public LibraryLoader.Dependency getDriverDependency() {
+        if (this.driverArtifact == null) {
+            return null;
+        }
+        String[] parts = this.driverArtifact.split(":");
+        return new LibraryLoader.Dependency(parts[0], parts[1], parts[2], MAVEN_CENTRAL);
+    }
+
+    /**
+     * Gets the JDBC url for the given credentials.
+     *
+     * @param credentials the credentials
+     * @return the url
+     */
+    @Nonnull
+    public abstract String getJdbcUrl(@Nonnull DatabaseCredentials credentials);
+
+    /**
+     * Gets the properties passed to the driver.
+     *
+     * @return the driver properties
+     */
+    @Nonnull
+    public Map<String, String> getDataSourceProperties() {
+        return ImmutableMap.of();
+    }
+
+    /**
+     * Translates a statement written with {@code `backtick`} quoted identifiers
+     * into this dialect.
+     *
+     * @param statement the statement
+     * @return the translated statement
+     */
+    @Nonnull
+    public String translate(@Nonnull String statement) {
+        return statement;
+    }
+
+    /**
+     * Gets the clause which turns an insert into an upsert, followed by the
+     * assignments to make when a row with the same key already exists.
+     *
+     * <p>Within the assignments, the existing row is referred to by the table
+     * name, and the new row using {@link #excluded(String)}.</p>
+     *
+     * @param keyColumn the unique key column
+     * @return the clause
+     */
+    @Nonnull
+    public String onConflictUpdate(@Nonnull String keyColumn) {
+        return "ON DUPLICATE KEY UPDATE";
+    }
+
+    /**
+     * Refers to a column of the row which would have been inserted, within
+     * the assignments following {@link #onConflictUpdate(String)}.
+     *
+     * @param column the column
+     * @return the expression
+     */
+    @Nonnull
+    public String excluded(@Nonnull String column) {
+        return "VALUES(" + column + ")";
+    }
+
+    /**
+     * Gets the column type for binary data of a fixed length.
+     *
+     * @param length the length in bytes
+     * @return the column type
+     */
+    @Nonnull
+    public String getBinaryType(int length) {
+        return "BINARY(" + length + ")";
+    }
+
+    /**
+     * Gets if numeric column types can be declared {@code UNSIGNED}.
+     *
+     * @return if unsigned types are supported
+     */
+    public boolean supportsUnsigned() {
+        return true;
+    }
+
+    /**
+     * Wraps a string column so it can be compared to a lower case value
+     * regardless of the case stored.
+     *
+     * <p>MySQL compares case insensitively by default, so the column is
+     * returned as-is and can still use an index.</p>
+     *
+     * @param column the column
+     * @return the expression
+     */
+    @Nonnull
+    public String caseInsensitive(@Nonnull String column) {
+        return column;
+    }
+
+    /**
+     * Gets if hexadecimal strings can be converted to binary using
+     * {@link #unhex(String)}.
+     *
+     * @return if unhex is supported
+     */
+    public boolean supportsUnhex() {
+        return true;
+    }
+
+    /**
+     * Converts a hexadecimal string expression to binary.
+     *
+     * @param expression the expression
+     * @return the converted expression
+     * @throws UnsupportedOperationException if the dialect doesn't {@link #supportsUnhex() support} it
+     */
+    @Nonnull
+    public String unhex(@Nonnull String expression) {
+        return "UNHEX(" + expression + ")";
+    }
+
+    /**
+     * Gets if results are only read through a cursor inside a transaction.
+     *
+     * @return if cursor reads require autocommit to be disabled
+     */
+    public boolean isCursorFetchTransactional() {
+        return false;
+    }
+
+    /**
+     * Gets how far the database behind the given connection lags behind its
+     * primary, for use with read replicas.
+     *
+     * <p>Dialects without replication report no lag.</p>
+     *
+     * @param connection the connection to a replica
+     * @return the lag in seconds, 0 if the database is not a replica, or -1 if
+     *         replication has stopped
+     * @throws SQLException if the replication status could not be read
+     */
+    public long getReplicationLag(@Nonnull Connection connection) throws SQLException {
+        return 0;
+    }
+
+    private static long readSecondsBehind(Connection connection, String query, String column) throws SQLException {
+        try (Statement s = connection.createStatement(); ResultSet rs = s.executeQuery(query)) {
+            if (!rs.next()) {
+                // not configured as a replica
+                return 0;
+            }
+            long lag = rs.getLong(column);
+            return rs.wasNull() ? -1 : lag;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.sql;
+
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Metrics for a {@link Sql} instance.
+ */
+public interface SqlMetrics {
+
+    /**
+     * Gets a {@link SqlMetrics} instance which records nothing.
+     *
+     * @return empty metrics
+     */
+    @Nonnull
+    static SqlMetrics empty() {
+        return EmptySqlMetrics.INSTANCE;
+    }
+
+    /**
+     * Gets the number of tasks waiting to be run by the executor.
+     *
+     * @return the number of queued tasks
+     */
+    int getQueuedTasks();
+
+    /**
+     * Gets the number of tasks currently being run by the executor.
+     *
+     * @return the number of active tasks
+     */
+    int getActiveTasks();
+
+    /**
+     * Gets the number of tasks which were rejected because the executor's
+     * queue was full.
+     *
+     * @return the number of rejected tasks
+     */
+    long getRejectedTasks();
+
+    /**
+     * Gets the number of connections currently in use.
+     *
+     * @return the number of active connections
+     */
+    int getActiveConnections();
+
+    /**
+     * Gets the number of idle connections in the pool.
+     *
+     * @return the number of idle connections
+     */
+    int getIdleConnections();
+
+    /**
+     * Gets the number of threads currently waiting for a connection.
+     *
+     * @return the number of waiting threads
+     */
+    int getThreadsAwaitingConnection();
+
+    /**
+     * Gets the time taken to obtain connections from the pool.
+     *
+     * @return the connection wait latency
+     */
+    @Nonnull
+    Latency getConnectionWait();
+
+    /**
+     * Gets the latency of statements run through {@link Sql#execute(String, be.bendem.sqlstreams.util.SqlConsumer)},
+     * {@link Sql#query(String, be.bendem.sqlstreams.util.SqlConsumer, be.bendem.sqlstreams.util.SqlFunction)}
+     * and {@link Sql#executeBatch(me.lucko.helper.sql.batch.BatchBuilder)}, keyed by statement.
+     *
+     * @return the latency of each statement
+     */
+    @Nonnull
+    Map<String, Latency> getStatementLatencies();
+
+    /**
+     * Gets the number of statements which took longer than the slow query threshold.
+     *
+     * @return the number of slow queries
+     */
+    long getSlowQueries();
+
+    /**
+     * Gets metrics for each connection pool, keyed by {@link Route#getName() name}.
+     *
+     * <p>The primary pool is always present, followed by one route for each
+     * configured read replica, and the pool used for
+     * {@link Sql#queryStream(String, be.bendem.sqlstreams.util.SqlConsumer, be.bendem.sqlstreams.util.SqlFunction, int) streamed reads}.</p>
+     *
+     * @return the routes
+     */
+    @Nonnull
+    Map<String, Route> getRoutes();
+
+    /**
+     * Gets the number of reads which were sent to the primary because no
+     * read replica was available.
+     *
+     * @return the number of failovers
+     */
+    long getReadFailovers();
+
+    /**
+     * A connection pool which statements are routed to.
+     */
+    interface Route {
+
+        /**
+         * Gets the name of the route, either {@code primary},
+         * {@code replica-<index>} or {@code stream}.
+         *
+         * @return the name
+         */
+        @Nonnull
+        String getName();
+
+        /**
+         * Gets if this route is a read replica.
+         *
+         * @return if this is a replica
+         */
+        boolean isReplica();
+
+        /**
+         * Gets if reads are currently routed here.
+         *
+         * <p>Replicas are unhealthy when they cannot be reached, or lag too
+         * far behind the primary. The primary is always healthy.</p>
+         *
+         * @return if the route is healthy
+         */
+        boolean isHealthy();
+
+        /**
+         * Gets the replication lag measured by the last health check.
+         *
+         * @return the lag in seconds, or -1 if it is unknown
+         */
+        long getReplicationLag();
+
+        /**
+         * Gets the number of connections currently in use.
+         *
+         * @return the number of active connections
+         */
+        int getActiveConnections();
+
+        /**
+         * Gets the number of idle connections in the pool.
+         *
+         * @return the number of idle connections
+         */
+        int getIdleConnections();
+
+        /**
+         * Gets the number of threads currently waiting for a connection.
+         *
+         * @return the number of waiting threads
+         */
+        int getThreadsAwaitingConnection();
+
+        /**
+         * Gets the time taken to obtain connections from the pool.
+         *
+         * @return the connection wait latency
+         */
+        @Nonnull
+        Latency getConnectionWait();
+    }
+
+    /**
+     * A latency histogram.
+     */
+    interface Latency {
+
+        /**
+         * Gets the number of recorded timings.
+         *
+         * @return the count
+         */
+        long getCount();
+
+        /**
+         * Gets the number of recorded operations which failed.
+         *
+         * @return the number of errors
+         */
+        long getErrors();
+
+        /**
+         * Gets the mean time, in milliseconds.
+         *
+         * @return the mean
+         */
+        double getMeanMillis();
+
+        /**
+         * Gets the longest time, in milliseconds.
+         *
+         * @return the max
+         */
+        double getMaxMillis();
+
+        /**
+         * Gets an estimate of the given percentile, in milliseconds.
+         *
+         * <p>Timings are recorded in log-linear buckets, so the estimate is the
+         * upper bound of the bucket containing the percentile, within ~6%.</p>
+         *
+         * @param percentile the percentile, between 0 and 100
+         * @return the estimated percentile
+         */
+        double getPercentileMillis(double percentile);
+    }
+}
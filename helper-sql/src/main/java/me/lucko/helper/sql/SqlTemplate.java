@@ -0,0 +1,374 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.sql;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Ints;
+
+import org.intellij.lang.annotations.Language;
+
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A statement with named parameters, parsed once and reused.
+ *
+ * <p>Templates are written using {@code :name} parameters instead of {@code ?},
+ * and may contain {@code {placeholder}}s (e.g. a table name) which are replaced
+ * when the template is created. A parameter can be used more than once.</p>
+ *
+ * <pre>
+ * SqlTemplate insert = SqlTemplate.of(
+ *         "INSERT INTO `{table}` (uuid, value) VALUES(:uuid, :value) ON DUPLICATE KEY UPDATE value = value + :value",
+ *         ImmutableMap.of("table", "coins")
+ * );
+ * </pre>
+ *
+ * <p>The statement passed to the driver, and the JDBC indexes of each parameter,
+ * are worked out when the template is created, so binding a value is just a
+ * lookup. Templates are immutable and thread safe.</p>
+ */
+public final class SqlTemplate {
+
+    /**
+     * Creates a template.
+     *
+     * @param statement the statement
+     * @return a template
+     * @throws IllegalArgumentException if the statement contains {@code ?} parameters
+     */
+    @Nonnull
+    public static SqlTemplate of(@Language("MySQL") @Nonnull String statement) {
+        return of(statement, ImmutableMap.of());
+    }
+
+    /**
+     * Creates a template, replacing each {@code {key}} in the statement with its value.
+     *
+     * @param statement the statement
+     * @param placeholders the placeholders to replace
+     * @return a template
+     * @throws IllegalArgumentException if the statement contains {@code ?} parameters
+     */
+    @Nonnull
+    public static SqlTemplate of(@Language("MySQL") @Nonnull String statement, @Nonnull Map<String, String> placeholders) {
+        Objects.requireNonNull(statement, "statement");
+        Objects.requireNonNull(placeholders, "placeholders");
+
+        for (Map.Entry<String, String> placeholder : placeholders.entrySet()) {
+            statement = statement.replace("{" + placeholder.getKey() + "}", placeholder.getValue());
+        }
+        return new SqlTemplate(statement);
+    }
+
+    private final String template;
+    private final String statement;
+
+    // the names of the parameters, in order of first use
+    private final List<String> parameterNames;
+    // the jdbc indexes for each parameter, in the same order as the names
+    private final int[][] parameterIndexes;
+    private final Map<String, int[]> parameterIndexesByName;
+    private final int parameterCount;
+
+    // the sql types of each jdbc parameter, resolved the first time a null is bound
+    @Nullable
+    private volatile int[] parameterTypes = null;
+
+    private SqlTemplate(String template) {
+        this.template = template;
+
+        StringBuilder statement = new StringBuilder(template.length());
+        Map<String, List<Integer>> indexes = new LinkedHashMap<>();
+        int count = 0;
+
+        char quote = 0;
+        for (int i = 0; i < template.length(); i++) {
+            char c = template.charAt(i);
+
+            if (quote != 0) {
+                statement.append(c);
+                if (c == '\\' && quote != '`' && i + 1 < template.length()) {
+                    statement.append(template.charAt(++i));
+                } else if (c == quote) {
+                    quote = 0;
+                }
+                continue;
+            }
+
+            if (c == '\'' || c == '"' || c == '`') {
+                quote = c;
+                statement.append(c);
+            } else if (c == '?') {
+                throw new IllegalArgumentException("Templates must use named parameters, found '?' at index " + i + ": " + template);
+            } else if (c == ':' && i + 1 < template.length() && Character.isJavaIdentifierStart(template.charAt(i + 1))
+                    && (i == 0 || template.charAt(i - 1) != ':')) {
+                int end = i + 1;
+                while (end < template.length() && Character.isJavaIdentifierPart(template.charAt(end))) {
+                    end++;
+                }
+
+                String name = template.substring(i + 1, end);
+                indexes.computeIfAbsent(name, n -> new ArrayList<>()).add(++count);
+                statement.append('?');
+                i = end - 1;
+            } else {
+                statement.append(c);
+            }
+        }
+
+        this.statement = statement.toString();
+        this.parameterNames = ImmutableList.copyOf(indexes.keySet());
+        this.parameterIndexes = new int[indexes.size()][];
+
+        ImmutableMap.Builder<String, int[]> byName = ImmutableMap.builder();
+        int i = 0;
+        for (Map.Entry<String, List<Integer>> entry : indexes.entrySet()) {
+            int[] array = Ints.toArray(entry.getValue());
+            this.parameterIndexes[i++] = array;
+            byName.put(entry.getKey(), array);
+        }
+        this.parameterIndexesByName = byName.build();
+        this.parameterCount = count;
+    }
+
+    /**
+     * Gets the statement passed to the driver, with parameters replaced by {@code ?}.
+     *
+     * @return the statement
+     */
+    @Nonnull
+    public String getStatement() {
+        return this.statement;
+    }
+
+    /**
+     * Gets the names of the parameters in this template, in the order they
+     * are first used.
+     *
+     * <p>This is the order values are given in to {@link #bind(PreparedStatement, Object...)}.</p>
+     *
+     * @return the parameter names
+     */
+    @Nonnull
+    public List<String> getParameterNames() {
+        return this.parameterNames;
+    }
+
+    /**
+     * Gets the JDBC indexes a parameter is bound to.
+     *
+     * @param name the parameter name
+     * @return the indexes
+     * @throws IllegalArgumentException if the template doesn't use the parameter
+     */
+    @Nonnull
+    public int[] getParameterIndexes(@Nonnull String name) {
+        return indexes(name).clone();
+    }
+
+    private int[] indexes(String name) {
+        int[] indexes = this.parameterIndexesByName.get(name);
+        if (indexes == null) {
+            throw new IllegalArgumentException("Unknown parameter '" + name + "' in template: " + this.template);
+        }
+        return indexes;
+    }
+
+    /**
+     * Binds a value to every use of the named parameter.
+     *
+     * @param ps the statement, prepared from {@link #getStatement()}
+     * @param name the parameter name
+     * @param binder the binder used to set the value
+     * @param value the value
+     * @param <V> the value type
+     * @throws SQLException if the value could not be set
+     * @throws IllegalArgumentException if the template doesn't use the parameter
+     */
+    public <V> void set(@Nonnull PreparedStatement ps, @Nonnull String name, @Nonnull Binder<? super V> binder, V value) throws SQLException {
+        for (int index : indexes(name)) {
+            binder.set(ps, index, value);
+        }
+    }
+
+    /**
+     * Binds a value to every use of the named parameter, using
+     * {@link PreparedStatement#setObject(int, Object)}.
+     *
+     * @param ps the statement, prepared from {@link #getStatement()}
+     * @param name the parameter name
+     * @param value the value, may be null
+     * @throws SQLException if the value could not be set
+     * @throws IllegalArgumentException if the template doesn't use the parameter
+     */
+    public void set(@Nonnull PreparedStatement ps, @Nonnull String name, @Nullable Object value) throws SQLException {
+        for (int index : indexes(name)) {
+            setObject(ps, index, value);
+        }
+    }
+
+    /**
+     * Gets the position of the named parameter in {@link #getParameterNames()}.
+     *
+     * @param name the parameter name
+     * @return the parameter position
+     * @throws IllegalArgumentException if the template doesn't use the parameter
+     */
+    public int getParameter(@Nonnull String name) {
+        int parameter = this.parameterNames.indexOf(name);
+        if (parameter == -1) {
+            throw new IllegalArgumentException("Unknown parameter '" + name + "' in template: " + this.template);
+        }
+        return parameter;
+    }
+
+    /**
+     * Binds a long to every use of a parameter.
+     *
+     * @param ps the statement, prepared from {@link #getStatement()}
+     * @param parameter the position of the parameter in {@link #getParameterNames()}
+     * @param value the value
+     * @throws SQLException if the value could not be set
+     */
+    public void setLong(@Nonnull PreparedStatement ps, int parameter, long value) throws SQLException {
+        for (int index : this.parameterIndexes[parameter]) {
+            ps.setLong(index, value);
+        }
+    }
+
+    /**
+     * Binds a double to every use of a parameter.
+     *
+     * @param ps the statement, prepared from {@link #getStatement()}
+     * @param parameter the position of the parameter in {@link #getParameterNames()}
+     * @param value the value
+     * @throws SQLException if the value could not be set
+     */
+    public void setDouble(@Nonnull PreparedStatement ps, int parameter, double value) throws SQLException {
+        for (int index : this.parameterIndexes[parameter]) {
+            ps.setDouble(index, value);
+        }
+    }
+
+    /**
+     * Binds a value to every use of a parameter, using
+     * {@link PreparedStatement#setObject(int, Object)}.
+     *
+     * @param ps the statement, prepared from {@link #getStatement()}
+     * @param parameter the position of the parameter in {@link #getParameterNames()}
+     * @param value the value, may be null
+     * @throws SQLException if the value could not be set
+     */
+    public void set(@Nonnull PreparedStatement ps, int parameter, @Nullable Object value) throws SQLException {
+        for (int index : this.parameterIndexes[parameter]) {
+            setObject(ps, index, value);
+        }
+    }
+
+    /**
+     * Binds a value to every parameter, using {@link PreparedStatement#setObject(int, Object)}.
+     *
+     * @param ps the statement, prepared from {@link #getStatement()}
+     * @param values the values, in the order given by {@link #getParameterNames()}
+     * @throws SQLException if a value could not be set
+     * @throws IllegalArgumentException if the wrong number of values are given
+     */
+    public void bind(@Nonnull PreparedStatement ps, @Nonnull Object... values) throws SQLException {
+        if (values.length != this.parameterIndexes.length) {
+            throw new IllegalArgumentException("Expected " + this.parameterIndexes.length + " values " + this.parameterNames + ", got " + values.length);
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            for (int index : this.parameterIndexes[i]) {
+                setObject(ps, index, values[i]);
+            }
+        }
+    }
+
+    private void setObject(PreparedStatement ps, int index, @Nullable Object value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, parameterType(ps, index));
+        } else {
+            ps.setObject(index, value);
+        }
+    }
+
+    private int parameterType(PreparedStatement ps, int index) {
+        int[] types = this.parameterTypes;
+        if (types == null) {
+            types = new int[this.parameterCount];
+            Arrays.fill(types, Types.NULL);
+            try {
+                ParameterMetaData metadata = ps.getParameterMetaData();
+                for (int i = 0; i < types.length; i++) {
+                    types[i] = metadata.getParameterType(i + 1);
+                }
+            } catch (SQLException e) {
+                // not supported by the driver, most accept NULL for any column
+            }
+            this.parameterTypes = types;
+        }
+        return types[index - 1];
+    }
+
+    @Override
+    public String toString() {
+        return "SqlTemplate(statement=" + this.statement + ", parameters=" + this.parameterNames + ")";
+    }
+
+    /**
+     * Sets a value on a {@link PreparedStatement}.
+     *
+     * @param <V> the value type
+     */
+    @FunctionalInterface
+    public interface Binder<V> {
+
+        /**
+         * Sets the value of the given parameter.
+         *
+         * @param ps the statement
+         * @param paramIndex the parameter index
+         * @param value the value
+         * @throws SQLException if the parameter could not be set
+         */
+        void set(PreparedStatement ps, int paramIndex, V value) throws SQLException;
+
+    }
+}
@@ -26,13 +26,17 @@
 package me.lucko.helper.sql.batch;
 
 import me.lucko.helper.promise.Promise;
+import me.lucko.helper.sql.SqlTemplate;
 
 import be.bendem.sqlstreams.util.SqlConsumer;
 
 import java.sql.PreparedStatement;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Represents a statement meant to be executed more than a single time.
@@ -57,6 +61,26 @@ public interface BatchBuilder {
     @Nonnull
     Collection<SqlConsumer<PreparedStatement>> getHandlers();
 
+    /**
+     * Gets the template this batch was created from, if any.
+     *
+     * @return the template, or null
+     */
+    @Nullable
+    default SqlTemplate getTemplate() {
+        return null;
+    }
+
+    /**
+     * Gets the rows of parameter values added using {@link #values(Object...)}.
+     *
+     * @return the rows of values
+     */
+    @Nonnull
+    default List<Object[]> getValues() {
+        return Collections.emptyList();
+    }
+
     /**
      * Resets this BatchBuilder, making it possible to re-use
      * for multiple situations.
@@ -73,6 +97,21 @@ public interface BatchBuilder {
      */
     BatchBuilder batch(@Nonnull SqlConsumer<PreparedStatement> handler);
 
+    /**
+     * Adds a row of parameter values to be executed when this batch is finished.
+     *
+     * <p>The values are bound using {@link SqlTemplate#bind(PreparedStatement, Object...)},
+     * so are given in the order of {@link SqlTemplate#getParameterNames()}.</p>
+     *
+     * @param values the parameter values
+     * @return this builder
+     * @throws IllegalStateException if this batch wasn't created from a template
+     * @throws IllegalArgumentException if the wrong number of values are given
+     */
+    default BatchBuilder values(@Nonnull Object... values) {
+        throw new IllegalStateException("Batch was not created from a template");
+    }
+
     /**
      * Executes the statement for this batch, with the handlers used to prepare it.
      */
@@ -0,0 +1,106 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.sql.batch;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The outcome of executing a {@link ColumnBatchBuilder}.
+ */
+public final class BatchResult {
+
+    private final int rows;
+    private final int attempts;
+    private final long[] chunkTimes;
+
+    public BatchResult(int rows, int attempts, @Nonnull long[] chunkTimes) {
+        this.rows = rows;
+        this.attempts = attempts;
+        this.chunkTimes = Objects.requireNonNull(chunkTimes, "chunkTimes").clone();
+    }
+
+    /**
+     * Gets the number of rows executed.
+     *
+     * @return the number of rows
+     */
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Gets the number of times the transaction was attempted, including
+     * the successful attempt.
+     *
+     * @return the number of attempts
+     */
+    public int getAttempts() {
+        return this.attempts;
+    }
+
+    /**
+     * Gets the number of chunks the rows were sent in.
+     *
+     * @return the number of chunks
+     */
+    public int getChunkCount() {
+        return this.chunkTimes.length;
+    }
+
+    /**
+     * Gets the time taken to send a chunk, in the successful attempt.
+     *
+     * @param chunk the chunk
+     * @param unit the unit to return the time in
+     * @return the time taken
+     */
+    public long getChunkTime(int chunk, @Nonnull TimeUnit unit) {
+        return unit.convert(this.chunkTimes[chunk], TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the time taken to send every chunk, in the successful attempt.
+     *
+     * @param unit the unit to return the time in
+     * @return the time taken
+     */
+    public long getTotalTime(@Nonnull TimeUnit unit) {
+        long total = 0;
+        for (long time : this.chunkTimes) {
+            total += time;
+        }
+        return unit.convert(total, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult(rows=" + this.rows + ", attempts=" + this.attempts + ", chunks=" + this.chunkTimes.length +
+                ", time=" + getTotalTime(TimeUnit.MILLISECONDS) + "ms)";
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.sql.batch;
+
+import me.lucko.helper.promise.Promise;
+import me.lucko.helper.sql.SqlTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A batch of rows for a {@link SqlTemplate}, stored column by column.
+ *
+ * <p>Each template parameter is a column. Values are held in growable
+ * {@code long}, {@code double} or {@code Object} arrays rather than as an
+ * object per row, so very large batches allocate little.</p>
+ *
+ * <pre>
+ * ColumnBatchBuilder batch = sql.columnBatch(template);
+ * int uuid = batch.column("uuid");
+ * int value = batch.column("value");
+ * for (...) {
+ *     batch.row().set(uuid, bytes).set(value, amount);
+ * }
+ * batch.execute();
+ * </pre>
+ *
+ * <p>The rows are sent in chunks of {@link #getChunkSize()} rows, all within
+ * a single transaction. If the transaction fails because of a deadlock or a
+ * lock wait timeout, it is rolled back and retried up to {@link #getRetries()}
+ * times.</p>
+ */
+public interface ColumnBatchBuilder {
+
+    /**
+     * Gets the template the rows are bound to.
+     *
+     * @return the template
+     */
+    @Nonnull
+    SqlTemplate getTemplate();
+
+    /**
+     * Gets the column for the named parameter.
+     *
+     * @param name the parameter name
+     * @return the column
+     * @throws IllegalArgumentException if the template doesn't use the parameter
+     */
+    int column(@Nonnull String name);
+
+    /**
+     * Gets the number of rows in this batch.
+     *
+     * @return the number of rows
+     */
+    int size();
+
+    /**
+     * Gets the maximum number of rows sent to the database at once.
+     *
+     * @return the chunk size
+     */
+    int getChunkSize();
+
+    /**
+     * Sets the maximum number of rows sent to the database at once.
+     *
+     * @param chunkSize the chunk size
+     * @return this builder
+     */
+    ColumnBatchBuilder chunkSize(int chunkSize);
+
+    /**
+     * Gets the number of times the transaction is retried after a deadlock.
+     *
+     * @return the number of retries
+     */
+    int getRetries();
+
+    /**
+     * Sets the number of times the transaction is retried after a deadlock.
+     *
+     * @param retries the number of retries
+     * @return this builder
+     */
+    ColumnBatchBuilder retries(int retries);
+
+    /**
+     * Starts a new row.
+     *
+     * <p>Every column must be set for the row before the next one is started.</p>
+     *
+     * @return this builder
+     * @throws IllegalStateException if a column wasn't set for the previous row
+     */
+    ColumnBatchBuilder row();
+
+    /**
+     * Sets a column for the current row.
+     *
+     * @param column the column
+     * @param value the value
+     * @return this builder
+     */
+    ColumnBatchBuilder set(int column, long value);
+
+    /**
+     * Sets a column for the current row.
+     *
+     * @param column the column
+     * @param value the value
+     * @return this builder
+     */
+    ColumnBatchBuilder set(int column, double value);
+
+    /**
+     * Sets a column for the current row.
+     *
+     * <p>The value is bound using {@link PreparedStatement#setObject(int, Object)}.</p>
+     *
+     * @param column the column
+     * @param value the value, may be null
+     * @return this builder
+     */
+    ColumnBatchBuilder set(int column, @Nullable Object value);
+
+    /**
+     * Binds the values of a row to the statement.
+     *
+     * @param ps the statement, prepared from the template
+     * @param row the row
+     * @throws SQLException if a value could not be set
+     * @throws IllegalStateException if a column wasn't set for the row
+     */
+    void bind(@Nonnull PreparedStatement ps, int row) throws SQLException;
+
+    /**
+     * Removes all rows from this batch, so it can be reused.
+     *
+     * @return this builder
+     */
+    ColumnBatchBuilder reset();
+
+    /**
+     * Executes the rows in this batch.
+     *
+     * @return the result
+     * @throws SQLException if the batch could not be executed. The transaction is rolled back
+     */
+    @Nonnull
+    BatchResult execute() throws SQLException;
+
+    /**
+     * Executes the rows in this batch.
+     *
+     * <p>Will return a {@link Promise} to do this.</p>
+     *
+     * @return a promise to execute this batch asynchronously
+     */
+    @Nonnull
+    Promise<BatchResult> executeAsync();
+}
@@ -0,0 +1,129 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.sql.batch;
+
+import me.lucko.helper.promise.Promise;
+import me.lucko.helper.sql.Sql;
+import me.lucko.helper.sql.SqlTemplate;
+
+import be.bendem.sqlstreams.util.SqlConsumer;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The default implementation of {@link BatchBuilder}, which executes
+ * using {@link Sql#executeBatch(BatchBuilder)}.
+ */
+public class SimpleBatchBuilder implements BatchBuilder {
+
+    @Nonnull private final Sql owner;
+    @Nonnull private final String statement;
+    @Nonnull private final LinkedList<SqlConsumer<PreparedStatement>> handlers;
+    @Nullable private final SqlTemplate template;
+    @Nonnull private final List<Object[]> values;
+
+    public SimpleBatchBuilder(@Nonnull Sql owner, @Nonnull String statement) {
+        this(owner, statement, null);
+    }
+
+    public SimpleBatchBuilder(@Nonnull Sql owner, @Nonnull SqlTemplate template) {
+        this(owner, template.getStatement(), template);
+    }
+
+    private SimpleBatchBuilder(@Nonnull Sql owner, @Nonnull String statement, @Nullable SqlTemplate template) {
+        this.owner = owner;
+        this.statement = statement;
+        this.handlers = new LinkedList<>();
+        this.template = template;
+        this.values = new ArrayList<>();
+    }
+
+    @Nonnull
+    @Override
+    public String getStatement() {
+        return this.statement;
+    }
+
+    @Nonnull
+    @Override
+    public LinkedList<SqlConsumer<PreparedStatement>> getHandlers() {
+        return this.handlers;
+    }
+
+    @Nullable
+    @Override
+    public SqlTemplate getTemplate() {
+        return this.template;
+    }
+
+    @Nonnull
+    @Override
+    public List<Object[]> getValues() {
+        return this.values;
+    }
+
+    @Override
+    public BatchBuilder reset() {
+        this.handlers.clear();
+        this.values.clear();
+        return this;
+    }
+
+    @Override
+    public BatchBuilder batch(@Nonnull SqlConsumer<PreparedStatement> handler) {
+        this.handlers.add(handler);
+        return this;
+    }
+
+    @Override
+    public BatchBuilder values(@Nonnull Object... values) {
+        if (this.template == null) {
+            throw new IllegalStateException("Batch was not created from a template");
+        }
+        if (values.length != this.template.getParameterNames().size()) {
+            throw new IllegalArgumentException("Expected " + this.template.getParameterNames().size() + " values " + this.template.getParameterNames() + ", got " + values.length);
+        }
+        this.values.add(values);
+        return this;
+    }
+
+    @Override
+    public void execute() {
+        this.owner.executeBatch(this);
+    }
+
+    @Nonnull
+    @Override
+    public Promise<Void> executeAsync() {
+        return this.owner.executeBatchAsync(this);
+    }
+}
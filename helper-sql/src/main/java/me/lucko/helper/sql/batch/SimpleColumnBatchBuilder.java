@@ -0,0 +1,289 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.sql.batch;
+
+import com.google.common.base.Preconditions;
+
+import me.lucko.helper.promise.Promise;
+import me.lucko.helper.sql.Sql;
+import me.lucko.helper.sql.SqlTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The default implementation of {@link ColumnBatchBuilder}, which executes
+ * using {@link Sql#executeBatch(ColumnBatchBuilder)}.
+ */
+public class SimpleColumnBatchBuilder implements ColumnBatchBuilder {
+    private static final int DEFAULT_CHUNK_SIZE = 1000;
+    private static final int DEFAULT_RETRIES = 3;
+    private static final int INITIAL_CAPACITY = 16;
+
+    @Nonnull private final Sql owner;
+    @Nonnull private final SqlTemplate template;
+
+    // one per parameter, created by the first value set
+    private final Column[] columns;
+    private int size = 0;
+
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+    private int retries = DEFAULT_RETRIES;
+
+    public SimpleColumnBatchBuilder(@Nonnull Sql owner, @Nonnull SqlTemplate template) {
+        this.owner = owner;
+        this.template = template;
+        this.columns = new Column[template.getParameterNames().size()];
+    }
+
+    @Nonnull
+    @Override
+    public SqlTemplate getTemplate() {
+        return this.template;
+    }
+
+    @Override
+    public int column(@Nonnull String name) {
+        return this.template.getParameter(name);
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public int getChunkSize() {
+        return this.chunkSize;
+    }
+
+    @Override
+    public ColumnBatchBuilder chunkSize(int chunkSize) {
+        Preconditions.checkArgument(chunkSize > 0, "chunkSize must be positive");
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    @Override
+    public int getRetries() {
+        return this.retries;
+    }
+
+    @Override
+    public ColumnBatchBuilder retries(int retries) {
+        Preconditions.checkArgument(retries >= 0, "retries must not be negative");
+        this.retries = retries;
+        return this;
+    }
+
+    @Override
+    public ColumnBatchBuilder row() {
+        if (this.size != 0) {
+            for (int i = 0; i < this.columns.length; i++) {
+                checkSet(i, this.size - 1);
+            }
+        }
+        this.size++;
+        return this;
+    }
+
+    private int currentRow() {
+        if (this.size == 0) {
+            throw new IllegalStateException("row() must be called before setting values");
+        }
+        return this.size - 1;
+    }
+
+    @Override
+    public ColumnBatchBuilder set(int column, long value) {
+        int row = currentRow();
+        Column c = this.columns[column];
+        if (c == null) {
+            c = this.columns[column] = new LongColumn();
+        } else if (!(c instanceof LongColumn)) {
+            return set(column, (Object) value);
+        }
+        ((LongColumn) c).set(row, value);
+        return this;
+    }
+
+    @Override
+    public ColumnBatchBuilder set(int column, double value) {
+        int row = currentRow();
+        Column c = this.columns[column];
+        if (c == null) {
+            c = this.columns[column] = new DoubleColumn();
+        } else if (!(c instanceof DoubleColumn)) {
+            return set(column, (Object) value);
+        }
+        ((DoubleColumn) c).set(row, value);
+        return this;
+    }
+
+    @Override
+    public ColumnBatchBuilder set(int column, @Nullable Object value) {
+        int row = currentRow();
+        Column c = this.columns[column];
+        if (c == null) {
+            c = this.columns[column] = new ObjectColumn();
+        } else if (!(c instanceof ObjectColumn)) {
+            // mixed types, fall back to boxing the column
+            c = this.columns[column] = ((PrimitiveColumn) c).toObjectColumn();
+        }
+        ((ObjectColumn) c).set(row, value);
+        return this;
+    }
+
+    private void checkSet(int column, int row) {
+        Column c = this.columns[column];
+        if (c == null || c.size <= row) {
+            throw new IllegalStateException("Parameter '" + this.template.getParameterNames().get(column) + "' was not set for row " + row);
+        }
+    }
+
+    @Override
+    public void bind(@Nonnull PreparedStatement ps, int row) throws SQLException {
+        for (int i = 0; i < this.columns.length; i++) {
+            checkSet(i, row);
+            this.columns[i].bind(this.template, ps, i, row);
+        }
+    }
+
+    @Override
+    public ColumnBatchBuilder reset() {
+        Arrays.fill(this.columns, null);
+        this.size = 0;
+        return this;
+    }
+
+    @Nonnull
+    @Override
+    public BatchResult execute() throws SQLException {
+        return this.owner.executeBatch(this);
+    }
+
+    @Nonnull
+    @Override
+    public Promise<BatchResult> executeAsync() {
+        return this.owner.executeBatchAsync(this);
+    }
+
+    private static int grow(int capacity, int row) {
+        return Math.max(row + 1, capacity + (capacity >> 1));
+    }
+
+    private static abstract class Column {
+        // the number of rows set
+        int size = 0;
+
+        abstract void bind(SqlTemplate template, PreparedStatement ps, int parameter, int row) throws SQLException;
+    }
+
+    private static abstract class PrimitiveColumn extends Column {
+        abstract ObjectColumn toObjectColumn();
+    }
+
+    private static final class LongColumn extends PrimitiveColumn {
+        private long[] values = new long[INITIAL_CAPACITY];
+
+        void set(int row, long value) {
+            if (row >= this.values.length) {
+                this.values = Arrays.copyOf(this.values, grow(this.values.length, row));
+            }
+            this.values[row] = value;
+            this.size = row + 1;
+        }
+
+        @Override
+        void bind(SqlTemplate template, PreparedStatement ps, int parameter, int row) throws SQLException {
+            template.setLong(ps, parameter, this.values[row]);
+        }
+
+        @Override
+        ObjectColumn toObjectColumn() {
+            ObjectColumn column = new ObjectColumn(this.values.length);
+            for (int i = 0; i < this.size; i++) {
+                column.set(i, this.values[i]);
+            }
+            return column;
+        }
+    }
+
+    private static final class DoubleColumn extends PrimitiveColumn {
+        private double[] values = new double[INITIAL_CAPACITY];
+
+        void set(int row, double value) {
+            if (row >= this.values.length) {
+                this.values = Arrays.copyOf(this.values, grow(this.values.length, row));
+            }
+            this.values[row] = value;
+            this.size = row + 1;
+        }
+
+        @Override
+        void bind(SqlTemplate template, PreparedStatement ps, int parameter, int row) throws SQLException {
+            template.setDouble(ps, parameter, this.values[row]);
+        }
+
+        @Override
+        ObjectColumn toObjectColumn() {
+            ObjectColumn column = new ObjectColumn(this.values.length);
+            for (int i = 0; i < this.size; i++) {
+                column.set(i, this.values[i]);
+            }
+            return column;
+        }
+    }
+
+    private static final class ObjectColumn extends Column {
+        private Object[] values;
+
+        ObjectColumn() {
+            this(INITIAL_CAPACITY);
+        }
+
+        ObjectColumn(int capacity) {
+            this.values = new Object[capacity];
+        }
+
+        void set(int row, @Nullable Object value) {
+            if (row >= this.values.length) {
+                this.values = Arrays.copyOf(this.values, grow(this.values.length, row));
+            }
+            this.values[row] = value;
+            this.size = row + 1;
+        }
+
+        @Override
+        void bind(SqlTemplate template, PreparedStatement ps, int parameter, int row) throws SQLException {
+            template.set(ps, parameter, this.values[row]);
+        }
+    }
+}
@@ -26,12 +26,20 @@
 package me.lucko.helper.sql.plugin;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
+import me.lucko.helper.event.metrics.LatencyHistogram;
 import me.lucko.helper.sql.DatabaseCredentials;
 import me.lucko.helper.sql.Sql;
+import me.lucko.helper.sql.SqlDialect;
+import me.lucko.helper.sql.SqlMetrics;
+import me.lucko.helper.sql.SqlTemplate;
 import me.lucko.helper.sql.batch.BatchBuilder;
+import me.lucko.helper.sql.batch.BatchResult;
+import me.lucko.helper.sql.batch.ColumnBatchBuilder;
+import me.lucko.helper.utils.Log;
 
 import org.intellij.lang.annotations.Language;
 
@@ -43,11 +51,27 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.annotation.Nonnull;
 
@@ -62,17 +86,130 @@ public class HelperSql implements Sql {
     private static final long MAX_LIFETIME = TimeUnit.MINUTES.toMillis(30);
     private static final long CONNECTION_TIMEOUT = TimeUnit.SECONDS.toMillis(10);
     private static final long LEAK_DETECTION_THRESHOLD = TimeUnit.SECONDS.toMillis(10);
-
+    // fail over to the primary quickly if a replica stops responding
+    private static final long REPLICA_CONNECTION_TIMEOUT = TimeUnit.SECONDS.toMillis(2);
+    private static final long REPLICA_CHECK_INTERVAL = TimeUnit.SECONDS.toMillis(5);
+    // streamed reads hold their connection until the caller closes the stream
+    private static final int STREAM_POOL_SIZE = 4;
+    // streams are expected to outlive a normal query, but not to be left open indefinitely
+    private static final long STREAM_LEAK_DETECTION_THRESHOLD = TimeUnit.MINUTES.toMillis(5);
+
+    private static final int DEFAULT_EXECUTOR_QUEUE_SIZE = 10_000;
+    private static final long DEFAULT_SLOW_QUERY_THRESHOLD = TimeUnit.SECONDS.toMillis(1);
+    private static final long DEFAULT_MAX_REPLICA_LAG = 10L;
+    // statements beyond this are recorded together, in case callers build statements dynamically
+    private static final int MAX_TRACKED_STATEMENTS = 512;
+    // rows sent to the server at once, to keep batches within max_allowed_packet
+    private static final int BATCH_CHUNK_SIZE = 1000;
+    private static final long DEADLOCK_RETRY_DELAY = 50L;
+
+    private final SqlDialect dialect;
     private final HikariDataSource source;
     private final SqlStream stream;
 
+    // the primary, followed by any read replicas
+    private final Route primary;
+    private final Route[] replicas;
+    // a separate pool for streamed reads, which can legitimately hold a connection for a long time
+    private final Route streams;
+    private final long maxReplicaLag;
+    private final ScheduledExecutorService replicaMonitor;
+    private final LongAdder readFailovers = new LongAdder();
+
+    // runs async operations, sized to the connection pool
+    private final ThreadPoolExecutor executor;
+    private final LongAdder rejectedTasks = new LongAdder();
+
+    private final long slowQueryThresholdNanos;
+    private final LongAdder slowQueries = new LongAdder();
+    private final Map<String, LatencyRecorder> statementLatencies = new ConcurrentHashMap<>();
+    private final LatencyRecorder untrackedStatementLatency = new LatencyRecorder();
+    private final SqlMetrics metrics = new Metrics();
+
     public HelperSql(@Nonnull DatabaseCredentials credentials) {
-        final HikariConfig hikari = new HikariConfig();
+        this(credentials, DEFAULT_EXECUTOR_QUEUE_SIZE, DEFAULT_SLOW_QUERY_THRESHOLD);
+    }
+
+    /**
+     * Creates a new datasource.
+     *
+     * @param credentials the credentials
+     * @param executorQueueSize the maximum number of async operations waiting for a thread
+     * @param slowQueryThreshold the time in milliseconds after which statements are logged as slow
+     */
+    public HelperSql(@Nonnull DatabaseCredentials credentials, int executorQueueSize, long slowQueryThreshold) {
+        this(credentials, executorQueueSize, slowQueryThreshold, DEFAULT_MAX_REPLICA_LAG);
+    }
+
+    /**
+     * Creates a new datasource.
+     *
+     * @param credentials the credentials
+     * @param executorQueueSize the maximum number of async operations waiting for a thread
+     * @param slowQueryThreshold the time in milliseconds after which statements are logged as slow
+     * @param maxReplicaLag the time in seconds a read replica may lag behind the primary before
+     *                      reads stop being routed to it
+     */
+    public HelperSql(@Nonnull DatabaseCredentials credentials, int executorQueueSize, long slowQueryThreshold, long maxReplicaLag) {
+        String poolName = "helper-sql-" + POOL_COUNTER.getAndIncrement();
+        this.dialect = credentials.getDialect();
+
+        this.source = new HikariDataSource(createConfig(poolName, credentials, false));
+        this.stream = SqlStream.connect(this.source);
+        this.primary = new Route("primary", false, this.source);
+
+        // connections are only opened whilst streams are in use, so only report those held far longer than a query
+        HikariConfig streamConfig = createConfig(poolName + "-stream", credentials, false);
+        streamConfig.setMaximumPoolSize(STREAM_POOL_SIZE);
+        streamConfig.setMinimumIdle(0);
+        streamConfig.setLeakDetectionThreshold(STREAM_LEAK_DETECTION_THRESHOLD);
+        this.streams = new Route("stream", false, new HikariDataSource(streamConfig));
+
+        List<DatabaseCredentials> replicaCredentials = credentials.getReplicas();
+        this.replicas = new Route[replicaCredentials.size()];
+        for (int i = 0; i < this.replicas.length; i++) {
+            String name = "replica-" + i;
+            this.replicas[i] = new Route(name, true, new HikariDataSource(createConfig(poolName + "-" + name, replicaCredentials.get(i), true)));
+        }
+        this.maxReplicaLag = maxReplicaLag;
+
+        if (this.replicas.length != 0) {
+            this.replicaMonitor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat(poolName + "-replica-monitor")
+                    .build()
+            );
+            this.replicaMonitor.scheduleWithFixedDelay(this::checkReplicas, 0L, REPLICA_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+        } else {
+            this.replicaMonitor = null;
+        }
 
-        hikari.setPoolName("helper-sql-" + POOL_COUNTER.getAndIncrement());
+        // one thread per connection - any more would only wait for a connection
+        int threads = MAXIMUM_POOL_SIZE * (1 + this.replicas.length);
+        this.executor = new ThreadPoolExecutor(
+                threads, threads,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(executorQueueSize),
+                new ThreadFactoryBuilder()
+                        .setDaemon(true)
+                        .setNameFormat(poolName + "-executor-%d")
+                        .build(),
+                (r, executor) -> {
+                    this.rejectedTasks.increment();
+                    throw new RejectedExecutionException("SQL executor queue is full (" + executorQueueSize + " tasks)");
+                }
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryThreshold);
+    }
+
+    private HikariConfig createConfig(String poolName, DatabaseCredentials credentials, boolean replica) {
+        final HikariConfig hikari = new HikariConfig();
+        hikari.setPoolName(poolName);
 
-        hikari.setDriverClassName("com.mysql.cj.jdbc.Driver");
-        hikari.setJdbcUrl("jdbc:mysql://" + credentials.getAddress() + ":" + credentials.getPort() + "/" + credentials.getDatabase());
+        hikari.setDriverClassName(this.dialect.getDriverClassName());
+        hikari.setJdbcUrl(this.dialect.getJdbcUrl(credentials));
 
         hikari.setUsername(credentials.getUsername());
         hikari.setPassword(credentials.getPassword());
@@ -81,39 +218,66 @@ public class HelperSql implements Sql {
         hikari.setMinimumIdle(MINIMUM_IDLE);
 
         hikari.setMaxLifetime(MAX_LIFETIME);
-        hikari.setConnectionTimeout(CONNECTION_TIMEOUT);
+        hikari.setConnectionTimeout(replica ? REPLICA_CONNECTION_TIMEOUT : CONNECTION_TIMEOUT);
         hikari.setLeakDetectionThreshold(LEAK_DETECTION_THRESHOLD);
 
-        Map<String, String> properties = ImmutableMap.<String, String>builder()
-                // Ensure we use utf8 encoding
-                .put("useUnicode", "true")
-                .put("characterEncoding", "utf8")
-
-                // https://github.com/brettwooldridge/HikariCP/wiki/MySQL-Configuration
-                .put("cachePrepStmts", "true")
-                .put("prepStmtCacheSize", "250")
-                .put("prepStmtCacheSqlLimit", "2048")
-                .put("useServerPrepStmts", "true")
-                .put("useLocalSessionState", "true")
-                .put("rewriteBatchedStatements", "true")
-                .put("cacheResultSetMetadata", "true")
-                .put("cacheServerConfiguration", "true")
-                .put("elideSetAutoCommits", "true")
-                .put("maintainTimeStats", "false")
-                .put("alwaysSendSetIsolation", "false")
-                .put("cacheCallableStmts", "true")
-
-                // Set the driver level TCP socket timeout
-                // See: https://github.com/brettwooldridge/HikariCP/wiki/Rapid-Recovery
-                .put("socketTimeout", String.valueOf(TimeUnit.SECONDS.toMillis(30)))
-                .build();
+        if (replica) {
+            hikari.setReadOnly(true);
+            // an unavailable replica shouldn't prevent startup, it is reported by the health check
+            hikari.setInitializationFailTimeout(-1L);
+        }
 
+        Map<String, String> properties = this.dialect.getDataSourceProperties();
         for (Map.Entry<String, String> property : properties.entrySet()) {
             hikari.addDataSourceProperty(property.getKey(), property.getValue());
         }
 
-        this.source = new HikariDataSource(hikari);
-        this.stream = SqlStream.connect(this.source);
+        return hikari;
+    }
+
+    private void checkReplicas() {
+        for (Route replica : this.replicas) {
+            long lag;
+            try (Connection c = replica.source.getConnection()) {
+                lag = this.dialect.getReplicationLag(c);
+            } catch (SQLException | RuntimeException e) {
+                replica.replicationLag = -1;
+                replica.setHealthy(false, "unable to check replication status: " + e.getMessage());
+                continue;
+            }
+
+            replica.replicationLag = lag;
+            if (lag < 0) {
+                replica.setHealthy(false, "replication has stopped");
+            } else if (lag > this.maxReplicaLag) {
+                replica.setHealthy(false, "lagging " + lag + "s behind the primary");
+            } else {
+                replica.setHealthy(true, "lagging " + lag + "s behind the primary");
+            }
+        }
+    }
+
+    // picks the less busy of two healthy replicas, starting from a random one
+    private Route selectReplica() {
+        int count = this.replicas.length;
+        if (count == 0) {
+            return null;
+        }
+
+        int offset = ThreadLocalRandom.current().nextInt(count);
+        Route selected = null;
+        int candidates = 0;
+        for (int i = 0; i < count && candidates < 2; i++) {
+            Route replica = this.replicas[(offset + i) % count];
+            if (!replica.isHealthy()) {
+                continue;
+            }
+            candidates++;
+            if (selected == null || replica.getLoad() < selected.getLoad()) {
+                selected = replica;
+            }
+        }
+        return selected;
     }
 
     @Nonnull
@@ -122,10 +286,36 @@ public class HelperSql implements Sql {
         return this.source;
     }
 
+    @Nonnull
+    @Override
+    public SqlDialect getDialect() {
+        return this.dialect;
+    }
+
     @Nonnull
     @Override
     public Connection getConnection() throws SQLException {
-        return Objects.requireNonNull(this.source.getConnection(), "connection is null");
+        return this.primary.getConnection();
+    }
+
+    @Nonnull
+    @Override
+    public Connection getReadConnection() throws SQLException {
+        if (this.replicas.length == 0) {
+            return this.primary.getConnection();
+        }
+
+        Route replica = selectReplica();
+        if (replica != null) {
+            try {
+                return replica.getConnection();
+            } catch (SQLException e) {
+                replica.setHealthy(false, "unable to obtain a connection: " + e.getMessage());
+            }
+        }
+
+        this.readFailovers.increment();
+        return this.primary.getConnection();
     }
 
     @Nonnull
@@ -134,51 +324,240 @@ public class HelperSql implements Sql {
         return this.stream;
     }
 
+    @Nonnull
+    @Override
+    public Executor getExecutor() {
+        return this.executor;
+    }
+
+    @Nonnull
+    @Override
+    public SqlMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    private void recordStatement(String statement, long start, boolean error) {
+        long nanos = System.nanoTime() - start;
+
+        LatencyRecorder latency = this.statementLatencies.get(statement);
+        if (latency == null) {
+            if (this.statementLatencies.size() < MAX_TRACKED_STATEMENTS) {
+                latency = this.statementLatencies.computeIfAbsent(statement, s -> new LatencyRecorder());
+            } else {
+                latency = this.untrackedStatementLatency;
+            }
+        }
+        latency.record(nanos, error);
+
+        if (nanos >= this.slowQueryThresholdNanos) {
+            this.slowQueries.increment();
+            Log.warn("[helper-sql] Slow statement took " + TimeUnit.NANOSECONDS.toMillis(nanos) + "ms: " + statement);
+        }
+    }
+
     @Override
     public void execute(@Language("MySQL") @Nonnull String statement, @Nonnull SqlConsumer<PreparedStatement> preparer) {
+        long start = System.nanoTime();
+        boolean error = false;
         try (Connection c = this.getConnection(); PreparedStatement s = c.prepareStatement(statement)) {
             preparer.accept(s);
             s.execute();
         } catch (SQLException e) {
-            e.printStackTrace();
+            error = true;
+            Log.severe("[helper-sql] Error executing statement: " + statement, e);
+        } finally {
+            recordStatement(statement, start, error);
         }
     }
 
     @Override
     public <R> Optional<R> query(@Language("MySQL") @Nonnull String query, @Nonnull SqlConsumer<PreparedStatement> preparer, @Nonnull SqlFunction<ResultSet, R> handler) {
-        try (Connection c = this.getConnection(); PreparedStatement s = c.prepareStatement(query)) {
+        return query(query, preparer, handler, false);
+    }
+
+    @Override
+    public <R> Optional<R> queryRead(@Language("MySQL") @Nonnull String query, @Nonnull SqlConsumer<PreparedStatement> preparer, @Nonnull SqlFunction<ResultSet, R> handler) {
+        return query(query, preparer, handler, true);
+    }
+
+    private <R> Optional<R> query(String query, SqlConsumer<PreparedStatement> preparer, SqlFunction<ResultSet, R> handler, boolean read) {
+        long start = System.nanoTime();
+        boolean error = false;
+        try (Connection c = read ? this.getReadConnection() : this.getConnection(); PreparedStatement s = c.prepareStatement(query)) {
             preparer.accept(s);
             try (ResultSet r = s.executeQuery()) {
                 return Optional.ofNullable(handler.apply(r));
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            error = true;
+            Log.severe("[helper-sql] Error executing query: " + query, e);
             return Optional.empty();
+        } finally {
+            recordStatement(query, start, error);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public <R> Stream<R> queryStream(@Language("MySQL") @Nonnull String query, @Nonnull SqlConsumer<PreparedStatement> preparer, @Nonnull SqlFunction<ResultSet, R> mapper, int fetchSize) throws SQLException {
+        long start = System.nanoTime();
+        Connection c = this.streams.getConnection();
+        PreparedStatement s = null;
+        ResultSet r;
+        try {
+            if (this.dialect.isCursorFetchTransactional()) {
+                // the pool restores autocommit when the connection is returned
+                c.setAutoCommit(false);
+            }
+            s = c.prepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            s.setFetchSize(fetchSize);
+            preparer.accept(s);
+            r = s.executeQuery();
+        } catch (SQLException e) {
+            recordStatement(query, start, true);
+            if (s != null) {
+                try {
+                    s.close();
+                } catch (SQLException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            try {
+                c.close();
+            } catch (SQLException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
         }
+        recordStatement(query, start, false);
+
+        ResultSetSpliterator<R> spliterator = new ResultSetSpliterator<>(c, s, r, mapper);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
     }
 
     @Override
     public void executeBatch(@Nonnull BatchBuilder builder) {
-        if (builder.getHandlers().isEmpty()) {
+        if (builder.getHandlers().isEmpty() && builder.getValues().isEmpty()) {
             return;
         }
 
-        if (builder.getHandlers().size() == 1) {
+        if (builder.getHandlers().size() == 1 && builder.getValues().isEmpty()) {
             this.execute(builder.getStatement(), builder.getHandlers().iterator().next());
             return;
         }
 
+        long start = System.nanoTime();
+        boolean error = false;
         try (Connection c = this.getConnection(); PreparedStatement s = c.prepareStatement(builder.getStatement())) {
+            int rows = 0;
             for (SqlConsumer<PreparedStatement> handlers : builder.getHandlers()) {
                 handlers.accept(s);
                 s.addBatch();
+                if (++rows % BATCH_CHUNK_SIZE == 0) {
+                    s.executeBatch();
+                }
+            }
+
+            SqlTemplate template = builder.getTemplate();
+            if (template != null) {
+                for (Object[] values : builder.getValues()) {
+                    template.bind(s, values);
+                    s.addBatch();
+                    if (++rows % BATCH_CHUNK_SIZE == 0) {
+                        s.executeBatch();
+                    }
+                }
+            }
+
+            if (rows % BATCH_CHUNK_SIZE != 0) {
+                s.executeBatch();
             }
-            s.executeBatch();
         } catch (SQLException e) {
-            e.printStackTrace();
+            error = true;
+            Log.severe("[helper-sql] Error executing batch: " + builder.getStatement(), e);
+        } finally {
+            recordStatement(builder.getStatement(), start, error);
         }
     }
 
+    @Nonnull
+    @Override
+    public BatchResult executeBatch(@Nonnull ColumnBatchBuilder builder) throws SQLException {
+        int size = builder.size();
+        if (size == 0) {
+            return new BatchResult(0, 0, new long[0]);
+        }
+
+        String statement = builder.getTemplate().getStatement();
+        int chunkSize = builder.getChunkSize();
+        long[] chunkTimes = new long[(size + chunkSize - 1) / chunkSize];
+
+        long start = System.nanoTime();
+        boolean error = true;
+        try (Connection c = this.getConnection()) {
+            boolean autoCommit = c.getAutoCommit();
+            c.setAutoCommit(false);
+            try {
+                for (int attempt = 1; ; attempt++) {
+                    try (PreparedStatement s = c.prepareStatement(statement)) {
+                        for (int chunk = 0; chunk < chunkTimes.length; chunk++) {
+                            long chunkStart = System.nanoTime();
+                            int end = Math.min((chunk + 1) * chunkSize, size);
+                            for (int row = chunk * chunkSize; row < end; row++) {
+                                builder.bind(s, row);
+                                s.addBatch();
+                            }
+                            s.executeBatch();
+                            chunkTimes[chunk] = System.nanoTime() - chunkStart;
+                        }
+                        c.commit();
+                        error = false;
+                        return new BatchResult(size, attempt, chunkTimes);
+                    } catch (SQLException e) {
+                        try {
+                            c.rollback();
+                        } catch (SQLException suppressed) {
+                            e.addSuppressed(suppressed);
+                        }
+
+                        if (attempt > builder.getRetries() || !isLockFailure(e)) {
+                            throw e;
+                        }
+
+                        Log.warn("[helper-sql] Batch of " + size + " rows failed due to a lock conflict, retrying (attempt " + attempt + "): " + statement);
+                        try {
+                            Thread.sleep(DEADLOCK_RETRY_DELAY * attempt);
+                        } catch (InterruptedException ie) {
+                            Thread.currentThread().interrupt();
+                            throw e;
+                        }
+                    }
+                }
+            } finally {
+                c.setAutoCommit(autoCommit);
+            }
+        } finally {
+            recordStatement(statement, start, error);
+        }
+    }
+
+    // deadlocks and lock wait timeouts can succeed if the transaction is retried
+    private static boolean isLockFailure(SQLException e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransactionRollbackException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                SQLException ex = (SQLException) t;
+                // serialization failure, postgres deadlock, mysql deadlock and lock wait timeout
+                if ("40001".equals(ex.getSQLState()) || "40P01".equals(ex.getSQLState()) || ex.getErrorCode() == 1213 || ex.getErrorCode() == 1205) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     @Override
     public BatchBuilder batch(@Language("MySQL") @Nonnull String statement) {
         return new HelperSqlBatchBuilder(this, statement);
@@ -186,6 +565,222 @@ public class HelperSql implements Sql {
 
     @Override
     public void close() {
+        // let queued operations finish before closing the pool
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                Log.warn("[helper-sql] Timed out waiting for " + this.executor.getQueue().size() + " queued operations to complete");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (this.replicaMonitor != null) {
+            this.replicaMonitor.shutdownNow();
+        }
+        for (Route replica : this.replicas) {
+            replica.source.close();
+        }
+        this.streams.source.close();
         this.source.close();
     }
+
+    /**
+     * Records timings in a {@link LatencyHistogram}, along with the totals it doesn't track.
+     */
+    private static final class LatencyRecorder implements SqlMetrics.Latency {
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos, boolean error) {
+            this.histogram.record(nanos);
+            this.totalNanos.add(nanos);
+            this.maxNanos.accumulate(nanos);
+            if (error) {
+                this.errors.increment();
+            }
+        }
+
+        @Override
+        public long getCount() {
+            return this.histogram.getCount();
+        }
+
+        @Override
+        public long getErrors() {
+            return this.errors.sum();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            long count = getCount();
+            return count == 0 ? 0 : this.totalNanos.sum() / (count * 1_000_000d);
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return this.maxNanos.get() / 1_000_000d;
+        }
+
+        @Override
+        public double getPercentileMillis(double percentile) {
+            // the upper bound of the bucket, capped at the max seen
+            return Math.min(this.histogram.getValueAtPercentile(percentile), this.maxNanos.get()) / 1_000_000d;
+        }
+    }
+
+    private static final class Route implements SqlMetrics.Route {
+        private final String name;
+        private final boolean replica;
+        private final HikariDataSource source;
+        private final LatencyRecorder connectionWait = new LatencyRecorder();
+
+        // replicas start unhealthy, until the first check has measured their lag
+        private final AtomicBoolean healthy;
+        private volatile long replicationLag;
+
+        Route(String name, boolean replica, HikariDataSource source) {
+            this.name = name;
+            this.replica = replica;
+            this.source = source;
+            this.healthy = new AtomicBoolean(!replica);
+            this.replicationLag = replica ? -1 : 0;
+        }
+
+        Connection getConnection() throws SQLException {
+            long start = System.nanoTime();
+            boolean error = true;
+            try {
+                Connection connection = Objects.requireNonNull(this.source.getConnection(), "connection is null");
+                error = false;
+                return connection;
+            } finally {
+                this.connectionWait.record(System.nanoTime() - start, error);
+            }
+        }
+
+        void setHealthy(boolean healthy, String reason) {
+            if (this.healthy.getAndSet(healthy) != healthy) {
+                if (healthy) {
+                    Log.info("[helper-sql] Routing reads to " + this.source.getPoolName() + " (" + reason + ")");
+                } else {
+                    Log.warn("[helper-sql] No longer routing reads to " + this.source.getPoolName() + ": " + reason);
+                }
+            }
+        }
+
+        int getLoad() {
+            return getActiveConnections() + getThreadsAwaitingConnection();
+        }
+
+        @Nonnull
+        @Override
+        public String getName() {
+            return this.name;
+        }
+
+        @Override
+        public boolean isReplica() {
+            return this.replica;
+        }
+
+        @Override
+        public boolean isHealthy() {
+            return this.healthy.get();
+        }
+
+        @Override
+        public long getReplicationLag() {
+            return this.replicationLag;
+        }
+
+        @Override
+        public int getActiveConnections() {
+            return this.source.getHikariPoolMXBean().getActiveConnections();
+        }
+
+        @Override
+        public int getIdleConnections() {
+            return this.source.getHikariPoolMXBean().getIdleConnections();
+        }
+
+        @Override
+        public int getThreadsAwaitingConnection() {
+            return this.source.getHikariPoolMXBean().getThreadsAwaitingConnection();
+        }
+
+        @Nonnull
+        @Override
+        public SqlMetrics.Latency getConnectionWait() {
+            return this.connectionWait;
+        }
+    }
+
+    private final class Metrics implements SqlMetrics {
+        @Override
+        public int getQueuedTasks() {
+            return HelperSql.this.executor.getQueue().size();
+        }
+
+        @Override
+        public int getActiveTasks() {
+            return HelperSql.this.executor.getActiveCount();
+        }
+
+        @Override
+        public long getRejectedTasks() {
+            return HelperSql.this.rejectedTasks.sum();
+        }
+
+        @Override
+        public int getActiveConnections() {
+            return HelperSql.this.primary.getActiveConnections();
+        }
+
+        @Override
+        public int getIdleConnections() {
+            return HelperSql.this.primary.getIdleConnections();
+        }
+
+        @Override
+        public int getThreadsAwaitingConnection() {
+            return HelperSql.this.primary.getThreadsAwaitingConnection();
+        }
+
+        @Nonnull
+        @Override
+        public Latency getConnectionWait() {
+            return HelperSql.this.primary.getConnectionWait();
+        }
+
+        @Nonnull
+        @Override
+        public Map<String, Latency> getStatementLatencies() {
+            return Collections.unmodifiableMap(HelperSql.this.statementLatencies);
+        }
+
+        @Override
+        public long getSlowQueries() {
+            return HelperSql.this.slowQueries.sum();
+        }
+
+        @Nonnull
+        @Override
+        public Map<String, Route> getRoutes() {
+            ImmutableMap.Builder<String, Route> routes = ImmutableMap.builder();
+            routes.put(HelperSql.this.primary.getName(), HelperSql.this.primary);
+            for (HelperSql.Route replica : HelperSql.this.replicas) {
+                routes.put(replica.getName(), replica);
+            }
+            routes.put(HelperSql.this.streams.getName(), HelperSql.this.streams);
+            return routes.build();
+        }
+
+        @Override
+        public long getReadFailovers() {
+            return HelperSql.this.readFailovers.sum();
+        }
+    }
 }
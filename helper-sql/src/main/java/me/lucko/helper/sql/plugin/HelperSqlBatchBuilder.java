@@ -25,61 +25,19 @@
 
 package me.lucko.helper.sql.plugin;
 
-import me.lucko.helper.promise.Promise;
 import me.lucko.helper.sql.Sql;
-import me.lucko.helper.sql.batch.BatchBuilder;
-
-import be.bendem.sqlstreams.util.SqlConsumer;
-
-import java.sql.PreparedStatement;
-import java.util.LinkedList;
+import me.lucko.helper.sql.SqlTemplate;
+import me.lucko.helper.sql.batch.SimpleBatchBuilder;
 
 import javax.annotation.Nonnull;
 
-public class HelperSqlBatchBuilder implements BatchBuilder {
-
-    @Nonnull private final Sql owner;
-    @Nonnull private final String statement;
-    @Nonnull private final LinkedList<SqlConsumer<PreparedStatement>> handlers;
+public class HelperSqlBatchBuilder extends SimpleBatchBuilder {
 
     public HelperSqlBatchBuilder(@Nonnull Sql owner, @Nonnull String statement) {
-        this.owner = owner;
-        this.statement = statement;
-        this.handlers = new LinkedList<>();
-    }
-
-    @Nonnull
-    @Override
-    public String getStatement() {
-        return this.statement;
-    }
-
-    @Nonnull
-    @Override
-    public LinkedList<SqlConsumer<PreparedStatement>> getHandlers() {
-        return this.handlers;
-    }
-
-    @Override
-    public BatchBuilder reset() {
-        this.handlers.clear();
-        return this;
-    }
-
-    @Override
-    public BatchBuilder batch(@Nonnull SqlConsumer<PreparedStatement> handler) {
-        this.handlers.add(handler);
-        return this;
-    }
-
-    @Override
-    public void execute() {
-        this.owner.executeBatch(this);
+        super(owner, statement);
     }
 
-    @Nonnull
-    @Override
-    public Promise<Void> executeAsync() {
-        return this.owner.executeBatchAsync(this);
+    public HelperSqlBatchBuilder(@Nonnull Sql owner, @Nonnull SqlTemplate template) {
+        super(owner, template);
     }
 }
@@ -26,12 +26,16 @@
 package me.lucko.helper.sql.plugin;
 
 import me.lucko.helper.internal.HelperImplementationPlugin;
+import me.lucko.helper.maven.LibraryLoader;
 import me.lucko.helper.maven.MavenLibrary;
 import me.lucko.helper.plugin.ExtendedJavaPlugin;
 import me.lucko.helper.sql.DatabaseCredentials;
 import me.lucko.helper.sql.Sql;
+import me.lucko.helper.sql.SqlDialect;
 import me.lucko.helper.sql.SqlProvider;
 
+import org.bukkit.configuration.file.YamlConfiguration;
+
 import javax.annotation.Nonnull;
 
 @HelperImplementationPlugin
@@ -39,10 +43,18 @@ import javax.annotation.Nonnull;
 public class HelperSqlPlugin extends ExtendedJavaPlugin implements SqlProvider {
     private DatabaseCredentials globalCredentials;
     private Sql globalDataSource;
+    private int executorQueueSize;
+    private long slowQueryThreshold;
+    private long maxReplicaLag;
 
     @Override
     protected void enable() {
-        this.globalCredentials = DatabaseCredentials.fromConfig(loadConfig("config.yml"));
+        YamlConfiguration config = loadConfig("config.yml");
+        this.executorQueueSize = Math.max(1, config.getInt("executor-queue-size", 10000));
+        this.slowQueryThreshold = config.getLong("slow-query-threshold", 1000L);
+        this.maxReplicaLag = config.getLong("replica-max-lag", 10L);
+
+        this.globalCredentials = DatabaseCredentials.fromConfig(config);
         this.globalDataSource = getSql(this.globalCredentials);
         this.globalDataSource.bindWith(this);
 
@@ -61,7 +73,22 @@ public class HelperSqlPlugin extends ExtendedJavaPlugin implements SqlProvider {
     @Nonnull
     @Override
     public Sql getSql(@Nonnull DatabaseCredentials credentials) {
-        return new HelperSql(credentials);
+        loadDriver(credentials.getDialect());
+        return new HelperSql(credentials, this.executorQueueSize, this.slowQueryThreshold, this.maxReplicaLag);
+    }
+
+    // only the mysql driver is shaded, others are downloaded when first used
+    private static synchronized void loadDriver(SqlDialect dialect) {
+        LibraryLoader.Dependency dependency = dialect.getDriverDependency();
+        if (dependency == null) {
+            return;
+        }
+
+        try {
+            Class.forName(dialect.getDriverClassName());
+        } catch (ClassNotFoundException e) {
+            LibraryLoader.load(dependency);
+        }
     }
 
     @Nonnull
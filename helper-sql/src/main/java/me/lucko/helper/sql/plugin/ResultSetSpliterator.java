@@ -0,0 +1,107 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.sql.plugin;
+
+import me.lucko.helper.sql.UncheckedSqlException;
+
+import be.bendem.sqlstreams.util.SqlFunction;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Maps the rows of a {@link ResultSet} lazily, one at a time.
+ *
+ * <p>Owns the result set, statement and connection, and closes all three when closed,
+ * or once the last row has been read.</p>
+ *
+ * @param <R> the row type
+ */
+final class ResultSetSpliterator<R> extends Spliterators.AbstractSpliterator<R> implements AutoCloseable {
+    private final Connection connection;
+    private final Statement statement;
+    private final ResultSet resultSet;
+    private final SqlFunction<ResultSet, R> mapper;
+    private boolean closed = false;
+
+    ResultSetSpliterator(Connection connection, Statement statement, ResultSet resultSet, SqlFunction<ResultSet, R> mapper) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.connection = connection;
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super R> action) {
+        if (this.closed) {
+            return false;
+        }
+
+        try {
+            if (!this.resultSet.next()) {
+                // release the connection as soon as the rows run out, rather than waiting for the stream to be closed
+                close();
+                return false;
+            }
+            action.accept(this.mapper.apply(this.resultSet));
+            return true;
+        } catch (SQLException e) {
+            throw new UncheckedSqlException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+
+        SQLException exception = null;
+        for (AutoCloseable closeable : new AutoCloseable[]{this.resultSet, this.statement, this.connection}) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                SQLException sqlException = e instanceof SQLException ? (SQLException) e : new SQLException(e);
+                if (exception == null) {
+                    exception = sqlException;
+                } else {
+                    exception.addSuppressed(sqlException);
+                }
+            }
+        }
+
+        if (exception != null) {
+            throw new UncheckedSqlException(exception);
+        }
+    }
+}
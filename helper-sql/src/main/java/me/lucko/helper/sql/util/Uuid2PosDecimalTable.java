@@ -25,7 +25,6 @@
 
 package me.lucko.helper.sql.util;
 
-import me.lucko.helper.Schedulers;
 import me.lucko.helper.promise.Promise;
 import me.lucko.helper.sql.Sql;
 
@@ -46,11 +45,15 @@ public class Uuid2PosDecimalTable extends Uuid2PosNumberTable<BigDecimal, Option
         super(sql, table);
     }
 
+    public Uuid2PosDecimalTable(Sql sql, String table, UuidStorage uuidStorage) {
+        super(sql, table, uuidStorage);
+    }
+
     @Override
     protected String getCreateStmt() {
         return "CREATE TABLE IF NOT EXISTS `{table}` (" +
-                "`uuid` VARCHAR(36) NOT NULL, " +
-                "`value` DECIMAL(19) UNSIGNED NOT NULL, " +
+                "`uuid` {uuid_type} NOT NULL, " +
+                "`value` DECIMAL(19) {unsigned} NOT NULL, " +
                 "PRIMARY KEY (`uuid`))";
     }
 
@@ -65,13 +68,23 @@ public class Uuid2PosDecimalTable extends Uuid2PosNumberTable<BigDecimal, Option
     }
 
     @Override
-    protected Optional<BigDecimal> getOptional(ResultSet rs, String columnLabel) throws SQLException {
-        return Optional.of(rs.getBigDecimal(columnLabel));
+    protected Optional<BigDecimal> emptyOptional() {
+        return Optional.empty();
     }
 
     @Override
-    protected Optional<BigDecimal> emptyOptional() {
-        return Optional.empty();
+    protected Optional<BigDecimal> optional(BigDecimal value) {
+        return Optional.of(value);
+    }
+
+    @Override
+    protected BigDecimal sum(BigDecimal a, BigDecimal b) {
+        return a.add(b);
+    }
+
+    @Override
+    protected BigDecimal difference(BigDecimal a, BigDecimal b) {
+        return a.subtract(b);
     }
 
     /**
@@ -134,9 +147,9 @@ public class Uuid2PosDecimalTable extends Uuid2PosNumberTable<BigDecimal, Option
      * @return the total
      */
     public Promise<BigDecimal> total() {
-        return Schedulers.async().call(() -> {
-            try (Connection c = sql.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(SELECT_TOTAL.replace("{table}", table))) {
+        return sql.callAsync(() -> {
+            try (Connection c = sql.getReadConnection()) {
+                try (PreparedStatement ps = c.prepareStatement(this.selectTotal)) {
                     try (ResultSet rs = ps.executeQuery()) {
                         if (rs.next()) {
                             return rs.getBigDecimal("total");
@@ -25,7 +25,6 @@
 
 package me.lucko.helper.sql.util;
 
-import me.lucko.helper.Schedulers;
 import me.lucko.helper.promise.Promise;
 import me.lucko.helper.sql.Sql;
 
@@ -45,11 +44,15 @@ public class Uuid2PosIntTable extends Uuid2PosNumberTable<Integer, OptionalInt>
         super(sql, table);
     }
 
+    public Uuid2PosIntTable(Sql sql, String table, UuidStorage uuidStorage) {
+        super(sql, table, uuidStorage);
+    }
+
     @Override
     protected String getCreateStmt() {
         return "CREATE TABLE IF NOT EXISTS `{table}` (" +
-                "`uuid` VARCHAR(36) NOT NULL, " +
-                "`value` INT UNSIGNED NOT NULL, " +
+                "`uuid` {uuid_type} NOT NULL, " +
+                "`value` INT {unsigned} NOT NULL, " +
                 "PRIMARY KEY (`uuid`))";
     }
 
@@ -64,13 +67,23 @@ public class Uuid2PosIntTable extends Uuid2PosNumberTable<Integer, OptionalInt>
     }
 
     @Override
-    protected OptionalInt getOptional(ResultSet rs, String columnLabel) throws SQLException {
-        return OptionalInt.of(rs.getInt(columnLabel));
+    protected OptionalInt emptyOptional() {
+        return OptionalInt.empty();
     }
 
     @Override
-    protected OptionalInt emptyOptional() {
-        return OptionalInt.empty();
+    protected OptionalInt optional(Integer value) {
+        return OptionalInt.of(value);
+    }
+
+    @Override
+    protected Integer sum(Integer a, Integer b) {
+        return a + b;
+    }
+
+    @Override
+    protected Integer difference(Integer a, Integer b) {
+        return a - b;
     }
 
     /**
@@ -133,9 +146,9 @@ public class Uuid2PosIntTable extends Uuid2PosNumberTable<Integer, OptionalInt>
      * @return the total
      */
     public Promise<Long> total() {
-        return Schedulers.async().call(() -> {
-            try (Connection c = sql.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(SELECT_TOTAL.replace("{table}", table))) {
+        return sql.callAsync(() -> {
+            try (Connection c = sql.getReadConnection()) {
+                try (PreparedStatement ps = c.prepareStatement(this.selectTotal)) {
                     try (ResultSet rs = ps.executeQuery()) {
                         if (rs.next()) {
                             return rs.getLong("total");
@@ -25,7 +25,6 @@
 
 package me.lucko.helper.sql.util;
 
-import me.lucko.helper.Schedulers;
 import me.lucko.helper.promise.Promise;
 import me.lucko.helper.sql.Sql;
 
@@ -45,11 +44,15 @@ public class Uuid2PosLongTable extends Uuid2PosNumberTable<Long, OptionalLong> {
         super(sql, table);
     }
 
+    public Uuid2PosLongTable(Sql sql, String table, UuidStorage uuidStorage) {
+        super(sql, table, uuidStorage);
+    }
+
     @Override
     protected String getCreateStmt() {
         return "CREATE TABLE IF NOT EXISTS `{table}` (" +
-                "`uuid` VARCHAR(36) NOT NULL, " +
-                "`value` BIGINT UNSIGNED NOT NULL, " +
+                "`uuid` {uuid_type} NOT NULL, " +
+                "`value` BIGINT {unsigned} NOT NULL, " +
                 "PRIMARY KEY (`uuid`))";
     }
 
@@ -64,13 +67,23 @@ public class Uuid2PosLongTable extends Uuid2PosNumberTable<Long, OptionalLong> {
     }
 
     @Override
-    protected OptionalLong getOptional(ResultSet rs, String columnLabel) throws SQLException {
-        return OptionalLong.of(rs.getLong(columnLabel));
+    protected OptionalLong emptyOptional() {
+        return OptionalLong.empty();
     }
 
     @Override
-    protected OptionalLong emptyOptional() {
-        return OptionalLong.empty();
+    protected OptionalLong optional(Long value) {
+        return OptionalLong.of(value);
+    }
+
+    @Override
+    protected Long sum(Long a, Long b) {
+        return a + b;
+    }
+
+    @Override
+    protected Long difference(Long a, Long b) {
+        return a - b;
     }
 
     /**
@@ -133,9 +146,9 @@ public class Uuid2PosLongTable extends Uuid2PosNumberTable<Long, OptionalLong> {
      * @return the total
      */
     public Promise<Long> total() {
-        return Schedulers.async().call(() -> {
-            try (Connection c = sql.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(SELECT_TOTAL.replace("{table}", table))) {
+        return sql.callAsync(() -> {
+            try (Connection c = sql.getReadConnection()) {
+                try (PreparedStatement ps = c.prepareStatement(this.selectTotal)) {
                     try (ResultSet rs = ps.executeQuery()) {
                         if (rs.next()) {
                             return rs.getLong("total");
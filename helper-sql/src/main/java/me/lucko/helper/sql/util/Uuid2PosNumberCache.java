@@ -0,0 +1,344 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.sql.util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import me.lucko.helper.Events;
+import me.lucko.helper.Schedulers;
+import me.lucko.helper.promise.Promise;
+import me.lucko.helper.terminable.TerminableConsumer;
+import me.lucko.helper.utils.Log;
+import me.lucko.helper.utils.Players;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+/**
+ * A local write-behind cache for a {@link Uuid2PosNumberTable}.
+ *
+ * @param <T> the value type
+ * @param <O> the optional value type
+ */
+final class Uuid2PosNumberCache<T, O> {
+    private final Uuid2PosNumberTable<T, O> table;
+
+    // the current value (including pending writes) for each loaded uuid
+    private final Map<UUID, Cached<T>> values = new ConcurrentHashMap<>();
+    // writes waiting to be flushed, at most one per uuid.
+    // always modified inside a compute on 'values', so the two maps change together
+    private final Map<UUID, PendingWrite<T>> pending = new ConcurrentHashMap<>();
+    // held whilst writing to the database, so writes for a uuid aren't reordered
+    private final Object writeLock = new Object();
+    // incremented (whilst holding writeLock) each time pending writes or takes are written to the database
+    private volatile long writes = 0;
+    // completed by the next flush
+    private final AtomicReference<Promise<Void>> nextFlush = new AtomicReference<>(Promise.empty());
+
+    private final Cache<Long, Promise<List<Map.Entry<UUID, T>>>> pages;
+
+    Uuid2PosNumberCache(Uuid2PosNumberTable<T, O> table, long pageDuration, TimeUnit unit) {
+        this.table = table;
+        this.pages = CacheBuilder.newBuilder()
+                .expireAfterWrite(pageDuration, unit)
+                .build();
+    }
+
+    void setup(TerminableConsumer consumer, long flushInterval) {
+        // bound first so that it runs after the listeners and flush task are closed
+        consumer.bind(this::flush);
+
+        Events.subscribe(PlayerJoinEvent.class, EventPriority.LOWEST)
+                .handler(e -> load(e.getPlayer().getUniqueId()))
+                .bindWith(consumer);
+
+        Events.subscribe(PlayerQuitEvent.class, EventPriority.MONITOR)
+                .handler(e -> unload(e.getPlayer().getUniqueId()))
+                .bindWith(consumer);
+
+        for (Player player : Players.all()) {
+            load(player.getUniqueId());
+        }
+
+        // the scheduler only times the flushes, the writes run on the sql executor
+        Schedulers.async().runRepeating(() -> this.table.sql.callAsync(() -> {
+            flush();
+            return null;
+        }), flushInterval, flushInterval).bindWith(consumer);
+    }
+
+    Promise<Void> load(UUID uuid) {
+        // replaced once loaded, unless the uuid is unloaded (or loaded again) first
+        Cached<T> loading = new Cached<>(null, true);
+        this.values.put(uuid, loading);
+
+        return this.table.sql.callAsync(() -> {
+            // pending writes haven't reached the database yet
+            select(uuid, value -> this.values.computeIfPresent(uuid, (k, v) -> v == loading ? new Cached<>(apply(this.pending.get(uuid), value)) : v));
+            return null;
+        });
+    }
+
+    void unload(UUID uuid) {
+        this.values.remove(uuid);
+    }
+
+    Promise<O> get(UUID uuid) {
+        Cached<T> cached = this.values.get(uuid);
+        if (cached != null && !cached.loading) {
+            return Promise.completed(cached.value == null ? this.table.emptyOptional() : this.table.optional(cached.value));
+        }
+
+        return this.table.sql.callAsync(() -> {
+            T value = select(uuid, v -> apply(this.pending.get(uuid), v));
+            return value == null ? this.table.emptyOptional() : this.table.optional(value);
+        });
+    }
+
+    Promise<Void> add(UUID uuid, T amount) {
+        PendingWrite<T> write = new PendingWrite<>(false, amount);
+        this.values.compute(uuid, (k, v) -> {
+            this.pending.merge(uuid, write, this::combine);
+            return v == null || v.loading ? v : new Cached<>(apply(write, v.value));
+        });
+        return this.nextFlush.get();
+    }
+
+    Promise<Void> set(UUID uuid, T amount) {
+        PendingWrite<T> write = new PendingWrite<>(true, amount);
+        this.values.compute(uuid, (k, v) -> {
+            this.pending.merge(uuid, write, this::combine);
+            return v == null || v.loading ? v : new Cached<>(amount);
+        });
+        return this.nextFlush.get();
+    }
+
+    Promise<Boolean> take(UUID uuid, T amount) {
+        return this.table.sql.callAsync(() -> {
+            synchronized (this.writeLock) {
+                try (Connection c = this.table.sql.getConnection()) {
+                    // write anything pending for this uuid first, so the check sees it
+                    PendingWrite<T> write = this.pending.remove(uuid);
+                    if (write != null) {
+                        try {
+                            execute(c, uuid, write);
+                        } catch (SQLException e) {
+                            requeue(uuid, write);
+                            throw e;
+                        } finally {
+                            this.writes++;
+                        }
+                    }
+
+                    if (!this.table.executeTake(c, uuid, amount)) {
+                        return false;
+                    }
+                }
+
+                // a value being loaded may have been selected before the take
+                this.writes++;
+                this.values.computeIfPresent(uuid, (k, v) -> v.value == null ? v : new Cached<>(this.table.difference(v.value, amount)));
+                return true;
+            }
+        });
+    }
+
+    Promise<List<Map.Entry<UUID, T>>> getOrderedPage(int page, int entriesPerPage) {
+        long key = ((long) page << 32) | (entriesPerPage & 0xFFFFFFFFL);
+        Promise<List<Map.Entry<UUID, T>>> promise = this.pages.getIfPresent(key);
+        if (promise == null) {
+            promise = this.table.selectOrderedPage(page, entriesPerPage);
+            this.pages.put(key, promise);
+
+            // don't reuse failures
+            Promise<List<Map.Entry<UUID, T>>> p = promise;
+            promise.toCompletableFuture().whenComplete((result, ex) -> {
+                if (ex != null) {
+                    this.pages.asMap().remove(key, p);
+                }
+            });
+        }
+        return promise;
+    }
+
+    private void flush() {
+        synchronized (this.writeLock) {
+            // swap first, so writes queued from here on wait for the next flush
+            Promise<Void> flushing = this.nextFlush.getAndSet(Promise.empty());
+            if (this.pending.isEmpty()) {
+                flushing.supply(null);
+                return;
+            }
+
+            Map<UUID, PendingWrite<T>> writes = new HashMap<>();
+            for (Map.Entry<UUID, PendingWrite<T>> entry : this.pending.entrySet()) {
+                if (this.pending.remove(entry.getKey(), entry.getValue())) {
+                    writes.put(entry.getKey(), entry.getValue());
+                }
+            }
+
+            Map<UUID, T> adds = new HashMap<>();
+            Map<UUID, T> sets = new HashMap<>();
+            for (Map.Entry<UUID, PendingWrite<T>> write : writes.entrySet()) {
+                (write.getValue().set ? sets : adds).put(write.getKey(), write.getValue().amount);
+            }
+
+            try (Connection c = this.table.sql.getConnection()) {
+                // one transaction, so a failure can't leave some writes applied and also requeued
+                c.setAutoCommit(false);
+                try {
+                    if (!adds.isEmpty()) {
+                        this.table.executeAdds(c, adds);
+                    }
+                    if (!sets.isEmpty()) {
+                        this.table.executeSets(c, sets);
+                    }
+                    c.commit();
+                } catch (SQLException e) {
+                    c.rollback();
+                    throw e;
+                } finally {
+                    this.writes++;
+                    c.setAutoCommit(true);
+                }
+                flushing.supply(null);
+            } catch (SQLException e) {
+                Log.severe("[helper-sql] Unable to write " + writes.size() + " values to " + this.table.table + ", will retry", e);
+                writes.forEach(this::requeue);
+                flushing.supplyException(e);
+            }
+        }
+    }
+
+    /**
+     * Selects the value for the uuid from the database, then merges it with
+     * any pending write.
+     *
+     * <p>The select is made without holding the write lock, so that it doesn't
+     * wait for a flush. If writes reach the database in the meantime the
+     * select is retried, as the pending write may already be included.</p>
+     *
+     * @param uuid the uuid
+     * @param merge called with the selected value whilst holding the write lock
+     * @param <R> the result type
+     * @return the result of the merge
+     * @throws SQLException if the select fails
+     */
+    private <R> R select(UUID uuid, Function<T, R> merge) throws SQLException {
+        while (true) {
+            long writes = this.writes;
+
+            T value;
+            try (Connection c = this.table.sql.getConnection()) {
+                value = this.table.executeSelect(c, uuid);
+            }
+
+            synchronized (this.writeLock) {
+                if (this.writes == writes) {
+                    return merge.apply(value);
+                }
+            }
+        }
+    }
+
+    private void requeue(UUID uuid, PendingWrite<T> write) {
+        // anything pending now was queued after the failed write
+        this.values.compute(uuid, (k, v) -> {
+            this.pending.merge(uuid, write, (newer, failed) -> combine(failed, newer));
+            return v;
+        });
+    }
+
+    private PendingWrite<T> combine(PendingWrite<T> first, PendingWrite<T> second) {
+        if (second.set) {
+            return second;
+        }
+        return new PendingWrite<>(first.set, this.table.sum(first.amount, second.amount));
+    }
+
+    @Nullable
+    private T apply(@Nullable PendingWrite<T> write, @Nullable T value) {
+        if (write == null) {
+            return value;
+        }
+        if (write.set || value == null) {
+            return write.amount;
+        }
+        return this.table.sum(value, write.amount);
+    }
+
+    private void execute(Connection c, UUID uuid, PendingWrite<T> write) throws SQLException {
+        if (write.set) {
+            this.table.executeSet(c, uuid, write.amount);
+        } else {
+            this.table.executeAdd(c, uuid, write.amount);
+        }
+    }
+
+    private static final class Cached<T> {
+        // null if there is no row for the uuid
+        @Nullable
+        private final T value;
+        // if the value is still being loaded, in which case it is always null
+        private final boolean loading;
+
+        Cached(@Nullable T value) {
+            this(value, false);
+        }
+
+        Cached(@Nullable T value, boolean loading) {
+            this.value = value;
+            this.loading = loading;
+        }
+    }
+
+    private static final class PendingWrite<T> {
+        // if the write replaces the value, rather than adding to it
+        private final boolean set;
+        private final T amount;
+
+        PendingWrite(boolean set, T amount) {
+            this.set = set;
+            this.amount = amount;
+        }
+    }
+}
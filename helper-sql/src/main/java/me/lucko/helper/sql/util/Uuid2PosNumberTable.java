@@ -25,11 +25,14 @@
 
 package me.lucko.helper.sql.util;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 
-import me.lucko.helper.Schedulers;
 import me.lucko.helper.promise.Promise;
 import me.lucko.helper.sql.Sql;
+import me.lucko.helper.sql.SqlDialect;
+import me.lucko.helper.sql.SqlTemplate;
+import me.lucko.helper.terminable.TerminableConsumer;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -37,92 +40,396 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
 
 public abstract class Uuid2PosNumberTable<T, O> {
-    private static final String INSERT_ADD = "INSERT INTO `{table}` (uuid, value) VALUES(?, ?) ON DUPLICATE KEY UPDATE value = value + ?";
-    private static final String INSERT_SET = "INSERT INTO `{table}` (uuid, value) VALUES(?, ?) ON DUPLICATE KEY UPDATE value = ?";
-    private static final String UPDATE_TAKE = "UPDATE `{table}` SET value = value - ? WHERE uuid=? AND value >= ?";
-    private static final String SELECT = "SELECT value FROM `{table}` WHERE uuid=?";
-    private static final String SELECT_TOP = "SELECT uuid, value FROM `{table}` ORDER BY value DESC LIMIT ?,?";
-    private static final String SELECT_MAX_PAGES = "SELECT COUNT(*) / ? max_pages FROM `{table}`";
-    protected static final String SELECT_TOTAL = "SELECT SUM(value) as total FROM `{table}`";
+    private static final String INSERT_ADD = "INSERT INTO `{table}` (`uuid`, `value`) VALUES(:uuid, :value) {on_conflict} `value` = `{table}`.`value` + :value";
+    private static final String INSERT_SET = "INSERT INTO `{table}` (`uuid`, `value`) VALUES(:uuid, :value) {on_conflict} `value` = :value";
+    private static final String UPDATE_TAKE = "UPDATE `{table}` SET `value` = `value` - :value WHERE `uuid` = :uuid AND `value` >= :value";
+    private static final String SELECT = "SELECT `value` FROM `{table}` WHERE `uuid` = :uuid";
+    private static final String SELECT_TOP = "SELECT `uuid`, `value` FROM `{table}` ORDER BY `value` DESC LIMIT :count OFFSET :offset";
+    private static final String SELECT_COUNT = "SELECT COUNT(*) AS `total` FROM `{table}`";
+    protected static final String SELECT_TOTAL = "SELECT SUM(`value`) AS `total` FROM `{table}`";
+    private static final int BATCH_CHUNK_SIZE = 1000;
+    // the WHERE clause is needed by sqlite to parse the upsert following a select
+    private static final String MIGRATE = "INSERT INTO `{table}` (`uuid`, `value`) SELECT {unhex_uuid}, `value` FROM `{legacy}` WHERE 1 = 1 {on_conflict} `value` = {excluded_value}";
+    private static final String SELECT_LEGACY = "SELECT `uuid`, `value` FROM `{legacy}`";
 
     protected final Sql sql;
     protected final String table;
+    protected final UuidStorage uuidStorage;
+
+    // statements with the table name already substituted
+    private final SqlTemplate insertAdd;
+    private final SqlTemplate insertSet;
+    private final SqlTemplate updateTake;
+    private final SqlTemplate select;
+    private final SqlTemplate selectTop;
+    private final SqlTemplate selectCount;
+    protected final String selectTotal;
+
+    // dialect specific parts of the statements
+    private final Map<String, String> placeholders;
+
+    private final SqlTemplate.Binder<T> valueBinder = this::set;
+
+    // the local cache, if enabled
+    @Nullable
+    private volatile Uuid2PosNumberCache<T, O> cache = null;
 
     protected Uuid2PosNumberTable(Sql sql, String table) {
+        this(sql, table, UuidStorage.STRING);
+    }
+
+    protected Uuid2PosNumberTable(Sql sql, String table, UuidStorage uuidStorage) {
         this.sql = sql;
         this.table = table;
+        this.uuidStorage = Objects.requireNonNull(uuidStorage, "uuidStorage");
+
+        SqlDialect dialect = sql.getDialect();
+        this.placeholders = ImmutableMap.<String, String>builder()
+                .put("table", table)
+                .put("uuid_type", uuidStorage.getColumnType(dialect))
+                .put("unsigned", dialect.supportsUnsigned() ? "UNSIGNED" : "")
+                .put("on_conflict", dialect.onConflictUpdate("`uuid`"))
+                .put("excluded_value", dialect.excluded("`value`"))
+                .build();
+
+        this.insertAdd = sql.template(INSERT_ADD, this.placeholders);
+        this.insertSet = sql.template(INSERT_SET, this.placeholders);
+        this.updateTake = sql.template(UPDATE_TAKE, this.placeholders);
+        this.select = sql.template(SELECT, this.placeholders);
+        this.selectTop = sql.template(SELECT_TOP, this.placeholders);
+        this.selectCount = sql.template(SELECT_COUNT, this.placeholders);
+        this.selectTotal = resolve(SELECT_TOTAL);
     }
 
+    // replaces placeholders in a statement without parameters, and translates it for the dialect
+    private String resolve(String s) {
+        for (Map.Entry<String, String> placeholder : this.placeholders.entrySet()) {
+            s = s.replace("{" + placeholder.getKey() + "}", placeholder.getValue());
+        }
+        return this.sql.getDialect().translate(s);
+    }
+
+    /**
+     * Gets the statement used to create the table.
+     *
+     * <p>{@code {table}} is replaced with the table name, {@code {uuid_type}}
+     * with the column type for the {@link UuidStorage}, and {@code {unsigned}}
+     * with {@code UNSIGNED} where the database supports it. Identifiers should
+     * be quoted with backticks, which are translated for the database's
+     * {@link SqlDialect}.</p>
+     *
+     * @return the create statement
+     */
     protected abstract String getCreateStmt();
 
     protected abstract void set(PreparedStatement ps, int paramIndex, T value) throws SQLException;
 
     protected abstract T get(ResultSet rs, String columnLabel) throws SQLException;
 
-    protected abstract O getOptional(ResultSet rs, String columnLabel) throws SQLException;
+    /**
+     * Gets the value in the column as an optional.
+     *
+     * @param rs the result set
+     * @param columnLabel the column
+     * @return the value
+     * @throws SQLException if the value can't be read
+     * @deprecated override {@link #optional(Object)} instead
+     */
+    @Deprecated
+    protected O getOptional(ResultSet rs, String columnLabel) throws SQLException {
+        return optional(get(rs, columnLabel));
+    }
 
     protected abstract O emptyOptional();
 
+    /**
+     * Wraps a value in an optional.
+     *
+     * <p>Must be implemented for the table to be {@link #enableCache cached}.</p>
+     *
+     * @param value the value
+     * @return the optional
+     */
+    protected O optional(T value) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not implement optional(T)");
+    }
+
+    /**
+     * Adds two values.
+     *
+     * <p>Must be implemented for the table to be {@link #enableCache cached}.</p>
+     *
+     * @param a the first value
+     * @param b the second value
+     * @return the sum
+     */
+    protected T sum(T a, T b) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not implement sum(T, T)");
+    }
+
+    /**
+     * Subtracts one value from another.
+     *
+     * <p>Must be implemented for the table to be {@link #enableCache cached}.</p>
+     *
+     * @param a the value
+     * @param b the value to subtract
+     * @return the difference
+     */
+    protected T difference(T a, T b) {
+        throw new UnsupportedOperationException(getClass().getName() + " does not implement difference(T, T)");
+    }
+
     /**
      * Initialises the table.
      */
     public void init() {
         try (Connection c = sql.getConnection()) {
             try (Statement s = c.createStatement()) {
-                s.execute(getCreateStmt().replace("{table}", table));
+                s.execute(resolve(getCreateStmt()));
             }
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Copies the values from a table using {@link UuidStorage#STRING} storage
+     * into this table, which must use {@link UuidStorage#BINARY} storage.
+     *
+     * <p>Values already present in this table are overwritten. The legacy
+     * table is left in place, and can be dropped once the migration has been
+     * checked.</p>
+     *
+     * <p>If the dialect can't {@link SqlDialect#supportsUnhex() convert} the
+     * uuids in sql, the rows are read and written back in batches instead.</p>
+     *
+     * <p>This should be called after {@link #init()}.</p>
+     *
+     * @param legacyTable the name of the table to migrate from
+     * @throws SQLException if the migration fails
+     */
+    public void migrateFrom(String legacyTable) throws SQLException {
+        Objects.requireNonNull(legacyTable, "legacyTable");
+        if (this.uuidStorage != UuidStorage.BINARY) {
+            throw new IllegalStateException("Only tables with BINARY uuid storage can be migrated to");
+        }
+
+        SqlDialect dialect = sql.getDialect();
+        try (Connection c = sql.getConnection()) {
+            if (!dialect.supportsUnhex()) {
+                copyFrom(c, legacyTable);
+                return;
+            }
+
+            try (Statement s = c.createStatement()) {
+                s.execute(resolve(MIGRATE
+                        .replace("{legacy}", legacyTable)
+                        .replace("{unhex_uuid}", dialect.unhex("REPLACE(`uuid`, '-', '')"))
+                ));
+            }
+        }
+    }
+
+    // converts the uuids here instead, for dialects which can't do it in sql
+    private void copyFrom(Connection c, String legacyTable) throws SQLException {
+        Map<UUID, T> values = new HashMap<>();
+        try (Statement s = c.createStatement(); ResultSet rs = s.executeQuery(resolve(SELECT_LEGACY.replace("{legacy}", legacyTable)))) {
+            while (rs.next()) {
+                values.put(UuidStorage.STRING.get(rs, "uuid"), get(rs, "value"));
+                if (values.size() >= BATCH_CHUNK_SIZE) {
+                    executeSets(c, values);
+                    values.clear();
+                }
+            }
+        }
+        if (!values.isEmpty()) {
+            executeSets(c, values);
+        }
+    }
+
+    /**
+     * Enables a local cache for this table.
+     *
+     * <p>Values for online players (and any uuids passed to {@link #cache(UUID)})
+     * are held in memory, and {@link #get(UUID)} is answered from memory for them.</p>
+     *
+     * <p>{@code add} and {@code set} are applied to the cache straight away, and
+     * are written to the database in batches on the given interval. Several adds
+     * to the same uuid are written as a single update. The promises they return
+     * complete once the write has been made.</p>
+     *
+     * <p>{@code take} is still checked against the database, after any pending
+     * writes for the uuid have been made, so values never become negative.</p>
+     *
+     * <p>Pages returned by {@link #getOrderedPage(int, int)} are reused for
+     * {@code pageDuration}, so may not reflect recent changes.</p>
+     *
+     * @param consumer the consumer to bind the cache to. Pending writes are made when it is closed
+     * @param flushInterval the interval in ticks between writes
+     * @param pageDuration how long to reuse pages for
+     * @param unit the unit of {@code pageDuration}
+     */
+    public void enableCache(TerminableConsumer consumer, long flushInterval, long pageDuration, TimeUnit unit) {
+        Objects.requireNonNull(consumer, "consumer");
+        Objects.requireNonNull(unit, "unit");
+        if (this.cache != null) {
+            throw new IllegalStateException("Cache is already enabled");
+        }
+
+        Uuid2PosNumberCache<T, O> cache = new Uuid2PosNumberCache<>(this, pageDuration, unit);
+        cache.setup(consumer, flushInterval);
+        this.cache = cache;
+    }
+
+    /**
+     * Loads the value for the given uuid into the local cache.
+     *
+     * <p>Values for online players are loaded automatically.</p>
+     *
+     * @param uuid the uuid
+     * @return a promise which completes once the value has been loaded
+     * @throws IllegalStateException if the cache is not enabled
+     */
+    public Promise<Void> cache(UUID uuid) {
+        Objects.requireNonNull(uuid, "uuid");
+        return requireCache().load(uuid);
+    }
+
+    /**
+     * Removes the value for the given uuid from the local cache.
+     *
+     * <p>Pending writes for the uuid are still made.</p>
+     *
+     * @param uuid the uuid
+     * @throws IllegalStateException if the cache is not enabled
+     */
+    public void uncache(UUID uuid) {
+        Objects.requireNonNull(uuid, "uuid");
+        requireCache().unload(uuid);
+    }
+
+    private Uuid2PosNumberCache<T, O> requireCache() {
+        Uuid2PosNumberCache<T, O> cache = this.cache;
+        if (cache == null) {
+            throw new IllegalStateException("Cache is not enabled");
+        }
+        return cache;
+    }
+
     protected Promise<Void> doAdd(UUID uuid, T amount) {
-        return Schedulers.async().call(() -> {
+        Uuid2PosNumberCache<T, O> cache = this.cache;
+        if (cache != null) {
+            return cache.add(uuid, amount);
+        }
+
+        return sql.callAsync(() -> {
             try (Connection c = sql.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(INSERT_ADD.replace("{table}", table))) {
-                    ps.setString(1, uuid.toString());
-                    set(ps, 2, amount);
-                    set(ps, 3, amount);
-                    ps.execute();
-                }
+                executeAdd(c, uuid, amount);
             }
             return null;
         });
     }
 
     protected Promise<Void> doSet(UUID uuid, T amount) {
-        return Schedulers.async().call(() -> {
+        Uuid2PosNumberCache<T, O> cache = this.cache;
+        if (cache != null) {
+            return cache.set(uuid, amount);
+        }
+
+        return sql.callAsync(() -> {
             try (Connection c = sql.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(INSERT_SET.replace("{table}", table))) {
-                    ps.setString(1, uuid.toString());
-                    set(ps, 2, amount);
-                    set(ps, 3, amount);
-                    ps.execute();
-                }
+                executeSet(c, uuid, amount);
             }
             return null;
         });
     }
 
     protected Promise<Boolean> doTake(UUID uuid, T amount) {
-        return Schedulers.async().call(() -> {
+        Uuid2PosNumberCache<T, O> cache = this.cache;
+        if (cache != null) {
+            return cache.take(uuid, amount);
+        }
+
+        return sql.callAsync(() -> {
             try (Connection c = sql.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(UPDATE_TAKE.replace("{table}", table))) {
-                    set(ps, 1, amount);
-                    ps.setString(2, uuid.toString());
-                    set(ps, 3, amount);
-                    return ps.executeUpdate() != 0;
-                }
+                return executeTake(c, uuid, amount);
             }
         });
     }
 
+    void executeAdd(Connection c, UUID uuid, T amount) throws SQLException {
+        executeUpsert(c, this.insertAdd, uuid, amount);
+    }
+
+    void executeAdds(Connection c, Map<UUID, T> amounts) throws SQLException {
+        executeUpserts(c, this.insertAdd, amounts);
+    }
+
+    void executeSet(Connection c, UUID uuid, T amount) throws SQLException {
+        executeUpsert(c, this.insertSet, uuid, amount);
+    }
+
+    void executeSets(Connection c, Map<UUID, T> amounts) throws SQLException {
+        executeUpserts(c, this.insertSet, amounts);
+    }
+
+    private void executeUpsert(Connection c, SqlTemplate template, UUID uuid, T amount) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(template.getStatement())) {
+            template.set(ps, "uuid", this.uuidStorage, uuid);
+            template.set(ps, "value", this.valueBinder, amount);
+            ps.execute();
+        }
+    }
+
+    private void executeUpserts(Connection c, SqlTemplate template, Map<UUID, T> amounts) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(template.getStatement())) {
+            int rows = 0;
+            for (Map.Entry<UUID, T> amount : amounts.entrySet()) {
+                template.set(ps, "uuid", this.uuidStorage, amount.getKey());
+                template.set(ps, "value", this.valueBinder, amount.getValue());
+                ps.addBatch();
+
+                // send in chunks, to keep each within max_allowed_packet
+                if (++rows % BATCH_CHUNK_SIZE == 0) {
+                    ps.executeBatch();
+                }
+            }
+            if (rows % BATCH_CHUNK_SIZE != 0) {
+                ps.executeBatch();
+            }
+        }
+    }
+
+    boolean executeTake(Connection c, UUID uuid, T amount) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(this.updateTake.getStatement())) {
+            this.updateTake.set(ps, "uuid", this.uuidStorage, uuid);
+            this.updateTake.set(ps, "value", this.valueBinder, amount);
+            return ps.executeUpdate() != 0;
+        }
+    }
+
+    @Nullable
+    T executeSelect(Connection c, UUID uuid) throws SQLException {
+        try (PreparedStatement ps = c.prepareStatement(this.select.getStatement())) {
+            this.select.set(ps, "uuid", this.uuidStorage, uuid);
+
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? get(rs, "value") : null;
+            }
+        }
+    }
+
     /**
      * Gets the {@code amount}.
      *
@@ -132,18 +439,18 @@ public abstract class Uuid2PosNumberTable<T, O> {
     public Promise<O> get(UUID uuid) {
         Objects.requireNonNull(uuid, "uuid");
 
-        return Schedulers.async().call(() -> {
-            try (Connection c = sql.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(SELECT.replace("{table}", table))) {
-                    ps.setString(1, uuid.toString());
+        Uuid2PosNumberCache<T, O> cache = this.cache;
+        if (cache != null) {
+            return cache.get(uuid);
+        }
 
-                    try (ResultSet rs = ps.executeQuery()) {
-                        if (rs.next()) {
-                            return getOptional(rs, "value");
-                        } else {
-                            return emptyOptional();
-                        }
-                    }
+        return sql.callAsync(() -> {
+            try (Connection c = sql.getConnection(); PreparedStatement ps = c.prepareStatement(this.select.getStatement())) {
+                this.select.set(ps, "uuid", this.uuidStorage, uuid);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    //noinspection deprecation - still used by tables which don't implement optional(T)
+                    return rs.next() ? getOptional(rs, "value") : emptyOptional();
                 }
             }
         });
@@ -152,16 +459,19 @@ public abstract class Uuid2PosNumberTable<T, O> {
     /**
      * Gets the max number of pages, assuming the given entries per page.
      *
+     * <p>This is read from a replica when one is available, so may not
+     * yet include the most recent changes.</p>
+     *
      * @param entriesPerPage the entries per page
      * @return the max pages
      */
     public Promise<Integer> getOrderedMaxPages(int entriesPerPage) {
-        return Schedulers.async().call(() -> {
-            try (Connection c = sql.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(SELECT_MAX_PAGES.replace("{table}", table))) {
-                    ps.setInt(1, entriesPerPage);
+        return sql.callAsync(() -> {
+            try (Connection c = sql.getReadConnection()) {
+                try (PreparedStatement ps = c.prepareStatement(this.selectCount.getStatement())) {
                     try (ResultSet rs = ps.executeQuery()) {
-                        return rs.next() ? (int) Math.ceil(rs.getDouble("max_pages")) : 0;
+                        long total = rs.next() ? rs.getLong("total") : 0;
+                        return (int) ((total + entriesPerPage - 1) / entriesPerPage);
                     }
                 }
             }
@@ -171,24 +481,34 @@ public abstract class Uuid2PosNumberTable<T, O> {
     /**
      * Gets a page.
      *
+     * <p>This is read from a replica when one is available, so may not
+     * yet include the most recent changes.</p>
+     *
      * @param page the page
      * @param entriesPerPage the number of entries per page
      * @return the page
      */
     public Promise<List<Map.Entry<UUID, T>>> getOrderedPage(int page, int entriesPerPage) {
-        int min = page * entriesPerPage;
-        int max = page + entriesPerPage;
-        return Schedulers.async().call(() -> {
+        Uuid2PosNumberCache<T, O> cache = this.cache;
+        if (cache != null) {
+            return cache.getOrderedPage(page, entriesPerPage);
+        }
+        return selectOrderedPage(page, entriesPerPage);
+    }
+
+    Promise<List<Map.Entry<UUID, T>>> selectOrderedPage(int page, int entriesPerPage) {
+        int offset = page * entriesPerPage;
+        return sql.callAsync(() -> {
             List<Map.Entry<UUID, T>> entries = new ArrayList<>();
-            try (Connection c = sql.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement(SELECT_TOP.replace("{table}", table))) {
-                    ps.setInt(1, min);
-                    ps.setInt(2, max);
+            try (Connection c = sql.getReadConnection()) {
+                try (PreparedStatement ps = c.prepareStatement(this.selectTop.getStatement())) {
+                    this.selectTop.set(ps, "offset", offset);
+                    this.selectTop.set(ps, "count", entriesPerPage);
 
                     try (ResultSet rs = ps.executeQuery()) {
                         while (rs.next()) {
                             entries.add(Maps.immutableEntry(
-                                    UUID.fromString(rs.getString("uuid")),
+                                    this.uuidStorage.get(rs, "uuid"),
                                     get(rs, "value")
                             ));
                         }
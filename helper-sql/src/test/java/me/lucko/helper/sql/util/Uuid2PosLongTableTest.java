@@ -0,0 +1,156 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.sql.util;
+
+import me.lucko.helper.internal.LoaderUtils;
+import me.lucko.helper.plugin.HelperPlugin;
+import me.lucko.helper.sql.DatabaseCredentials;
+import me.lucko.helper.sql.SqlDialect;
+import me.lucko.helper.sql.plugin.HelperSql;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs {@link Uuid2PosLongTable} against an in-memory H2 database.
+ */
+public class Uuid2PosLongTableTest {
+    private static final AtomicInteger DATABASE_COUNTER = new AtomicInteger(0);
+
+    private static final UUID FIRST = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID SECOND = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private static final UUID THIRD = UUID.fromString("00000000-0000-0000-0000-000000000003");
+
+    private HelperSql sql;
+
+    @BeforeAll
+    public static void setupLogger() {
+        // Log writes to the logger of the plugin which loaded helper, so provide one
+        Logger logger = Logger.getLogger("helper-sql-test");
+        LoaderUtils.forceSetPlugin((HelperPlugin) Proxy.newProxyInstance(
+                HelperPlugin.class.getClassLoader(),
+                new Class<?>[]{HelperPlugin.class},
+                (proxy, method, args) -> method.getName().equals("getLogger") ? logger : null
+        ));
+    }
+
+    @BeforeEach
+    public void setup() {
+        // a separate database for each test
+        String database = "mem:helper-sql-" + DATABASE_COUNTER.getAndIncrement();
+        this.sql = new HelperSql(DatabaseCredentials.of(SqlDialect.H2, "localhost", 0, database, "sa", ""));
+    }
+
+    @AfterEach
+    public void teardown() {
+        this.sql.close();
+    }
+
+    private Uuid2PosLongTable createTable(String name, UuidStorage uuidStorage) {
+        Uuid2PosLongTable table = new Uuid2PosLongTable(this.sql, name, uuidStorage);
+        table.init();
+        return table;
+    }
+
+    @Test
+    public void testAddSetAndTake() {
+        for (UuidStorage uuidStorage : UuidStorage.values()) {
+            Uuid2PosLongTable table = createTable("balances_" + uuidStorage.name().toLowerCase(), uuidStorage);
+
+            assertEquals(OptionalLong.empty(), table.get(FIRST).join());
+
+            table.add(FIRST, 10).join();
+            table.add(FIRST, 5).join();
+            assertEquals(OptionalLong.of(15), table.get(FIRST).join());
+
+            table.set(FIRST, 100).join();
+            assertEquals(OptionalLong.of(100), table.get(FIRST).join());
+
+            assertTrue(table.take(FIRST, 60).join());
+            assertFalse(table.take(FIRST, 60).join());
+            assertFalse(table.take(SECOND, 1).join());
+            assertEquals(OptionalLong.of(40), table.get(FIRST).join());
+        }
+    }
+
+    @Test
+    public void testOrderedPages() {
+        Uuid2PosLongTable table = createTable("balances", UuidStorage.BINARY);
+        table.set(FIRST, 10).join();
+        table.set(SECOND, 30).join();
+        table.set(THIRD, 20).join();
+
+        assertEquals(2, (int) table.getOrderedMaxPages(2).join());
+        assertEquals(60L, (long) table.total().join());
+
+        List<Map.Entry<UUID, Long>> first = table.getOrderedPage(0, 2).join();
+        assertEquals(2, first.size());
+        assertEquals(SECOND, first.get(0).getKey());
+        assertEquals(30L, (long) first.get(0).getValue());
+        assertEquals(THIRD, first.get(1).getKey());
+        assertEquals(20L, (long) first.get(1).getValue());
+
+        List<Map.Entry<UUID, Long>> second = table.getOrderedPage(1, 2).join();
+        assertEquals(1, second.size());
+        assertEquals(FIRST, second.get(0).getKey());
+        assertEquals(10L, (long) second.get(0).getValue());
+    }
+
+    @Test
+    public void testMigrateFrom() throws Exception {
+        Uuid2PosLongTable legacy = createTable("legacy_balances", UuidStorage.STRING);
+        legacy.set(FIRST, 10).join();
+        legacy.set(SECOND, 20).join();
+
+        Uuid2PosLongTable table = createTable("balances", UuidStorage.BINARY);
+        table.set(SECOND, 5).join();
+        table.set(THIRD, 30).join();
+
+        // H2 can't unhex, so the uuids are converted in Java
+        table.migrateFrom("legacy_balances");
+
+        assertEquals(OptionalLong.of(10), table.get(FIRST).join());
+        assertEquals(OptionalLong.of(20), table.get(SECOND).join());
+        assertEquals(OptionalLong.of(30), table.get(THIRD).join());
+
+        // the legacy table is left in place
+        assertEquals(OptionalLong.of(10), legacy.get(FIRST).join());
+    }
+}
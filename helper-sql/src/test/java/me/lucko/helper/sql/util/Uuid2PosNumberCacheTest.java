@@ -0,0 +1,193 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.sql.util;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import me.lucko.helper.promise.Promise;
+import me.lucko.helper.sql.Sql;
+import me.lucko.helper.sql.batch.BatchBuilder;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import be.bendem.sqlstreams.SqlStream;
+import be.bendem.sqlstreams.util.SqlConsumer;
+import be.bendem.sqlstreams.util.SqlFunction;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class Uuid2PosNumberCacheTest {
+    private static final UUID UUID = java.util.UUID.randomUUID();
+
+    private final ExecutorSql sql = new ExecutorSql();
+    private final AtomicLong balance = new AtomicLong(100);
+    private final AtomicInteger selects = new AtomicInteger();
+
+    // the first select waits on these, so other operations can be made whilst it is in progress
+    private final CountDownLatch selecting = new CountDownLatch(1);
+    private final CountDownLatch proceed = new CountDownLatch(1);
+
+    private final Uuid2PosLongTable table = new Uuid2PosLongTable(this.sql, "test") {
+        @Override
+        Long executeSelect(Connection c, UUID uuid) {
+            long value = Uuid2PosNumberCacheTest.this.balance.get();
+            if (Uuid2PosNumberCacheTest.this.selects.getAndIncrement() == 0) {
+                Uuid2PosNumberCacheTest.this.selecting.countDown();
+                await(Uuid2PosNumberCacheTest.this.proceed);
+            }
+            return value;
+        }
+
+        @Override
+        boolean executeTake(Connection c, UUID uuid, Long amount) {
+            long current;
+            do {
+                current = Uuid2PosNumberCacheTest.this.balance.get();
+                if (current < amount) {
+                    return false;
+                }
+            } while (!Uuid2PosNumberCacheTest.this.balance.compareAndSet(current, current - amount));
+            return true;
+        }
+    };
+
+    private final Uuid2PosNumberCache<Long, OptionalLong> cache = new Uuid2PosNumberCache<>(this.table, 1, TimeUnit.MINUTES);
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @AfterEach
+    public void teardown() {
+        this.sql.close();
+    }
+
+    @Test
+    public void testTakeDuringLoad() {
+        Promise<Void> load = this.cache.load(UUID);
+        await(this.selecting);
+
+        // committed after the load selected the old value, but before it was cached
+        assertTrue(this.cache.take(UUID, 50L).join());
+        this.proceed.countDown();
+        load.join();
+
+        assertEquals(50L, this.balance.get());
+        assertEquals(OptionalLong.of(50L), this.cache.get(UUID).join());
+    }
+
+    @Test
+    public void testLoadAfterUnload() {
+        this.cache.load(UUID);
+        await(this.selecting);
+
+        this.cache.unload(UUID);
+        this.proceed.countDown();
+
+        // not cached, so read from the database again
+        int selects = this.selects.get();
+        assertEquals(OptionalLong.of(100L), this.cache.get(UUID).join());
+        assertTrue(this.selects.get() > selects);
+    }
+
+    /**
+     * A {@link Sql} which only runs tasks, for tables which don't touch the database.
+     */
+    private static final class ExecutorSql implements Sql {
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+
+        @Nonnull
+        @Override
+        public HikariDataSource getHikari() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Nonnull
+        @Override
+        public Connection getConnection() {
+            // the table's statements are replaced, so no connection is needed
+            return null;
+        }
+
+        @Nonnull
+        @Override
+        public SqlStream stream() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Nonnull
+        @Override
+        public ExecutorService getExecutor() {
+            return this.executor;
+        }
+
+        @Override
+        public void execute(@Nonnull String statement, @Nonnull SqlConsumer<PreparedStatement> preparer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <R> Optional<R> query(@Nonnull String query, @Nonnull SqlConsumer<PreparedStatement> preparer, @Nonnull SqlFunction<ResultSet, R> handler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void executeBatch(@Nonnull BatchBuilder builder) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public BatchBuilder batch(@Nonnull String statement) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            this.executor.shutdownNow();
+        }
+    }
+}
@@ -28,6 +28,7 @@ package me.lucko.helper.cooldown;
 import java.util.Map;
 import java.util.Objects;
 import java.util.OptionalLong;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nonnull;
@@ -51,6 +52,36 @@ public interface CooldownMap<T> {
         return new CooldownMapImpl<>(base);
     }
 
+    /**
+     * Creates a new collection keyed by {@link UUID}s, with the cooldown properties defined by the base instance.
+     *
+     * <p>Unlike {@link #create(Cooldown)}, the returned map only stores a timestamp for
+     * each key, in a primitive hash table.</p>
+     *
+     * @param base the cooldown to base off
+     * @return a new collection
+     */
+    @Nonnull
+    static CooldownMap<UUID> createForUuids(@Nonnull Cooldown base) {
+        Objects.requireNonNull(base, "base");
+        return new PrimitiveCooldownMap.ForUuid(base);
+    }
+
+    /**
+     * Creates a new collection keyed by {@link Long}s, with the cooldown properties defined by the base instance.
+     *
+     * <p>Unlike {@link #create(Cooldown)}, the returned map only stores a timestamp for
+     * each key, in a primitive hash table.</p>
+     *
+     * @param base the cooldown to base off
+     * @return a new collection
+     */
+    @Nonnull
+    static CooldownMap<Long> createForLongs(@Nonnull Cooldown base) {
+        Objects.requireNonNull(base, "base");
+        return new PrimitiveCooldownMap.ForLong(base);
+    }
+
     /**
      * Gets the base cooldown
      *
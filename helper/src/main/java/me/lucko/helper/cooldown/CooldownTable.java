@@ -0,0 +1,359 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.cooldown;
+
+import me.lucko.helper.Schedulers;
+import me.lucko.helper.time.Time;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A concurrent open-addressing hash table which maps 128 bit keys to
+ * last-tested timestamps.
+ *
+ * <p>A timestamp of <code>0</code> means the key has never been tested, so it
+ * is used to mark empty slots. Setting a key to <code>0</code> removes it.</p>
+ *
+ * <p>Entries which have been inactive for longer than the expiry time are
+ * removed lazily when they are read, and each segment is swept periodically
+ * as it is written to. All tables are also swept by the helper async timer,
+ * so a table which stops receiving writes still releases its expired keys.</p>
+ */
+final class CooldownTable {
+    private static final int SEGMENT_COUNT = 16;
+    private static final int SEGMENT_SHIFT = 32 - Integer.numberOfTrailingZeros(SEGMENT_COUNT);
+    private static final int MIN_CAPACITY = 8;
+
+    private static final long SWEEP_INTERVAL_SECONDS = 60L;
+    private static final AtomicBoolean SWEEPER_STARTED = new AtomicBoolean(false);
+    // held weakly, so tables which are no longer used can be collected
+    private static final Set<CooldownTable> TABLES = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private static void register(CooldownTable table) {
+        TABLES.add(table);
+        if (!SWEEPER_STARTED.getAndSet(true)) {
+            Schedulers.builder()
+                    .async()
+                    .afterAndEvery(SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS)
+                    .run(CooldownTable::sweepAll);
+        }
+    }
+
+    private static void sweepAll() {
+        List<CooldownTable> tables;
+        synchronized (TABLES) {
+            tables = new ArrayList<>(TABLES);
+        }
+
+        long now = Time.nowMillis();
+        for (CooldownTable table : tables) {
+            table.sweep(now);
+        }
+    }
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    /** How long a timestamp is kept for after it was last tested */
+    private final long expiryMillis;
+
+    CooldownTable(long expiryMillis) {
+        this.expiryMillis = expiryMillis;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            this.segments[i] = new Segment();
+        }
+        register(this);
+    }
+
+    private static int hash(long hi, long lo) {
+        long h = (hi * 0x9E3779B97F4A7C15L) ^ (lo * 0xC2B2AE3D27D4EB4FL);
+        h ^= (h >>> 31);
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private Segment segment(int hash) {
+        return this.segments[hash >>> SEGMENT_SHIFT];
+    }
+
+    /**
+     * Gets the last tested time for the given key.
+     *
+     * @param hi the upper 64 bits of the key
+     * @param lo the lower 64 bits of the key
+     * @param now the current time
+     * @return the last tested time, or 0
+     */
+    long get(long hi, long lo, long now) {
+        int hash = hash(hi, lo);
+        return segment(hash).get(hash, hi, lo, now);
+    }
+
+    /**
+     * Sets the last tested time for the given key.
+     *
+     * @param hi the upper 64 bits of the key
+     * @param lo the lower 64 bits of the key
+     * @param time the time, or 0 to remove the key
+     * @param now the current time
+     */
+    void set(long hi, long lo, long time, long now) {
+        int hash = hash(hi, lo);
+        segment(hash).set(hash, hi, lo, time, now);
+    }
+
+    /**
+     * Atomically tests if the cooldown for the given key is inactive, and
+     * resets it if so.
+     *
+     * @param hi the upper 64 bits of the key
+     * @param lo the lower 64 bits of the key
+     * @param timeout the cooldown timeout
+     * @param now the current time
+     * @return true if the cooldown was not active
+     */
+    boolean testAndReset(long hi, long lo, long timeout, long now) {
+        int hash = hash(hi, lo);
+        return segment(hash).testAndReset(hash, hi, lo, timeout, now);
+    }
+
+    /**
+     * Performs an action for each (unexpired) entry in the table.
+     *
+     * <p>Each segment is copied before the action is called, so the action
+     * may safely modify the table.</p>
+     *
+     * @param now the current time
+     * @param action the action
+     */
+    void forEach(long now, EntryConsumer action) {
+        for (Segment segment : this.segments) {
+            long[] entries = segment.snapshot(now);
+            for (int i = 0; i < entries.length; i += 3) {
+                action.accept(entries[i], entries[i + 1], entries[i + 2]);
+            }
+        }
+    }
+
+    /**
+     * Removes all expired entries from the table, and shrinks segments which
+     * are mostly empty.
+     *
+     * @param now the current time
+     */
+    void sweep(long now) {
+        for (Segment segment : this.segments) {
+            segment.sweep(now);
+        }
+    }
+
+    @FunctionalInterface
+    interface EntryConsumer {
+        void accept(long hi, long lo, long lastTested);
+    }
+
+    private final class Segment {
+        private long[] his = new long[MIN_CAPACITY];
+        private long[] los = new long[MIN_CAPACITY];
+        private long[] times = new long[MIN_CAPACITY];
+        private int size = 0;
+
+        private int writes = 0;
+        private long lastSweep = 0;
+
+        private boolean isExpired(long time, long now) {
+            return now - time > CooldownTable.this.expiryMillis;
+        }
+
+        private int find(int hash, long hi, long lo) {
+            int mask = this.times.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                if (this.times[i] == 0) {
+                    return -1;
+                }
+                if (this.his[i] == hi && this.los[i] == lo) {
+                    return i;
+                }
+            }
+        }
+
+        synchronized long get(int hash, long hi, long lo, long now) {
+            int slot = find(hash, hi, lo);
+            if (slot == -1) {
+                return 0;
+            }
+
+            long time = this.times[slot];
+            if (isExpired(time, now)) {
+                removeAt(slot);
+                return 0;
+            }
+            return time;
+        }
+
+        synchronized void set(int hash, long hi, long lo, long time, long now) {
+            if (time <= 0) {
+                int slot = find(hash, hi, lo);
+                if (slot != -1) {
+                    removeAt(slot);
+                }
+            } else {
+                put(hash, hi, lo, time);
+            }
+            maybeSweep(now);
+        }
+
+        synchronized boolean testAndReset(int hash, long hi, long lo, long timeout, long now) {
+            int slot = find(hash, hi, lo);
+            if (slot != -1 && now - this.times[slot] <= timeout) {
+                return false;
+            }
+
+            if (slot != -1) {
+                this.times[slot] = now;
+            } else {
+                put(hash, hi, lo, now);
+            }
+            maybeSweep(now);
+            return true;
+        }
+
+        synchronized long[] snapshot(long now) {
+            long[] result = new long[this.size * 3];
+            int n = 0;
+            for (int i = 0; i < this.times.length; i++) {
+                long time = this.times[i];
+                if (time != 0 && !isExpired(time, now)) {
+                    result[n++] = this.his[i];
+                    result[n++] = this.los[i];
+                    result[n++] = time;
+                }
+            }
+            return n == result.length ? result : Arrays.copyOf(result, n);
+        }
+
+        private void put(int hash, long hi, long lo, long time) {
+            int mask = this.times.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                if (this.times[i] == 0) {
+                    this.his[i] = hi;
+                    this.los[i] = lo;
+                    this.times[i] = time;
+                    if (++this.size * 2 > this.times.length) {
+                        resize(this.times.length * 2);
+                    }
+                    return;
+                }
+                if (this.his[i] == hi && this.los[i] == lo) {
+                    this.times[i] = time;
+                    return;
+                }
+            }
+        }
+
+        private void removeAt(int slot) {
+            int mask = this.times.length - 1;
+
+            // shift back any following entries which would no longer be reachable
+            int gap = slot;
+            for (int i = (slot + 1) & mask; this.times[i] != 0; i = (i + 1) & mask) {
+                int ideal = hash(this.his[i], this.los[i]) & mask;
+                if (((i - ideal) & mask) >= ((i - gap) & mask)) {
+                    this.his[gap] = this.his[i];
+                    this.los[gap] = this.los[i];
+                    this.times[gap] = this.times[i];
+                    gap = i;
+                }
+            }
+            this.times[gap] = 0;
+            this.size--;
+        }
+
+        private void maybeSweep(long now) {
+            // only check the clock every so often
+            if ((++this.writes & 0xFF) != 0 || now - this.lastSweep < CooldownTable.this.expiryMillis) {
+                return;
+            }
+            removeExpired(now);
+        }
+
+        synchronized void sweep(long now) {
+            removeExpired(now);
+
+            // release the space left behind once most entries have gone
+            int capacity = this.times.length;
+            while (capacity > MIN_CAPACITY && this.size * 8 < capacity) {
+                capacity >>= 1;
+            }
+            if (capacity != this.times.length) {
+                resize(capacity);
+            }
+        }
+
+        private void removeExpired(long now) {
+            this.lastSweep = now;
+
+            for (int i = 0; i < this.times.length; ) {
+                long time = this.times[i];
+                if (time != 0 && isExpired(time, now)) {
+                    // an entry may have been shifted into this slot, so check it again
+                    removeAt(i);
+                } else {
+                    i++;
+                }
+            }
+        }
+
+        private void resize(int capacity) {
+            long[] oldHis = this.his;
+            long[] oldLos = this.los;
+            long[] oldTimes = this.times;
+
+            this.his = new long[capacity];
+            this.los = new long[capacity];
+            this.times = new long[capacity];
+
+            int mask = capacity - 1;
+            for (int i = 0; i < oldTimes.length; i++) {
+                if (oldTimes[i] != 0) {
+                    for (int j = hash(oldHis[i], oldLos[i]) & mask; ; j = (j + 1) & mask) {
+                        if (this.times[j] == 0) {
+                            this.his[j] = oldHis[i];
+                            this.los[j] = oldLos[i];
+                            this.times[j] = oldTimes[i];
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
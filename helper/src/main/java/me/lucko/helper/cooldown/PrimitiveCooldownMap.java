@@ -0,0 +1,243 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.cooldown;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonElement;
+
+import me.lucko.helper.gson.JsonBuilder;
+import me.lucko.helper.time.Time;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link CooldownMap} which only stores a last-tested timestamp for each key,
+ * in a {@link CooldownTable}.
+ *
+ * <p>Keys are encoded into two longs. {@link Cooldown} instances are only created
+ * when requested via {@link #get(Object)} or {@link #getAll()}, and act as views
+ * of the entry in this map.</p>
+ *
+ * @param <T> the key type
+ */
+abstract class PrimitiveCooldownMap<T> implements CooldownMap<T> {
+
+    private final Cooldown base;
+    private final long timeout;
+    private final CooldownTable table;
+
+    PrimitiveCooldownMap(Cooldown base) {
+        this.base = base;
+        this.timeout = base.getTimeout();
+        // remove from the map 10 seconds after the cooldown expires
+        this.table = new CooldownTable(this.timeout + 10000L);
+    }
+
+    abstract long hi(T key);
+
+    abstract long lo(T key);
+
+    abstract T key(long hi, long lo);
+
+    @Nonnull
+    @Override
+    public Cooldown getBase() {
+        return this.base;
+    }
+
+    @Nonnull
+    @Override
+    public Cooldown get(@Nonnull T key) {
+        Objects.requireNonNull(key, "key");
+        return new View(hi(key), lo(key));
+    }
+
+    @Override
+    public void put(@Nonnull T key, @Nonnull Cooldown cooldown) {
+        Objects.requireNonNull(key, "key");
+        Preconditions.checkArgument(cooldown.getTimeout() == this.timeout, "different timeout");
+        this.table.set(hi(key), lo(key), cooldown.getLastTested().orElse(0), Time.nowMillis());
+    }
+
+    @Nonnull
+    @Override
+    public Map<T, Cooldown> getAll() {
+        ImmutableMap.Builder<T, Cooldown> ret = ImmutableMap.builder();
+        this.table.forEach(Time.nowMillis(), (hi, lo, lastTested) -> ret.put(key(hi, lo), new View(hi, lo)));
+        return ret.build();
+    }
+
+    /* methods from Cooldown, implemented directly against the table */
+
+    private long lastTested(T key) {
+        Objects.requireNonNull(key, "key");
+        return this.table.get(hi(key), lo(key), Time.nowMillis());
+    }
+
+    @Override
+    public boolean test(@Nonnull T key) {
+        Objects.requireNonNull(key, "key");
+        return this.table.testAndReset(hi(key), lo(key), this.timeout, Time.nowMillis());
+    }
+
+    @Override
+    public boolean testSilently(@Nonnull T key) {
+        return elapsed(key) > this.timeout;
+    }
+
+    @Override
+    public long elapsed(@Nonnull T key) {
+        return Time.nowMillis() - lastTested(key);
+    }
+
+    @Override
+    public void reset(@Nonnull T key) {
+        setLastTested(key, Time.nowMillis());
+    }
+
+    @Override
+    public long remainingMillis(@Nonnull T key) {
+        long diff = elapsed(key);
+        return diff > this.timeout ? 0L : this.timeout - diff;
+    }
+
+    @Override
+    public long remainingTime(@Nonnull T key, @Nonnull TimeUnit unit) {
+        return Math.max(0L, unit.convert(remainingMillis(key), TimeUnit.MILLISECONDS));
+    }
+
+    @Nonnull
+    @Override
+    public OptionalLong getLastTested(@Nonnull T key) {
+        long lastTested = lastTested(key);
+        return lastTested == 0 ? OptionalLong.empty() : OptionalLong.of(lastTested);
+    }
+
+    @Override
+    public void setLastTested(@Nonnull T key, long time) {
+        Objects.requireNonNull(key, "key");
+        this.table.set(hi(key), lo(key), time, Time.nowMillis());
+    }
+
+    /**
+     * A {@link Cooldown} which reads and writes an entry in the table.
+     */
+    private final class View implements Cooldown {
+        private final long hi;
+        private final long lo;
+
+        View(long hi, long lo) {
+            this.hi = hi;
+            this.lo = lo;
+        }
+
+        @Override
+        public boolean test() {
+            return PrimitiveCooldownMap.this.table.testAndReset(this.hi, this.lo, PrimitiveCooldownMap.this.timeout, Time.nowMillis());
+        }
+
+        @Nonnull
+        @Override
+        public OptionalLong getLastTested() {
+            long lastTested = PrimitiveCooldownMap.this.table.get(this.hi, this.lo, Time.nowMillis());
+            return lastTested == 0 ? OptionalLong.empty() : OptionalLong.of(lastTested);
+        }
+
+        @Override
+        public void setLastTested(long time) {
+            PrimitiveCooldownMap.this.table.set(this.hi, this.lo, time, Time.nowMillis());
+        }
+
+        @Override
+        public long getTimeout() {
+            return PrimitiveCooldownMap.this.timeout;
+        }
+
+        @Nonnull
+        @Override
+        public Cooldown copy() {
+            return Cooldown.of(PrimitiveCooldownMap.this.timeout, TimeUnit.MILLISECONDS);
+        }
+
+        @Nonnull
+        @Override
+        public JsonElement serialize() {
+            return JsonBuilder.object()
+                    .add("lastTested", getLastTested().orElse(0))
+                    .add("timeout", PrimitiveCooldownMap.this.timeout)
+                    .build();
+        }
+    }
+
+    static final class ForUuid extends PrimitiveCooldownMap<UUID> {
+        ForUuid(Cooldown base) {
+            super(base);
+        }
+
+        @Override
+        long hi(UUID key) {
+            return key.getMostSignificantBits();
+        }
+
+        @Override
+        long lo(UUID key) {
+            return key.getLeastSignificantBits();
+        }
+
+        @Override
+        UUID key(long hi, long lo) {
+            return new UUID(hi, lo);
+        }
+    }
+
+    static final class ForLong extends PrimitiveCooldownMap<Long> {
+        ForLong(Cooldown base) {
+            super(base);
+        }
+
+        @Override
+        long hi(Long key) {
+            return 0L;
+        }
+
+        @Override
+        long lo(Long key) {
+            return key;
+        }
+
+        @Override
+        Long key(long hi, long lo) {
+            return lo;
+        }
+    }
+}
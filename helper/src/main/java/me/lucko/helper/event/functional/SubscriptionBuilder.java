@@ -25,6 +25,8 @@
 
 package me.lucko.helper.event.functional;
 
+import me.lucko.helper.event.metrics.SubscriptionMetricsRegistry;
+import me.lucko.helper.event.metrics.SubscriptionRecorder;
 import me.lucko.helper.internal.exception.HelperExceptions;
 
 import java.util.concurrent.TimeUnit;
@@ -87,4 +89,38 @@ public interface SubscriptionBuilder<T> {
     @Nonnull
     SubscriptionBuilder<T> filter(@Nonnull Predicate<T> predicate);
 
+    /**
+     * Enables timing instrumentation for the handler.
+     *
+     * <p>The recorded metrics can be obtained from the {@link SubscriptionMetricsRegistry}.</p>
+     *
+     * <p>Calls are timed at the {@link SubscriptionRecorder#DEFAULT_SAMPLE_RATE default sample rate}.</p>
+     *
+     * @param name the name to record metrics under
+     * @return the builder instance
+     */
+    @Nonnull
+    default SubscriptionBuilder<T> instrument(@Nonnull String name) {
+        return instrument(name, SubscriptionRecorder.DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * Enables timing instrumentation for the handler.
+     *
+     * <p>The recorded metrics can be obtained from the {@link SubscriptionMetricsRegistry}.</p>
+     *
+     * <p>Only one in every <code>sampleRate</code> calls is timed, to keep the overhead low.
+     * Filter rejections and exceptions are counted for every call.</p>
+     *
+     * @param name the name to record metrics under
+     * @param sampleRate the sample rate, rounded up to the nearest power of two
+     * @return the builder instance
+     * @throws IllegalArgumentException if sampleRate is less than 1 or greater than 2<sup>30</sup>
+     * @throws UnsupportedOperationException if the builder does not support instrumentation
+     */
+    @Nonnull
+    default SubscriptionBuilder<T> instrument(@Nonnull String name, int sampleRate) {
+        throw new UnsupportedOperationException("Instrumentation is not supported by " + getClass().getName());
+    }
+
 }
@@ -30,6 +30,7 @@ import com.google.common.reflect.TypeToken;
 
 import me.lucko.helper.Helper;
 import me.lucko.helper.event.MergedSubscription;
+import me.lucko.helper.event.metrics.SubscriptionRecorder;
 
 import org.bukkit.event.Event;
 import org.bukkit.event.EventPriority;
@@ -55,6 +56,7 @@ import java.util.function.Function;
 import java.util.function.Predicate;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 class HelperMergedEventListener<T> implements MergedSubscription<T>, EventExecutor, Listener {
     private final TypeToken<T> handledClass;
@@ -68,6 +70,9 @@ class HelperMergedEventListener<T> implements MergedSubscription<T>, EventExecut
     private final BiPredicate<MergedSubscription<T>, T>[] postExpiryTests;
     private final BiConsumer<MergedSubscription<T>, ? super T>[] handlers;
 
+    @Nullable
+    private final SubscriptionRecorder recorder;
+
     private final AtomicLong callCount = new AtomicLong(0);
     private final AtomicBoolean active = new AtomicBoolean(true);
 
@@ -82,6 +87,12 @@ class HelperMergedEventListener<T> implements MergedSubscription<T>, EventExecut
         this.midExpiryTests = builder.midExpiryTests.toArray(new BiPredicate[builder.midExpiryTests.size()]);
         this.postExpiryTests = builder.postExpiryTests.toArray(new BiPredicate[builder.postExpiryTests.size()]);
         this.handlers = handlers.toArray(new BiConsumer[handlers.size()]);
+        this.recorder = builder.instrumentName == null ? null : SubscriptionRecorder.create(builder.instrumentName, builder.instrumentSampleRate);
+    }
+
+    @Nullable
+    SubscriptionRecorder getRecorder() {
+        return this.recorder;
     }
 
     void register(Plugin plugin) {
@@ -111,6 +122,21 @@ class HelperMergedEventListener<T> implements MergedSubscription<T>, EventExecut
             return;
         }
 
+        SubscriptionRecorder recorder = this.recorder;
+        if (recorder == null) {
+            handle(listener, event, mapping);
+            return;
+        }
+
+        long start = recorder.start();
+        try {
+            handle(listener, event, mapping);
+        } finally {
+            recorder.stop(start);
+        }
+    }
+
+    private void handle(Listener listener, Event event, MergedHandlerMapping<T, ? extends Event> mapping) {
         Function<Object, T> function = mapping.getFunction();
 
         // this handler is disabled, so unregister from the event.
@@ -136,6 +162,9 @@ class HelperMergedEventListener<T> implements MergedSubscription<T>, EventExecut
             // check the filters
             for (Predicate<T> filter : this.filters) {
                 if (!filter.test(handledInstance)) {
+                    if (this.recorder != null) {
+                        this.recorder.recordFilterRejection();
+                    }
                     return;
                 }
             }
@@ -157,6 +186,9 @@ class HelperMergedEventListener<T> implements MergedSubscription<T>, EventExecut
             // increment call counter
             this.callCount.incrementAndGet();
         } catch (Throwable t) {
+            if (this.recorder != null) {
+                this.recorder.recordException();
+            }
             this.exceptionConsumer.accept(event, t);
         }
 
@@ -26,6 +26,7 @@
 package me.lucko.helper.event.functional.merged;
 
 import me.lucko.helper.event.MergedSubscription;
+import me.lucko.helper.event.metrics.SubscriptionMetricsRegistry;
 import me.lucko.helper.internal.LoaderUtils;
 
 import java.util.ArrayList;
@@ -60,6 +61,9 @@ class MergedHandlerListImpl<T> implements MergedHandlerList<T> {
 
         HelperMergedEventListener<T> listener = new HelperMergedEventListener<>(this.builder, this.handlers);
         listener.register(LoaderUtils.getPlugin());
+        if (listener.getRecorder() != null) {
+            SubscriptionMetricsRegistry.register(listener, listener.getRecorder());
+        }
         return listener;
     }
 }
@@ -31,6 +31,7 @@ import com.google.common.reflect.TypeToken;
 import me.lucko.helper.event.MergedSubscription;
 import me.lucko.helper.event.functional.ExpiryTestStage;
 import me.lucko.helper.event.functional.SubscriptionBuilder;
+import me.lucko.helper.event.metrics.SubscriptionRecorder;
 import me.lucko.helper.utils.Delegates;
 
 import org.bukkit.event.Event;
@@ -147,6 +148,18 @@ public interface MergedSubscriptionBuilder<T> extends SubscriptionBuilder<T> {
     @Override
     MergedSubscriptionBuilder<T> filter(@Nonnull Predicate<T> predicate);
 
+    @Nonnull
+    @Override
+    default MergedSubscriptionBuilder<T> instrument(@Nonnull String name) {
+        return instrument(name, SubscriptionRecorder.DEFAULT_SAMPLE_RATE);
+    }
+
+    @Nonnull
+    @Override
+    default MergedSubscriptionBuilder<T> instrument(@Nonnull String name, int sampleRate) {
+        throw new UnsupportedOperationException("Instrumentation is not supported by " + getClass().getName());
+    }
+
     /**
      * Add a expiry predicate.
      *
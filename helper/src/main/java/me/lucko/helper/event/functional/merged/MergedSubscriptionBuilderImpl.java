@@ -25,6 +25,7 @@
 
 package me.lucko.helper.event.functional.merged;
 
+import com.google.common.base.Preconditions;
 import com.google.common.reflect.TypeToken;
 
 import me.lucko.helper.event.MergedSubscription;
@@ -50,6 +51,8 @@ class MergedSubscriptionBuilderImpl<T> implements MergedSubscriptionBuilder<T> {
     final Map<Class<? extends Event>, MergedHandlerMapping<T, ? extends Event>> mappings = new HashMap<>();
 
     BiConsumer<? super Event, Throwable> exceptionConsumer = DEFAULT_EXCEPTION_CONSUMER;
+    String instrumentName = null;
+    int instrumentSampleRate = 0;
 
     final List<Predicate<T>> filters = new ArrayList<>();
     final List<BiPredicate<MergedSubscription<T>, T>> preExpiryTests = new ArrayList<>(0);
@@ -108,6 +111,17 @@ class MergedSubscriptionBuilderImpl<T> implements MergedSubscriptionBuilder<T> {
         return this;
     }
 
+    @Nonnull
+    @Override
+    public MergedSubscriptionBuilder<T> instrument(@Nonnull String name, int sampleRate) {
+        Objects.requireNonNull(name, "name");
+        Preconditions.checkArgument(sampleRate >= 1, "sampleRate < 1");
+        Preconditions.checkArgument(sampleRate <= (1 << 30), "sampleRate too large");
+        this.instrumentName = name;
+        this.instrumentSampleRate = sampleRate;
+        return this;
+    }
+
     @Nonnull
     @Override
     public MergedSubscriptionBuilder<T> exceptionConsumer(@Nonnull BiConsumer<Event, Throwable> exceptionConsumer) {
@@ -30,6 +30,7 @@ import com.comphenix.protocol.events.PacketAdapter;
 import com.comphenix.protocol.events.PacketEvent;
 
 import me.lucko.helper.event.ProtocolSubscription;
+import me.lucko.helper.event.metrics.SubscriptionRecorder;
 import me.lucko.helper.internal.LoaderUtils;
 import me.lucko.helper.protocol.Protocol;
 
@@ -45,6 +46,7 @@ import java.util.function.BiPredicate;
 import java.util.function.Predicate;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 class HelperProtocolListener extends PacketAdapter implements ProtocolSubscription {
     private final Set<PacketType> types;
@@ -57,6 +59,9 @@ class HelperProtocolListener extends PacketAdapter implements ProtocolSubscripti
     private final BiPredicate<ProtocolSubscription, PacketEvent>[] postExpiryTests;
     private final BiConsumer<ProtocolSubscription, ? super PacketEvent>[] handlers;
 
+    @Nullable
+    private final SubscriptionRecorder recorder;
+
     private final AtomicLong callCount = new AtomicLong(0);
     private final AtomicBoolean active = new AtomicBoolean(true);
 
@@ -72,6 +77,7 @@ class HelperProtocolListener extends PacketAdapter implements ProtocolSubscripti
         this.midExpiryTests = builder.midExpiryTests.toArray(new BiPredicate[builder.midExpiryTests.size()]);
         this.postExpiryTests = builder.postExpiryTests.toArray(new BiPredicate[builder.postExpiryTests.size()]);
         this.handlers = handlers.toArray(new BiConsumer[handlers.size()]);
+        this.recorder = builder.instrumentName == null ? null : SubscriptionRecorder.create(builder.instrumentName, builder.instrumentSampleRate);
 
         Protocol.manager().addPacketListener(this);
     }
@@ -92,6 +98,21 @@ class HelperProtocolListener extends PacketAdapter implements ProtocolSubscripti
             return;
         }
 
+        SubscriptionRecorder recorder = this.recorder;
+        if (recorder == null) {
+            handle(event);
+            return;
+        }
+
+        long start = recorder.start();
+        try {
+            handle(event);
+        } finally {
+            recorder.stop(start);
+        }
+    }
+
+    private void handle(PacketEvent event) {
         // this handler is disabled, so don't listen
         if (!this.active.get()) {
             return;
@@ -110,6 +131,9 @@ class HelperProtocolListener extends PacketAdapter implements ProtocolSubscripti
             // check the filters
             for (Predicate<PacketEvent> filter : this.filters) {
                 if (!filter.test(event)) {
+                    if (this.recorder != null) {
+                        this.recorder.recordFilterRejection();
+                    }
                     return;
                 }
             }
@@ -130,6 +154,9 @@ class HelperProtocolListener extends PacketAdapter implements ProtocolSubscripti
             // increment call counter
             this.callCount.incrementAndGet();
         } catch (Throwable t) {
+            if (this.recorder != null) {
+                this.recorder.recordException();
+            }
             this.exceptionConsumer.accept(event, t);
         }
 
@@ -142,6 +169,11 @@ class HelperProtocolListener extends PacketAdapter implements ProtocolSubscripti
         }
     }
 
+    @Nullable
+    SubscriptionRecorder getRecorder() {
+        return this.recorder;
+    }
+
     @Nonnull
     @Override
     public Set<PacketType> getPackets() {
@@ -28,6 +28,7 @@ package me.lucko.helper.event.functional.protocol;
 import com.comphenix.protocol.events.PacketEvent;
 
 import me.lucko.helper.event.ProtocolSubscription;
+import me.lucko.helper.event.metrics.SubscriptionMetricsRegistry;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -55,6 +56,10 @@ class ProtocolHandlerListImpl implements ProtocolHandlerList {
     @Nonnull
     @Override
     public ProtocolSubscription register() {
-        return new HelperProtocolListener(builder, handlers);
+        HelperProtocolListener listener = new HelperProtocolListener(this.builder, this.handlers);
+        if (listener.getRecorder() != null) {
+            SubscriptionMetricsRegistry.register(listener, listener.getRecorder());
+        }
+        return listener;
     }
 }
@@ -34,6 +34,7 @@ import com.google.common.collect.ImmutableSet;
 import me.lucko.helper.event.ProtocolSubscription;
 import me.lucko.helper.event.functional.ExpiryTestStage;
 import me.lucko.helper.event.functional.SubscriptionBuilder;
+import me.lucko.helper.event.metrics.SubscriptionRecorder;
 import me.lucko.helper.utils.Delegates;
 
 import java.util.Objects;
@@ -103,6 +104,18 @@ public interface ProtocolSubscriptionBuilder extends SubscriptionBuilder<PacketE
     @Override
     ProtocolSubscriptionBuilder filter(@Nonnull Predicate<PacketEvent> predicate);
 
+    @Nonnull
+    @Override
+    default ProtocolSubscriptionBuilder instrument(@Nonnull String name) {
+        return instrument(name, SubscriptionRecorder.DEFAULT_SAMPLE_RATE);
+    }
+
+    @Nonnull
+    @Override
+    default ProtocolSubscriptionBuilder instrument(@Nonnull String name, int sampleRate) {
+        throw new UnsupportedOperationException("Instrumentation is not supported by " + getClass().getName());
+    }
+
     /**
      * Add a expiry predicate.
      *
@@ -28,6 +28,7 @@ package me.lucko.helper.event.functional.protocol;
 import com.comphenix.protocol.PacketType;
 import com.comphenix.protocol.events.ListenerPriority;
 import com.comphenix.protocol.events.PacketEvent;
+import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
 
 import me.lucko.helper.event.ProtocolSubscription;
@@ -48,6 +49,8 @@ class ProtocolSubscriptionBuilderImpl implements ProtocolSubscriptionBuilder {
     final ListenerPriority priority;
 
     BiConsumer<? super PacketEvent, Throwable> exceptionConsumer = DEFAULT_EXCEPTION_CONSUMER;
+    String instrumentName = null;
+    int instrumentSampleRate = 0;
 
     final List<Predicate<PacketEvent>> filters = new ArrayList<>(3);
     final List<BiPredicate<ProtocolSubscription, PacketEvent>> preExpiryTests = new ArrayList<>(0);
@@ -90,6 +93,17 @@ class ProtocolSubscriptionBuilderImpl implements ProtocolSubscriptionBuilder {
         return this;
     }
 
+    @Nonnull
+    @Override
+    public ProtocolSubscriptionBuilder instrument(@Nonnull String name, int sampleRate) {
+        Objects.requireNonNull(name, "name");
+        Preconditions.checkArgument(sampleRate >= 1, "sampleRate < 1");
+        Preconditions.checkArgument(sampleRate <= (1 << 30), "sampleRate too large");
+        this.instrumentName = name;
+        this.instrumentSampleRate = sampleRate;
+        return this;
+    }
+
     @Nonnull
     @Override
     public ProtocolSubscriptionBuilder exceptionConsumer(@Nonnull BiConsumer<? super PacketEvent, Throwable> exceptionConsumer) {
@@ -27,6 +27,7 @@ package me.lucko.helper.event.functional.single;
 
 import me.lucko.helper.Helper;
 import me.lucko.helper.event.SingleSubscription;
+import me.lucko.helper.event.metrics.SubscriptionRecorder;
 
 import org.bukkit.event.Event;
 import org.bukkit.event.EventPriority;
@@ -47,6 +48,7 @@ import java.util.function.BiPredicate;
 import java.util.function.Predicate;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 class HelperEventListener<T extends Event> implements SingleSubscription<T>, EventExecutor, Listener {
     private final Class<T> eventClass;
@@ -61,9 +63,16 @@ class HelperEventListener<T extends Event> implements SingleSubscription<T>, Eve
     private final BiPredicate<SingleSubscription<T>, T>[] postExpiryTests;
     private final BiConsumer<SingleSubscription<T>, ? super T>[] handlers;
 
+    @Nullable
+    private final SubscriptionRecorder recorder;
+
     private final AtomicLong callCount = new AtomicLong(0);
     private final AtomicBoolean active = new AtomicBoolean(true);
 
+    // the shared dispatcher this listener is registered with, if any
+    @Nullable
+    private volatile SharedEventDispatcher<T> dispatcher = null;
+
     @SuppressWarnings("unchecked")
     HelperEventListener(SingleSubscriptionBuilderImpl<T> builder, List<BiConsumer<SingleSubscription<T>, ? super T>> handlers) {
         this.eventClass = builder.eventClass;
@@ -76,12 +85,30 @@ class HelperEventListener<T extends Event> implements SingleSubscription<T>, Eve
         this.midExpiryTests = builder.midExpiryTests.toArray(new BiPredicate[builder.midExpiryTests.size()]);
         this.postExpiryTests = builder.postExpiryTests.toArray(new BiPredicate[builder.postExpiryTests.size()]);
         this.handlers = handlers.toArray(new BiConsumer[handlers.size()]);
+        this.recorder = builder.instrumentName == null ? null : SubscriptionRecorder.create(builder.instrumentName, builder.instrumentSampleRate);
     }
 
     void register(Plugin plugin) {
         Helper.plugins().registerEvent(this.eventClass, this, this.priority, this, plugin, false);
     }
 
+    void setDispatcher(SharedEventDispatcher<T> dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    EventPriority getPriority() {
+        return this.priority;
+    }
+
+    boolean isHandleSubclasses() {
+        return this.handleSubclasses;
+    }
+
+    @Nullable
+    SubscriptionRecorder getRecorder() {
+        return this.recorder;
+    }
+
     @Override
     public void execute(Listener listener, Event event) {
         // check we actually want this event
@@ -95,9 +122,33 @@ class HelperEventListener<T extends Event> implements SingleSubscription<T>, Eve
             }
         }
 
+        dispatch(event);
+    }
+
+    /**
+     * Handles the event, assuming it has already been checked to be of an accepted type.
+     *
+     * @param event the event
+     */
+    void dispatch(Event event) {
+        SubscriptionRecorder recorder = this.recorder;
+        if (recorder == null) {
+            handle(event);
+            return;
+        }
+
+        long start = recorder.start();
+        try {
+            handle(event);
+        } finally {
+            recorder.stop(start);
+        }
+    }
+
+    private void handle(Event event) {
         // this handler is disabled, so unregister from the event.
         if (!this.active.get()) {
-            event.getHandlers().unregister(listener);
+            detach(event);
             return;
         }
 
@@ -107,7 +158,7 @@ class HelperEventListener<T extends Event> implements SingleSubscription<T>, Eve
         // check pre-expiry tests
         for (BiPredicate<SingleSubscription<T>, T> test : this.preExpiryTests) {
             if (test.test(this, eventInstance)) {
-                event.getHandlers().unregister(listener);
+                detach(event);
                 this.active.set(false);
                 return;
             }
@@ -118,6 +169,9 @@ class HelperEventListener<T extends Event> implements SingleSubscription<T>, Eve
             // check the filters
             for (Predicate<T> filter : this.filters) {
                 if (!filter.test(eventInstance)) {
+                    if (this.recorder != null) {
+                        this.recorder.recordFilterRejection();
+                    }
                     return;
                 }
             }
@@ -125,7 +179,7 @@ class HelperEventListener<T extends Event> implements SingleSubscription<T>, Eve
             // check mid-expiry tests
             for (BiPredicate<SingleSubscription<T>, T> test : this.midExpiryTests) {
                 if (test.test(this, eventInstance)) {
-                    event.getHandlers().unregister(listener);
+                    detach(event);
                     this.active.set(false);
                     return;
                 }
@@ -139,13 +193,16 @@ class HelperEventListener<T extends Event> implements SingleSubscription<T>, Eve
             // increment call counter
             this.callCount.incrementAndGet();
         } catch (Throwable t) {
+            if (this.recorder != null) {
+                this.recorder.recordException();
+            }
             this.exceptionConsumer.accept(eventInstance, t);
         }
 
         // check post-expiry tests
         for (BiPredicate<SingleSubscription<T>, T> test : this.postExpiryTests) {
             if (test.test(this, eventInstance)) {
-                event.getHandlers().unregister(listener);
+                detach(event);
                 this.active.set(false);
                 return;
             }
@@ -183,11 +240,26 @@ class HelperEventListener<T extends Event> implements SingleSubscription<T>, Eve
         // also remove the handler directly, just in case the event has a really low throughput.
         // (the event would also be unregistered next time it's called - but this obviously assumes
         // the event will be called again soon)
-        unregisterListener(this.eventClass, this);
+        SharedEventDispatcher<T> dispatcher = this.dispatcher;
+        if (dispatcher != null) {
+            dispatcher.remove(this);
+        } else {
+            unregisterListener(this.eventClass, this);
+        }
 
         return true;
     }
 
+    // removes this listener from whatever is dispatching events to it
+    private void detach(Event event) {
+        SharedEventDispatcher<T> dispatcher = this.dispatcher;
+        if (dispatcher != null) {
+            dispatcher.remove(this);
+        } else {
+            event.getHandlers().unregister(this);
+        }
+    }
+
     @Override
     public Collection<Object> getFunctions() {
         List<Object> functions = new ArrayList<>();
@@ -0,0 +1,242 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.event.functional.single;
+
+import me.lucko.helper.Helper;
+import me.lucko.helper.internal.exception.HelperExceptions;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.plugin.EventExecutor;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A single Bukkit listener which dispatches an event to all of the
+ * {@link HelperEventListener}s subscribed to it at a given priority.
+ *
+ * <p>Subscriptions are held in a copy-on-write array, and the set of subscriptions
+ * which apply to each concrete event class is resolved once and cached, so a
+ * dispatch is a single loop over a precomputed array.</p>
+ *
+ * @param <T> the event type
+ */
+final class SharedEventDispatcher<T extends Event> implements EventExecutor, Listener {
+
+    private static final Map<Key, SharedEventDispatcher<?>> DISPATCHERS = new HashMap<>();
+
+    // the plugins dispatchers are registered with, which are dropped once the plugin is disabled
+    private static final Set<Plugin> PLUGINS = new HashSet<>();
+
+    /**
+     * Adds the given listener to the shared dispatcher for its event class and priority,
+     * creating and registering the dispatcher if necessary.
+     *
+     * <p>Dispatchers are shared between listeners registered with the same plugin.
+     * Bukkit unregisters them when that plugin is disabled, so they are discarded
+     * at the same time, and are recreated if the plugin is enabled again.</p>
+     *
+     * @param listener the listener
+     * @param plugin the plugin to register the dispatcher with
+     * @param <T> the event type
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Event> void register(HelperEventListener<T> listener, Plugin plugin) {
+        Key key = new Key(listener.getEventClass(), listener.getPriority(), plugin);
+        synchronized (DISPATCHERS) {
+            if (PLUGINS.add(plugin)) {
+                Helper.plugins().registerEvent(PluginDisableEvent.class, new Listener() {}, EventPriority.MONITOR, (l, e) -> {
+                    if (e instanceof PluginDisableEvent && ((PluginDisableEvent) e).getPlugin() == plugin) {
+                        unregisterAll(plugin);
+                    }
+                }, plugin, false);
+            }
+
+            SharedEventDispatcher<T> dispatcher = (SharedEventDispatcher<T>) DISPATCHERS.get(key);
+            if (dispatcher == null) {
+                dispatcher = new SharedEventDispatcher<>(key, listener.getEventClass());
+                Helper.plugins().registerEvent(key.eventClass, dispatcher, key.priority, dispatcher, plugin, false);
+                DISPATCHERS.put(key, dispatcher);
+            }
+            dispatcher.add(listener);
+        }
+    }
+
+    private static void unregisterAll(Plugin plugin) {
+        synchronized (DISPATCHERS) {
+            // Bukkit has already unregistered (or is about to unregister) the dispatchers
+            if (PLUGINS.remove(plugin)) {
+                DISPATCHERS.keySet().removeIf(key -> key.plugin == plugin);
+            }
+        }
+    }
+
+    private final Key key;
+    private final Class<T> eventClass;
+
+    // replaced whenever a subscription is added or removed
+    private volatile Snapshot<T> snapshot;
+
+    private SharedEventDispatcher(Key key, Class<T> eventClass) {
+        this.key = key;
+        this.eventClass = eventClass;
+        this.snapshot = new Snapshot<>(eventClass, new HelperEventListener[0]);
+    }
+
+    // called while holding the DISPATCHERS lock
+    private void add(HelperEventListener<T> listener) {
+        HelperEventListener<T>[] current = this.snapshot.listeners;
+        HelperEventListener<T>[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = listener;
+        this.snapshot = new Snapshot<>(this.eventClass, updated);
+        listener.setDispatcher(this);
+    }
+
+    /**
+     * Removes a listener from this dispatcher, unregistering the dispatcher
+     * from Bukkit if it is no longer needed.
+     *
+     * @param listener the listener to remove
+     */
+    void remove(HelperEventListener<T> listener) {
+        synchronized (DISPATCHERS) {
+            HelperEventListener<T>[] current = this.snapshot.listeners;
+            List<HelperEventListener<T>> updated = new ArrayList<>(current.length);
+            for (HelperEventListener<T> l : current) {
+                if (l != listener) {
+                    updated.add(l);
+                }
+            }
+            if (updated.size() == current.length) {
+                return;
+            }
+
+            //noinspection unchecked
+            this.snapshot = new Snapshot<>(this.eventClass, updated.toArray(new HelperEventListener[0]));
+
+            if (updated.isEmpty() && DISPATCHERS.remove(this.key, this)) {
+                unregisterListener(this.eventClass, this);
+            }
+        }
+    }
+
+    @Override
+    public void execute(Listener listener, Event event) {
+        HelperEventListener<T>[] listeners = this.snapshot.forEventClass(event.getClass());
+        for (HelperEventListener<T> l : listeners) {
+            try {
+                l.dispatch(event);
+            } catch (Throwable t) {
+                HelperExceptions.reportEvent(event, t);
+            }
+        }
+    }
+
+    private static void unregisterListener(Class<? extends Event> eventClass, Listener listener) {
+        try {
+            // unfortunately we can't cache this reflect call, as the method is static
+            Method getHandlerListMethod = eventClass.getMethod("getHandlerList");
+            HandlerList handlerList = (HandlerList) getHandlerListMethod.invoke(null);
+            handlerList.unregister(listener);
+        } catch (Throwable t) {
+            // ignored
+        }
+    }
+
+    /**
+     * An immutable view of the subscriptions held by a dispatcher, with
+     * a lazily populated cache of the subscriptions which apply to each concrete event class.
+     */
+    private static final class Snapshot<T extends Event> {
+        private final Class<T> eventClass;
+        private final HelperEventListener<T>[] listeners;
+        private final HelperEventListener<T>[] subclassListeners;
+        private final Map<Class<?>, HelperEventListener<T>[]> resolved = new ConcurrentHashMap<>();
+
+        @SuppressWarnings("unchecked")
+        Snapshot(Class<T> eventClass, HelperEventListener<T>[] listeners) {
+            this.eventClass = eventClass;
+            this.listeners = listeners;
+            this.subclassListeners = Arrays.stream(listeners)
+                    .filter(HelperEventListener::isHandleSubclasses)
+                    .toArray(HelperEventListener[]::new);
+        }
+
+        HelperEventListener<T>[] forEventClass(Class<?> type) {
+            if (type == this.eventClass) {
+                return this.listeners;
+            }
+
+            // events of other types sharing the same HandlerList are only passed
+            // to subscriptions which handle subclasses
+            HelperEventListener<T>[] ret = this.resolved.get(type);
+            if (ret == null) {
+                ret = this.eventClass.isAssignableFrom(type) ? this.subclassListeners : Arrays.copyOf(this.subclassListeners, 0);
+                this.resolved.put(type, ret);
+            }
+            return ret;
+        }
+    }
+
+    private static final class Key {
+        private final Class<? extends Event> eventClass;
+        private final EventPriority priority;
+        private final Plugin plugin;
+
+        Key(Class<? extends Event> eventClass, EventPriority priority, Plugin plugin) {
+            this.eventClass = eventClass;
+            this.priority = priority;
+            this.plugin = plugin;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if (!(o instanceof Key)) return false;
+            final Key other = (Key) o;
+            return this.eventClass == other.eventClass && this.priority == other.priority && this.plugin == other.plugin;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.eventClass, this.priority, this.plugin);
+        }
+    }
+
+}
@@ -26,6 +26,7 @@
 package me.lucko.helper.event.functional.single;
 
 import me.lucko.helper.event.SingleSubscription;
+import me.lucko.helper.event.metrics.SubscriptionMetricsRegistry;
 import me.lucko.helper.internal.LoaderUtils;
 
 import org.bukkit.event.Event;
@@ -61,7 +62,14 @@ class SingleHandlerListImpl<T extends Event> implements SingleHandlerList<T> {
         }
 
         HelperEventListener<T> listener = new HelperEventListener<>(this.builder, this.handlers);
-        listener.register(LoaderUtils.getPlugin());
+        if (this.builder.sharedDispatch) {
+            SharedEventDispatcher.register(listener, LoaderUtils.getPlugin());
+        } else {
+            listener.register(LoaderUtils.getPlugin());
+        }
+        if (listener.getRecorder() != null) {
+            SubscriptionMetricsRegistry.register(listener, listener.getRecorder());
+        }
         return listener;
     }
 }
@@ -30,6 +30,7 @@ import com.google.common.base.Preconditions;
 import me.lucko.helper.event.SingleSubscription;
 import me.lucko.helper.event.functional.ExpiryTestStage;
 import me.lucko.helper.event.functional.SubscriptionBuilder;
+import me.lucko.helper.event.metrics.SubscriptionRecorder;
 import me.lucko.helper.utils.Delegates;
 
 import org.bukkit.event.Event;
@@ -108,6 +109,18 @@ public interface SingleSubscriptionBuilder<T extends Event> extends Subscription
     @Override
     SingleSubscriptionBuilder<T> filter(@Nonnull Predicate<T> predicate);
 
+    @Nonnull
+    @Override
+    default SingleSubscriptionBuilder<T> instrument(@Nonnull String name) {
+        return instrument(name, SubscriptionRecorder.DEFAULT_SAMPLE_RATE);
+    }
+
+    @Nonnull
+    @Override
+    default SingleSubscriptionBuilder<T> instrument(@Nonnull String name, int sampleRate) {
+        throw new UnsupportedOperationException("Instrumentation is not supported by " + getClass().getName());
+    }
+
     /**
      * Add a expiry predicate.
      *
@@ -138,6 +151,19 @@ public interface SingleSubscriptionBuilder<T extends Event> extends Subscription
     @Nonnull
     SingleSubscriptionBuilder<T> handleSubclasses();
 
+    /**
+     * Sets that the handler should be dispatched to by a listener shared with all other
+     * handlers for the same event class and priority, instead of being registered with
+     * Bukkit as a listener of its own.
+     *
+     * <p>This reduces the per-event cost when a large number of handlers are subscribed
+     * to the same event.</p>
+     *
+     * @return the builder instance
+     */
+    @Nonnull
+    SingleSubscriptionBuilder<T> sharedDispatch();
+
     /**
      * Return the handler list builder to append handlers for the event.
      *
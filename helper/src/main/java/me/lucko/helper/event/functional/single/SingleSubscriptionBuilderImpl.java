@@ -25,6 +25,8 @@
 
 package me.lucko.helper.event.functional.single;
 
+import com.google.common.base.Preconditions;
+
 import me.lucko.helper.event.SingleSubscription;
 import me.lucko.helper.event.functional.ExpiryTestStage;
 
@@ -45,7 +47,10 @@ class SingleSubscriptionBuilderImpl<T extends Event> implements SingleSubscripti
     final EventPriority priority;
 
     BiConsumer<? super T, Throwable> exceptionConsumer = DEFAULT_EXCEPTION_CONSUMER;
+    String instrumentName = null;
+    int instrumentSampleRate = 0;
     boolean handleSubclasses = false;
+    boolean sharedDispatch = false;
 
     final List<Predicate<T>> filters = new ArrayList<>(3);
     final List<BiPredicate<SingleSubscription<T>, T>> preExpiryTests = new ArrayList<>(0);
@@ -88,6 +93,17 @@ class SingleSubscriptionBuilderImpl<T extends Event> implements SingleSubscripti
         return this;
     }
 
+    @Nonnull
+    @Override
+    public SingleSubscriptionBuilder<T> instrument(@Nonnull String name, int sampleRate) {
+        Objects.requireNonNull(name, "name");
+        Preconditions.checkArgument(sampleRate >= 1, "sampleRate < 1");
+        Preconditions.checkArgument(sampleRate <= (1 << 30), "sampleRate too large");
+        this.instrumentName = name;
+        this.instrumentSampleRate = sampleRate;
+        return this;
+    }
+
     @Nonnull
     @Override
     public SingleSubscriptionBuilder<T> exceptionConsumer(@Nonnull BiConsumer<? super T, Throwable> exceptionConsumer) {
@@ -103,6 +119,13 @@ class SingleSubscriptionBuilderImpl<T extends Event> implements SingleSubscripti
         return this;
     }
 
+    @Nonnull
+    @Override
+    public SingleSubscriptionBuilder<T> sharedDispatch() {
+        this.sharedDispatch = true;
+        return this;
+    }
+
     @Nonnull
     @Override
     public SingleHandlerList<T> handlers() {
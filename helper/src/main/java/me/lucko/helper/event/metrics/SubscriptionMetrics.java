@@ -0,0 +1,125 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.event.metrics;
+
+import me.lucko.helper.gson.GsonSerializable;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Timing and throughput metrics recorded for an instrumented
+ * {@link me.lucko.helper.event.Subscription}.
+ *
+ * <p>Only a sample of calls are timed - see {@link #getSampleRate()}. Counts of
+ * filter rejections and exceptions are recorded for every call.</p>
+ */
+public interface SubscriptionMetrics extends GsonSerializable {
+
+    /**
+     * Gets the name given to the subscription when it was instrumented.
+     *
+     * @return the name
+     */
+    @Nonnull
+    String getName();
+
+    /**
+     * Gets the sample rate. One in every <code>sampleRate</code> calls is timed.
+     *
+     * @return the sample rate
+     */
+    int getSampleRate();
+
+    /**
+     * Gets the number of calls which have been timed.
+     *
+     * @return the number of timed calls
+     */
+    long getSampleCount();
+
+    /**
+     * Gets the total time spent in timed calls, in nanoseconds.
+     *
+     * @return the total time of timed calls
+     */
+    long getSampledNanos();
+
+    /**
+     * Gets an estimate of the total time spent handling events, in nanoseconds.
+     *
+     * <p>This is the sampled time scaled up by the sample rate.</p>
+     *
+     * @return the estimated total time
+     */
+    default long getEstimatedTotalNanos() {
+        return getSampledNanos() * getSampleRate();
+    }
+
+    /**
+     * Gets the mean time of timed calls, in nanoseconds.
+     *
+     * @return the mean time
+     */
+    default long getMeanNanos() {
+        long count = getSampleCount();
+        return count == 0 ? 0 : getSampledNanos() / count;
+    }
+
+    /**
+     * Gets the longest time taken by a timed call, in nanoseconds.
+     *
+     * @return the maximum time
+     */
+    long getMaxNanos();
+
+    /**
+     * Gets the number of calls which were rejected by one of the subscriptions filters.
+     *
+     * @return the number of filter rejections
+     */
+    long getFilterRejections();
+
+    /**
+     * Gets the number of calls where a handler threw an exception.
+     *
+     * @return the number of exceptions
+     */
+    long getExceptions();
+
+    /**
+     * Gets the distribution of timed call durations.
+     *
+     * @return the latency histogram
+     */
+    @Nonnull
+    LatencyHistogram getHistogram();
+
+    /**
+     * Resets all recorded values.
+     */
+    void reset();
+
+}
@@ -0,0 +1,137 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.event.metrics;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonArray;
+
+import me.lucko.helper.event.Subscription;
+import me.lucko.helper.gson.JsonBuilder;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A registry of the {@link SubscriptionMetrics} for all active, instrumented subscriptions.
+ */
+public final class SubscriptionMetricsRegistry {
+    private static final Map<Subscription, SubscriptionMetrics> METRICS = new ConcurrentHashMap<>();
+
+    // the registry is pruned of inactive subscriptions when it grows past this size
+    private static volatile int pruneThreshold = 64;
+
+    /**
+     * Registers the metrics for a subscription.
+     *
+     * @param subscription the subscription
+     * @param metrics the metrics
+     */
+    public static void register(@Nonnull Subscription subscription, @Nonnull SubscriptionMetrics metrics) {
+        Objects.requireNonNull(subscription, "subscription");
+        Objects.requireNonNull(metrics, "metrics");
+        METRICS.put(subscription, metrics);
+
+        if (METRICS.size() >= pruneThreshold) {
+            prune();
+            pruneThreshold = Math.max(64, METRICS.size() * 2);
+        }
+    }
+
+    /**
+     * Gets the metrics for a subscription, if it is instrumented.
+     *
+     * @param subscription the subscription
+     * @return the metrics
+     */
+    @Nonnull
+    public static Optional<SubscriptionMetrics> get(@Nonnull Subscription subscription) {
+        Objects.requireNonNull(subscription, "subscription");
+        return Optional.ofNullable(METRICS.get(subscription));
+    }
+
+    /**
+     * Gets the metrics for all active instrumented subscriptions.
+     *
+     * @return the metrics
+     */
+    @Nonnull
+    public static ImmutableMap<Subscription, SubscriptionMetrics> getAll() {
+        prune();
+        return ImmutableMap.copyOf(METRICS);
+    }
+
+    /**
+     * Gets the metrics for all active instrumented subscriptions with the given name.
+     *
+     * @param name the name
+     * @return the metrics
+     */
+    @Nonnull
+    public static ImmutableList<SubscriptionMetrics> getByName(@Nonnull String name) {
+        Objects.requireNonNull(name, "name");
+        prune();
+        return ImmutableList.copyOf(METRICS.values().stream()
+                .filter(m -> m.getName().equals(name))
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Resets the metrics for all active instrumented subscriptions.
+     */
+    public static void resetAll() {
+        prune();
+        METRICS.values().forEach(SubscriptionMetrics::reset);
+    }
+
+    /**
+     * Exports the metrics for all active instrumented subscriptions, ordered
+     * by estimated total time (highest first).
+     *
+     * @return the exported metrics
+     */
+    @Nonnull
+    public static JsonArray export() {
+        prune();
+        return METRICS.values().stream()
+                .sorted((a, b) -> Long.compare(b.getEstimatedTotalNanos(), a.getEstimatedTotalNanos()))
+                .collect(JsonBuilder.collectSerializablesToArray());
+    }
+
+    private static void prune() {
+        METRICS.keySet().removeIf(Subscription::isClosed);
+    }
+
+    private SubscriptionMetricsRegistry() {
+        throw new UnsupportedOperationException("This class cannot be instantiated");
+    }
+
+}
@@ -0,0 +1,208 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.event.metrics;
+
+import com.google.common.base.Preconditions;
+import com.google.gson.JsonElement;
+
+import me.lucko.helper.gson.JsonBuilder;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Records {@link SubscriptionMetrics} for a subscription.
+ *
+ * <p>Instances are created when a subscription is built with
+ * {@link me.lucko.helper.event.functional.SubscriptionBuilder#instrument(String, int)}.</p>
+ */
+public final class SubscriptionRecorder implements SubscriptionMetrics {
+
+    /**
+     * The sample rate used when one is not specified
+     */
+    public static final int DEFAULT_SAMPLE_RATE = 16;
+
+    /**
+     * The value returned by {@link #start()} if the call should not be timed
+     */
+    public static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    /**
+     * Creates a new recorder.
+     *
+     * @param name the name of the subscription
+     * @param sampleRate the sample rate, rounded up to the nearest power of two
+     * @return a new recorder
+     */
+    @Nonnull
+    public static SubscriptionRecorder create(@Nonnull String name, int sampleRate) {
+        Objects.requireNonNull(name, "name");
+        Preconditions.checkArgument(sampleRate >= 1, "sampleRate < 1");
+        Preconditions.checkArgument(sampleRate <= (1 << 30), "sampleRate too large");
+        return new SubscriptionRecorder(name, sampleRate == 1 ? 1 : Integer.highestOneBit(sampleRate - 1) << 1);
+    }
+
+    private final String name;
+    private final int sampleRate;
+    private final int sampleMask;
+
+    // not thread safe - a lost update just shifts which call is sampled
+    private int calls = 0;
+
+    private final LongAdder sampleCount = new LongAdder();
+    private final LongAdder sampledNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong(0);
+    private final LongAdder filterRejections = new LongAdder();
+    private final LongAdder exceptions = new LongAdder();
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    private SubscriptionRecorder(String name, int sampleRate) {
+        this.name = name;
+        this.sampleRate = sampleRate;
+        this.sampleMask = sampleRate - 1;
+    }
+
+    /**
+     * Marks the start of a call.
+     *
+     * @return the start time, or {@link #NOT_SAMPLED} if this call isn't being timed
+     */
+    public long start() {
+        if ((++this.calls & this.sampleMask) != 0) {
+            return NOT_SAMPLED;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Marks the end of a call.
+     *
+     * @param start the value returned by {@link #start()}
+     */
+    public void stop(long start) {
+        if (start == NOT_SAMPLED) {
+            return;
+        }
+
+        long duration = System.nanoTime() - start;
+        this.sampleCount.increment();
+        this.sampledNanos.add(duration);
+        this.histogram.record(duration);
+
+        long max = this.maxNanos.get();
+        while (duration > max && !this.maxNanos.compareAndSet(max, duration)) {
+            max = this.maxNanos.get();
+        }
+    }
+
+    /**
+     * Records that a call was rejected by a filter.
+     */
+    public void recordFilterRejection() {
+        this.filterRejections.increment();
+    }
+
+    /**
+     * Records that a handler threw an exception.
+     */
+    public void recordException() {
+        this.exceptions.increment();
+    }
+
+    @Nonnull
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return this.sampleRate;
+    }
+
+    @Override
+    public long getSampleCount() {
+        return this.sampleCount.sum();
+    }
+
+    @Override
+    public long getSampledNanos() {
+        return this.sampledNanos.sum();
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return this.maxNanos.get();
+    }
+
+    @Override
+    public long getFilterRejections() {
+        return this.filterRejections.sum();
+    }
+
+    @Override
+    public long getExceptions() {
+        return this.exceptions.sum();
+    }
+
+    @Nonnull
+    @Override
+    public LatencyHistogram getHistogram() {
+        return this.histogram;
+    }
+
+    @Override
+    public void reset() {
+        this.sampleCount.reset();
+        this.sampledNanos.reset();
+        this.maxNanos.set(0);
+        this.filterRejections.reset();
+        this.exceptions.reset();
+        this.histogram.reset();
+    }
+
+    @Nonnull
+    @Override
+    public JsonElement serialize() {
+        return JsonBuilder.object()
+                .add("name", this.name)
+                .add("sampleRate", this.sampleRate)
+                .add("sampleCount", getSampleCount())
+                .add("sampledNanos", getSampledNanos())
+                .add("estimatedTotalNanos", getEstimatedTotalNanos())
+                .add("meanNanos", getMeanNanos())
+                .add("maxNanos", getMaxNanos())
+                .add("filterRejections", getFilterRejections())
+                .add("exceptions", getExceptions())
+                .add("histogram", this.histogram.serialize())
+                .build();
+    }
+
+}
@@ -35,15 +35,18 @@ import com.google.common.reflect.TypeToken;
 
 import me.lucko.helper.Schedulers;
 import me.lucko.helper.messaging.codec.Codec;
-import me.lucko.helper.messaging.codec.GZipCodec;
+import me.lucko.helper.messaging.codec.CompressionCodec;
+import me.lucko.helper.messaging.codec.CompressionSettings;
 import me.lucko.helper.messaging.codec.GsonCodec;
 import me.lucko.helper.messaging.codec.Message;
 import me.lucko.helper.promise.Promise;
 import me.lucko.helper.utils.annotation.NonnullByDefault;
 
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
@@ -57,12 +60,16 @@ import javax.annotation.Nullable;
  *
  * <p>Outgoing messages are passed to a {@link BiConsumer} to be passed on.</p>
  * <p>Incoming messages can be distributed using {@link #registerIncomingMessage(String, byte[])}.</p>
+ * <p>Outgoing messages can optionally be batched, see {@link BatchSettings}, and
+ * are compressed according to a set of {@link CompressionSettings}.</p>
  */
 @NonnullByDefault
 public class AbstractMessenger implements Messenger {
 
     @SuppressWarnings("unchecked")
     private final LoadingCache<Map.Entry<String, TypeToken<?>>, AbstractChannel<?>> channels = CacheBuilder.newBuilder().build(new ChannelLoader());
+    // index of the channels in the cache by name, grouped by codec. entries are only ever added by the loader
+    private final Map<String, CodecGroup[]> channelsByName = new ConcurrentHashMap<>();
 
     // consumer for outgoing messages. accepts in the format [channel name, message]
     private final BiConsumer<String, byte[]> outgoingMessages;
@@ -70,6 +77,11 @@ public class AbstractMessenger implements Messenger {
     private final Consumer<String> notifySub;
     // consumer for channel names which should be unsubscribed from.
     private final Consumer<String> notifyUnsub;
+    // batches outgoing messages, if enabled
+    @Nullable
+    private final MessageBatcher batcher;
+    // how channel codecs should compress messages
+    private final CompressionSettings compressionSettings;
 
     /**
      * Creates a new abstract messenger
@@ -79,9 +91,49 @@ public class AbstractMessenger implements Messenger {
      * @param notifyUnsub the consumer to pass the names of channels which should be unsubscribed from
      */
     public AbstractMessenger(BiConsumer<String, byte[]> outgoingMessages, Consumer<String> notifySub, Consumer<String> notifyUnsub) {
+        this(outgoingMessages, notifySub, notifyUnsub, null);
+    }
+
+    /**
+     * Creates a new abstract messenger
+     *
+     * @param outgoingMessages the consumer to pass outgoing messages to
+     * @param notifySub the consumer to pass the names of channels which should be subscribed to
+     * @param notifyUnsub the consumer to pass the names of channels which should be unsubscribed from
+     * @param batchSettings the settings to batch outgoing messages with, or null to publish each message individually
+     */
+    public AbstractMessenger(BiConsumer<String, byte[]> outgoingMessages, Consumer<String> notifySub, Consumer<String> notifyUnsub, @Nullable BatchSettings batchSettings) {
+        this(outgoingMessages, notifySub, notifyUnsub, batchSettings, CompressionSettings.legacy());
+    }
+
+    /**
+     * Creates a new abstract messenger
+     *
+     * @param outgoingMessages the consumer to pass outgoing messages to
+     * @param notifySub the consumer to pass the names of channels which should be subscribed to
+     * @param notifyUnsub the consumer to pass the names of channels which should be unsubscribed from
+     * @param batchSettings the settings to batch outgoing messages with, or null to publish each message individually
+     * @param compressionSettings the settings to compress outgoing messages with
+     */
+    public AbstractMessenger(BiConsumer<String, byte[]> outgoingMessages, Consumer<String> notifySub, Consumer<String> notifyUnsub, @Nullable BatchSettings batchSettings, CompressionSettings compressionSettings) {
         this.outgoingMessages = Objects.requireNonNull(outgoingMessages, "outgoingMessages");
         this.notifySub = Objects.requireNonNull(notifySub, "notifySub");
         this.notifyUnsub = Objects.requireNonNull(notifyUnsub, "notifyUnsub");
+        this.batcher = batchSettings == null ? null : new MessageBatcher(batchSettings, outgoingMessages);
+        this.compressionSettings = Objects.requireNonNull(compressionSettings, "compressionSettings");
+    }
+
+    /**
+     * Publishes any outgoing messages which are still waiting to be batched.
+     *
+     * <p>This should be called before the connection which publishes messages
+     * is closed. Messages sent afterwards are published straight away, without
+     * batching.</p>
+     */
+    public void close() {
+        if (this.batcher != null) {
+            this.batcher.close();
+        }
     }
 
     /**
@@ -94,11 +146,53 @@ public class AbstractMessenger implements Messenger {
         Objects.requireNonNull(channel, "channel");
         Objects.requireNonNull(message, "message");
 
-        for (Map.Entry<Map.Entry<String, TypeToken<?>>, AbstractChannel<?>> c : this.channels.asMap().entrySet()) {
-            if (c.getKey().getKey().equals(channel)) {
-                c.getValue().onIncomingMessage(message);
-            }
+        // unpack batched messages
+        if (MessageBatcher.isEnvelope(message)) {
+            MessageBatcher.unpack(message, m -> dispatchIncomingMessage(channel, m));
+            return;
         }
+
+        dispatchIncomingMessage(channel, message);
+    }
+
+    private void dispatchIncomingMessage(String channel, byte[] message) {
+        CodecGroup[] groups = this.channelsByName.get(channel);
+        if (groups == null) {
+            return;
+        }
+
+        // compression is the same for every channel, so only decompress once
+        byte[] uncompressed;
+        try {
+            uncompressed = groups[0].channels[0].codec.decompress(message);
+        } catch (Exception e) {
+            new RuntimeException("Unable to decode message: " + Base64.getEncoder().encodeToString(message), e).printStackTrace();
+            return;
+        }
+
+        for (CodecGroup group : groups) {
+            group.onIncomingMessage(uncompressed);
+        }
+    }
+
+    private void index(AbstractChannel<?> channel) {
+        this.channelsByName.compute(channel.name, (name, groups) -> {
+            if (groups == null) {
+                return new CodecGroup[]{new CodecGroup(channel)};
+            }
+
+            for (int i = 0; i < groups.length; i++) {
+                if (groups[i].codecKey.equals(channel.codecKey)) {
+                    CodecGroup[] copy = groups.clone();
+                    copy[i] = groups[i].with(channel);
+                    return copy;
+                }
+            }
+
+            CodecGroup[] copy = Arrays.copyOf(groups, groups.length + 1);
+            copy[groups.length] = new CodecGroup(channel);
+            return copy;
+        });
     }
 
     @Nonnull
@@ -130,38 +224,95 @@ public class AbstractMessenger implements Messenger {
         return new GsonCodec<>(type);
     }
 
+    /**
+     * A group of channels with the same name, whose codecs decode messages
+     * in the same way.
+     */
+    private static final class CodecGroup {
+        private final Object codecKey;
+        private final AbstractChannel<?>[] channels;
+
+        CodecGroup(AbstractChannel<?> channel) {
+            this(channel.codecKey, new AbstractChannel<?>[]{channel});
+        }
+
+        private CodecGroup(Object codecKey, AbstractChannel<?>[] channels) {
+            this.codecKey = codecKey;
+            this.channels = channels;
+        }
+
+        CodecGroup with(AbstractChannel<?> channel) {
+            AbstractChannel<?>[] channels = Arrays.copyOf(this.channels, this.channels.length + 1);
+            channels[this.channels.length] = channel;
+            return new CodecGroup(this.codecKey, channels);
+        }
+
+        void onIncomingMessage(byte[] uncompressed) {
+            Object decoded;
+            try {
+                decoded = this.channels[0].codec.getDelegate().decode(uncompressed);
+                Objects.requireNonNull(decoded, "decoded");
+            } catch (Exception e) {
+                new RuntimeException("Unable to decode message: " + Base64.getEncoder().encodeToString(uncompressed), e).printStackTrace();
+                return;
+            }
+
+            for (AbstractChannel<?> channel : this.channels) {
+                channel.onIncomingMessage(decoded);
+            }
+        }
+    }
+
     private static class AbstractChannel<T> implements Channel<T> {
         private final AbstractMessenger messenger;
         private final String name;
         private final TypeToken<T> type;
-        private final Codec<T> codec;
+        private final CompressionCodec<T> codec;
+        // channels with equal keys decode messages identically
+        private final Object codecKey;
 
         private final Set<AbstractChannelAgent<T>> agents = ConcurrentHashMap.newKeySet();
         private boolean subscribed = false;
+        // dispatches messages in order, or null to use a task per listener
+        @Nullable
+        private volatile OrderedDispatcher<T> dispatcher = null;
 
         private AbstractChannel(AbstractMessenger messenger, String name, TypeToken<T> type) {
             this.messenger = messenger;
             this.name = name;
             this.type = type;
-            this.codec = new GZipCodec<>(AbstractMessenger.getCodec(type));
+            Codec<T> codec = AbstractMessenger.getCodec(type);
+            this.codec = new CompressionCodec<>(codec, messenger.compressionSettings);
+            // gson codecs are bound to the type, other codecs are identified by their class
+            this.codecKey = codec instanceof GsonCodec ? type : codec.getClass();
         }
 
-        private void onIncomingMessage(byte[] message) {
-            try {
-                T decoded = this.codec.decode(message);
-                Objects.requireNonNull(decoded, "decoded");
+        @SuppressWarnings("unchecked")
+        private void onIncomingMessage(Object message) {
+            T decoded = (T) message;
 
-                for (AbstractChannelAgent<T> agent : this.agents) {
-                    try {
-                        agent.onIncomingMessage(decoded);
-                    } catch (Exception e) {
-                        new RuntimeException("Unable to pass decoded message to agent: " + decoded, e).printStackTrace();
-                    }
+            OrderedDispatcher<T> dispatcher = this.dispatcher;
+            if (dispatcher != null) {
+                dispatcher.dispatch(decoded);
+                return;
+            }
+
+            for (AbstractChannelAgent<T> agent : this.agents) {
+                try {
+                    agent.onIncomingMessage(decoded);
+                } catch (Exception e) {
+                    new RuntimeException("Unable to pass decoded message to agent: " + decoded, e).printStackTrace();
                 }
+            }
+        }
 
-            } catch (Exception e) {
-                new RuntimeException("Unable to decode message: " + Base64.getEncoder().encodeToString(message), e).printStackTrace();
+        // called by the ordered dispatcher
+        private int deliver(T message) {
+            int exceptions = 0;
+            for (AbstractChannelAgent<T> agent : this.agents) {
+                exceptions += agent.deliver(message);
             }
+            return exceptions;
         }
 
         private void checkSubscription() {
@@ -200,6 +351,29 @@ public class AbstractMessenger implements Messenger {
             return this.codec;
         }
 
+        @Nonnull
+        @Override
+        public DispatchSettings getDispatchSettings() {
+            OrderedDispatcher<T> dispatcher = this.dispatcher;
+            return dispatcher == null ? DispatchSettings.async() : dispatcher.getSettings();
+        }
+
+        @Override
+        public void setDispatchSettings(@Nonnull DispatchSettings settings) {
+            Objects.requireNonNull(settings, "settings");
+            if (settings.getMode() == DispatchSettings.Mode.ASYNC) {
+                this.dispatcher = null;
+            } else {
+                this.dispatcher = new OrderedDispatcher<>(settings, this::deliver);
+            }
+        }
+
+        @Nonnull
+        @Override
+        public Optional<DispatchMetrics> getDispatchMetrics() {
+            return Optional.ofNullable(this.dispatcher);
+        }
+
         @Override
         public ChannelAgent<T> newAgent() {
             AbstractChannelAgent<T> agent = new AbstractChannelAgent<>(this);
@@ -210,11 +384,29 @@ public class AbstractMessenger implements Messenger {
         @Override
         public Promise<Void> sendMessage(T message) {
             Objects.requireNonNull(message, "message");
-            return Schedulers.async().call(() -> {
-                byte[] buf = this.codec.encode(message);
-                this.messenger.outgoingMessages.accept(this.name, buf);
-                return null;
+
+            MessageBatcher batcher = this.messenger.batcher;
+            if (batcher == null) {
+                return Schedulers.async().call(() -> {
+                    byte[] buf = this.codec.encode(message);
+                    this.messenger.outgoingMessages.accept(this.name, buf);
+                    return null;
+                });
+            }
+
+            // encode asynchronously, then hand over to the batcher, which completes the promise once published
+            Promise<Void> promise = Promise.empty();
+            Schedulers.async().run(() -> {
+                byte[] buf;
+                try {
+                    buf = this.codec.encode(message);
+                } catch (Exception e) {
+                    promise.supplyException(e);
+                    return;
+                }
+                batcher.add(this.name, buf, promise);
             });
+            return promise;
         }
     }
 
@@ -239,6 +431,19 @@ public class AbstractMessenger implements Messenger {
             }
         }
 
+        private int deliver(T message) {
+            int exceptions = 0;
+            for (ChannelListener<T> listener : this.listeners) {
+                try {
+                    listener.onMessage(this, message);
+                } catch (Exception e) {
+                    new RuntimeException("Unable to pass decoded message to listener: " + listener, e).printStackTrace();
+                    exceptions++;
+                }
+            }
+            return exceptions;
+        }
+
         @Override
         public Channel<T> getChannel() {
             Preconditions.checkState(this.channel != null, "agent not active");
@@ -292,7 +497,9 @@ public class AbstractMessenger implements Messenger {
     private class ChannelLoader<T> extends CacheLoader<Map.Entry<String, TypeToken<T>>, Channel<T>> {
         @Override
         public Channel<T> load(Map.Entry<String, TypeToken<T>> spec) throws Exception {
-            return new AbstractChannel<>(AbstractMessenger.this, spec.getKey(), spec.getValue());
+            AbstractChannel<T> channel = new AbstractChannel<>(AbstractMessenger.this, spec.getKey(), spec.getValue());
+            index(channel);
+            return channel;
         }
     }
 }
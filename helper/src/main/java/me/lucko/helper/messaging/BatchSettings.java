@@ -0,0 +1,125 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.messaging;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Settings controlling how an {@link AbstractMessenger} batches outgoing messages.
+ *
+ * <p>Messages sent on the same channel are buffered, and published together in a
+ * single envelope once either the batch is full, or the linger time has passed
+ * since the first message was added.</p>
+ *
+ * <p>Envelopes are unpacked transparently by the receiving messenger. All
+ * instances communicating on a channel must therefore be running a version of
+ * helper which understands them.</p>
+ */
+public final class BatchSettings {
+
+    /**
+     * Creates a new batch settings instance.
+     *
+     * @param maxMessages the maximum number of messages to hold in a batch
+     * @param maxBytes the (encoded) size in bytes at which a batch is published
+     * @param linger the maximum time to wait for a batch to fill
+     * @param unit the unit of linger
+     * @return the settings
+     */
+    @Nonnull
+    public static BatchSettings of(int maxMessages, int maxBytes, long linger, @Nonnull TimeUnit unit) {
+        Preconditions.checkArgument(maxMessages >= 1, "maxMessages < 1");
+        Preconditions.checkArgument(maxBytes >= 1, "maxBytes < 1");
+        Preconditions.checkArgument(linger >= 0, "linger < 0");
+        Objects.requireNonNull(unit, "unit");
+        return new BatchSettings(maxMessages, maxBytes, unit.toMillis(linger));
+    }
+
+    /**
+     * Gets the default batch settings: up to 128 messages or 64KB, waiting at most 5 milliseconds.
+     *
+     * @return the default settings
+     */
+    @Nonnull
+    public static BatchSettings defaults() {
+        return of(128, 64 * 1024, 5, TimeUnit.MILLISECONDS);
+    }
+
+    private final int maxMessages;
+    private final int maxBytes;
+    private final long lingerMillis;
+
+    private BatchSettings(int maxMessages, int maxBytes, long lingerMillis) {
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.lingerMillis = lingerMillis;
+    }
+
+    public int getMaxMessages() {
+        return this.maxMessages;
+    }
+
+    public int getMaxBytes() {
+        return this.maxBytes;
+    }
+
+    public long getLingerMillis() {
+        return this.lingerMillis;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (!(o instanceof BatchSettings)) return false;
+        final BatchSettings other = (BatchSettings) o;
+        return this.maxMessages == other.maxMessages &&
+                this.maxBytes == other.maxBytes &&
+                this.lingerMillis == other.lingerMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        final int PRIME = 59;
+        int result = 1;
+        result = result * PRIME + this.maxMessages;
+        result = result * PRIME + this.maxBytes;
+        result = result * PRIME + Long.hashCode(this.lingerMillis);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchSettings(" +
+                "maxMessages=" + this.maxMessages + ", " +
+                "maxBytes=" + this.maxBytes + ", " +
+                "lingerMillis=" + this.lingerMillis + ")";
+    }
+}
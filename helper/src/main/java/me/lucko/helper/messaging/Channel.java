@@ -31,6 +31,8 @@ import me.lucko.helper.interfaces.TypeAware;
 import me.lucko.helper.messaging.codec.Codec;
 import me.lucko.helper.promise.Promise;
 
+import java.util.Optional;
+
 import javax.annotation.Nonnull;
 
 /**
@@ -101,4 +103,39 @@ public interface Channel<T> extends TypeAware<T> {
     @Nonnull
     Promise<Void> sendMessage(@Nonnull T message);
 
+    /**
+     * Gets how incoming messages are passed to the listeners of this channel.
+     *
+     * @return the dispatch settings
+     */
+    @Nonnull
+    default DispatchSettings getDispatchSettings() {
+        return DispatchSettings.async();
+    }
+
+    /**
+     * Sets how incoming messages are passed to the listeners of this channel.
+     *
+     * <p>The settings apply to every agent of the channel. Messages already queued
+     * under previous {@link DispatchSettings.Mode#ORDERED ordered} settings are still
+     * delivered, but are not ordered relative to messages received afterwards.</p>
+     *
+     * @param settings the dispatch settings
+     * @throws UnsupportedOperationException if the channel does not support other dispatch modes
+     */
+    default void setDispatchSettings(@Nonnull DispatchSettings settings) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Gets the metrics recorded for this channel, if it is using
+     * {@link DispatchSettings.Mode#ORDERED ordered} dispatch.
+     *
+     * @return the dispatch metrics
+     */
+    @Nonnull
+    default Optional<DispatchMetrics> getDispatchMetrics() {
+        return Optional.empty();
+    }
+
 }
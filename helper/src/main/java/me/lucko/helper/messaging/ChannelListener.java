@@ -38,7 +38,8 @@ public interface ChannelListener<T> {
     /**
      * Called when a message is posted to this listener.
      *
-     * <p>This method is called asynchronously.</p>
+     * <p>This method is called asynchronously. See {@link DispatchSettings} for
+     * whether calls may happen concurrently.</p>
      *
      * @param agent the agent which forwarded the message.
      * @param message the message
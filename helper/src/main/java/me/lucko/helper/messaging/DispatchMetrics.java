@@ -0,0 +1,84 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.messaging;
+
+/**
+ * Metrics recorded for a {@link Channel} using {@link DispatchSettings.Mode#ORDERED ordered} dispatch.
+ */
+public interface DispatchMetrics {
+
+    /**
+     * Gets the number of messages currently waiting to be handled.
+     *
+     * @return the queue size
+     */
+    int getQueueSize();
+
+    /**
+     * Gets the largest number of messages which have been waiting at once.
+     *
+     * @return the peak queue size
+     */
+    int getPeakQueueSize();
+
+    /**
+     * Gets the number of messages which have been passed to listeners.
+     *
+     * @return the number of delivered messages
+     */
+    long getDelivered();
+
+    /**
+     * Gets the number of queued messages discarded by {@link DispatchSettings.OverflowPolicy#DROP_OLDEST}.
+     *
+     * @return the number of dropped messages
+     */
+    long getDropped();
+
+    /**
+     * Gets the number of incoming messages discarded by {@link DispatchSettings.OverflowPolicy#REJECT},
+     * or because the receiving thread was interrupted whilst waiting under
+     * {@link DispatchSettings.OverflowPolicy#BLOCK}.
+     *
+     * @return the number of rejected messages
+     */
+    long getRejected();
+
+    /**
+     * Gets the number of times the queue has been drained.
+     *
+     * @return the number of drains
+     */
+    long getDrains();
+
+    /**
+     * Gets the number of times a listener threw an exception.
+     *
+     * @return the number of listener exceptions
+     */
+    long getListenerExceptions();
+
+}
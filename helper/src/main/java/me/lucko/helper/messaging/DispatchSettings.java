@@ -0,0 +1,190 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.messaging;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Settings controlling how a {@link Channel} passes incoming messages to its
+ * {@link ChannelListener}s.
+ *
+ * <p>In {@link Mode#ASYNC} mode (the default), a separate task is scheduled for every
+ * listener, for every message. Listeners may be called concurrently, and in any order.</p>
+ *
+ * <p>In {@link Mode#ORDERED} mode, incoming messages are placed into a bounded queue,
+ * which is drained by a single task at a time. Messages are passed to listeners
+ * one by one, in the order they were received. The {@link OverflowPolicy} decides
+ * what happens when messages arrive faster than they can be handled.</p>
+ */
+public final class DispatchSettings {
+    private static final DispatchSettings ASYNC = new DispatchSettings(Mode.ASYNC, 0, 0, OverflowPolicy.REJECT);
+
+    /**
+     * Gets the settings for the default, fire-and-forget dispatch mode.
+     *
+     * @return the async settings
+     */
+    @Nonnull
+    public static DispatchSettings async() {
+        return ASYNC;
+    }
+
+    /**
+     * Creates settings for ordered dispatch.
+     *
+     * @param capacity the maximum number of messages waiting to be handled
+     * @param maxDrain the maximum number of messages to handle before yielding the thread
+     * @param overflowPolicy what to do when a message arrives whilst the queue is full
+     * @return the settings
+     */
+    @Nonnull
+    public static DispatchSettings ordered(int capacity, int maxDrain, @Nonnull OverflowPolicy overflowPolicy) {
+        Preconditions.checkArgument(capacity >= 1, "capacity < 1");
+        Preconditions.checkArgument(maxDrain >= 1, "maxDrain < 1");
+        Objects.requireNonNull(overflowPolicy, "overflowPolicy");
+        return new DispatchSettings(Mode.ORDERED, capacity, maxDrain, overflowPolicy);
+    }
+
+    /**
+     * Creates settings for ordered dispatch, handling at most 64 messages before yielding.
+     *
+     * @param capacity the maximum number of messages waiting to be handled
+     * @param overflowPolicy what to do when a message arrives whilst the queue is full
+     * @return the settings
+     */
+    @Nonnull
+    public static DispatchSettings ordered(int capacity, @Nonnull OverflowPolicy overflowPolicy) {
+        return ordered(capacity, 64, overflowPolicy);
+    }
+
+    private final Mode mode;
+    private final int capacity;
+    private final int maxDrain;
+    private final OverflowPolicy overflowPolicy;
+
+    private DispatchSettings(Mode mode, int capacity, int maxDrain, OverflowPolicy overflowPolicy) {
+        this.mode = mode;
+        this.capacity = capacity;
+        this.maxDrain = maxDrain;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    @Nonnull
+    public Mode getMode() {
+        return this.mode;
+    }
+
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    public int getMaxDrain() {
+        return this.maxDrain;
+    }
+
+    @Nonnull
+    public OverflowPolicy getOverflowPolicy() {
+        return this.overflowPolicy;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (!(o instanceof DispatchSettings)) return false;
+        final DispatchSettings other = (DispatchSettings) o;
+        return this.mode == other.mode &&
+                this.capacity == other.capacity &&
+                this.maxDrain == other.maxDrain &&
+                this.overflowPolicy == other.overflowPolicy;
+    }
+
+    @Override
+    public int hashCode() {
+        final int PRIME = 59;
+        int result = 1;
+        result = result * PRIME + this.mode.hashCode();
+        result = result * PRIME + this.capacity;
+        result = result * PRIME + this.maxDrain;
+        result = result * PRIME + this.overflowPolicy.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        if (this.mode == Mode.ASYNC) {
+            return "DispatchSettings(mode=ASYNC)";
+        }
+        return "DispatchSettings(" +
+                "mode=" + this.mode + ", " +
+                "capacity=" + this.capacity + ", " +
+                "maxDrain=" + this.maxDrain + ", " +
+                "overflowPolicy=" + this.overflowPolicy + ")";
+    }
+
+    /**
+     * The ways in which messages can be dispatched to listeners.
+     */
+    public enum Mode {
+
+        /**
+         * Each listener is called in a separate task, for every message.
+         */
+        ASYNC,
+
+        /**
+         * Messages are queued, and passed to listeners in order by a single task.
+         */
+        ORDERED
+    }
+
+    /**
+     * Determines what happens when a message arrives whilst the queue is full.
+     */
+    public enum OverflowPolicy {
+
+        /**
+         * The oldest queued message is discarded to make room.
+         */
+        DROP_OLDEST,
+
+        /**
+         * The thread receiving the message waits until there is room in the queue.
+         *
+         * <p>This applies backpressure to the messenger's receiving thread, and
+         * therefore to every other channel on the same messenger.</p>
+         */
+        BLOCK,
+
+        /**
+         * The new message is discarded.
+         */
+        REJECT
+    }
+}
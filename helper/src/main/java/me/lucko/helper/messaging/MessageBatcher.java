@@ -0,0 +1,248 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.messaging;
+
+import me.lucko.helper.Schedulers;
+import me.lucko.helper.promise.Promise;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Buffers outgoing messages per channel, and publishes them in batches.
+ *
+ * <p>A batch containing more than one message is packed into an envelope:</p>
+ * <pre>
+ *     [magic: 4 bytes] [count: varint] ([length: varint] [message: length bytes]) * count
+ * </pre>
+ *
+ * <p>A batch containing a single message is published as-is.</p>
+ */
+final class MessageBatcher {
+    private static final byte[] MAGIC = new byte[]{(byte) 0xFE, (byte) 0xBA, (byte) 0x7C, (byte) 0x01};
+
+    /**
+     * Gets if the given message is an envelope.
+     *
+     * <p>Encoded messages never start with the magic bytes: the first byte of
+     * a message written by a {@link me.lucko.helper.messaging.codec.CompressionCodec}
+     * is either a {@link me.lucko.helper.messaging.codec.Compression} header
+     * (<code>0x00</code> - <code>0x02</code>), or in legacy mode the first byte
+     * of the GZip header (<code>0x1F</code>), neither of which is <code>0xFE</code>.</p>
+     *
+     * @param message the message
+     * @return true if the message is an envelope
+     */
+    static boolean isEnvelope(byte[] message) {
+        if (message.length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (message[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Unpacks the messages in an envelope.
+     *
+     * @param envelope the envelope
+     * @param action the action to pass each message to
+     * @throws IllegalArgumentException if the envelope is malformed
+     */
+    static void unpack(byte[] envelope, Consumer<byte[]> action) {
+        int[] pos = new int[]{MAGIC.length};
+        int count = readVarInt(envelope, pos);
+        for (int i = 0; i < count; i++) {
+            int length = readVarInt(envelope, pos);
+            if (length < 0 || length > envelope.length - pos[0]) {
+                throw new IllegalArgumentException("Malformed envelope: length " + length + " at " + pos[0]);
+            }
+
+            byte[] message = new byte[length];
+            System.arraycopy(envelope, pos[0], message, 0, length);
+            pos[0] += length;
+            action.accept(message);
+        }
+    }
+
+    static byte[] pack(List<byte[]> messages) {
+        int size = MAGIC.length + 5;
+        for (byte[] message : messages) {
+            size += message.length + 5;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+        out.write(MAGIC, 0, MAGIC.length);
+        writeVarInt(out, messages.size());
+        for (byte[] message : messages) {
+            writeVarInt(out, message.length);
+            out.write(message, 0, message.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static int readVarInt(byte[] buf, int[] pos) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (pos[0] >= buf.length) {
+                throw new IllegalArgumentException("Malformed envelope: truncated varint");
+            }
+            byte b = buf[pos[0]++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed envelope: varint too long");
+    }
+
+    private final BatchSettings settings;
+    private final BiConsumer<String, byte[]> outgoingMessages;
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+
+    MessageBatcher(BatchSettings settings, BiConsumer<String, byte[]> outgoingMessages) {
+        this.settings = settings;
+        this.outgoingMessages = outgoingMessages;
+    }
+
+    /**
+     * Adds a message to the batch for the given channel.
+     *
+     * @param channel the channel
+     * @param message the encoded message
+     * @param promise the promise to complete once the message has been published
+     */
+    void add(String channel, byte[] message, Promise<Void> promise) {
+        Batch batch = this.batches.computeIfAbsent(channel, Batch::new);
+
+        Batch.Contents full = null;
+        boolean first;
+        synchronized (batch) {
+            first = batch.messages.isEmpty();
+            batch.messages.add(message);
+            batch.promises.add(promise);
+            batch.bytes += message.length;
+
+            // once closed, nothing is left waiting for the linger timeout
+            if (this.closed || batch.messages.size() >= this.settings.getMaxMessages() || batch.bytes >= this.settings.getMaxBytes()) {
+                full = batch.drain();
+            }
+        }
+
+        if (full != null) {
+            publish(channel, full);
+        } else if (first) {
+            Schedulers.async().runLater(() -> flush(batch), this.settings.getLingerMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Publishes all pending batches on the calling thread.
+     *
+     * <p>Messages added afterwards are published straight away, without
+     * batching.</p>
+     */
+    void close() {
+        this.closed = true;
+        for (Batch batch : this.batches.values()) {
+            flush(batch);
+        }
+    }
+
+    private void flush(Batch batch) {
+        Batch.Contents contents;
+        synchronized (batch) {
+            if (batch.messages.isEmpty()) {
+                return;
+            }
+            contents = batch.drain();
+        }
+        publish(batch.channel, contents);
+    }
+
+    private void publish(String channel, Batch.Contents contents) {
+        try {
+            byte[] buf = contents.messages.size() == 1 ? contents.messages.get(0) : pack(contents.messages);
+            this.outgoingMessages.accept(channel, buf);
+        } catch (Exception e) {
+            for (Promise<Void> promise : contents.promises) {
+                promise.supplyException(e);
+            }
+            return;
+        }
+
+        for (Promise<Void> promise : contents.promises) {
+            promise.supply(null);
+        }
+    }
+
+    private static final class Batch {
+        private final String channel;
+        private List<byte[]> messages = new ArrayList<>();
+        private List<Promise<Void>> promises = new ArrayList<>();
+        private int bytes = 0;
+
+        private Batch(String channel) {
+            this.channel = channel;
+        }
+
+        private Contents drain() {
+            Contents contents = new Contents(this.messages, this.promises);
+            this.messages = new ArrayList<>();
+            this.promises = new ArrayList<>();
+            this.bytes = 0;
+            return contents;
+        }
+
+        private static final class Contents {
+            private final List<byte[]> messages;
+            private final List<Promise<Void>> promises;
+
+            private Contents(List<byte[]> messages, List<Promise<Void>> promises) {
+                this.messages = messages;
+                this.promises = promises;
+            }
+        }
+    }
+}
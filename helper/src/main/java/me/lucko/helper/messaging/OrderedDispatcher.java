@@ -0,0 +1,184 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.messaging;
+
+import me.lucko.helper.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+/**
+ * Passes messages to a handler in order, from a bounded queue drained by at
+ * most one task at a time.
+ *
+ * @param <T> the message type
+ * @see DispatchSettings.Mode#ORDERED
+ */
+final class OrderedDispatcher<T> implements DispatchMetrics {
+    private final DispatchSettings settings;
+    // passes a message to all listeners, returning the number which threw an exception
+    private final ToIntFunction<T> handler;
+
+    private final BlockingQueue<T> queue;
+    // if a drain task is scheduled or running
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    private final AtomicInteger peakQueueSize = new AtomicInteger();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder drains = new LongAdder();
+    private final LongAdder listenerExceptions = new LongAdder();
+
+    OrderedDispatcher(DispatchSettings settings, ToIntFunction<T> handler) {
+        this.settings = settings;
+        this.handler = handler;
+        this.queue = new ArrayBlockingQueue<>(settings.getCapacity());
+    }
+
+    void dispatch(T message) {
+        if (!enqueue(message)) {
+            return;
+        }
+        this.peakQueueSize.accumulateAndGet(this.queue.size(), Math::max);
+        schedule();
+    }
+
+    private boolean enqueue(T message) {
+        switch (this.settings.getOverflowPolicy()) {
+            case DROP_OLDEST:
+                while (!this.queue.offer(message)) {
+                    if (this.queue.poll() != null) {
+                        this.dropped.increment();
+                    }
+                }
+                return true;
+            case BLOCK:
+                try {
+                    this.queue.put(message);
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    this.rejected.increment();
+                    return false;
+                }
+            case REJECT:
+                if (this.queue.offer(message)) {
+                    return true;
+                }
+                this.rejected.increment();
+                return false;
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private void schedule() {
+        if (this.scheduled.compareAndSet(false, true)) {
+            Schedulers.async().run(this::drain);
+        }
+    }
+
+    private void drain() {
+        this.drains.increment();
+        try {
+            for (int i = 0; i < this.settings.getMaxDrain(); i++) {
+                T message = this.queue.poll();
+                if (message == null) {
+                    break;
+                }
+
+                int exceptions = this.handler.applyAsInt(message);
+                if (exceptions != 0) {
+                    this.listenerExceptions.add(exceptions);
+                }
+                this.delivered.increment();
+            }
+        } finally {
+            this.scheduled.set(false);
+            // messages may have been added after the last poll, or we may have
+            // stopped at maxDrain - either way, yield and go again
+            if (!this.queue.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    DispatchSettings getSettings() {
+        return this.settings;
+    }
+
+    @Override
+    public int getQueueSize() {
+        return this.queue.size();
+    }
+
+    @Override
+    public int getPeakQueueSize() {
+        return this.peakQueueSize.get();
+    }
+
+    @Override
+    public long getDelivered() {
+        return this.delivered.sum();
+    }
+
+    @Override
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    @Override
+    public long getRejected() {
+        return this.rejected.sum();
+    }
+
+    @Override
+    public long getDrains() {
+        return this.drains.sum();
+    }
+
+    @Override
+    public long getListenerExceptions() {
+        return this.listenerExceptions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "DispatchMetrics(" +
+                "queueSize=" + getQueueSize() + ", " +
+                "peakQueueSize=" + getPeakQueueSize() + ", " +
+                "delivered=" + getDelivered() + ", " +
+                "dropped=" + getDropped() + ", " +
+                "rejected=" + getRejected() + ", " +
+                "drains=" + getDrains() + ", " +
+                "listenerExceptions=" + getListenerExceptions() + ")";
+    }
+}
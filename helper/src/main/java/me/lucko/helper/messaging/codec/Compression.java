@@ -0,0 +1,88 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.messaging.codec;
+
+/**
+ * The compression algorithms supported by {@link CompressionCodec}.
+ */
+public enum Compression {
+
+    /**
+     * No compression.
+     */
+    NONE((byte) 0x00),
+
+    /**
+     * Raw deflate, using the JDK {@link java.util.zip.Deflater}.
+     */
+    DEFLATE((byte) 0x01),
+
+    /**
+     * LZ4 block compression.
+     *
+     * <p>Much faster than {@link #DEFLATE}, at the cost of a lower compression
+     * ratio. Requires lz4-java (<code>org.lz4:lz4-java</code>) to be present on
+     * the classpath, see {@link #isAvailable()}.</p>
+     */
+    LZ4((byte) 0x02);
+
+    private final byte header;
+
+    Compression(byte header) {
+        this.header = header;
+    }
+
+    /**
+     * Gets the byte used to tag messages compressed with this algorithm.
+     *
+     * @return the header byte
+     */
+    public byte getHeader() {
+        return this.header;
+    }
+
+    /**
+     * Gets if this algorithm can be used in the current environment.
+     *
+     * @return true if the algorithm is available
+     */
+    public boolean isAvailable() {
+        return this != LZ4 || Compressors.isLz4Available();
+    }
+
+    static Compression fromHeader(byte header) {
+        switch (header) {
+            case 0x00:
+                return NONE;
+            case 0x01:
+                return DEFLATE;
+            case 0x02:
+                return LZ4;
+            default:
+                return null;
+        }
+    }
+}
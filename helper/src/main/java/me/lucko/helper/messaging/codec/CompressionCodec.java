@@ -0,0 +1,124 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.messaging.codec;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * A {@link Codec} wrapper which compresses messages according to a set of
+ * {@link CompressionSettings}.
+ *
+ * <p>Messages in any of the supported formats can be decoded, regardless of
+ * the settings in use.</p>
+ *
+ * @param <M> the message type
+ */
+public class CompressionCodec<M> implements Codec<M> {
+    private final Codec<M> delegate;
+    private final CompressionSettings settings;
+
+    public CompressionCodec(Codec<M> delegate, CompressionSettings settings) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate");
+        this.settings = Objects.requireNonNull(settings, "settings");
+    }
+
+    public CompressionSettings getSettings() {
+        return this.settings;
+    }
+
+    @Override
+    public byte[] encode(M message) throws EncodingException {
+        return compress(this.delegate.encode(message));
+    }
+
+    @Override
+    public M decode(byte[] buf) throws EncodingException {
+        return this.delegate.decode(decompress(buf));
+    }
+
+    /**
+     * Gets the codec used to encode and decode the uncompressed form of messages.
+     *
+     * @return the delegate codec
+     */
+    public Codec<M> getDelegate() {
+        return this.delegate;
+    }
+
+    /**
+     * Compresses an encoded message according to the settings of this codec.
+     *
+     * @param in the encoded message
+     * @return the compressed form
+     */
+    public byte[] compress(byte[] in) {
+        if (this.settings.isLegacy()) {
+            return Compressors.gzip(in);
+        }
+
+        Compression compression = this.settings.getCompression();
+        if (compression != Compression.NONE && in.length >= this.settings.getThreshold()) {
+            byte[] compressed = Compressors.compress(compression, in);
+            if (compressed != null) {
+                return compressed;
+            }
+        }
+
+        byte[] out = new byte[in.length + 1];
+        out[0] = Compression.NONE.getHeader();
+        System.arraycopy(in, 0, out, 1, in.length);
+        return out;
+    }
+
+    /**
+     * Decompresses a message in any of the supported formats.
+     *
+     * @param buf the compressed message
+     * @return the encoded message
+     * @throws EncodingException if the message is not in a supported format
+     */
+    public byte[] decompress(byte[] buf) throws EncodingException {
+        if (buf.length == 0) {
+            throw new EncodingException("Empty message");
+        }
+
+        // messages sent by older versions, or in legacy mode
+        if (Compressors.isGzip(buf)) {
+            return Compressors.gunzip(buf);
+        }
+
+        Compression compression = Compression.fromHeader(buf[0]);
+        if (compression == null) {
+            throw new EncodingException("Unknown compression header: " + buf[0]);
+        }
+
+        if (compression == Compression.NONE) {
+            return Arrays.copyOfRange(buf, 1, buf.length);
+        }
+        return Compressors.decompress(compression, buf);
+    }
+}
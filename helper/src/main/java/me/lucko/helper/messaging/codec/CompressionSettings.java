@@ -0,0 +1,137 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.messaging.codec;
+
+import com.google.common.base.Preconditions;
+
+import java.util.Objects;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Settings controlling how a {@link CompressionCodec} compresses messages.
+ *
+ * <p>In the default {@link #legacy() legacy} mode, every message is compressed
+ * using GZip, as older versions of helper expect. Otherwise, messages are tagged
+ * with a one byte header identifying the {@link Compression} used, and messages
+ * smaller than the threshold are sent uncompressed.</p>
+ *
+ * <p>Decoding is the same in both modes - all formats are always understood. A
+ * network can therefore be migrated by updating all instances first, and then
+ * switching away from legacy mode.</p>
+ */
+public final class CompressionSettings {
+    private static final CompressionSettings LEGACY = new CompressionSettings(true, Compression.DEFLATE, 0);
+
+    /**
+     * Gets the legacy settings, where every message is compressed using GZip.
+     *
+     * @return the legacy settings
+     */
+    @Nonnull
+    public static CompressionSettings legacy() {
+        return LEGACY;
+    }
+
+    /**
+     * Creates a new compression settings instance.
+     *
+     * @param compression the compression algorithm to use
+     * @param threshold the size in bytes below which messages are not compressed
+     * @return the settings
+     * @throws IllegalArgumentException if the algorithm is not {@link Compression#isAvailable() available}
+     */
+    @Nonnull
+    public static CompressionSettings of(@Nonnull Compression compression, int threshold) {
+        Objects.requireNonNull(compression, "compression");
+        Preconditions.checkArgument(compression.isAvailable(), "compression " + compression + " is not available");
+        Preconditions.checkArgument(threshold >= 0, "threshold < 0");
+        return new CompressionSettings(false, compression, threshold);
+    }
+
+    /**
+     * Gets the default (non legacy) settings: deflate, for messages of 512 bytes or more.
+     *
+     * @return the default settings
+     */
+    @Nonnull
+    public static CompressionSettings defaults() {
+        return of(Compression.DEFLATE, 512);
+    }
+
+    private final boolean legacy;
+    private final Compression compression;
+    private final int threshold;
+
+    private CompressionSettings(boolean legacy, Compression compression, int threshold) {
+        this.legacy = legacy;
+        this.compression = compression;
+        this.threshold = threshold;
+    }
+
+    public boolean isLegacy() {
+        return this.legacy;
+    }
+
+    @Nonnull
+    public Compression getCompression() {
+        return this.compression;
+    }
+
+    public int getThreshold() {
+        return this.threshold;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (!(o instanceof CompressionSettings)) return false;
+        final CompressionSettings other = (CompressionSettings) o;
+        return this.legacy == other.legacy &&
+                this.compression == other.compression &&
+                this.threshold == other.threshold;
+    }
+
+    @Override
+    public int hashCode() {
+        final int PRIME = 59;
+        int result = 1;
+        result = result * PRIME + (this.legacy ? 79 : 97);
+        result = result * PRIME + this.compression.hashCode();
+        result = result * PRIME + this.threshold;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        if (this.legacy) {
+            return "CompressionSettings(legacy)";
+        }
+        return "CompressionSettings(" +
+                "compression=" + this.compression + ", " +
+                "threshold=" + this.threshold + ")";
+    }
+}
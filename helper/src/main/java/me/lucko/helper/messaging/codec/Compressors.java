@@ -0,0 +1,342 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.messaging.codec;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression routines used by {@link CompressionCodec} and {@link GZipCodec}.
+ *
+ * <p>{@link Deflater}s, {@link Inflater}s and scratch buffers are held per thread
+ * and reused between calls.</p>
+ */
+final class Compressors {
+
+    // upper bound on the uncompressed size we are willing to allocate for
+    private static final int MAX_UNCOMPRESSED_SIZE = 64 * 1024 * 1024;
+
+    // the largest scratch buffer to keep hold of between calls
+    private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024;
+
+    // the gzip header written by GZIPOutputStream
+    private static final byte[] GZIP_HEADER = new byte[]{0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+    private static final int GZIP_TRAILER_SIZE = 8;
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+    private static final ThreadLocal<CRC32> CRC = ThreadLocal.withInitial(CRC32::new);
+    private static final ThreadLocal<byte[][]> BUFFER = ThreadLocal.withInitial(() -> new byte[][]{new byte[8192]});
+
+    private static final boolean LZ4_AVAILABLE;
+    static {
+        boolean available;
+        try {
+            Class.forName("net.jpountz.lz4.LZ4Factory", false, Compressors.class.getClassLoader());
+            available = true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            available = false;
+        }
+        LZ4_AVAILABLE = available;
+    }
+
+    static boolean isLz4Available() {
+        return LZ4_AVAILABLE;
+    }
+
+    static boolean isGzip(byte[] buf) {
+        return buf.length >= 2 && buf[0] == GZIP_HEADER[0] && buf[1] == GZIP_HEADER[1];
+    }
+
+    /**
+     * Gets the scratch buffer for the current thread, ensuring it is at least
+     * the given size.
+     */
+    private static byte[] buffer(int size) {
+        return ensureCapacity(BUFFER.get()[0], 0, size);
+    }
+
+    /**
+     * Ensures the given scratch buffer is at least the given size, preserving
+     * its first {@code used} bytes.
+     */
+    private static byte[] ensureCapacity(byte[] buf, int used, int size) {
+        if (buf.length >= size) {
+            return buf;
+        }
+
+        byte[] larger = new byte[Math.max(size, buf.length * 2)];
+        System.arraycopy(buf, 0, larger, 0, used);
+        // don't hold onto unusually large buffers
+        if (larger.length <= MAX_RETAINED_BUFFER_SIZE) {
+            BUFFER.get()[0] = larger;
+        }
+        return larger;
+    }
+
+    /**
+     * Deflates the input into the thread scratch buffer, starting at the given offset.
+     *
+     * @return the scratch buffer, and the end offset of the compressed data
+     */
+    private static Deflated deflate(byte[] in, int offset, int trailer) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(in);
+        deflater.finish();
+
+        byte[] out = buffer(offset + in.length + (in.length >> 3) + 64 + trailer);
+        int pos = offset;
+        while (!deflater.finished()) {
+            if (pos == out.length) {
+                out = ensureCapacity(out, pos, pos + 1);
+            }
+            pos += deflater.deflate(out, pos, out.length - pos);
+        }
+        if (out.length - pos < trailer) {
+            out = ensureCapacity(out, pos, pos + trailer);
+        }
+        return new Deflated(out, pos);
+    }
+
+    private static byte[] inflate(byte[] in, int offset, int length, int expectedSize) throws EncodingException {
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(in, offset, length);
+
+        byte[] out = buffer(expectedSize);
+        int pos = 0;
+        try {
+            while (!inflater.finished()) {
+                if (pos == out.length) {
+                    if (out.length >= MAX_UNCOMPRESSED_SIZE) {
+                        throw new EncodingException("Uncompressed message exceeds " + MAX_UNCOMPRESSED_SIZE + " bytes");
+                    }
+                    out = ensureCapacity(out, pos, pos + 1);
+                }
+                int n = inflater.inflate(out, pos, out.length - pos);
+                if (n == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new EncodingException("Truncated compressed message");
+                }
+                pos += n;
+            }
+        } catch (DataFormatException e) {
+            throw new EncodingException(e);
+        }
+        return Arrays.copyOf(out, pos);
+    }
+
+    static byte[] gzip(byte[] in) {
+        CRC32 crc = CRC.get();
+        crc.reset();
+        crc.update(in, 0, in.length);
+
+        Deflated deflated = deflate(in, GZIP_HEADER.length, GZIP_TRAILER_SIZE);
+        byte[] out = deflated.buf;
+        int end = deflated.end;
+        System.arraycopy(GZIP_HEADER, 0, out, 0, GZIP_HEADER.length);
+        writeIntLE(out, end, (int) crc.getValue());
+        writeIntLE(out, end + 4, in.length);
+        return Arrays.copyOf(out, end + GZIP_TRAILER_SIZE);
+    }
+
+    static byte[] gunzip(byte[] in) throws EncodingException {
+        if (in.length < GZIP_HEADER.length + GZIP_TRAILER_SIZE || !isGzip(in) || in[2] != Deflater.DEFLATED) {
+            throw new EncodingException("Not in GZIP format");
+        }
+
+        int flags = in[3] & 0xFF;
+        int pos = GZIP_HEADER.length;
+        try {
+            if ((flags & FEXTRA) != 0) {
+                pos += 2 + ((in[pos] & 0xFF) | (in[pos + 1] & 0xFF) << 8);
+            }
+            if ((flags & FNAME) != 0) {
+                while (in[pos++] != 0);
+            }
+            if ((flags & FCOMMENT) != 0) {
+                while (in[pos++] != 0);
+            }
+            if ((flags & FHCRC) != 0) {
+                pos += 2;
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new EncodingException("Corrupt GZIP header");
+        }
+
+        int trailer = in.length - GZIP_TRAILER_SIZE;
+        if (pos > trailer) {
+            throw new EncodingException("Corrupt GZIP header");
+        }
+
+        // ISIZE is the uncompressed size mod 2^32, so only use it as a hint
+        int size = readIntLE(in, trailer + 4);
+        int expectedSize = size < 0 || size > MAX_UNCOMPRESSED_SIZE ? in.length * 4 : size;
+
+        byte[] out = inflate(in, pos, trailer - pos, expectedSize);
+
+        CRC32 crc = CRC.get();
+        crc.reset();
+        crc.update(out, 0, out.length);
+        if ((int) crc.getValue() != readIntLE(in, trailer)) {
+            throw new EncodingException("Corrupt GZIP trailer");
+        }
+        return out;
+    }
+
+    /**
+     * Compresses the input, prefixed by the header byte of the algorithm and the
+     * uncompressed length.
+     *
+     * @return the compressed form, or null if compressing did not reduce the size
+     */
+    static byte[] compress(Compression compression, byte[] in) {
+        Deflated deflated;
+        switch (compression) {
+            case DEFLATE:
+                deflated = deflate(in, 5, 0);
+                break;
+            case LZ4:
+                deflated = Lz4.compress(in, 5);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported compression: " + compression);
+        }
+
+        byte[] out = deflated.buf;
+        int end = deflated.end;
+        if (end >= in.length + 1) {
+            return null;
+        }
+
+        out[0] = compression.getHeader();
+        writeIntBE(out, 1, in.length);
+        return Arrays.copyOf(out, end);
+    }
+
+    static byte[] decompress(Compression compression, byte[] in) throws EncodingException {
+        if (in.length < 5) {
+            throw new EncodingException("Truncated compressed message");
+        }
+        int size = readIntBE(in, 1);
+        if (size < 0 || size > MAX_UNCOMPRESSED_SIZE) {
+            throw new EncodingException("Invalid uncompressed size: " + size);
+        }
+
+        byte[] out;
+        switch (compression) {
+            case DEFLATE:
+                out = inflate(in, 5, in.length - 5, size);
+                break;
+            case LZ4:
+                if (!LZ4_AVAILABLE) {
+                    throw new EncodingException("Received an LZ4 compressed message, but lz4-java is not present on the classpath");
+                }
+                out = Lz4.decompress(in, 5, size);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported compression: " + compression);
+        }
+
+        if (out.length != size) {
+            throw new EncodingException("Uncompressed size mismatch: expected " + size + " but got " + out.length);
+        }
+        return out;
+    }
+
+    private static void writeIntLE(byte[] buf, int pos, int value) {
+        buf[pos] = (byte) value;
+        buf[pos + 1] = (byte) (value >>> 8);
+        buf[pos + 2] = (byte) (value >>> 16);
+        buf[pos + 3] = (byte) (value >>> 24);
+    }
+
+    private static int readIntLE(byte[] buf, int pos) {
+        return (buf[pos] & 0xFF) | (buf[pos + 1] & 0xFF) << 8 | (buf[pos + 2] & 0xFF) << 16 | (buf[pos + 3] & 0xFF) << 24;
+    }
+
+    private static void writeIntBE(byte[] buf, int pos, int value) {
+        buf[pos] = (byte) (value >>> 24);
+        buf[pos + 1] = (byte) (value >>> 16);
+        buf[pos + 2] = (byte) (value >>> 8);
+        buf[pos + 3] = (byte) value;
+    }
+
+    private static int readIntBE(byte[] buf, int pos) {
+        return (buf[pos] & 0xFF) << 24 | (buf[pos + 1] & 0xFF) << 16 | (buf[pos + 2] & 0xFF) << 8 | (buf[pos + 3] & 0xFF);
+    }
+
+    private static final class Deflated {
+        private final byte[] buf;
+        private final int end;
+
+        Deflated(byte[] buf, int end) {
+            this.buf = buf;
+            this.end = end;
+        }
+    }
+
+    // separate class so lz4-java is only loaded when it is actually used
+    private static final class Lz4 {
+        private static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+        private static final LZ4SafeDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().safeDecompressor();
+
+        static Deflated compress(byte[] in, int offset) {
+            byte[] out = buffer(offset + COMPRESSOR.maxCompressedLength(in.length));
+            return new Deflated(out, offset + COMPRESSOR.compress(in, 0, in.length, out, offset, out.length - offset));
+        }
+
+        static byte[] decompress(byte[] in, int offset, int size) throws EncodingException {
+            byte[] out = new byte[size];
+            try {
+                int n = DECOMPRESSOR.decompress(in, offset, in.length - offset, out, 0, size);
+                return n == size ? out : Arrays.copyOf(out, n);
+            } catch (RuntimeException e) {
+                throw new EncodingException(e);
+            }
+        }
+
+        private Lz4() {
+            throw new UnsupportedOperationException("This class cannot be instantiated");
+        }
+    }
+
+    private Compressors() {
+        throw new UnsupportedOperationException("This class cannot be instantiated");
+    }
+}
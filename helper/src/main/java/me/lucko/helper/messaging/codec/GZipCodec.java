@@ -25,17 +25,12 @@
 
 package me.lucko.helper.messaging.codec;
 
-import com.google.common.io.ByteStreams;
-
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
-
 /**
  * A {@link Codec} wrapper using GZip.
  *
+ * <p>See {@link CompressionCodec} for a wrapper which only compresses larger
+ * messages, and supports faster algorithms.</p>
+ *
  * @param <M> the message type
  */
 public class GZipCodec<M> implements Codec<M> {
@@ -47,24 +42,11 @@ public class GZipCodec<M> implements Codec<M> {
 
     @Override
     public byte[] encode(M message) throws EncodingException {
-        byte[] in = this.delegate.encode(message);
-        ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-        try (GZIPOutputStream gzipOut = new GZIPOutputStream(byteOut)) {
-            gzipOut.write(in);
-        } catch (IOException e) {
-            throw new EncodingException(e);
-        }
-        return byteOut.toByteArray();
+        return Compressors.gzip(this.delegate.encode(message));
     }
 
     @Override
     public M decode(byte[] buf) throws EncodingException {
-        byte[] uncompressed;
-        try (GZIPInputStream gzipIn = new GZIPInputStream(new ByteArrayInputStream(buf))) {
-            uncompressed = ByteStreams.toByteArray(gzipIn);
-        } catch (IOException e) {
-            throw new EncodingException(e);
-        }
-        return this.delegate.decode(uncompressed);
+        return this.delegate.decode(Compressors.gunzip(buf));
     }
 }
@@ -33,8 +33,10 @@ import com.sun.net.httpserver.HttpServer;
 
 import me.lucko.helper.Schedulers;
 import me.lucko.helper.messaging.AbstractMessenger;
+import me.lucko.helper.messaging.BatchSettings;
 import me.lucko.helper.messaging.Channel;
 import me.lucko.helper.messaging.Messenger;
+import me.lucko.helper.messaging.codec.CompressionSettings;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -49,6 +51,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.function.Function;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Proof of concept {@link Messenger} implementation using the HTTP protocol.
@@ -74,7 +77,15 @@ public class HttpMessenger implements Messenger {
     private final Function<String, URL> remoteUrl;
 
     public HttpMessenger(String host, int port, String remoteHost, int remotePort) {
-        this.messenger = new AbstractMessenger(this::handleOutgoing, this::subscribe, this::unsubscribe);
+        this(host, port, remoteHost, remotePort, null);
+    }
+
+    public HttpMessenger(String host, int port, String remoteHost, int remotePort, @Nullable BatchSettings batchSettings) {
+        this(host, port, remoteHost, remotePort, batchSettings, CompressionSettings.legacy());
+    }
+
+    public HttpMessenger(String host, int port, String remoteHost, int remotePort, @Nullable BatchSettings batchSettings, CompressionSettings compressionSettings) {
+        this.messenger = new AbstractMessenger(this::handleOutgoing, this::subscribe, this::unsubscribe, batchSettings, compressionSettings);
         try {
             this.httpServer = HttpServer.create(new InetSocketAddress(host, port), 0);
             this.httpServer.setExecutor(Schedulers.async());
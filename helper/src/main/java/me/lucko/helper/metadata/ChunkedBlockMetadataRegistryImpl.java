@@ -0,0 +1,374 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.metadata;
+
+import com.google.common.collect.ImmutableMap;
+
+import me.lucko.helper.metadata.type.ChunkedBlockMetadataRegistry;
+import me.lucko.helper.serialize.BlockPosition;
+import me.lucko.helper.serialize.ChunkPosition;
+import me.lucko.helper.serialize.ChunkRegion;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Implementation of {@link ChunkedBlockMetadataRegistry}.
+ *
+ * <p>Chunks are keyed by a packed long of world index, chunk x and chunk z,
+ * and spread over a fixed number of lock stripes. Each chunk holds a map of
+ * packed in-chunk block positions to metadata maps.</p>
+ */
+final class ChunkedBlockMetadataRegistryImpl implements ChunkedBlockMetadataRegistry {
+    private static final int STRIPE_COUNT = 16;
+
+    /** The number of bits used to store a chunk coordinate in a chunk key */
+    private static final int CHUNK_BITS = 24;
+    private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+    /** The maximum number of chunks a region can span before we scan every chunk instead */
+    private static final int MAX_REGION_LOOKUPS = 256;
+
+    private final Map<String, Integer> worldIndexes = new ConcurrentHashMap<>();
+    private final List<String> worldNames = new ArrayList<>();
+
+    @SuppressWarnings("unchecked")
+    private final LongObjectHashMap<LongObjectHashMap<MetadataMap>>[] stripes = new LongObjectHashMap[STRIPE_COUNT];
+
+    ChunkedBlockMetadataRegistryImpl() {
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            this.stripes[i] = new LongObjectHashMap<>();
+        }
+    }
+
+    private int worldIndex(String world) {
+        return this.worldIndexes.computeIfAbsent(world, w -> {
+            synchronized (this.worldNames) {
+                // the world index occupies the upper 16 bits of the chunk key
+                if (this.worldNames.size() > 0xFFFF) {
+                    throw new IllegalStateException("Too many worlds");
+                }
+                this.worldNames.add(w);
+                return this.worldNames.size() - 1;
+            }
+        });
+    }
+
+    private String worldName(int index) {
+        synchronized (this.worldNames) {
+            return this.worldNames.get(index);
+        }
+    }
+
+    private static long chunkKey(int worldIndex, int chunkX, int chunkZ) {
+        return ((long) worldIndex << (CHUNK_BITS * 2)) | ((chunkX & CHUNK_MASK) << CHUNK_BITS) | (chunkZ & CHUNK_MASK);
+    }
+
+    private static int chunkX(long chunkKey) {
+        return (int) (chunkKey >>> CHUNK_BITS << (64 - CHUNK_BITS) >> (64 - CHUNK_BITS));
+    }
+
+    private static int chunkZ(long chunkKey) {
+        return (int) (chunkKey << (64 - CHUNK_BITS) >> (64 - CHUNK_BITS));
+    }
+
+    private static int worldIndex(long chunkKey) {
+        return (int) (chunkKey >>> (CHUNK_BITS * 2));
+    }
+
+    private static long blockKey(int x, int y, int z) {
+        return ((long) y << 8) | ((x & 0xF) << 4) | (z & 0xF);
+    }
+
+    private LongObjectHashMap<LongObjectHashMap<MetadataMap>> stripe(long chunkKey) {
+        long h = chunkKey * 0x9E3779B97F4A7C15L;
+        return this.stripes[(int) (h >>> 60) & (STRIPE_COUNT - 1)];
+    }
+
+    private BlockPosition toPosition(String world, long chunkKey, long blockKey) {
+        int x = (chunkX(chunkKey) << 4) | (int) ((blockKey >>> 4) & 0xF);
+        int z = (chunkZ(chunkKey) << 4) | (int) (blockKey & 0xF);
+        int y = (int) (blockKey >> 8);
+        return BlockPosition.of(x, y, z, world);
+    }
+
+    private MetadataMap provide(String world, int x, int y, int z) {
+        long chunkKey = chunkKey(worldIndex(world), x >> 4, z >> 4);
+        long blockKey = blockKey(x, y, z);
+
+        LongObjectHashMap<LongObjectHashMap<MetadataMap>> stripe = stripe(chunkKey);
+        synchronized (stripe) {
+            LongObjectHashMap<MetadataMap> chunk = stripe.get(chunkKey);
+            if (chunk == null) {
+                chunk = new LongObjectHashMap<>();
+                stripe.put(chunkKey, chunk);
+            }
+
+            MetadataMap map = chunk.get(blockKey);
+            if (map == null) {
+                map = MetadataMap.create();
+                chunk.put(blockKey, map);
+            }
+            return map;
+        }
+    }
+
+    @Nullable
+    private MetadataMap get(String world, int x, int y, int z) {
+        Integer worldIndex = this.worldIndexes.get(world);
+        if (worldIndex == null) {
+            return null;
+        }
+
+        long chunkKey = chunkKey(worldIndex, x >> 4, z >> 4);
+        LongObjectHashMap<LongObjectHashMap<MetadataMap>> stripe = stripe(chunkKey);
+        synchronized (stripe) {
+            LongObjectHashMap<MetadataMap> chunk = stripe.get(chunkKey);
+            return chunk == null ? null : chunk.get(blockKey(x, y, z));
+        }
+    }
+
+    @Nonnull
+    @Override
+    public MetadataMap provide(@Nonnull BlockPosition id) {
+        Objects.requireNonNull(id, "id");
+        return provide(id.getWorld(), id.getX(), id.getY(), id.getZ());
+    }
+
+    @Nonnull
+    @Override
+    public MetadataMap provide(@Nonnull Block block) {
+        Objects.requireNonNull(block, "block");
+        return provide(block.getWorld().getName(), block.getX(), block.getY(), block.getZ());
+    }
+
+    @Nonnull
+    @Override
+    public MetadataMap provide(@Nonnull World world, int x, int y, int z) {
+        Objects.requireNonNull(world, "world");
+        return provide(world.getName(), x, y, z);
+    }
+
+    @Nonnull
+    @Override
+    public Optional<MetadataMap> get(@Nonnull BlockPosition id) {
+        Objects.requireNonNull(id, "id");
+        return Optional.ofNullable(get(id.getWorld(), id.getX(), id.getY(), id.getZ()));
+    }
+
+    @Nonnull
+    @Override
+    public Optional<MetadataMap> get(@Nonnull Block block) {
+        Objects.requireNonNull(block, "block");
+        return Optional.ofNullable(get(block.getWorld().getName(), block.getX(), block.getY(), block.getZ()));
+    }
+
+    @Nonnull
+    @Override
+    public Optional<MetadataMap> get(@Nonnull World world, int x, int y, int z) {
+        Objects.requireNonNull(world, "world");
+        return Optional.ofNullable(get(world.getName(), x, y, z));
+    }
+
+    @Override
+    public void remove(@Nonnull BlockPosition id) {
+        Objects.requireNonNull(id, "id");
+        Integer worldIndex = this.worldIndexes.get(id.getWorld());
+        if (worldIndex == null) {
+            return;
+        }
+
+        long chunkKey = chunkKey(worldIndex, id.getX() >> 4, id.getZ() >> 4);
+        MetadataMap map;
+
+        LongObjectHashMap<LongObjectHashMap<MetadataMap>> stripe = stripe(chunkKey);
+        synchronized (stripe) {
+            LongObjectHashMap<MetadataMap> chunk = stripe.get(chunkKey);
+            if (chunk == null) {
+                return;
+            }
+
+            map = chunk.remove(blockKey(id.getX(), id.getY(), id.getZ()));
+            if (chunk.isEmpty()) {
+                stripe.remove(chunkKey);
+            }
+        }
+
+        if (map != null) {
+            map.clear();
+        }
+    }
+
+    @Override
+    public void remove(@Nonnull ChunkPosition chunk) {
+        Objects.requireNonNull(chunk, "chunk");
+        Integer worldIndex = this.worldIndexes.get(chunk.getWorld());
+        if (worldIndex == null) {
+            return;
+        }
+
+        long chunkKey = chunkKey(worldIndex, chunk.getX(), chunk.getZ());
+        LongObjectHashMap<MetadataMap> removed;
+
+        LongObjectHashMap<LongObjectHashMap<MetadataMap>> stripe = stripe(chunkKey);
+        synchronized (stripe) {
+            removed = stripe.remove(chunkKey);
+        }
+
+        if (removed != null) {
+            for (Object map : removed.values()) {
+                ((MetadataMap) map).clear();
+            }
+        }
+    }
+
+    @Override
+    public void cleanup() {
+        for (LongObjectHashMap<LongObjectHashMap<MetadataMap>> stripe : this.stripes) {
+            synchronized (stripe) {
+                // MetadataMap#isEmpty also removes expired values
+                stripe.removeIf(chunk -> {
+                    chunk.removeIf(MetadataMap::isEmpty);
+                    return chunk.isEmpty();
+                });
+            }
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Map<BlockPosition, MetadataMap> getAll(@Nonnull ChunkPosition chunk) {
+        ImmutableMap.Builder<BlockPosition, MetadataMap> ret = ImmutableMap.builder();
+        forEach(chunk, ret::put);
+        return ret.build();
+    }
+
+    @Nonnull
+    @Override
+    public Map<BlockPosition, MetadataMap> getAll(@Nonnull ChunkRegion region) {
+        ImmutableMap.Builder<BlockPosition, MetadataMap> ret = ImmutableMap.builder();
+        forEach(region, ret::put);
+        return ret.build();
+    }
+
+    @Override
+    public void forEach(@Nonnull ChunkPosition chunk, @Nonnull BiConsumer<BlockPosition, MetadataMap> action) {
+        Objects.requireNonNull(chunk, "chunk");
+        Objects.requireNonNull(action, "action");
+
+        Integer worldIndex = this.worldIndexes.get(chunk.getWorld());
+        if (worldIndex == null) {
+            return;
+        }
+
+        forEachInChunk(chunk.getWorld(), chunkKey(worldIndex, chunk.getX(), chunk.getZ()), action);
+    }
+
+    @Override
+    public void forEach(@Nonnull ChunkRegion region, @Nonnull BiConsumer<BlockPosition, MetadataMap> action) {
+        Objects.requireNonNull(region, "region");
+        Objects.requireNonNull(action, "action");
+
+        String world = region.getMin().getWorld();
+        Integer worldIndex = this.worldIndexes.get(world);
+        if (worldIndex == null) {
+            return;
+        }
+
+        long chunkCount = (long) (region.getWidth() + 1) * (region.getDepth() + 1);
+        if (chunkCount <= MAX_REGION_LOOKUPS) {
+            // small region - look up each chunk directly
+            for (int x = region.getMin().getX(); x <= region.getMax().getX(); x++) {
+                for (int z = region.getMin().getZ(); z <= region.getMax().getZ(); z++) {
+                    forEachInChunk(world, chunkKey(worldIndex, x, z), action);
+                }
+            }
+            return;
+        }
+
+        // large region - scan the chunks we actually hold
+        for (LongObjectHashMap<LongObjectHashMap<MetadataMap>> stripe : this.stripes) {
+            long[] chunkKeys;
+            synchronized (stripe) {
+                chunkKeys = stripe.keys();
+            }
+            for (long chunkKey : chunkKeys) {
+                if (worldIndex(chunkKey) == worldIndex && region.inRegion(chunkX(chunkKey), chunkZ(chunkKey))) {
+                    forEachInChunk(world, chunkKey, action);
+                }
+            }
+        }
+    }
+
+    private void forEachInChunk(String world, long chunkKey, BiConsumer<BlockPosition, MetadataMap> action) {
+        long[] blockKeys;
+        Object[] maps;
+
+        // copy out the entries so the action isn't called while holding the lock
+        LongObjectHashMap<LongObjectHashMap<MetadataMap>> stripe = stripe(chunkKey);
+        synchronized (stripe) {
+            LongObjectHashMap<MetadataMap> chunk = stripe.get(chunkKey);
+            if (chunk == null) {
+                return;
+            }
+            blockKeys = chunk.keys();
+            maps = chunk.values();
+        }
+
+        for (int i = 0; i < blockKeys.length; i++) {
+            action.accept(toPosition(world, chunkKey, blockKeys[i]), (MetadataMap) maps[i]);
+        }
+    }
+
+    @Nonnull
+    @Override
+    public <K> Map<BlockPosition, K> getAllWithKey(@Nonnull MetadataKey<K> key) {
+        Objects.requireNonNull(key, "key");
+        ImmutableMap.Builder<BlockPosition, K> ret = ImmutableMap.builder();
+        for (LongObjectHashMap<LongObjectHashMap<MetadataMap>> stripe : this.stripes) {
+            long[] chunkKeys;
+            synchronized (stripe) {
+                chunkKeys = stripe.keys();
+            }
+            for (long chunkKey : chunkKeys) {
+                String world = worldName(worldIndex(chunkKey));
+                forEachInChunk(world, chunkKey, (pos, map) -> map.get(key).ifPresent(t -> ret.put(pos, t)));
+            }
+        }
+        return ret.build();
+    }
+}
@@ -91,4 +91,8 @@ public class ExpireAfterAccessValue<T> implements TransientValue<T> {
         return System.currentTimeMillis() > this.expireAt;
     }
 
+    long expiresAt() {
+        return this.expireAt;
+    }
+
 }
@@ -83,4 +83,8 @@ public final class ExpiringValue<T> implements TransientValue<T> {
         return System.currentTimeMillis() > this.expireAt;
     }
 
+    long expiresAt() {
+        return this.expireAt;
+    }
+
 }
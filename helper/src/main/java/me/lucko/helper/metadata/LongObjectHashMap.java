@@ -0,0 +1,234 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.metadata;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+
+/**
+ * A minimal open-addressing hash map with primitive long keys.
+ *
+ * <p>Collisions are resolved by linear probing, and removals use backward shift
+ * deletion, so no tombstones are left behind. Values must not be null.</p>
+ *
+ * <p>This class is not thread safe.</p>
+ *
+ * @param <V> the value type
+ */
+final class LongObjectHashMap<V> {
+    private static final int MIN_CAPACITY = 4;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size = 0;
+
+    LongObjectHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    LongObjectHashMap(int expectedSize) {
+        int capacity = tableSizeFor(Math.max(expectedSize, MIN_CAPACITY));
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        // keep the load factor at or below 0.5
+        return Integer.highestOneBit(expectedSize * 2 - 1) << 1;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    @Nullable
+    V get(long key) {
+        long[] keys = this.keys;
+        Object[] values = this.values;
+        int mask = this.mask;
+
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            Object value = values[i];
+            if (value == null) {
+                return null;
+            }
+            if (keys[i] == key) {
+                //noinspection unchecked
+                return (V) value;
+            }
+        }
+    }
+
+    @Nullable
+    V put(long key, V value) {
+        int mask = this.mask;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            Object existing = this.values[i];
+            if (existing == null) {
+                this.keys[i] = key;
+                this.values[i] = value;
+                if (++this.size * 2 > this.keys.length) {
+                    resize(this.keys.length * 2);
+                }
+                return null;
+            }
+            if (this.keys[i] == key) {
+                this.values[i] = value;
+                //noinspection unchecked
+                return (V) existing;
+            }
+        }
+    }
+
+    @Nullable
+    V remove(long key) {
+        int mask = this.mask;
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            Object existing = this.values[i];
+            if (existing == null) {
+                return null;
+            }
+            if (this.keys[i] == key) {
+                removeAt(i);
+                //noinspection unchecked
+                return (V) existing;
+            }
+        }
+    }
+
+    /**
+     * Removes all entries whose value matches the given predicate.
+     *
+     * @param predicate the predicate
+     * @return true if any entries were removed
+     */
+    boolean removeIf(Predicate<? super V> predicate) {
+        boolean removed = false;
+        for (int i = 0; i < this.values.length; ) {
+            Object value = this.values[i];
+            //noinspection unchecked
+            if (value != null && predicate.test((V) value)) {
+                // an entry may have been shifted into this slot, so check it again
+                removeAt(i);
+                removed = true;
+            } else {
+                i++;
+            }
+        }
+        return removed;
+    }
+
+    void clear() {
+        Arrays.fill(this.values, null);
+        this.size = 0;
+    }
+
+    /**
+     * Copies the keys of this map into a new array.
+     *
+     * @return the keys
+     */
+    long[] keys() {
+        long[] result = new long[this.size];
+        int n = 0;
+        for (int i = 0; i < this.values.length; i++) {
+            if (this.values[i] != null) {
+                result[n++] = this.keys[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copies the values of this map into a new array, in the same order as {@link #keys()}.
+     *
+     * @return the values
+     */
+    Object[] values() {
+        Object[] result = new Object[this.size];
+        int n = 0;
+        for (Object value : this.values) {
+            if (value != null) {
+                result[n++] = value;
+            }
+        }
+        return result;
+    }
+
+    private void removeAt(int slot) {
+        long[] keys = this.keys;
+        Object[] values = this.values;
+        int mask = this.mask;
+
+        // shift back any following entries which would no longer be reachable
+        int gap = slot;
+        for (int i = (slot + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+            int ideal = hash(keys[i]) & mask;
+            if (((i - ideal) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        values[gap] = null;
+        this.size--;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+
+        for (int i = 0; i < oldValues.length; i++) {
+            Object value = oldValues[i];
+            if (value != null) {
+                for (int j = hash(oldKeys[i]) & this.mask; ; j = (j + 1) & this.mask) {
+                    if (this.values[j] == null) {
+                        this.keys[j] = oldKeys[i];
+                        this.values[j] = value;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
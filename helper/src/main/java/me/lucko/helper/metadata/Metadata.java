@@ -28,6 +28,7 @@ package me.lucko.helper.metadata;
 import me.lucko.helper.Events;
 import me.lucko.helper.Schedulers;
 import me.lucko.helper.metadata.type.BlockMetadataRegistry;
+import me.lucko.helper.metadata.type.ChunkedBlockMetadataRegistry;
 import me.lucko.helper.metadata.type.EntityMetadataRegistry;
 import me.lucko.helper.metadata.type.PlayerMetadataRegistry;
 import me.lucko.helper.metadata.type.WorldMetadataRegistry;
@@ -68,6 +69,9 @@ public final class Metadata {
             Events.subscribe(PlayerQuitEvent.class, EventPriority.MONITOR)
                     .handler(e -> StandardMetadataRegistries.PLAYER.remove(e.getPlayer().getUniqueId()));
 
+            // proactively remove expiring, soft and weak values
+            MetadataExpiry.start();
+
             // cache housekeeping task
             Schedulers.builder()
                     .async()
@@ -110,6 +114,20 @@ public final class Metadata {
         return StandardMetadataRegistries.BLOCK;
     }
 
+    /**
+     * Gets a {@link MetadataRegistry} for {@link Block}s, which stores its
+     * metadata grouped by chunk.
+     *
+     * <p>This registry is separate from {@link #blocks()}, and uses less memory
+     * per block when a large number of blocks hold metadata.</p>
+     *
+     * @return the {@link ChunkedBlockMetadataRegistry}
+     */
+    public static ChunkedBlockMetadataRegistry chunkedBlocks() {
+        ensureSetup();
+        return StandardMetadataRegistries.CHUNKED_BLOCK;
+    }
+
     /**
      * Gets the {@link MetadataRegistry} for {@link World}s.
      *
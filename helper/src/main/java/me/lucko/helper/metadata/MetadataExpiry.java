@@ -0,0 +1,418 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.metadata;
+
+import me.lucko.helper.Schedulers;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nullable;
+
+/**
+ * Proactively removes expired {@link TransientValue}s from {@link MetadataMapImpl}s.
+ *
+ * <p>Values with a deadline ({@link ExpiringValue} and {@link ExpireAfterAccessValue})
+ * are tracked in a hierarchical timing wheel, which is advanced by the helper async
+ * timer. Scheduling, cancelling and expiring a value are all O(1) amortised.
+ * Each bucket is a doubly linked list, so a cancelled node is unlinked straight
+ * away rather than waiting in the wheel until its old deadline.</p>
+ *
+ * <p>Nodes only hold weak references to their map and entry, so a map which is
+ * dropped without being cleared can still be garbage collected.</p>
+ *
+ * <p>Reference based values ({@link SoftValue} and {@link WeakValue}) register their
+ * reference with a {@link ReferenceQueue}, which is drained on each tick.</p>
+ *
+ * <p>Other {@link TransientValue} implementations are not tracked, and are still
+ * removed by the periodic {@link MetadataRegistry#cleanup()} task.</p>
+ */
+final class MetadataExpiry {
+
+    /** The duration of a single tick of the wheel */
+    private static final long TICK_MILLIS = 1000L;
+
+    /** The number of bits used to index the buckets of each wheel */
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+    /** The number of wheels. With 1 second ticks, the wheels span ~1 minute, ~1 hour, ~3 days and ~194 days */
+    private static final int WHEEL_COUNT = 4;
+
+    /** The largest delay which can be placed in the wheels. Nodes due later are rescheduled when they reach the end */
+    private static final long MAX_DELAY_TICKS = (1L << (WHEEL_BITS * WHEEL_COUNT)) - 1;
+
+    private static final ReferenceQueue<Object> REFERENCE_QUEUE = new ReferenceQueue<>();
+    private static final Queue<Node> PENDING = new ConcurrentLinkedQueue<>();
+    /** Cancelled nodes which couldn't be unlinked straight away, because the wheel was busy */
+    private static final Queue<Node> CANCELLED = new ConcurrentLinkedQueue<>();
+
+    /** Guards the wheels, and the links between nodes */
+    private static final ReentrantLock WHEEL_LOCK = new ReentrantLock();
+    private static final Node[][] WHEELS = new Node[WHEEL_COUNT][WHEEL_SIZE];
+
+    private static volatile boolean running = false;
+    private static long startMillis;
+    private static long currentTick;
+
+    /**
+     * Starts advancing the timing wheel. Values which are added to a map
+     * before this is called are not tracked.
+     */
+    static synchronized void start() {
+        if (running) {
+            return;
+        }
+
+        startMillis = System.currentTimeMillis();
+        currentTick = 0;
+        running = true;
+
+        Schedulers.builder()
+                .async()
+                .afterAndEvery(TICK_MILLIS, TimeUnit.MILLISECONDS)
+                .run(MetadataExpiry::tick);
+    }
+
+    static <T> SoftReference<T> softReference(T value) {
+        return running ? new TrackedSoftReference<>(value, REFERENCE_QUEUE) : new SoftReference<>(value);
+    }
+
+    static <T> WeakReference<T> weakReference(T value) {
+        return running ? new TrackedWeakReference<>(value, REFERENCE_QUEUE) : new WeakReference<>(value);
+    }
+
+    /**
+     * Starts tracking the transient value held by the given entry.
+     *
+     * @param map the map containing the entry
+     * @param index the index of the entry within the map
+     * @param entry the entry
+     */
+    static void track(MetadataMapImpl map, int index, MetadataMapImpl.Entry entry) {
+        if (!running) {
+            return;
+        }
+
+        Object value = entry.value;
+        if (value instanceof SoftValue<?>) {
+            bind(((SoftValue<?>) value).reference(), new Node(map, index, entry));
+        } else if (value instanceof WeakValue<?>) {
+            bind(((WeakValue<?>) value).reference(), new Node(map, index, entry));
+        } else if (value instanceof ExpiringValue<?> || value instanceof ExpireAfterAccessValue<?>) {
+            Node node = new Node(map, index, entry);
+            entry.expiry = node;
+            PENDING.add(node);
+        }
+    }
+
+    private static void bind(Reference<?> reference, Node node) {
+        if (reference instanceof TrackedReference) {
+            MetadataMapImpl.Entry entry = node.entry.get();
+            if (entry != null) {
+                entry.expiry = node;
+                ((TrackedReference) reference).setNode(node);
+            }
+        }
+    }
+
+    /**
+     * Stops tracking the given entry, if it is being tracked.
+     *
+     * <p>The node is unlinked from the wheel straight away, or on the next tick
+     * if the wheel is being advanced at the time.</p>
+     *
+     * @param entry the entry
+     */
+    static void release(@Nullable MetadataMapImpl.Entry entry) {
+        if (entry == null) {
+            return;
+        }
+
+        Node node = entry.expiry;
+        if (node != null) {
+            entry.expiry = null;
+            node.cancel();
+        }
+    }
+
+    private static long deadlineOf(Object value) {
+        if (value instanceof ExpiringValue<?>) {
+            return ((ExpiringValue<?>) value).expiresAt();
+        } else if (value instanceof ExpireAfterAccessValue<?>) {
+            return ((ExpireAfterAccessValue<?>) value).expiresAt();
+        } else {
+            throw new IllegalArgumentException("No deadline for value: " + value);
+        }
+    }
+
+    private static void tick() {
+        WHEEL_LOCK.lock();
+        try {
+            advance();
+        } finally {
+            WHEEL_LOCK.unlock();
+        }
+    }
+
+    private static void advance() {
+        drainReferences();
+
+        Node cancelled;
+        while ((cancelled = CANCELLED.poll()) != null) {
+            unlink(cancelled);
+        }
+
+        long nowTick = (System.currentTimeMillis() - startMillis) / TICK_MILLIS;
+        while (currentTick < nowTick) {
+            currentTick++;
+
+            // move nodes from the outer wheels which are now within range of an inner wheel
+            for (int wheel = WHEEL_COUNT - 1; wheel > 0; wheel--) {
+                if ((currentTick & ((1L << (WHEEL_BITS * wheel)) - 1)) == 0) {
+                    int bucket = (int) ((currentTick >>> (WHEEL_BITS * wheel)) & WHEEL_MASK);
+                    Node node;
+                    while ((node = WHEELS[wheel][bucket]) != null) {
+                        unlink(node);
+                        if (!node.isCancelled()) {
+                            schedule(node, 0);
+                        }
+                    }
+                }
+            }
+
+            Node pending;
+            while ((pending = PENDING.poll()) != null) {
+                if (!pending.isCancelled()) {
+                    schedule(pending, 0);
+                }
+            }
+
+            // expire the nodes due on this tick
+            int bucket = (int) (currentTick & WHEEL_MASK);
+            Node node;
+            while ((node = WHEELS[0][bucket]) != null) {
+                unlink(node);
+                if (!node.isCancelled()) {
+                    fire(node);
+                }
+            }
+        }
+    }
+
+    private static void drainReferences() {
+        Reference<?> reference;
+        while ((reference = REFERENCE_QUEUE.poll()) != null) {
+            Node node = ((TrackedReference) reference).getNode();
+            if (node != null && !node.isCancelled()) {
+                node.expire();
+            }
+        }
+    }
+
+    private static void fire(Node node) {
+        MetadataMapImpl.Entry entry = node.entry.get();
+        if (entry == null) {
+            return;
+        }
+
+        // the deadline of an ExpireAfterAccessValue moves each time it is read
+        TransientValue<?> value = (TransientValue<?>) entry.value;
+        if (!value.shouldExpire()) {
+            schedule(node, 1);
+            return;
+        }
+
+        node.expire();
+    }
+
+    /**
+     * Places a node into the wheels.
+     *
+     * @param node the node
+     * @param minDelayTicks the minimum number of ticks to wait before the node fires
+     */
+    private static void schedule(Node node, long minDelayTicks) {
+        MetadataMapImpl.Entry entry = node.entry.get();
+        if (entry == null) {
+            return;
+        }
+
+        long deadline = deadlineOf(entry.value) - startMillis;
+        long deadlineTick = (deadline + TICK_MILLIS - 1) / TICK_MILLIS;
+        long delay = Math.min(Math.max(deadlineTick - currentTick, minDelayTicks), MAX_DELAY_TICKS);
+        long tick = currentTick + delay;
+
+        int wheel = 0;
+        while (delay >= (1L << (WHEEL_BITS * (wheel + 1)))) {
+            wheel++;
+        }
+
+        int bucket = (int) ((tick >>> (WHEEL_BITS * wheel)) & WHEEL_MASK);
+        Node head = WHEELS[wheel][bucket];
+        node.prev = null;
+        node.next = head;
+        if (head != null) {
+            head.prev = node;
+        }
+        WHEELS[wheel][bucket] = node;
+        node.wheel = wheel;
+        node.bucket = bucket;
+    }
+
+    /**
+     * Removes a node from the bucket it is linked into, if any.
+     *
+     * <p>Must be called while holding {@link #WHEEL_LOCK}.</p>
+     *
+     * @param node the node
+     */
+    private static void unlink(Node node) {
+        if (node.wheel == -1) {
+            return;
+        }
+
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            WHEELS[node.wheel][node.bucket] = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        }
+
+        node.prev = null;
+        node.next = null;
+        node.wheel = -1;
+        node.bucket = -1;
+    }
+
+    /**
+     * A tracked entry in a map.
+     */
+    static final class Node {
+        private final WeakReference<MetadataMapImpl> map;
+        private final WeakReference<MetadataMapImpl.Entry> entry;
+        private final int index;
+        private volatile boolean cancelled = false;
+
+        /** The position of this node in the wheels, or -1 if it isn't linked. Guarded by {@link #WHEEL_LOCK} */
+        private int wheel = -1;
+        private int bucket = -1;
+        private Node prev;
+        private Node next;
+
+        private Node(MetadataMapImpl map, int index, MetadataMapImpl.Entry entry) {
+            this.map = new WeakReference<>(map);
+            this.index = index;
+            this.entry = new WeakReference<>(entry);
+        }
+
+        private boolean isCancelled() {
+            return this.cancelled || this.entry.get() == null || this.map.get() == null;
+        }
+
+        private void cancel() {
+            this.cancelled = true;
+
+            // don't block the caller if the wheel is being advanced, the next tick will unlink the node instead
+            if (WHEEL_LOCK.tryLock()) {
+                try {
+                    unlink(this);
+                } finally {
+                    WHEEL_LOCK.unlock();
+                }
+            } else {
+                CANCELLED.add(this);
+            }
+        }
+
+        private void expire() {
+            MetadataMapImpl map = this.map.get();
+            MetadataMapImpl.Entry entry = this.entry.get();
+            if (!this.cancelled && map != null && entry != null) {
+                map.expire(this.index, entry);
+            }
+        }
+    }
+
+    private interface TrackedReference {
+        @Nullable
+        Node getNode();
+
+        void setNode(Node node);
+    }
+
+    private static final class TrackedSoftReference<T> extends SoftReference<T> implements TrackedReference {
+        private volatile Node node;
+
+        private TrackedSoftReference(T referent, ReferenceQueue<? super T> queue) {
+            super(referent, queue);
+        }
+
+        @Nullable
+        @Override
+        public Node getNode() {
+            return this.node;
+        }
+
+        @Override
+        public void setNode(Node node) {
+            this.node = node;
+        }
+    }
+
+    private static final class TrackedWeakReference<T> extends WeakReference<T> implements TrackedReference {
+        private volatile Node node;
+
+        private TrackedWeakReference(T referent, ReferenceQueue<? super T> queue) {
+            super(referent, queue);
+        }
+
+        @Nullable
+        @Override
+        public Node getNode() {
+            return this.node;
+        }
+
+        @Override
+        public void setNode(Node node) {
+            this.node = node;
+        }
+    }
+
+    private MetadataExpiry() {
+        throw new UnsupportedOperationException("This class cannot be instantiated");
+    }
+
+}
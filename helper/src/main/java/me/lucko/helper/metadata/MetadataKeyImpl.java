@@ -29,17 +29,75 @@ import com.google.common.reflect.TypeToken;
 
 import me.lucko.helper.utils.annotation.NonnullByDefault;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Queue;
 
 @NonnullByDefault
 final class MetadataKeyImpl<T> implements MetadataKey<T> {
 
+    /**
+     * The slot indexes allocated to each key id.
+     *
+     * <p>Keys with the same id share a slot, so a {@link MetadataMapImpl} can
+     * still detect type conflicts between them.</p>
+     *
+     * <p>Slots are only referenced weakly here. They are held by the keys using
+     * them, and by the map entries stored under them, so once neither remain the
+     * index is returned to {@link #FREE_INDEXES} to be reused by another id.</p>
+     */
+    private static final Map<String, SlotReference> INDEXES = new HashMap<>();
+    private static final ReferenceQueue<Slot> QUEUE = new ReferenceQueue<>();
+    // the lowest is reused first, to keep the indexes dense
+    private static final Queue<Integer> FREE_INDEXES = new PriorityQueue<>();
+    private static int nextIndex = 0;
+
+    private static Slot allocateSlot(String id) {
+        synchronized (INDEXES) {
+            // recycle the indexes of slots which are no longer used
+            SlotReference cleared;
+            while ((cleared = (SlotReference) QUEUE.poll()) != null) {
+                INDEXES.remove(cleared.id, cleared);
+                FREE_INDEXES.add(cleared.index);
+            }
+
+            SlotReference ref = INDEXES.get(id);
+            Slot slot = ref == null ? null : ref.get();
+            if (slot == null) {
+                Integer free = FREE_INDEXES.poll();
+                slot = new Slot(free != null ? free : nextIndex++);
+                INDEXES.put(id, new SlotReference(id, slot, QUEUE));
+            }
+            return slot;
+        }
+    }
+
+    /**
+     * Gets the slot of the given key, whose index {@link MetadataMapImpl} uses to
+     * order its entries.
+     *
+     * @param key the key
+     * @return the slot
+     */
+    static Slot slotOf(MetadataKey<?> key) {
+        if (key instanceof MetadataKeyImpl) {
+            return ((MetadataKeyImpl<?>) key).slot;
+        }
+        return allocateSlot(key.getId());
+    }
+
     private final String id;
     private final TypeToken<T> type;
+    private final Slot slot;
 
     MetadataKeyImpl(String id, TypeToken<T> type) {
         this.id = id.toLowerCase();
         this.type = type;
+        this.slot = allocateSlot(this.id);
     }
 
     @Override
@@ -68,4 +126,26 @@ final class MetadataKeyImpl<T> implements MetadataKey<T> {
     public int hashCode() {
         return this.id.hashCode();
     }
+
+    /**
+     * The slot allocated to a key id. Its index can be reused once it is unreachable.
+     */
+    static final class Slot {
+        final int index;
+
+        private Slot(int index) {
+            this.index = index;
+        }
+    }
+
+    private static final class SlotReference extends WeakReference<Slot> {
+        private final String id;
+        private final int index;
+
+        SlotReference(String id, Slot slot, ReferenceQueue<Slot> queue) {
+            super(slot, queue);
+            this.id = id;
+            this.index = slot.index;
+        }
+    }
 }
@@ -26,22 +26,33 @@
 package me.lucko.helper.metadata;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
+/**
+ * A lock-free {@link MetadataMap} backed by a compact array of entries, sorted
+ * by {@link MetadataKeyImpl#slotOf(MetadataKey) key index}.
+ *
+ * <p>The arrays are never mutated once published. Writers build a modified
+ * copy and atomically swap it in, so reads are a binary search over the keys
+ * actually present in the map and never block. The cost of a write depends only
+ * on the number of entries in the map, not on how many keys exist globally.</p>
+ *
+ * <p>The indexes of slots holding {@link TransientValue}s are tracked separately,
+ * so expiry only needs to inspect those slots. Expired values are removed lazily
+ * when they are read, in bulk by {@link #cleanup()}, or proactively by
+ * {@link MetadataExpiry}.</p>
+ */
 final class MetadataMapImpl implements MetadataMap {
-    private final Map<MetadataKey<?>, Object> map = new HashMap<>();
-    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicReference<Slots> slots = new AtomicReference<>(Slots.EMPTY);
 
     @Override
     public <T> void put(@Nonnull MetadataKey<T> key, @Nonnull T value) {
@@ -57,25 +68,21 @@ final class MetadataMapImpl implements MetadataMap {
         Objects.requireNonNull(key, "key");
         Objects.requireNonNull(value, "value");
 
-        this.lock.lock();
-        try {
-            MetadataKey<?> existing = null;
-            for (MetadataKey<?> k : this.map.keySet()) {
-                if (k.equals(key)) {
-                    existing = k;
-                    break;
-                }
-            }
-
-            if (existing != null && !existing.getType().equals(key.getType())) {
-                throw new ClassCastException("Cannot cast key with id " + key.getId() + " with type " + key.getType().getRawType() + " to existing stored type " + existing.getType().getRawType());
-            }
+        MetadataKeyImpl.Slot slot = MetadataKeyImpl.slotOf(key);
+        int index = slot.index;
+        Entry entry = new Entry(key, slot, value);
 
-            this.map.put(key, value);
+        Slots current;
+        Entry existing;
+        do {
+            current = this.slots.get();
 
-        } finally {
-            this.lock.unlock();
-        }
+            existing = current.get(index);
+            if (existing != null) {
+                checkType(key, existing.key);
+            }
+        } while (!this.slots.compareAndSet(current, current.with(index, entry)));
+        replaced(index, existing, entry);
     }
 
     @Override
@@ -92,12 +99,15 @@ final class MetadataMapImpl implements MetadataMap {
         Objects.requireNonNull(key, "key");
         Objects.requireNonNull(value, "value");
 
-        this.lock.lock();
-        try {
-            this.map.put(key, value);
-        } finally {
-            this.lock.unlock();
-        }
+        MetadataKeyImpl.Slot slot = MetadataKeyImpl.slotOf(key);
+        int index = slot.index;
+        Entry entry = new Entry(key, slot, value);
+
+        Slots current;
+        do {
+            current = this.slots.get();
+        } while (!this.slots.compareAndSet(current, current.with(index, entry)));
+        replaced(index, current.get(index), entry);
     }
 
     @Override
@@ -114,13 +124,22 @@ final class MetadataMapImpl implements MetadataMap {
         Objects.requireNonNull(key, "key");
         Objects.requireNonNull(value, "value");
 
-        this.lock.lock();
-        try {
-            cleanup();
-            return this.map.putIfAbsent(key, value) == null;
-        } finally {
-            this.lock.unlock();
-        }
+        MetadataKeyImpl.Slot slot = MetadataKeyImpl.slotOf(key);
+        int index = slot.index;
+        Entry entry = new Entry(key, slot, value);
+
+        Slots current;
+        Entry existing;
+        do {
+            current = this.slots.get();
+
+            existing = current.get(index);
+            if (existing != null && !existing.isExpired()) {
+                return false;
+            }
+        } while (!this.slots.compareAndSet(current, current.with(index, entry)));
+        replaced(index, existing, entry);
+        return true;
     }
 
     @Nonnull
@@ -128,52 +147,19 @@ final class MetadataMapImpl implements MetadataMap {
     public <T> Optional<T> get(@Nonnull MetadataKey<T> key) {
         Objects.requireNonNull(key, "key");
 
-        this.lock.lock();
-        try {
-            Map.Entry<MetadataKey<?>, Object> existing = null;
-
-            // try to locate an existing entry, and expire any values at the same time.
-            Iterator<Map.Entry<MetadataKey<?>, Object>> it = this.map.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry<MetadataKey<?>, Object> kv = it.next();
-
-                if (kv.getValue() instanceof TransientValue<?>) {
-                    TransientValue<?> transientValue = ((TransientValue) kv.getValue());
-
-                    Object unboxed = transientValue.getOrNull();
-
-                    // if it has expired
-                    if (unboxed == null) {
-                        it.remove();
-                        continue;
-                    }
-
-                    // copy out the unboxed value
-                    if (kv.getKey().equals(key)) {
-                        existing = Maps.immutableEntry(kv.getKey(), unboxed);
-                        break;
-                    }
-
-                } else {
-                    if (kv.getKey().equals(key)) {
-                        existing = kv;
-                        break;
-                    }
-                }
-            }
-
-            if (existing == null) {
-                return Optional.empty();
-            }
-
-            if (!existing.getKey().getType().equals(key.getType())) {
-                throw new ClassCastException("Cannot cast key with id " + key.getId() + " with type " + key.getType().getRawType() + " to existing stored type " + existing.getKey().getType().getRawType());
-            }
+        int index = MetadataKeyImpl.slotOf(key).index;
+        Entry existing = this.slots.get().get(index);
+        if (existing == null) {
+            return Optional.empty();
+        }
 
-            return Optional.of(key.cast(existing.getValue()));
-        } finally {
-            this.lock.unlock();
+        Object value = unbox(index, existing);
+        if (value == null) {
+            return Optional.empty();
         }
+
+        checkType(key, existing.key);
+        return Optional.of(key.cast(value));
     }
 
     @Nonnull
@@ -209,55 +195,33 @@ final class MetadataMapImpl implements MetadataMap {
         Objects.requireNonNull(key, "key");
         Objects.requireNonNull(def, "def");
 
-        this.lock.lock();
-        try {
-            Map.Entry<MetadataKey<?>, Object> existing = null;
-
-            // try to locate an existing entry, and expire any values at the same time.
-            Iterator<Map.Entry<MetadataKey<?>, Object>> it = this.map.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry<MetadataKey<?>, Object> kv = it.next();
-
-                if (kv.getValue() instanceof TransientValue<?>) {
-                    TransientValue<?> transientValue = ((TransientValue) kv.getValue());
-
-                    Object unboxed = transientValue.getOrNull();
-
-                    // if it has expired
-                    if (unboxed == null) {
-                        it.remove();
-                        continue;
-                    }
-
-                    // copy out the unboxed value
-                    if (kv.getKey().equals(key)) {
-                        existing = Maps.immutableEntry(kv.getKey(), unboxed);
-                        break;
-                    }
-
-                } else {
-                    if (kv.getKey().equals(key)) {
-                        existing = kv;
-                        break;
-                    }
+        MetadataKeyImpl.Slot slot = MetadataKeyImpl.slotOf(key);
+        int index = slot.index;
+        Entry created = null;
+
+        while (true) {
+            Slots current = this.slots.get();
+
+            Entry existing = current.get(index);
+            if (existing != null) {
+                Object value = unbox(index, existing);
+                if (value != null) {
+                    checkType(key, existing.key);
+                    return key.cast(value);
                 }
             }
 
-            if (existing == null) {
+            // only call the supplier once, even if we lose a race and have to retry
+            if (created == null) {
                 T t = def.get();
                 Objects.requireNonNull(t, "supplied def");
-
-                this.map.put(key, t);
-                return t;
+                created = new Entry(key, slot, t);
             }
 
-            if (!existing.getKey().getType().equals(key.getType())) {
-                throw new ClassCastException("Cannot cast key with id " + key.getId() + " with type " + key.getType().getRawType() + " to existing stored type " + existing.getKey().getType().getRawType());
+            if (this.slots.compareAndSet(current, current.with(index, created))) {
+                replaced(index, existing, created);
+                return key.cast(created.value);
             }
-
-            return key.cast(existing.getValue());
-        } finally {
-            this.lock.unlock();
         }
     }
 
@@ -267,60 +231,39 @@ final class MetadataMapImpl implements MetadataMap {
         Objects.requireNonNull(key, "key");
         Objects.requireNonNull(def, "def");
 
-        this.lock.lock();
-        try {
-            Map.Entry<MetadataKey<?>, Object> existing = null;
-
-            // try to locate an existing entry, and expire any values at the same time.
-            Iterator<Map.Entry<MetadataKey<?>, Object>> it = this.map.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry<MetadataKey<?>, Object> kv = it.next();
-
-                if (kv.getValue() instanceof TransientValue<?>) {
-                    TransientValue<?> transientValue = ((TransientValue) kv.getValue());
-
-                    Object unboxed = transientValue.getOrNull();
-
-                    // if it has expired
-                    if (unboxed == null) {
-                        it.remove();
-                        continue;
-                    }
-
-                    // copy out the unboxed value
-                    if (kv.getKey().equals(key)) {
-                        existing = Maps.immutableEntry(kv.getKey(), unboxed);
-                        break;
-                    }
-
-                } else {
-                    if (kv.getKey().equals(key)) {
-                        existing = kv;
-                        break;
-                    }
+        MetadataKeyImpl.Slot slot = MetadataKeyImpl.slotOf(key);
+        int index = slot.index;
+        Entry created = null;
+        T createdValue = null;
+
+        while (true) {
+            Slots current = this.slots.get();
+
+            Entry existing = current.get(index);
+            if (existing != null) {
+                Object value = unbox(index, existing);
+                if (value != null) {
+                    checkType(key, existing.key);
+                    return key.cast(value);
                 }
             }
 
-            if (existing == null) {
+            // only call the supplier once, even if we lose a race and have to retry
+            if (created == null) {
                 TransientValue<T> t = def.get();
                 Objects.requireNonNull(t, "supplied def");
 
-                T value = t.getOrNull();
-                if (value == null) {
+                createdValue = t.getOrNull();
+                if (createdValue == null) {
                     throw new IllegalArgumentException("Transient value already expired: " + t);
                 }
-
-                this.map.put(key, t);
-                return value;
+                created = new Entry(key, slot, t);
             }
 
-            if (!existing.getKey().getType().equals(key.getType())) {
-                throw new ClassCastException("Cannot cast key with id " + key.getId() + " with type " + key.getType().getRawType() + " to existing stored type " + existing.getKey().getType().getRawType());
+            if (this.slots.compareAndSet(current, current.with(index, created))) {
+                replaced(index, existing, created);
+                return createdValue;
             }
-
-            return key.cast(existing.getValue());
-        } finally {
-            this.lock.unlock();
         }
     }
 
@@ -328,87 +271,294 @@ final class MetadataMapImpl implements MetadataMap {
     public boolean has(@Nonnull MetadataKey<?> key) {
         Objects.requireNonNull(key, "key");
 
-        this.lock.lock();
-        try {
-            Map.Entry<MetadataKey<?>, Object> existing = null;
-
-            // try to locate an existing entry, and expire any values at the same time.
-            Iterator<Map.Entry<MetadataKey<?>, Object>> it = this.map.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry<MetadataKey<?>, Object> kv = it.next();
-
-                if (kv.getValue() instanceof TransientValue<?>) {
-                    TransientValue<?> transientValue = ((TransientValue) kv.getValue());
-
-                    if (transientValue.shouldExpire()) {
-                        it.remove();
-                        continue;
-                    }
-                }
-
-                if (kv.getKey().equals(key)) {
-                    existing = kv;
-                    break;
-                }
-            }
+        int index = MetadataKeyImpl.slotOf(key).index;
+        Entry existing = this.slots.get().get(index);
+        if (existing == null) {
+            return false;
+        }
 
-            return existing != null && existing.getKey().getType().equals(key.getType());
-        } finally {
-            this.lock.unlock();
+        if (existing.isExpired()) {
+            removeEntry(index, existing);
+            return false;
         }
+
+        return existing.key.getType().equals(key.getType());
     }
 
     @Override
     public boolean remove(@Nonnull MetadataKey<?> key) {
         Objects.requireNonNull(key, "key");
 
-        this.lock.lock();
-        try {
-            return this.map.remove(key) != null;
-        } finally {
-            this.lock.unlock();
-        }
+        int index = MetadataKeyImpl.slotOf(key).index;
+
+        Slots current;
+        Entry existing;
+        do {
+            current = this.slots.get();
+            existing = current.get(index);
+            if (existing == null) {
+                return false;
+            }
+        } while (!this.slots.compareAndSet(current, current.without(index)));
+        MetadataExpiry.release(existing);
+        return true;
     }
 
     @Override
     public void clear() {
-        this.lock.lock();
-        try {
-            this.map.clear();
-        } finally {
-            this.lock.unlock();
-        }
+        released(this.slots.getAndSet(Slots.EMPTY), Slots.EMPTY);
     }
 
     @Nonnull
     @Override
     public ImmutableMap<MetadataKey<?>, Object> asMap() {
-        this.lock.lock();
-        try {
-            return ImmutableMap.copyOf(this.map);
-        } finally {
-            this.lock.unlock();
+        ImmutableMap.Builder<MetadataKey<?>, Object> builder = ImmutableMap.builder();
+        for (Entry entry : this.slots.get().entries) {
+            builder.put(entry.key, entry.value);
         }
+        return builder.build();
     }
 
     @Override
     public boolean isEmpty() {
-        this.lock.lock();
-        try {
-            cleanup();
-            return this.map.isEmpty();
-        } finally {
-            this.lock.unlock();
-        }
+        cleanup();
+        return this.slots.get().entries.length == 0;
     }
 
     @Override
     public void cleanup() {
-        this.lock.lock();
-        try {
-            this.map.values().removeIf(o -> o instanceof TransientValue<?> && ((TransientValue) o).shouldExpire());
-        } finally {
-            this.lock.unlock();
+        Slots current;
+        Slots updated;
+        do {
+            current = this.slots.get();
+            updated = current.withoutExpired();
+        } while (updated != current && !this.slots.compareAndSet(current, updated));
+        released(current, updated);
+    }
+
+    /**
+     * Removes the given entry if it is still present and has expired.
+     *
+     * <p>Called by {@link MetadataExpiry} when the entry is due to expire.</p>
+     *
+     * @param index the index of the entry
+     * @param entry the entry
+     */
+    void expire(int index, Entry entry) {
+        if (entry.isExpired()) {
+            removeEntry(index, entry);
+        }
+    }
+
+    /**
+     * Unboxes the value held by the given entry, removing the entry from the
+     * map if it has expired.
+     *
+     * @param index the index of the entry
+     * @param entry the entry
+     * @return the value, or null if it has expired
+     */
+    @Nullable
+    private Object unbox(int index, Entry entry) {
+        if (!(entry.value instanceof TransientValue<?>)) {
+            return entry.value;
+        }
+
+        Object unboxed = ((TransientValue<?>) entry.value).getOrNull();
+        if (unboxed == null) {
+            removeEntry(index, entry);
+        }
+        return unboxed;
+    }
+
+    /**
+     * Removes the given entry, unless it has already been replaced.
+     *
+     * @param index the index of the entry
+     * @param entry the entry
+     */
+    private void removeEntry(int index, Entry entry) {
+        Slots current;
+        do {
+            current = this.slots.get();
+            if (current.get(index) != entry) {
+                return;
+            }
+        } while (!this.slots.compareAndSet(current, current.without(index)));
+        MetadataExpiry.release(entry);
+    }
+
+    /**
+     * Updates expiry tracking after an entry has been replaced.
+     *
+     * @param index the index of the entry
+     * @param previous the previous entry, or null
+     * @param entry the new entry
+     */
+    private void replaced(int index, @Nullable Entry previous, Entry entry) {
+        MetadataExpiry.release(previous);
+        if (entry.isTransient()) {
+            MetadataExpiry.track(this, index, entry);
+        }
+    }
+
+    /**
+     * Stops tracking any transient entries which were removed between two snapshots.
+     *
+     * @param before the previous snapshot
+     * @param after the new snapshot
+     */
+    private static void released(Slots before, Slots after) {
+        for (int index : before.transientIndexes) {
+            Entry entry = before.get(index);
+            if (after.get(index) != entry) {
+                MetadataExpiry.release(entry);
+            }
+        }
+    }
+
+    private static void checkType(MetadataKey<?> key, MetadataKey<?> existing) {
+        if (!existing.getType().equals(key.getType())) {
+            throw new ClassCastException("Cannot cast key with id " + key.getId() + " with type " + key.getType().getRawType() + " to existing stored type " + existing.getType().getRawType());
+        }
+    }
+
+    /**
+     * A key and its (possibly transient) value.
+     */
+    static final class Entry {
+        final MetadataKey<?> key;
+        // keeps the index from being reused by another key whilst the entry exists
+        final MetadataKeyImpl.Slot slot;
+        final Object value;
+
+        /** The expiry node tracking this entry, if any */
+        volatile MetadataExpiry.Node expiry;
+
+        private Entry(MetadataKey<?> key, MetadataKeyImpl.Slot slot, Object value) {
+            this.key = key;
+            this.slot = slot;
+            this.value = value;
+        }
+
+        private boolean isTransient() {
+            return this.value instanceof TransientValue<?>;
+        }
+
+        private boolean isExpired() {
+            return isTransient() && ((TransientValue<?>) this.value).shouldExpire();
+        }
+    }
+
+    /**
+     * An immutable snapshot of the map contents.
+     */
+    private static final class Slots {
+        private static final Slots EMPTY = new Slots(new int[0], new Entry[0], new int[0]);
+
+        /** The key indexes present in the map, in ascending order */
+        private final int[] indexes;
+        /** The entries, in the same order as {@link #indexes} */
+        private final Entry[] entries;
+        /** The key indexes of entries holding transient values */
+        private final int[] transientIndexes;
+
+        private Slots(int[] indexes, Entry[] entries, int[] transientIndexes) {
+            this.indexes = indexes;
+            this.entries = entries;
+            this.transientIndexes = transientIndexes;
+        }
+
+        @Nullable
+        private Entry get(int index) {
+            int i = Arrays.binarySearch(this.indexes, index);
+            return i >= 0 ? this.entries[i] : null;
+        }
+
+        private Slots with(int index, Entry entry) {
+            int i = Arrays.binarySearch(this.indexes, index);
+
+            Entry previous;
+            int[] indexes;
+            Entry[] entries;
+            if (i >= 0) {
+                previous = this.entries[i];
+                indexes = this.indexes;
+                entries = this.entries.clone();
+                entries[i] = entry;
+            } else {
+                int insert = -(i + 1);
+                int length = this.indexes.length;
+                previous = null;
+
+                indexes = new int[length + 1];
+                System.arraycopy(this.indexes, 0, indexes, 0, insert);
+                System.arraycopy(this.indexes, insert, indexes, insert + 1, length - insert);
+                indexes[insert] = index;
+
+                entries = new Entry[length + 1];
+                System.arraycopy(this.entries, 0, entries, 0, insert);
+                System.arraycopy(this.entries, insert, entries, insert + 1, length - insert);
+                entries[insert] = entry;
+            }
+
+            int[] transientIndexes = this.transientIndexes;
+            if (previous != null && previous.isTransient()) {
+                transientIndexes = removeIndex(transientIndexes, index);
+            }
+            if (entry.isTransient()) {
+                transientIndexes = Arrays.copyOf(transientIndexes, transientIndexes.length + 1);
+                transientIndexes[transientIndexes.length - 1] = index;
+            }
+
+            return new Slots(indexes, entries, transientIndexes);
+        }
+
+        private Slots without(int index) {
+            int i = Arrays.binarySearch(this.indexes, index);
+            if (i < 0) {
+                return this;
+            }
+            if (this.entries.length == 1) {
+                return EMPTY;
+            }
+
+            Entry previous = this.entries[i];
+            int length = this.indexes.length;
+
+            int[] indexes = new int[length - 1];
+            System.arraycopy(this.indexes, 0, indexes, 0, i);
+            System.arraycopy(this.indexes, i + 1, indexes, i, length - i - 1);
+
+            Entry[] entries = new Entry[length - 1];
+            System.arraycopy(this.entries, 0, entries, 0, i);
+            System.arraycopy(this.entries, i + 1, entries, i, length - i - 1);
+
+            int[] transientIndexes = previous.isTransient() ? removeIndex(this.transientIndexes, index) : this.transientIndexes;
+            return new Slots(indexes, entries, transientIndexes);
+        }
+
+        private Slots withoutExpired() {
+            Slots result = this;
+            for (int index : this.transientIndexes) {
+                Entry entry = get(index);
+                if (entry != null && entry.isExpired()) {
+                    result = result.without(index);
+                }
+            }
+            return result;
+        }
+
+        private static int[] removeIndex(int[] indexes, int index) {
+            for (int i = 0; i < indexes.length; i++) {
+                if (indexes[i] == index) {
+                    int[] result = new int[indexes.length - 1];
+                    System.arraycopy(indexes, 0, result, 0, i);
+                    System.arraycopy(indexes, i + 1, result, i, indexes.length - i - 1);
+                    return result;
+                }
+            }
+            return indexes;
         }
     }
 
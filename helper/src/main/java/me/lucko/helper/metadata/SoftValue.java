@@ -57,7 +57,7 @@ public final class SoftValue<T> implements TransientValue<T> {
     private final SoftReference<T> value;
 
     private SoftValue(T value) {
-        this.value = new SoftReference<>(value);
+        this.value = MetadataExpiry.softReference(value);
     }
 
     @Nullable
@@ -71,4 +71,8 @@ public final class SoftValue<T> implements TransientValue<T> {
         return this.value.get() == null;
     }
 
+    SoftReference<T> reference() {
+        return this.value;
+    }
+
 }
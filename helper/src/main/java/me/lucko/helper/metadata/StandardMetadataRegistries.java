@@ -28,6 +28,7 @@ package me.lucko.helper.metadata;
 import com.google.common.collect.ImmutableMap;
 
 import me.lucko.helper.metadata.type.BlockMetadataRegistry;
+import me.lucko.helper.metadata.type.ChunkedBlockMetadataRegistry;
 import me.lucko.helper.metadata.type.EntityMetadataRegistry;
 import me.lucko.helper.metadata.type.PlayerMetadataRegistry;
 import me.lucko.helper.metadata.type.WorldMetadataRegistry;
@@ -58,8 +59,9 @@ final class StandardMetadataRegistries {
     public static final EntityMetadataRegistry ENTITY = new EntityRegistry();
     public static final BlockMetadataRegistry BLOCK = new BlockRegistry();
     public static final WorldMetadataRegistry WORLD = new WorldRegistry();
+    public static final ChunkedBlockMetadataRegistry CHUNKED_BLOCK = new ChunkedBlockMetadataRegistryImpl();
 
-    private static final MetadataRegistry<?>[] VALUES = new MetadataRegistry[]{PLAYER, ENTITY, BLOCK, WORLD};
+    private static final MetadataRegistry<?>[] VALUES = new MetadataRegistry[]{PLAYER, ENTITY, BLOCK, WORLD, CHUNKED_BLOCK};
 
     public static MetadataRegistry<?>[] values() {
         return VALUES;
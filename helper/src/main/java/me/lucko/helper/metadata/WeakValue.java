@@ -57,7 +57,7 @@ public final class WeakValue<T> implements TransientValue<T> {
     private final WeakReference<T> value;
 
     private WeakValue(T value) {
-        this.value = new WeakReference<>(value);
+        this.value = MetadataExpiry.weakReference(value);
     }
 
     @Nullable
@@ -71,4 +71,8 @@ public final class WeakValue<T> implements TransientValue<T> {
         return this.value.get() == null;
     }
 
+    WeakReference<T> reference() {
+        return this.value;
+    }
+
 }
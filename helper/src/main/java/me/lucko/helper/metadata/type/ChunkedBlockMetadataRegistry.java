@@ -0,0 +1,119 @@
+/*
+ * This file is part of helper, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.helper.metadata.type;
+
+import me.lucko.helper.metadata.MetadataMap;
+import me.lucko.helper.serialize.BlockPosition;
+import me.lucko.helper.serialize.ChunkPosition;
+import me.lucko.helper.serialize.ChunkRegion;
+
+import org.bukkit.World;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A {@link BlockMetadataRegistry} which stores its {@link MetadataMap}s in
+ * primitive long keyed maps, grouped by chunk.
+ *
+ * <p>This avoids holding a {@link BlockPosition} and cache node for every
+ * block, and allows all of the metadata in a chunk to be iterated or dropped
+ * in a single operation.</p>
+ */
+public interface ChunkedBlockMetadataRegistry extends BlockMetadataRegistry {
+
+    /**
+     * Produces a {@link MetadataMap} for the block at the given coordinates.
+     *
+     * @param world the world
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param z the z coordinate
+     * @return a metadata map
+     */
+    @Nonnull
+    MetadataMap provide(@Nonnull World world, int x, int y, int z);
+
+    /**
+     * Gets a {@link MetadataMap} for the block at the given coordinates, if
+     * one already exists and has been cached in this registry.
+     *
+     * @param world the world
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @param z the z coordinate
+     * @return a metadata map, if present
+     */
+    @Nonnull
+    Optional<MetadataMap> get(@Nonnull World world, int x, int y, int z);
+
+    /**
+     * Gets the {@link MetadataMap}s for the blocks in the given chunk.
+     *
+     * @param chunk the chunk
+     * @return an immutable map of block positions to metadata maps
+     */
+    @Nonnull
+    Map<BlockPosition, MetadataMap> getAll(@Nonnull ChunkPosition chunk);
+
+    /**
+     * Gets the {@link MetadataMap}s for the blocks in the given region.
+     *
+     * @param region the region
+     * @return an immutable map of block positions to metadata maps
+     */
+    @Nonnull
+    Map<BlockPosition, MetadataMap> getAll(@Nonnull ChunkRegion region);
+
+    /**
+     * Performs an action for each {@link MetadataMap} in the given chunk.
+     *
+     * @param chunk the chunk
+     * @param action the action
+     */
+    void forEach(@Nonnull ChunkPosition chunk, @Nonnull BiConsumer<BlockPosition, MetadataMap> action);
+
+    /**
+     * Performs an action for each {@link MetadataMap} in the given region.
+     *
+     * @param region the region
+     * @param action the action
+     */
+    void forEach(@Nonnull ChunkRegion region, @Nonnull BiConsumer<BlockPosition, MetadataMap> action);
+
+    /**
+     * Deletes the {@link MetadataMap}s for all blocks in the given chunk.
+     *
+     * <p>This can be called when a chunk is unloaded to discard its metadata.</p>
+     *
+     * @param chunk the chunk
+     */
+    void remove(@Nonnull ChunkPosition chunk);
+
+}
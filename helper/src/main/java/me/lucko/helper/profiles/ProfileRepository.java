@@ -28,11 +28,15 @@ package me.lucko.helper.profiles;
 import me.lucko.helper.promise.Promise;
 
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
 
@@ -88,6 +92,28 @@ public interface ProfileRepository {
     @Nonnull
     Collection<Profile> getKnownProfiles();
 
+    /**
+     * Gets the profiles in this repository whose names start with the given
+     * prefix, ignoring case.
+     *
+     * <p>Profiles are returned in order of name, and there is at most one
+     * profile for each name.</p>
+     *
+     * @param prefix the name prefix
+     * @param limit the maximum number of profiles to return
+     * @return the matching profiles
+     */
+    @Nonnull
+    default List<Profile> getProfilesByPrefix(@Nonnull String prefix, int limit) {
+        Objects.requireNonNull(prefix, "prefix");
+        String lowerPrefix = prefix.toLowerCase(Locale.ROOT);
+        return getKnownProfiles().stream()
+                .filter(p -> p.getName().get().toLowerCase(Locale.ROOT).startsWith(lowerPrefix))
+                .sorted(Comparator.comparing(p -> p.getName().get().toLowerCase(Locale.ROOT)))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
     /**
      * Populates a map of unique id to profile for the given iterable of unique ids.
      *
@@ -28,10 +28,13 @@ package me.lucko.helper.utils;
 import java.util.UUID;
 
 /**
- * Utilities for converting {@link UUID} string representations without dashes.
+ * Utilities for converting {@link UUID} string representations without dashes,
+ * and to and from their 16 byte binary form.
  */
 public final class UndashedUuids {
 
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     /**
      * Returns a {@link UUID#toString()} string without dashes.
      *
@@ -39,23 +42,24 @@ public final class UndashedUuids {
      * @return the string form
      */
     public static String toString(UUID uuid) {
-        // copied from UUID impl
-        return (digits(uuid.getMostSignificantBits() >> 32, 8) +
-                digits(uuid.getMostSignificantBits() >> 16, 4) +
-                digits(uuid.getMostSignificantBits(), 4) +
-                digits(uuid.getLeastSignificantBits() >> 48, 4) +
-                digits(uuid.getLeastSignificantBits(), 12));
+        char[] chars = new char[32];
+        writeHex(chars, 0, uuid.getMostSignificantBits());
+        writeHex(chars, 16, uuid.getLeastSignificantBits());
+        return new String(chars);
     }
 
-    private static String digits(long val, int digits) {
-        long hi = 1L << (digits * 4);
-        return Long.toHexString(hi | (val & (hi - 1))).substring(1);
+    private static void writeHex(char[] chars, int offset, long value) {
+        for (int i = offset + 15; i >= offset; i--) {
+            chars[i] = HEX_DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
     }
 
-
     /**
      * Parses a UUID from an undashed string.
      *
+     * <p>Both upper and lower case hex digits are accepted.</p>
+     *
      * @param string the string
      * @return the uuid
      */
@@ -64,15 +68,65 @@ public final class UndashedUuids {
             throw new IllegalArgumentException("Invalid length " + string.length() + ": " + string);
         }
 
-        try {
-            return new UUID(
-                    Long.parseUnsignedLong(string.substring(0, 16), 16),
-                    Long.parseUnsignedLong(string.substring(16), 16)
-            );
-        } catch (NumberFormatException e) {
-            throw new IllegalArgumentException("Invalid uuid string: " + string, e);
+        return new UUID(parseHex(string, 0), parseHex(string, 16));
+    }
+
+    private static long parseHex(String string, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 16; i++) {
+            int digit = Character.digit(string.charAt(i), 16);
+            if (digit == -1) {
+                throw new IllegalArgumentException("Invalid uuid string: " + string);
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the 16 byte big-endian binary form of a UUID.
+     *
+     * <p>This is the same form produced by {@code UNHEX} on the undashed string,
+     * and is suitable for storing in a {@code BINARY(16)} column.</p>
+     *
+     * @param uuid the uuid
+     * @return the binary form
+     */
+    public static byte[] toBytes(UUID uuid) {
+        byte[] bytes = new byte[16];
+        writeLong(bytes, 0, uuid.getMostSignificantBits());
+        writeLong(bytes, 8, uuid.getLeastSignificantBits());
+        return bytes;
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        for (int i = offset + 7; i >= offset; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    /**
+     * Reads a UUID from its 16 byte big-endian binary form.
+     *
+     * @param bytes the binary form
+     * @return the uuid
+     * @see #toBytes(UUID)
+     */
+    public static UUID fromBytes(byte[] bytes) throws IllegalArgumentException {
+        if (bytes.length != 16) {
+            throw new IllegalArgumentException("Invalid length " + bytes.length);
         }
 
+        return new UUID(readLong(bytes, 0), readLong(bytes, 8));
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
     }
 
     private UndashedUuids() {